@@ -40,6 +40,7 @@ import org.eclipse.jetty.client.ConnectionPool;
 import org.eclipse.jetty.client.ContentResponse;
 import org.eclipse.jetty.client.Destination;
 import org.eclipse.jetty.client.DigestAuthentication;
+import org.eclipse.jetty.client.HttpCache;
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.HttpClientTransport;
 import org.eclipse.jetty.client.HttpProxy;
@@ -672,6 +673,27 @@ public class HTTPClientDocs
         // end::emptyCookieStore[]
     }
 
+    public void httpCache() throws Exception
+    {
+        // tag::httpCache[]
+        HttpClient httpClient = new HttpClient();
+
+        // Store up to 64 MiB of response content, at most 2 MiB per response.
+        HttpCache httpCache = new HttpCache();
+        httpCache.setMaxMemorySize(64 * 1024 * 1024);
+        httpCache.setMaxEntrySize(2 * 1024 * 1024);
+
+        // The cache must be installed before starting HttpClient.
+        httpClient.setHttpCache(httpCache);
+        httpClient.start();
+
+        // The first request goes to the server, while the second is
+        // completed from the cache, provided the response is still fresh.
+        httpClient.GET("http://domain.com/config");
+        httpClient.GET("http://domain.com/config");
+        // end::httpCache[]
+    }
+
     public void filteringCookieStore() throws Exception
     {
         HttpClient httpClient = new HttpClient();
@@ -0,0 +1,741 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.client.internal.HttpContentResponse;
+import org.eclipse.jetty.client.transport.HttpConversation;
+import org.eclipse.jetty.client.transport.HttpRequest;
+import org.eclipse.jetty.client.transport.HttpResponse;
+import org.eclipse.jetty.client.transport.ResponseListeners;
+import org.eclipse.jetty.http.DateParser;
+import org.eclipse.jetty.http.EtagUtils;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.http.QuotedCSV;
+import org.eclipse.jetty.util.NanoTime;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A private HTTP cache for {@link HttpClient}, as defined by
+ * <a href="https://datatracker.ietf.org/doc/html/rfc9111">RFC 9111</a>.</p>
+ * <p>The cache is opt-in, and it is installed via {@link HttpClient#setHttpCache(HttpCache)}.
+ * It stores the responses to {@code GET} requests that are cacheable according to their
+ * {@code Cache-Control}, {@code Expires} and validator headers, keyed by {@link Origin},
+ * request target and the request header values nominated by the response {@code Vary}
+ * header; only the most recent variant of a resource is retained.</p>
+ * <p>A request for a fresh stored response is completed from the cache without
+ * touching the network, and its request listeners are not notified.
+ * A request for a stale stored response that has a validator is sent with
+ * {@code If-None-Match} or {@code If-Modified-Since} headers; if the server replies
+ * {@code 304 Not Modified}, the stored response is refreshed with the headers of the
+ * {@code 304} response and delivered to the application in place of the {@code 304}.</p>
+ * <p>Successful responses to unsafe requests, such as {@code POST} or {@code DELETE},
+ * invalidate the stored response for the request target.</p>
+ * <p>Response content is stored after it has been decoded, and the total size of the
+ * stored content is bounded by {@link #getMaxMemorySize()}: the least recently used
+ * entries are evicted to make room for new ones.</p>
+ * <p>Requests that already carry conditional or range headers, and requests with
+ * {@code Cache-Control: no-store}, bypass the cache.</p>
+ */
+@ManagedObject("HTTP response cache")
+public class HttpCache implements ProtocolHandler
+{
+    public static final String NAME = "cache";
+    private static final Logger LOG = LoggerFactory.getLogger(HttpCache.class);
+    private static final String EXCHANGE_ATTRIBUTE = HttpCache.class.getName() + ".exchange";
+    private static final long MAX_HEURISTIC_LIFETIME = TimeUnit.DAYS.toMillis(1);
+
+    private final AutoLock lock = new AutoLock();
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75F, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private long memorySize;
+    private long maxMemorySize = 32 * 1024 * 1024;
+    private int maxEntrySize = 1024 * 1024;
+    private HttpClient httpClient;
+
+    @Override
+    public String getName()
+    {
+        return NAME;
+    }
+
+    void setHttpClient(HttpClient httpClient)
+    {
+        this.httpClient = httpClient;
+    }
+
+    /**
+     * @return the max total size in bytes of the stored response content
+     */
+    @ManagedAttribute("The max total size in bytes of the stored response content")
+    public long getMaxMemorySize()
+    {
+        return maxMemorySize;
+    }
+
+    /**
+     * @param maxMemorySize the max total size in bytes of the stored response content
+     */
+    public void setMaxMemorySize(long maxMemorySize)
+    {
+        this.maxMemorySize = maxMemorySize;
+    }
+
+    /**
+     * @return the max size in bytes of the content of a single response that can be stored
+     */
+    @ManagedAttribute("The max size in bytes of the content of a single stored response")
+    public int getMaxEntrySize()
+    {
+        return maxEntrySize;
+    }
+
+    /**
+     * @param maxEntrySize the max size in bytes of the content of a single response that can be stored
+     */
+    public void setMaxEntrySize(int maxEntrySize)
+    {
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    @ManagedAttribute("The total size in bytes of the stored response content")
+    public long getMemorySize()
+    {
+        try (AutoLock ignored = lock.lock())
+        {
+            return memorySize;
+        }
+    }
+
+    @ManagedAttribute("The number of stored responses")
+    public int getEntryCount()
+    {
+        try (AutoLock ignored = lock.lock())
+        {
+            return entries.size();
+        }
+    }
+
+    @ManagedAttribute("The number of requests completed from the cache without network access")
+    public long getHitCount()
+    {
+        return hits.longValue();
+    }
+
+    @ManagedAttribute("The number of cacheable requests that were sent to the server")
+    public long getMissCount()
+    {
+        return misses.longValue();
+    }
+
+    @ManagedAttribute("The number of stored responses refreshed by a 304 response")
+    public long getRevalidationCount()
+    {
+        return revalidations.longValue();
+    }
+
+    @ManagedAttribute("The number of stored responses evicted to honor the max memory size")
+    public long getEvictionCount()
+    {
+        return evictions.longValue();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        hits.reset();
+        misses.reset();
+        revalidations.reset();
+        evictions.reset();
+    }
+
+    /**
+     * <p>Removes all the stored responses.</p>
+     */
+    @ManagedOperation(value = "Removes all the stored responses", impact = "ACTION")
+    public void clear()
+    {
+        try (AutoLock ignored = lock.lock())
+        {
+            entries.clear();
+            memorySize = 0;
+        }
+    }
+
+    /**
+     * <p>Removes the stored response for the given URI, if any.</p>
+     *
+     * @param uri the URI of the resource to invalidate
+     * @return whether a stored response was removed
+     */
+    public boolean invalidate(URI uri)
+    {
+        return remove(newKey(uri.getScheme(), uri.getHost(), uri.getPort(), uri.getRawPath(), uri.getRawQuery()));
+    }
+
+    /**
+     * <p>Called by the implementation just before a request is sent.</p>
+     * <p>Either completes the request with a fresh stored response, in which
+     * case the request is not sent, or prepares the request for revalidation
+     * and for the storage of its response.</p>
+     *
+     * @param request the request about to be sent
+     * @return whether the request has been completed from the cache
+     */
+    public boolean send(Request request)
+    {
+        if (!(request instanceof HttpRequest httpRequest))
+            return false;
+
+        HttpMethod method = HttpMethod.fromString(request.getMethod());
+        if (method == null || !method.isSafe())
+        {
+            Key key = newKey(request);
+            request.onResponseSuccess(response ->
+            {
+                int status = response.getStatus();
+                if (status >= 200 && status < 400 && remove(key) && LOG.isDebugEnabled())
+                    LOG.debug("Invalidated {} after {} {}", key, request.getMethod(), status);
+            });
+            return false;
+        }
+        if (method != HttpMethod.GET)
+            return false;
+
+        HttpFields requestHeaders = request.getHeaders();
+        if (requestHeaders.contains(HttpHeader.IF_NONE_MATCH) ||
+            requestHeaders.contains(HttpHeader.IF_MODIFIED_SINCE) ||
+            requestHeaders.contains(HttpHeader.IF_MATCH) ||
+            requestHeaders.contains(HttpHeader.IF_UNMODIFIED_SINCE) ||
+            requestHeaders.contains(HttpHeader.RANGE))
+            return false;
+
+        CacheControl cacheControl = CacheControl.from(requestHeaders);
+        if (cacheControl.noStore())
+            return false;
+
+        Key key = newKey(request);
+        Entry entry;
+        try (AutoLock ignored = lock.lock())
+        {
+            entry = entries.get(key);
+        }
+        if (entry != null && !entry.matches(requestHeaders))
+            entry = null;
+
+        long now = NanoTime.now();
+        // A fresh response is only served to requests that start a conversation,
+        // as the response listeners of the conversation are not yet established.
+        if (entry != null && !cacheControl.noCache() && entry.isFresh(now, cacheControl.maxAge()) &&
+            httpRequest.getConversation().getExchanges().isEmpty())
+        {
+            hits.increment();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Hit {} for {}", entry, request);
+            deliver(httpRequest, entry, now, httpRequest.getResponseListeners());
+            return true;
+        }
+
+        misses.increment();
+        Exchange exchange = new Exchange(key, httpRequest, HttpFields.build(requestHeaders).asImmutable());
+        if (entry != null && entry.hasValidator())
+        {
+            exchange.stale = entry;
+            String etag = entry.etag();
+            String lastModified = entry.lastModified();
+            request.headers(headers ->
+            {
+                if (etag != null)
+                    headers.put(HttpHeader.IF_NONE_MATCH, etag);
+                else
+                    headers.put(HttpHeader.IF_MODIFIED_SINCE, lastModified);
+            });
+        }
+        if (LOG.isDebugEnabled())
+            LOG.debug("Miss {} for {}", entry, request);
+        request.attribute(EXCHANGE_ATTRIBUTE, exchange);
+        request.onResponseHeader(exchange::onHeader)
+            .onResponseHeaders(exchange::onHeaders)
+            .onResponseContent(exchange::onContent)
+            .onResponseSuccess(exchange::onSuccess);
+        return false;
+    }
+
+    @Override
+    public boolean accept(Request request, Response response)
+    {
+        return response.getStatus() == HttpStatus.NOT_MODIFIED_304 &&
+            request.getAttributes().get(EXCHANGE_ATTRIBUTE) instanceof Exchange exchange &&
+            exchange.stale != null;
+    }
+
+    @Override
+    public Response.Listener getResponseListener()
+    {
+        return new NotModifiedListener();
+    }
+
+    /**
+     * <p>Completes the given request with the stored response, replaying to the response listeners
+     * the same sequence of events of a network response: begin, header(s), headers, content,
+     * success and complete, where the content is the stored (decoded) bytes.</p>
+     */
+    private void deliver(HttpRequest request, Entry entry, long now, ResponseListeners listeners)
+    {
+        HttpResponse response = new HttpResponse(request)
+            .version(entry.version())
+            .status(entry.status())
+            .reason(entry.reason());
+        long age = TimeUnit.MILLISECONDS.toSeconds(entry.age(now));
+        response.headers(headers -> headers.add(entry.headers()).put(HttpHeader.AGE, age));
+        String contentType = entry.headers().get(HttpHeader.CONTENT_TYPE);
+        String mediaType = contentType == null ? null : MimeTypes.getContentTypeWithoutCharset(contentType);
+        String encoding = contentType == null ? null : MimeTypes.getCharsetFromContentType(contentType);
+        ContentResponse contentResponse = new HttpContentResponse(response, entry.content(), mediaType, encoding);
+        listeners.emitSuccessComplete(new Result(request, contentResponse));
+    }
+
+    private void store(Entry entry)
+    {
+        try (AutoLock ignored = lock.lock())
+        {
+            Entry old = entries.put(entry.key(), entry);
+            if (old != null)
+                memorySize -= old.content().length;
+            memorySize += entry.content().length;
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (memorySize > maxMemorySize && iterator.hasNext())
+            {
+                Entry eldest = iterator.next();
+                iterator.remove();
+                memorySize -= eldest.content().length;
+                evictions.increment();
+            }
+        }
+    }
+
+    private void replace(Entry oldEntry, Entry newEntry)
+    {
+        try (AutoLock ignored = lock.lock())
+        {
+            // The content is shared, so the memory size does not change.
+            entries.replace(oldEntry.key(), oldEntry, newEntry);
+        }
+    }
+
+    private boolean remove(Key key)
+    {
+        try (AutoLock ignored = lock.lock())
+        {
+            Entry entry = entries.remove(key);
+            if (entry == null)
+                return false;
+            memorySize -= entry.content().length;
+            return true;
+        }
+    }
+
+    private static Key newKey(Request request)
+    {
+        return newKey(request.getScheme(), request.getHost(), request.getPort(), request.getPath(), request.getQuery());
+    }
+
+    private static Key newKey(String scheme, String host, int port, String path, String query)
+    {
+        scheme = scheme.toLowerCase(Locale.ENGLISH);
+        Origin origin = new Origin(scheme, host.toLowerCase(Locale.ENGLISH), HttpClient.normalizePort(scheme, port));
+        if (path == null || path.isEmpty())
+            path = "/";
+        return new Key(origin, query == null ? path : path + "?" + query);
+    }
+
+    private boolean isDecoded(String contentEncoding)
+    {
+        // Mirrors the selection of the content decoder when the response headers are received.
+        HttpClient httpClient = this.httpClient;
+        if (httpClient == null)
+            return false;
+        for (ContentDecoder.Factory factory : httpClient.getContentDecoderFactories())
+        {
+            if (factory.getEncoding().equalsIgnoreCase(contentEncoding))
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean isStorable(int status)
+    {
+        return switch (status)
+        {
+            case HttpStatus.OK_200, HttpStatus.NON_AUTHORITATIVE_INFORMATION_203, HttpStatus.NO_CONTENT_204,
+                HttpStatus.MULTIPLE_CHOICES_300, HttpStatus.MOVED_PERMANENTLY_301, HttpStatus.PERMANENT_REDIRECT_308,
+                HttpStatus.NOT_FOUND_404, HttpStatus.METHOD_NOT_ALLOWED_405, HttpStatus.GONE_410,
+                HttpStatus.URI_TOO_LONG_414, HttpStatus.NOT_IMPLEMENTED_501 -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * @return the freshness lifetime in milliseconds of a response with the given headers,
+     * or a negative value if the response has no explicit or heuristic freshness lifetime
+     */
+    private static long freshnessLifetime(HttpFields headers, CacheControl cacheControl, long date)
+    {
+        if (cacheControl.noCache())
+            return 0;
+        if (cacheControl.maxAge() >= 0)
+            return TimeUnit.SECONDS.toMillis(cacheControl.maxAge());
+        String expires = headers.get(HttpHeader.EXPIRES);
+        if (expires != null)
+        {
+            // An invalid Expires value means already expired.
+            long expiresDate = DateParser.parseDate(expires);
+            return Math.max(0, expiresDate - date);
+        }
+        String lastModified = headers.get(HttpHeader.LAST_MODIFIED);
+        if (lastModified != null)
+        {
+            long lastModifiedDate = DateParser.parseDate(lastModified);
+            if (lastModifiedDate > 0 && lastModifiedDate < date)
+                return Math.min(MAX_HEURISTIC_LIFETIME, (date - lastModifiedDate) / 10);
+        }
+        return -1;
+    }
+
+    private Entry newEntry(Key key, Response response, HttpFields requestHeaders, List<String> decodedEncodings, byte[] content)
+    {
+        HttpFields responseHeaders = response.getHeaders();
+        CacheControl cacheControl = CacheControl.from(responseHeaders);
+        if (cacheControl.noStore())
+            return null;
+
+        List<HttpField> varyFields = new ArrayList<>();
+        for (String name : responseHeaders.getCSV(HttpHeader.VARY, false))
+        {
+            if ("*".equals(name))
+                return null;
+            varyFields.add(new HttpField(name, String.join(",", requestHeaders.getValuesList(name))));
+        }
+
+        HttpFields.Mutable headers = HttpFields.build(responseHeaders)
+            .remove(HttpHeader.CONNECTION)
+            .remove(HttpHeader.KEEP_ALIVE)
+            .remove(HttpHeader.TRANSFER_ENCODING)
+            .remove(HttpHeader.AGE);
+        if (decodedEncodings != null)
+        {
+            // The content is stored decoded, so it must not be
+            // replayed with the Content-Encoding that was removed.
+            headers.remove(HttpHeader.CONTENT_ENCODING);
+            if (!decodedEncodings.isEmpty())
+                headers.put(HttpHeader.CONTENT_ENCODING, String.join(", ", decodedEncodings));
+        }
+        headers.put(HttpHeader.CONTENT_LENGTH, content.length);
+        return newEntry(key, response.getVersion(), response.getStatus(), response.getReason(), headers.asImmutable(), varyFields, content, responseHeaders);
+    }
+
+    private Entry newEntry(Key key, HttpVersion version, int status, String reason, HttpFields headers, List<HttpField> varyFields, byte[] content, HttpFields received)
+    {
+        long now = System.currentTimeMillis();
+        String dateValue = received.get(HttpHeader.DATE);
+        long date = dateValue == null ? -1 : DateParser.parseDate(dateValue);
+        if (date < 0)
+            date = now;
+        long lifetime = freshnessLifetime(headers, CacheControl.from(headers), date);
+        String etag = headers.get(HttpHeader.ETAG);
+        String lastModified = headers.get(HttpHeader.LAST_MODIFIED);
+        if (lifetime < 0 && etag == null && lastModified == null)
+            return null;
+        long ageValue = 0;
+        try
+        {
+            ageValue = TimeUnit.SECONDS.toMillis(Math.max(0, received.getLongField(HttpHeader.AGE)));
+        }
+        catch (NumberFormatException x)
+        {
+            // Ignore an invalid Age value.
+        }
+        long initialAge = Math.max(Math.max(0, now - date), ageValue);
+        return new Entry(key, version, status, reason, headers, List.copyOf(varyFields), content,
+            NanoTime.now(), initialAge, Math.max(0, lifetime), etag, lastModified);
+    }
+
+    private Entry refresh(Entry entry, HttpFields notModifiedHeaders)
+    {
+        HttpFields.Mutable headers = HttpFields.build(entry.headers());
+        for (HttpField field : notModifiedHeaders)
+        {
+            HttpHeader header = field.getHeader();
+            if (header == HttpHeader.CONTENT_LENGTH || header == HttpHeader.CONNECTION ||
+                header == HttpHeader.KEEP_ALIVE || header == HttpHeader.TRANSFER_ENCODING || header == HttpHeader.AGE)
+                continue;
+            headers.remove(field.getName());
+        }
+        for (HttpField field : notModifiedHeaders)
+        {
+            HttpHeader header = field.getHeader();
+            if (header == HttpHeader.CONTENT_LENGTH || header == HttpHeader.CONNECTION ||
+                header == HttpHeader.KEEP_ALIVE || header == HttpHeader.TRANSFER_ENCODING || header == HttpHeader.AGE)
+                continue;
+            headers.add(field);
+        }
+        return newEntry(entry.key(), entry.version(), entry.status(), entry.reason(), headers.asImmutable(),
+            entry.varyFields(), entry.content(), notModifiedHeaders);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "%s@%x[entries=%d,size=%d/%d]".formatted(getClass().getSimpleName(), hashCode(), getEntryCount(), getMemorySize(), getMaxMemorySize());
+    }
+
+    private record Key(Origin origin, String target)
+    {
+    }
+
+    private record Entry(Key key, HttpVersion version, int status, String reason, HttpFields headers, List<HttpField> varyFields,
+                         byte[] content, long responseNanoTime, long initialAge, long lifetime, String etag, String lastModified)
+    {
+        private boolean matches(HttpFields requestHeaders)
+        {
+            for (HttpField field : varyFields)
+            {
+                String value = String.join(",", requestHeaders.getValuesList(field.getName()));
+                if (!field.getValue().equals(value))
+                    return false;
+            }
+            return true;
+        }
+
+        private long age(long now)
+        {
+            return initialAge + NanoTime.millisElapsed(responseNanoTime, now);
+        }
+
+        private boolean isFresh(long now, long maxAge)
+        {
+            long age = age(now);
+            if (age >= lifetime)
+                return false;
+            return maxAge < 0 || age <= TimeUnit.SECONDS.toMillis(maxAge);
+        }
+
+        private boolean hasValidator()
+        {
+            return etag != null || lastModified != null;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "%s@%x[%s,status=%d,length=%d,lifetime=%d]".formatted(getClass().getSimpleName(), hashCode(), key, status, content.length, lifetime);
+        }
+    }
+
+    private record CacheControl(boolean noStore, boolean noCache, long maxAge)
+    {
+        private static final CacheControl NONE = new CacheControl(false, false, -1);
+
+        private static CacheControl from(HttpFields headers)
+        {
+            List<String> directives = headers.getCSV(HttpHeader.CACHE_CONTROL, false);
+            if (directives.isEmpty())
+                return NONE;
+            boolean noStore = false;
+            boolean noCache = false;
+            long maxAge = -1;
+            for (String directive : directives)
+            {
+                int equals = directive.indexOf('=');
+                String name = (equals < 0 ? directive : directive.substring(0, equals)).trim().toLowerCase(Locale.ENGLISH);
+                switch (name)
+                {
+                    case "no-store" -> noStore = true;
+                    case "no-cache" -> noCache = true;
+                    case "max-age" ->
+                    {
+                        try
+                        {
+                            String value = directive.substring(equals + 1).trim();
+                            if (value.length() > 1 && value.charAt(0) == '"')
+                                value = value.substring(1, value.length() - 1);
+                            maxAge = Math.max(0, Long.parseLong(value));
+                        }
+                        catch (RuntimeException x)
+                        {
+                            // An invalid max-age means already expired.
+                            maxAge = 0;
+                        }
+                    }
+                    default ->
+                    {
+                    }
+                }
+            }
+            return new CacheControl(noStore, noCache, maxAge);
+        }
+    }
+
+    /**
+     * <p>The per-request state that captures a cacheable response.</p>
+     */
+    private class Exchange
+    {
+        private final Key key;
+        private final HttpRequest request;
+        private final HttpFields requestHeaders;
+        private volatile Entry stale;
+        private volatile boolean delivered;
+        private final List<String> encodings = new ArrayList<>();
+        private List<String> decodedEncodings;
+        private ByteArrayOutputStream content;
+
+        private Exchange(Key key, HttpRequest request, HttpFields requestHeaders)
+        {
+            this.key = key;
+            this.request = request;
+            this.requestHeaders = requestHeaders;
+        }
+
+        private boolean onHeader(Response response, HttpField field)
+        {
+            // Record the Content-Encoding values before the content decoder removes them.
+            if (field.getHeader() == HttpHeader.CONTENT_ENCODING)
+                encodings.addAll(new QuotedCSV(false, field.getValue()).getValues());
+            return true;
+        }
+
+        private void onHeaders(Response response)
+        {
+            if (delivered || response.getRequest() != request || !isStorable(response.getStatus()))
+                return;
+            if (!encodings.isEmpty() && isDecoded(encodings.get(encodings.size() - 1)))
+            {
+                // Only the last Content-Encoding is decoded,
+                // the remaining ones still apply to the content.
+                decodedEncodings = encodings.subList(0, encodings.size() - 1);
+            }
+            long length = response.getHeaders().getLongField(HttpHeader.CONTENT_LENGTH);
+            if (length > getMaxEntrySize())
+                return;
+            content = new ByteArrayOutputStream(length > 0 ? (int)length : 1024);
+        }
+
+        private void onContent(Response response, ByteBuffer buffer)
+        {
+            ByteArrayOutputStream content = this.content;
+            if (content == null)
+                return;
+            int length = buffer.remaining();
+            if (content.size() + length > getMaxEntrySize())
+            {
+                this.content = null;
+                return;
+            }
+            if (buffer.hasArray())
+            {
+                content.write(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+            }
+            else
+            {
+                byte[] bytes = new byte[length];
+                buffer.slice().get(bytes);
+                content.write(bytes, 0, length);
+            }
+        }
+
+        private void onSuccess(Response response)
+        {
+            ByteArrayOutputStream content = this.content;
+            this.content = null;
+            // Store on success rather than on completion, so that the
+            // response is available to requests issued by complete listeners.
+            if (delivered || content == null || response.getRequest() != request)
+                return;
+            Entry entry = newEntry(key, response, requestHeaders, decodedEncodings, content.toByteArray());
+            if (entry == null)
+                return;
+            if (LOG.isDebugEnabled())
+                LOG.debug("Storing {}", entry);
+            store(entry);
+        }
+    }
+
+    /**
+     * <p>The listener for {@code 304} responses to revalidation requests.</p>
+     */
+    private class NotModifiedListener implements Response.Listener
+    {
+        @Override
+        public void onComplete(Result result)
+        {
+            HttpRequest request = (HttpRequest)result.getRequest();
+            Response response = result.getResponse();
+            HttpConversation conversation = request.getConversation();
+            conversation.updateResponseListeners(null);
+            ResponseListeners listeners = conversation.getResponseListeners();
+            Exchange exchange = (Exchange)request.getAttributes().get(EXCHANGE_ATTRIBUTE);
+            Entry stale = exchange.stale;
+            if (result.isFailed())
+            {
+                listeners.emitFailureComplete(result);
+                return;
+            }
+
+            String etag = response.getHeaders().get(HttpHeader.ETAG);
+            Entry fresh = null;
+            if (etag == null || stale.etag() == null || EtagUtils.matches(stale.etag(), etag))
+                fresh = refresh(stale, response.getHeaders());
+            if (fresh == null)
+            {
+                // The 304 does not select the stored response, drop it.
+                remove(stale.key());
+                listeners.emitSuccessComplete(result);
+                return;
+            }
+            replace(stale, fresh);
+
+            revalidations.increment();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Revalidated {}", fresh);
+            exchange.delivered = true;
+            deliver(request, fresh, NanoTime.now(), listeners);
+        }
+    }
+}
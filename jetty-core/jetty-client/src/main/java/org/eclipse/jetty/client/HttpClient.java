@@ -119,6 +119,7 @@ public class HttpClient extends ContainerLifeCycle implements AutoCloseable
     private final ClientConnector connector;
     private AuthenticationStore authenticationStore = new HttpAuthenticationStore();
     private HttpCookieStore cookieStore;
+    private HttpCache httpCache;
     private SocketAddressResolver resolver;
     private HttpField agentField = new HttpField(HttpHeader.USER_AGENT, USER_AGENT);
     private boolean followRedirects = true;
@@ -212,6 +213,8 @@ public class HttpClient extends ContainerLifeCycle implements AutoCloseable
         handlers.put(new WWWAuthenticationProtocolHandler(this));
         handlers.put(new ProxyAuthenticationProtocolHandler(this));
         handlers.put(new UpgradeProtocolHandler());
+        if (httpCache != null)
+            handlers.put(httpCache);
 
         decoderFactories.put(new GZIPContentDecoder.Factory(byteBufferPool));
 
@@ -279,6 +282,30 @@ public class HttpClient extends ContainerLifeCycle implements AutoCloseable
         this.cookieStore = Objects.requireNonNull(cookieStore);
     }
 
+    /**
+     * @return the HTTP cache associated with this instance, or null if responses are not cached
+     */
+    public HttpCache getHttpCache()
+    {
+        return httpCache;
+    }
+
+    /**
+     * <p>Set the HTTP cache associated with this instance.</p>
+     * <p>By default, responses are not cached.</p>
+     *
+     * @param httpCache the HTTP cache associated with this instance, or null to disable caching
+     */
+    public void setHttpCache(HttpCache httpCache)
+    {
+        if (isStarted())
+            throw new IllegalStateException();
+        updateBean(this.httpCache, httpCache);
+        this.httpCache = httpCache;
+        if (httpCache != null)
+            httpCache.setHttpClient(this);
+    }
+
     public void putCookie(URI uri, HttpField field)
     {
         HttpCookie cookie = COOKIE_PARSER.parse(field.getValue());
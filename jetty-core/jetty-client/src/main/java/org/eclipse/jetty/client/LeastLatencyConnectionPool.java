@@ -0,0 +1,261 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.ConcurrentPool;
+import org.eclipse.jetty.util.NanoTime;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.component.Dumpable;
+import org.eclipse.jetty.util.component.DumpableCollection;
+import org.eclipse.jetty.util.thread.AutoLock;
+
+/**
+ * <p>A {@link ConnectionPool} that provides connections using the
+ * "power of two choices" algorithm, favoring the connections that
+ * have a lower latency and fewer in-flight requests.</p>
+ * <p>For each connection, this pool tracks the number of in-flight requests,
+ * and an exponentially weighted moving average (EWMA) of the request latency,
+ * measured from the time the connection is acquired to the time it is released.
+ * To acquire a connection, two connections are sampled at random and the one
+ * with the lower cost is provided, where the cost is the latency EWMA multiplied
+ * by the number of in-flight requests plus one.</p>
+ * <p>For multiplexed connections, the requests are not correlated to the
+ * acquire/release pairs, so the latency of a request is estimated from the
+ * average acquisition time of the requests in-flight on the connection.</p>
+ * <p>The latency of a connection that has no in-flight requests decays over
+ * time, so that a connection that was slow is eventually tried again.</p>
+ * <p>Applications using this class should {@link #preCreateConnections(int) pre-create}
+ * the connections, so that there are connections to choose from.</p>
+ *
+ * @see RandomConnectionPool
+ * @see RoundRobinConnectionPool
+ */
+@ManagedObject
+public class LeastLatencyConnectionPool extends MultiplexConnectionPool
+{
+    private final Tracker tracker;
+
+    public LeastLatencyConnectionPool(Destination destination, int maxConnections)
+    {
+        this(destination, maxConnections, 1);
+    }
+
+    public LeastLatencyConnectionPool(Destination destination, int maxConnections, int initialMaxMultiplex)
+    {
+        this(destination, maxConnections, initialMaxMultiplex, new Tracker());
+    }
+
+    private LeastLatencyConnectionPool(Destination destination, int maxConnections, int initialMaxMultiplex, Tracker tracker)
+    {
+        super(destination, () -> new ConcurrentPool<>(ConcurrentPool.StrategyType.TWO_CHOICES, maxConnections, newMaxMultiplexer(initialMaxMultiplex), tracker::cost), initialMaxMultiplex);
+        this.tracker = tracker;
+        // Open new connections to replace those that were
+        // closed, so that there are connections to choose from.
+        setMaximizeConnections(true);
+    }
+
+    /**
+     * @return the weight, between 0 and 1, of a new latency sample in the moving average
+     */
+    @ManagedAttribute("The weight of a new latency sample in the moving average")
+    public double getLatencyWeight()
+    {
+        return tracker.weight;
+    }
+
+    /**
+     * @param latencyWeight the weight, between 0 and 1, of a new latency sample in the moving average
+     */
+    public void setLatencyWeight(double latencyWeight)
+    {
+        if (latencyWeight <= 0 || latencyWeight > 1)
+            throw new IllegalArgumentException("Invalid latency weight " + latencyWeight);
+        tracker.weight = latencyWeight;
+    }
+
+    /**
+     * @return the time in milliseconds it takes for the latency of a connection
+     * without in-flight requests to decay by a factor of e
+     */
+    @ManagedAttribute("The latency decay time in milliseconds of connections without in-flight requests")
+    public long getLatencyDecay()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(tracker.decayNanos);
+    }
+
+    /**
+     * @param latencyDecay the time in milliseconds it takes for the latency of a
+     * connection without in-flight requests to decay by a factor of e
+     */
+    public void setLatencyDecay(long latencyDecay)
+    {
+        tracker.decayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, latencyDecay));
+    }
+
+    /**
+     * @return a read-only view of the statistics of each pooled connection
+     */
+    public Map<Connection, Stats> getConnectionStats()
+    {
+        return Collections.unmodifiableMap(tracker.stats);
+    }
+
+    @Override
+    public Connection acquire(boolean create)
+    {
+        Connection connection = super.acquire(create);
+        if (connection != null)
+            tracker.stats(connection).onAcquired();
+        return connection;
+    }
+
+    @Override
+    public boolean release(Connection connection)
+    {
+        Stats stats = tracker.stats.get(connection);
+        if (stats != null)
+            stats.onReleased(tracker.weight);
+        return super.release(connection);
+    }
+
+    @Override
+    protected void onCreated(Connection connection)
+    {
+        tracker.stats(connection);
+        super.onCreated(connection);
+    }
+
+    @Override
+    protected void onRemoved(Connection connection)
+    {
+        // Entries removed before their connection was created have no connection.
+        if (connection != null)
+            tracker.stats.remove(connection);
+        super.onRemoved(connection);
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        Dumpable.dumpObjects(out, indent, this, DumpableCollection.from("stats", tracker.stats.entrySet()));
+    }
+
+    private static class Tracker
+    {
+        private final Map<Connection, Stats> stats = new ConcurrentHashMap<>();
+        private volatile double weight = 0.3;
+        private volatile long decayNanos = TimeUnit.SECONDS.toNanos(10);
+
+        private Stats stats(Connection connection)
+        {
+            return stats.computeIfAbsent(connection, c -> new Stats());
+        }
+
+        private long cost(Connection connection)
+        {
+            Stats stats = this.stats.get(connection);
+            return stats == null ? 0 : stats.cost(decayNanos);
+        }
+    }
+
+    /**
+     * <p>The latency and in-flight statistics of a pooled connection.</p>
+     */
+    public static class Stats
+    {
+        private final AutoLock lock = new AutoLock();
+        // Acquisition times are relative to this base, so that their sum does not overflow.
+        private final long baseNanoTime = NanoTime.now();
+        private long acquiredSum;
+        private volatile int inFlight;
+        private volatile double latency;
+        private volatile long lastNanoTime = baseNanoTime;
+        private volatile long requests;
+
+        /**
+         * @return the moving average of the request latency, in nanoseconds
+         */
+        public long getLatency()
+        {
+            return (long)latency;
+        }
+
+        /**
+         * @return the number of in-flight requests
+         */
+        public int getInFlight()
+        {
+            return inFlight;
+        }
+
+        /**
+         * @return the number of requests completed
+         */
+        public long getRequestCount()
+        {
+            return requests;
+        }
+
+        private void onAcquired()
+        {
+            long now = NanoTime.now();
+            try (AutoLock ignored = lock.lock())
+            {
+                acquiredSum += NanoTime.elapsed(baseNanoTime, now);
+                inFlight = inFlight + 1;
+            }
+        }
+
+        private void onReleased(double weight)
+        {
+            long now = NanoTime.now();
+            try (AutoLock ignored = lock.lock())
+            {
+                int inFlight = this.inFlight;
+                if (inFlight <= 0)
+                    return;
+                long averageAcquired = acquiredSum / inFlight;
+                acquiredSum -= averageAcquired;
+                this.inFlight = inFlight - 1;
+                double sample = Math.max(0, NanoTime.elapsed(baseNanoTime, now) - averageAcquired);
+                double latency = this.latency;
+                this.latency = requests == 0 ? sample : latency + weight * (sample - latency);
+                lastNanoTime = now;
+                requests = requests + 1;
+            }
+        }
+
+        private long cost(long decayNanos)
+        {
+            double latency = this.latency;
+            int inFlight = this.inFlight;
+            if (inFlight == 0)
+                latency *= Math.exp(-(double)NanoTime.since(lastNanoTime) / decayNanos);
+            return (long)(latency * (inFlight + 1));
+        }
+
+        @Override
+        public String toString()
+        {
+            return "%s@%x[latency=%dus,inFlight=%d,requests=%d]".formatted(getClass().getSimpleName(), hashCode(), TimeUnit.NANOSECONDS.toMicros(getLatency()), getInFlight(), getRequestCount());
+        }
+    }
+}
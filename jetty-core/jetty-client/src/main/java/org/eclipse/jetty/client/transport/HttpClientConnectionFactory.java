@@ -29,6 +29,7 @@ public class HttpClientConnectionFactory implements ClientConnectionFactory
     public static final Info HTTP11 = new HTTP11();
 
     private boolean initializeConnections;
+    private int maxPipelinedRequests = 1;
 
     /**
      * @return whether newly created connections should be initialized with an {@code OPTIONS * HTTP/1.1} request
@@ -46,11 +47,32 @@ public class HttpClientConnectionFactory implements ClientConnectionFactory
         this.initializeConnections = initialize;
     }
 
+    /**
+     * @return the max number of requests that may be in-flight at the same time on a connection
+     */
+    public int getMaxPipelinedRequests()
+    {
+        return maxPipelinedRequests;
+    }
+
+    /**
+     * <p>Sets the max number of requests that may be in-flight at the same time on a connection.</p>
+     * <p>Values greater than {@code 1} enable HTTP/1.1 request pipelining for idempotent requests.</p>
+     *
+     * @param maxPipelinedRequests the max number of requests that may be in-flight at the same time on a connection
+     * @see HttpConnectionOverHTTP
+     */
+    public void setMaxPipelinedRequests(int maxPipelinedRequests)
+    {
+        this.maxPipelinedRequests = Math.max(1, maxPipelinedRequests);
+    }
+
     @Override
     public org.eclipse.jetty.io.Connection newConnection(EndPoint endPoint, Map<String, Object> context)
     {
         HttpConnectionOverHTTP connection = new HttpConnectionOverHTTP(endPoint, context);
         connection.setInitialize(isInitializeConnections());
+        connection.setMaxPipelinedRequests(getMaxPipelinedRequests());
         return customize(connection, context);
     }
 
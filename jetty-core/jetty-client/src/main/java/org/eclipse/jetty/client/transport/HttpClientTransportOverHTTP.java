@@ -20,6 +20,7 @@ import java.util.Map;
 import org.eclipse.jetty.client.AbstractConnectorHttpClientTransport;
 import org.eclipse.jetty.client.Destination;
 import org.eclipse.jetty.client.DuplexConnectionPool;
+import org.eclipse.jetty.client.MultiplexConnectionPool;
 import org.eclipse.jetty.client.Origin;
 import org.eclipse.jetty.client.Request;
 import org.eclipse.jetty.io.ClientConnector;
@@ -53,7 +54,14 @@ public class HttpClientTransportOverHTTP extends AbstractConnectorHttpClientTran
     public HttpClientTransportOverHTTP(ClientConnector connector)
     {
         super(connector);
-        setConnectionPoolFactory(destination -> new DuplexConnectionPool(destination, getHttpClient().getMaxConnectionsPerDestination()));
+        setConnectionPoolFactory(destination ->
+        {
+            int maxConnections = getHttpClient().getMaxConnectionsPerDestination();
+            int maxPipelinedRequests = getMaxPipelinedRequests();
+            if (maxPipelinedRequests > 1)
+                return new MultiplexConnectionPool(destination, maxConnections, maxPipelinedRequests);
+            return new DuplexConnectionPool(destination, maxConnections);
+        });
     }
 
     @Override
@@ -111,6 +119,30 @@ public class HttpClientTransportOverHTTP extends AbstractConnectorHttpClientTran
         this.headerCacheCaseSensitive = headerCacheCaseSensitive;
     }
 
+    /**
+     * @return the max number of requests that may be in-flight at the same time on a connection
+     */
+    @ManagedAttribute("The maximum number of requests in-flight at the same time on a connection")
+    public int getMaxPipelinedRequests()
+    {
+        return factory.getMaxPipelinedRequests();
+    }
+
+    /**
+     * <p>Sets the max number of requests that may be in-flight at the same time on a connection.</p>
+     * <p>Values greater than {@code 1} enable HTTP/1.1 request pipelining: idempotent requests
+     * are written on a connection without waiting for the responses to the previous requests,
+     * so that fewer connections are necessary to the same destination.
+     * Pipelining should only be enabled for servers that are known to support it.</p>
+     * <p>This value must be set before the {@link org.eclipse.jetty.client.HttpClient} is started.</p>
+     *
+     * @param maxPipelinedRequests the max number of requests that may be in-flight at the same time on a connection
+     */
+    public void setMaxPipelinedRequests(int maxPipelinedRequests)
+    {
+        factory.setMaxPipelinedRequests(maxPipelinedRequests);
+    }
+
     /**
      * @return whether newly created connections should be initialized with an {@code OPTIONS * HTTP/1.1} request
      */
@@ -43,6 +43,7 @@ import org.eclipse.jetty.client.CompletableResponseListener;
 import org.eclipse.jetty.client.Connection;
 import org.eclipse.jetty.client.ContentResponse;
 import org.eclipse.jetty.client.Destination;
+import org.eclipse.jetty.client.HttpCache;
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.Origin;
 import org.eclipse.jetty.client.PathRequestContent;
@@ -748,6 +749,9 @@ public class HttpRequest implements Request
     {
         if (listener != null)
             responseListeners.addCompleteListener(listener, true);
+        HttpCache httpCache = client.getHttpCache();
+        if (httpCache != null && httpCache.send(this))
+            return;
         destination.send(this);
     }
 
@@ -89,7 +89,7 @@ public class HttpChannelOverHTTP extends HttpChannel
     @Override
     public void release()
     {
-        connection.release();
+        connection.release(this);
     }
 
     public void receive()
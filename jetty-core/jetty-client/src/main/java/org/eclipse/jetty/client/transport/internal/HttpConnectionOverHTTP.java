@@ -16,9 +16,15 @@ package org.eclipse.jetty.client.transport.internal;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousCloseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -26,6 +32,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.client.Connection;
+import org.eclipse.jetty.client.ConnectionPool;
 import org.eclipse.jetty.client.Destination;
 import org.eclipse.jetty.client.HttpClientTransport;
 import org.eclipse.jetty.client.HttpUpgrader;
@@ -38,20 +45,42 @@ import org.eclipse.jetty.client.transport.HttpConversation;
 import org.eclipse.jetty.client.transport.HttpDestination;
 import org.eclipse.jetty.client.transport.HttpExchange;
 import org.eclipse.jetty.client.transport.HttpRequest;
+import org.eclipse.jetty.client.transport.HttpResponse;
 import org.eclipse.jetty.client.transport.IConnection;
 import org.eclipse.jetty.client.transport.SendFailure;
+import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpHeaderValue;
 import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.io.AbstractConnection;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.util.Attachable;
 import org.eclipse.jetty.util.Promise;
+import org.eclipse.jetty.util.thread.AutoLock;
 import org.eclipse.jetty.util.thread.Sweeper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class HttpConnectionOverHTTP extends AbstractConnection implements IConnection, org.eclipse.jetty.io.Connection.UpgradeFrom, Sweeper.Sweepable, Attachable
+/**
+ * <p>A HTTP/1.1 connection.</p>
+ * <p>By default, the connection sends one request at a time, and the next request
+ * is sent only after the response to the previous request has been received.</p>
+ * <p>When {@link #setMaxPipelinedRequests(int) pipelining} is enabled, idempotent
+ * requests are written back to back without waiting for the responses, which are
+ * then received in the same order the requests were written.
+ * Each in-flight request has its own {@link HttpChannelOverHTTP}; requests are
+ * written one at a time, and only the channel of the oldest in-flight request
+ * reads from the network.
+ * Non-idempotent requests are never pipelined: they are written only when there
+ * are no other in-flight requests, and no other request is written until their
+ * response has been received.</p>
+ * <p>When a connection with pipelined requests is closed, the requests that have
+ * not been written yet are sent again, likely on another connection; the requests
+ * that have been written but for which no response has been received yet are
+ * sent again only if their content, if any, can be replayed, otherwise they fail.</p>
+ */
+public class HttpConnectionOverHTTP extends AbstractConnection implements IConnection, org.eclipse.jetty.io.Connection.UpgradeFrom, Sweeper.Sweepable, Attachable, ConnectionPool.MaxMultiplexable
 {
     private static final Logger LOG = LoggerFactory.getLogger(HttpConnectionOverHTTP.class);
 
@@ -62,8 +91,17 @@ public class HttpConnectionOverHTTP extends AbstractConnection implements IConne
     private final HttpChannelOverHTTP channel;
     private final LongAdder bytesIn = new LongAdder();
     private final LongAdder bytesOut = new LongAdder();
+    private final AutoLock lock = new AutoLock();
+    private final List<HttpChannelOverHTTP> channels = new CopyOnWriteArrayList<>();
+    private final Deque<HttpChannelOverHTTP> activeChannels = new ArrayDeque<>();
+    private final Deque<HttpChannelOverHTTP> idleChannels = new ArrayDeque<>();
+    private final Deque<HttpExchange> pendingExchanges = new ArrayDeque<>();
+    private HttpChannelOverHTTP sendingChannel;
+    private HttpChannelOverHTTP receivedChannel;
+    private boolean receiveDeferred;
     private long idleTimeout;
     private boolean initialize;
+    private int maxPipelinedRequests = 1;
 
     public HttpConnectionOverHTTP(EndPoint endPoint, Map<String, Object> context)
     {
@@ -87,6 +125,8 @@ public class HttpConnectionOverHTTP extends AbstractConnection implements IConne
         this.promise = promise;
         this.delegate = new Delegate(destination);
         this.channel = newHttpChannel();
+        this.channels.add(channel);
+        this.idleChannels.offer(channel);
     }
 
     protected HttpChannelOverHTTP newHttpChannel()
@@ -147,13 +187,13 @@ public class HttpConnectionOverHTTP extends AbstractConnection implements IConne
     @Override
     public long getMessagesIn()
     {
-        return getHttpChannel().getMessagesIn();
+        return channels.stream().mapToLong(HttpChannelOverHTTP::getMessagesIn).sum();
     }
 
     @Override
     public long getMessagesOut()
     {
-        return getHttpChannel().getMessagesOut();
+        return channels.stream().mapToLong(HttpChannelOverHTTP::getMessagesOut).sum();
     }
 
     @Override
@@ -184,6 +224,37 @@ public class HttpConnectionOverHTTP extends AbstractConnection implements IConne
         this.initialize = initialize;
     }
 
+    /**
+     * @return the max number of requests that may be in-flight at the same time on this connection
+     */
+    public int getMaxPipelinedRequests()
+    {
+        return maxPipelinedRequests;
+    }
+
+    /**
+     * <p>Sets the max number of requests that may be in-flight at the same time on this connection.</p>
+     * <p>Values greater than {@code 1} enable HTTP/1.1 request pipelining.
+     * This value must be set before the connection is used.</p>
+     *
+     * @param maxPipelinedRequests the max number of requests that may be in-flight at the same time
+     */
+    public void setMaxPipelinedRequests(int maxPipelinedRequests)
+    {
+        this.maxPipelinedRequests = Math.max(1, maxPipelinedRequests);
+    }
+
+    private boolean isPipelining()
+    {
+        return maxPipelinedRequests > 1;
+    }
+
+    @Override
+    public int getMaxMultiplex()
+    {
+        return getMaxPipelinedRequests();
+    }
+
     @Override
     public void onOpen()
     {
@@ -247,16 +318,68 @@ public class HttpConnectionOverHTTP extends AbstractConnection implements IConne
     @Override
     public void onFillable()
     {
-        channel.receive();
+        getHttpReceiver().receive();
     }
 
     @Override
     public ByteBuffer onUpgradeFrom()
     {
-        HttpReceiverOverHTTP receiver = channel.getHttpReceiver();
+        HttpReceiverOverHTTP receiver = getHttpReceiver();
         return receiver.onUpgradeFrom();
     }
 
+    /**
+     * @return the receiver that reads from the network, that is the receiver
+     * of the channel of the oldest in-flight request, if any
+     */
+    HttpReceiverOverHTTP getHttpReceiver()
+    {
+        if (!isPipelining())
+            return channel.getHttpReceiver();
+        try (AutoLock ignored = lock.lock())
+        {
+            HttpChannelOverHTTP receiving = activeChannels.peekFirst();
+            if (receiving == null)
+                receiving = idleChannels.peekFirst();
+            return receiving == null ? channel.getHttpReceiver() : receiving.getHttpReceiver();
+        }
+    }
+
+    void responseReceived(HttpChannelOverHTTP channel)
+    {
+        if (!isPipelining())
+            return;
+        // No other request is written until the channel that received
+        // the response is released, as its request may not have been
+        // completely written yet, see canSend().
+        try (AutoLock ignored = lock.lock())
+        {
+            receivedChannel = channel;
+        }
+    }
+
+    /**
+     * <p>Called after a response has been received, to know whether receiving
+     * the next response must wait until the given channel is released, because
+     * the response has been received before its request was completely written.</p>
+     *
+     * @param channel the channel that received the response
+     * @return whether receiving the next response is deferred until the channel is released
+     */
+    boolean deferReceive(HttpChannelOverHTTP channel)
+    {
+        if (!isPipelining())
+            return false;
+        try (AutoLock ignored = lock.lock())
+        {
+            // The channel has not been released yet.
+            if (receivedChannel != channel)
+                return false;
+            receiveDeferred = true;
+            return true;
+        }
+    }
+
     void onResponseHeaders(HttpExchange exchange)
     {
         HttpRequest request = exchange.getRequest();
@@ -274,6 +397,62 @@ public class HttpConnectionOverHTTP extends AbstractConnection implements IConne
         getHttpDestination().release(this);
     }
 
+    void release(HttpChannelOverHTTP channel)
+    {
+        if (!isPipelining())
+        {
+            release();
+            return;
+        }
+
+        boolean idle;
+        boolean deferred;
+        try (AutoLock ignored = lock.lock())
+        {
+            if (activeChannels.remove(channel))
+                idleChannels.offerFirst(channel);
+            if (sendingChannel == channel)
+                sendingChannel = null;
+            deferred = false;
+            if (receivedChannel == channel)
+            {
+                receivedChannel = null;
+                deferred = receiveDeferred;
+                receiveDeferred = false;
+            }
+            idle = activeChannels.isEmpty();
+        }
+        // Restore idle timeout
+        if (idle)
+            getEndPoint().setIdleTimeout(idleTimeout);
+        // Resume receiving before sending the next request.
+        if (deferred)
+            channel.getHttpReceiver().resumeReceive();
+        getHttpDestination().release(this);
+        delegate.sendPending();
+    }
+
+    void requestWritten(HttpChannelOverHTTP channel)
+    {
+        if (!isPipelining())
+            return;
+
+        // Called as soon as the request is marked as completely written,
+        // before the request listeners are notified, so that the request
+        // is eligible to be resent if the connection is closed.
+        try (AutoLock ignored = lock.lock())
+        {
+            if (sendingChannel == channel)
+                sendingChannel = null;
+        }
+    }
+
+    void requestSucceeded()
+    {
+        if (isPipelining())
+            delegate.sendPending();
+    }
+
     public void remove()
     {
         getHttpDestination().remove(this);
@@ -289,9 +468,9 @@ public class HttpConnectionOverHTTP extends AbstractConnection implements IConne
     {
         if (closed.compareAndSet(false, true))
         {
-            getHttpDestination().remove(this);
+            removeFromPool();
             abort(failure, Promise.noop());
-            channel.destroy();
+            channels.forEach(HttpChannelOverHTTP::destroy);
             getEndPoint().shutdownOutput();
             if (LOG.isDebugEnabled())
                 LOG.debug("Shutdown {}", this);
@@ -302,8 +481,37 @@ public class HttpConnectionOverHTTP extends AbstractConnection implements IConne
         }
     }
 
+    private void removeFromPool()
+    {
+        HttpDestination destination = getHttpDestination();
+        if (!isPipelining())
+        {
+            destination.remove(this);
+            return;
+        }
+
+        // Each pipelined request has acquired this connection from the pool,
+        // and the connection is removed from the pool when all are removed.
+        int acquired;
+        try (AutoLock ignored = lock.lock())
+        {
+            acquired = Math.max(1, activeChannels.size() + pendingExchanges.size());
+        }
+        for (int i = 0; i < acquired; ++i)
+        {
+            if (destination.remove(this))
+                break;
+        }
+    }
+
     protected void abort(Throwable failure, Promise<Boolean> promise)
     {
+        if (isPipelining())
+        {
+            abortPipelined(failure, promise);
+            return;
+        }
+
         HttpExchange exchange = channel.getHttpExchange();
         if (exchange != null)
             promise.completeWith(exchange.getRequest().abort(failure));
@@ -311,6 +519,62 @@ public class HttpConnectionOverHTTP extends AbstractConnection implements IConne
             promise.succeeded(false);
     }
 
+    private void abortPipelined(Throwable failure, Promise<Boolean> promise)
+    {
+        List<HttpChannelOverHTTP> active;
+        List<HttpExchange> pending;
+        HttpChannelOverHTTP sending;
+        try (AutoLock ignored = lock.lock())
+        {
+            active = new ArrayList<>(activeChannels);
+            pending = new ArrayList<>(pendingExchanges);
+            pendingExchanges.clear();
+            sending = sendingChannel;
+        }
+
+        // The pending exchanges have not been written,
+        // so they can be sent again on another connection.
+        HttpDestination destination = getHttpDestination();
+        pending.forEach(destination::send);
+
+        CompletableFuture<Boolean> result = CompletableFuture.completedFuture(false);
+        for (int i = 0; i < active.size(); ++i)
+        {
+            HttpChannelOverHTTP channel = active.get(i);
+            HttpExchange exchange = channel.getHttpExchange();
+            if (exchange == null)
+                continue;
+            // The oldest in-flight request may be in the middle of
+            // receiving its response, so it is never resent.
+            if (i > 0 && channel != sending && resend(exchange))
+                continue;
+            result = result.thenCombine(exchange.getRequest().abort(failure), (r1, r2) -> r1 || r2);
+        }
+        promise.completeWith(result);
+    }
+
+    private boolean resend(HttpExchange exchange)
+    {
+        HttpRequest request = exchange.getRequest();
+        if (request.getAbortCause() != null)
+            return false;
+        HttpResponse response = exchange.getResponse();
+        if (response.getStatus() > 0)
+            return false;
+        // Requests with content that cannot be replayed must fail.
+        Request.Content body = request.getBody();
+        if (body != null && !body.rewind())
+            return false;
+        if (LOG.isDebugEnabled())
+            LOG.debug("Resending pipelined {} on {}", request, this);
+        // Replace the exchange in the conversation, so that
+        // the request listeners are not notified of a failure.
+        HttpDestination destination = getHttpDestination();
+        request.getConversation().getExchanges().remove(exchange);
+        destination.send(new HttpExchange(destination, request));
+        return true;
+    }
+
     @Override
     public boolean sweep()
     {
@@ -341,7 +605,12 @@ public class HttpConnectionOverHTTP extends AbstractConnection implements IConne
         @Override
         protected Iterator<HttpChannel> getHttpChannels()
         {
-            return Collections.<HttpChannel>singleton(channel).iterator();
+            if (!isPipelining())
+                return Collections.<HttpChannel>singleton(channel).iterator();
+            try (AutoLock ignored = lock.lock())
+            {
+                return new ArrayList<HttpChannel>(activeChannels).iterator();
+            }
         }
 
         @Override
@@ -368,6 +637,16 @@ public class HttpConnectionOverHTTP extends AbstractConnection implements IConne
             HttpRequest request = exchange.getRequest();
             normalizeRequest(request);
 
+            if (isPipelining())
+            {
+                try (AutoLock ignored = lock.lock())
+                {
+                    pendingExchanges.offer(exchange);
+                }
+                sendPending();
+                return null;
+            }
+
             // Save the old idle timeout to restore it.
             EndPoint endPoint = getEndPoint();
             idleTimeout = endPoint.getIdleTimeout();
@@ -379,6 +658,102 @@ public class HttpConnectionOverHTTP extends AbstractConnection implements IConne
             return send(channel, exchange);
         }
 
+        private void sendPending()
+        {
+            while (true)
+            {
+                HttpExchange exchange;
+                HttpChannelOverHTTP channel;
+                boolean first;
+                try (AutoLock ignored = lock.lock())
+                {
+                    exchange = pendingExchanges.peekFirst();
+                    if (exchange == null || sendingChannel != null || !canSend(exchange))
+                        return;
+                    pendingExchanges.pollFirst();
+                    channel = idleChannels.pollFirst();
+                    if (channel == null)
+                    {
+                        channel = newHttpChannel();
+                        channels.add(channel);
+                    }
+                    first = activeChannels.isEmpty();
+                    activeChannels.offerLast(channel);
+                    sendingChannel = channel;
+                }
+
+                // Save the old idle timeout to restore it.
+                EndPoint endPoint = getEndPoint();
+                if (first)
+                    idleTimeout = endPoint.getIdleTimeout();
+                long requestIdleTimeout = exchange.getRequest().getIdleTimeout();
+                if (requestIdleTimeout >= 0)
+                    endPoint.setIdleTimeout(requestIdleTimeout);
+
+                SendFailure failure = send(channel, exchange);
+                if (failure == null)
+                    continue;
+
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Send failed {} for {}", failure, exchange);
+                if (failure.retry)
+                {
+                    // This connection has been timed out, so its channel is not
+                    // released: send this exchange again on another connection.
+                    try (AutoLock ignored = lock.lock())
+                    {
+                        if (activeChannels.remove(channel))
+                            idleChannels.offerFirst(channel);
+                        if (sendingChannel == channel)
+                            sendingChannel = null;
+                    }
+                    getHttpDestination().send(exchange);
+                }
+                else
+                {
+                    exchange.getRequest().abort(failure.failure);
+                }
+            }
+        }
+
+        private boolean canSend(HttpExchange exchange)
+        {
+            // Must be called with the lock held.
+            if (activeChannels.isEmpty())
+                return true;
+            // A response has been received, but its request may not have
+            // been completely written: wait for its channel to be released.
+            if (receivedChannel != null)
+                return false;
+            if (activeChannels.size() >= getMaxPipelinedRequests())
+                return false;
+            if (!isPipelinable(exchange))
+                return false;
+            for (HttpChannelOverHTTP active : activeChannels)
+            {
+                HttpExchange activeExchange = active.getHttpExchange();
+                if (activeExchange != null && !isPipelinable(activeExchange))
+                    return false;
+            }
+            return true;
+        }
+
+        private boolean isPipelinable(HttpExchange exchange)
+        {
+            HttpRequest request = exchange.getRequest();
+            if (request instanceof TunnelRequest)
+                return false;
+            HttpMethod method = HttpMethod.fromString(request.getMethod());
+            if (method == null || !method.isIdempotent())
+                return false;
+            HttpFields headers = request.getHeaders();
+            if (headers.contains(HttpHeader.UPGRADE))
+                return false;
+            if (headers.contains(HttpHeader.EXPECT, HttpHeaderValue.CONTINUE.asString()))
+                return false;
+            return request.getConversation().getAttribute(HttpUpgrader.class.getName()) == null;
+        }
+
         @Override
         protected void normalizeRequest(HttpRequest request)
         {
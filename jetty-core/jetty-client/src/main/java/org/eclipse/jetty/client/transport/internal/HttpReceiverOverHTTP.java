@@ -337,9 +337,12 @@ public class HttpReceiverOverHTTP extends HttpReceiver implements HttpParser.Res
                 case COMPLETE ->
                 {
                     boolean isUpgrade = status == HttpStatus.SWITCHING_PROTOCOLS_101;
+                    boolean pipelining = getHttpConnection().getMaxPipelinedRequests() > 1;
                     boolean isTunnel = getHttpChannel().isTunnel(method, status);
 
                     Runnable task = isUpgrade || isTunnel ? null : this.receiveNext;
+                    if (!HttpStatus.isInterim(status))
+                        getHttpConnection().responseReceived(getHttpChannel());
                     responseSuccess(exchange, task);
 
                     // Connection upgrade, bail out.
@@ -354,6 +357,12 @@ public class HttpReceiverOverHTTP extends HttpReceiver implements HttpParser.Res
                             // the same network buffer, continue parsing.
                             continue;
                         }
+                        else if (pipelining)
+                        {
+                            // The remaining bytes belong to the next pipelined
+                            // response, which is received by receiveNext().
+                            return true;
+                        }
                         else
                         {
                             if (LOG.isDebugEnabled())
@@ -363,6 +372,11 @@ public class HttpReceiverOverHTTP extends HttpReceiver implements HttpParser.Res
                         }
                     }
 
+                    // With pipelining, the next response is received by
+                    // receiveNext(), possibly by the channel of another request.
+                    if (pipelining && !HttpStatus.isInterim(status))
+                        return true;
+
                     // Continue to read from the network.
                     return false;
                 }
@@ -517,12 +531,40 @@ public class HttpReceiverOverHTTP extends HttpReceiver implements HttpParser.Res
     }
 
     private void receiveNext()
+    {
+        if (getHttpConnection().deferReceive(getHttpChannel()))
+        {
+            // The response completed before the request was completely
+            // written, so this channel still receives from the network;
+            // receiving resumes when this channel is released.
+            if (LOG.isDebugEnabled())
+                LOG.debug("Deferring receive until release of {}", this);
+            return;
+        }
+        receiveNextResponse();
+    }
+
+    private void receiveNextResponse()
     {
         if (hasContent())
             throw new IllegalStateException();
         if (chunk != null)
             throw new IllegalStateException();
 
+        HttpReceiverOverHTTP receiver = getHttpConnection().getHttpReceiver();
+        if (receiver != this)
+        {
+            // With pipelining, the next response is received by
+            // the channel of the next request, hand over the
+            // network buffer that may contain the next response.
+            RetainableByteBuffer buffer = networkBuffer;
+            networkBuffer = null;
+            if (LOG.isDebugEnabled())
+                LOG.debug("Handing over {} to {} from {}", buffer, receiver, this);
+            receiver.receivePipelined(buffer);
+            return;
+        }
+
         if (LOG.isDebugEnabled())
             LOG.debug("Receiving next request in {}", this);
         boolean setFillInterest = parseAndFill(true);
@@ -530,6 +572,47 @@ public class HttpReceiverOverHTTP extends HttpReceiver implements HttpParser.Res
             fillInterested();
     }
 
+    void resumeReceive()
+    {
+        HttpReceiverOverHTTP receiver = getHttpConnection().getHttpReceiver();
+        if (receiver != this)
+        {
+            // Requests have been written before receiving was deferred,
+            // hand over the network buffer that may contain their responses.
+            RetainableByteBuffer buffer = networkBuffer;
+            networkBuffer = null;
+            if (LOG.isDebugEnabled())
+                LOG.debug("Handing over {} to {} from {}", buffer, receiver, this);
+            receiver.receivePipelined(buffer);
+            return;
+        }
+
+        // No other request has been written, so the
+        // remaining bytes cannot belong to a response.
+        if (networkBuffer != null && networkBuffer.hasRemaining())
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Discarding unexpected content after response: {} in {}", BufferUtil.toDetailString(networkBuffer.getByteBuffer()), this);
+        }
+        releaseNetworkBuffer();
+        // Do not read from the network from this thread, as a request may
+        // be written concurrently, and its response must be received by
+        // the channel of that request, see onFillable().
+        fillInterested();
+    }
+
+    private void receivePipelined(RetainableByteBuffer buffer)
+    {
+        if (networkBuffer != null)
+        {
+            if (buffer != null)
+                buffer.release();
+            throw new IllegalStateException("Pipelined response received with pending network buffer");
+        }
+        networkBuffer = buffer;
+        receiveNextResponse();
+    }
+
     @Override
     public void earlyEOF()
     {
@@ -105,9 +105,19 @@ public class HttpSenderOverHTTP extends HttpSender
         }
     }
 
+    @Override
+    protected boolean someToSuccess(HttpExchange exchange)
+    {
+        boolean succeeded = super.someToSuccess(exchange);
+        if (succeeded)
+            getHttpChannel().getHttpConnection().requestSucceeded();
+        return succeeded;
+    }
+
     @Override
     protected void reset()
     {
+        getHttpChannel().getHttpConnection().requestWritten(getHttpChannel());
         headersCallback.reset();
         contentCallback.reset();
         generator.reset();
@@ -16,6 +16,7 @@ package org.eclipse.jetty.client;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
@@ -23,6 +24,7 @@ import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -75,10 +77,11 @@ public class ConnectionPoolTest
         return pool;
     });
     private static final ConnectionPoolFactory ROUND_ROBIN = new ConnectionPoolFactory("round-robin", destination -> new RoundRobinConnectionPool(destination, destination.getHttpClient().getMaxConnectionsPerDestination()));
+    private static final ConnectionPoolFactory LEAST_LATENCY = new ConnectionPoolFactory("least-latency", destination -> new LeastLatencyConnectionPool(destination, destination.getHttpClient().getMaxConnectionsPerDestination()));
 
     public static Stream<ConnectionPoolFactory> pools()
     {
-        return Stream.of(DUPLEX, MULTIPLEX, RANDOM, DUPLEX_MAX_DURATION, ROUND_ROBIN);
+        return Stream.of(DUPLEX, MULTIPLEX, RANDOM, DUPLEX_MAX_DURATION, ROUND_ROBIN, LEAST_LATENCY);
     }
 
     public static Stream<ConnectionPoolFactory> poolsNoRoundRobin()
@@ -529,6 +532,36 @@ public class ConnectionPoolTest
         assertThat(poolRemoveCounter.get(), Matchers.is(4));
     }
 
+    @Test
+    public void testLeastLatencyConnectionStats() throws Exception
+    {
+        int maxConnections = 2;
+        AtomicReference<LeastLatencyConnectionPool> poolRef = new AtomicReference<>();
+        ConnectionPool.Factory factory = destination ->
+        {
+            LeastLatencyConnectionPool pool = new LeastLatencyConnectionPool(destination, maxConnections);
+            poolRef.set(pool);
+            return pool;
+        };
+        start(factory, new EmptyServerHandler());
+
+        int requests = 8;
+        for (int i = 0; i < requests; i++)
+        {
+            ContentResponse response = client.newRequest("localhost", connector.getLocalPort())
+                .timeout(5, TimeUnit.SECONDS)
+                .send();
+            assertThat(response.getStatus(), Matchers.is(200));
+        }
+
+        LeastLatencyConnectionPool pool = poolRef.get();
+        Map<Connection, LeastLatencyConnectionPool.Stats> stats = pool.getConnectionStats();
+        assertThat(stats.size(), Matchers.lessThanOrEqualTo(maxConnections));
+        assertEquals(requests, stats.values().stream().mapToLong(LeastLatencyConnectionPool.Stats::getRequestCount).sum());
+        assertTrue(stats.values().stream().allMatch(s -> s.getInFlight() == 0));
+        assertTrue(stats.values().stream().anyMatch(s -> s.getLatency() > 0));
+    }
+
     @Test
     public void testMaxDurationConnectionsWithUnconstrainedPool() throws Exception
     {
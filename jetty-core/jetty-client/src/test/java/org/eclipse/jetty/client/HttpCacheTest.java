@@ -0,0 +1,252 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.Callback;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ArgumentsSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class HttpCacheTest extends AbstractHttpClientServerTest
+{
+    private final HttpCache cache = new HttpCache();
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private void start(Scenario scenario, String cacheControl, String etag) throws Exception
+    {
+        startServer(scenario, new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback) throws Exception
+            {
+                requests.incrementAndGet();
+                if (!HttpMethod.GET.is(request.getMethod()))
+                {
+                    callback.succeeded();
+                    return true;
+                }
+                response.getHeaders().put(HttpHeader.CACHE_CONTROL, cacheControl);
+                response.getHeaders().put(HttpHeader.VARY, "X-Variant");
+                if (etag != null)
+                {
+                    response.getHeaders().put(HttpHeader.ETAG, etag);
+                    if (etag.equals(request.getHeaders().get(HttpHeader.IF_NONE_MATCH)))
+                    {
+                        response.setStatus(HttpStatus.NOT_MODIFIED_304);
+                        callback.succeeded();
+                        return true;
+                    }
+                }
+                response.getHeaders().put(HttpHeader.CONTENT_TYPE, "text/plain;charset=UTF-8");
+                String variant = request.getHeaders().get("X-Variant");
+                String content = request.getHttpURI().getPath() + (variant == null ? "" : variant);
+                if (content.startsWith("/gzip"))
+                {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    try (GZIPOutputStream gzip = new GZIPOutputStream(bytes))
+                    {
+                        gzip.write(content.getBytes(StandardCharsets.UTF_8));
+                    }
+                    response.getHeaders().put(HttpHeader.CONTENT_ENCODING, "gzip");
+                    response.write(true, ByteBuffer.wrap(bytes.toByteArray()), callback);
+                    return true;
+                }
+                Content.Sink.write(response, true, content, callback);
+                return true;
+            }
+        });
+        startClient(scenario, client -> client.setHttpCache(cache));
+    }
+
+    private ContentResponse send(Scenario scenario, String path, String variant) throws Exception
+    {
+        return client.newRequest("localhost", connector.getLocalPort())
+            .scheme(scenario.getScheme())
+            .path(path)
+            .headers(headers ->
+            {
+                if (variant != null)
+                    headers.put("X-Variant", variant);
+            })
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testFreshResponseServedFromCache(Scenario scenario) throws Exception
+    {
+        start(scenario, "max-age=60", null);
+
+        ContentResponse response1 = send(scenario, "/fresh", null);
+        assertEquals(HttpStatus.OK_200, response1.getStatus());
+        assertEquals("/fresh", response1.getContentAsString());
+        assertNull(response1.getHeaders().get(HttpHeader.AGE));
+
+        ContentResponse response2 = send(scenario, "/fresh", null);
+        assertEquals(HttpStatus.OK_200, response2.getStatus());
+        assertEquals("/fresh", response2.getContentAsString());
+        assertEquals("text/plain", response2.getMediaType());
+        assertNotNull(response2.getHeaders().get(HttpHeader.AGE));
+
+        assertEquals(1, requests.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getEntryCount());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testDecodedResponseReplayedFromCache(Scenario scenario) throws Exception
+    {
+        start(scenario, "max-age=60", null);
+
+        ContentResponse response1 = send(scenario, "/gzip", null);
+        assertEquals(HttpStatus.OK_200, response1.getStatus());
+        assertEquals("/gzip", response1.getContentAsString());
+
+        List<String> events = new CopyOnWriteArrayList<>();
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        ContentResponse response2 = client.newRequest("localhost", connector.getLocalPort())
+            .scheme(scenario.getScheme())
+            .path("/gzip")
+            .onResponseBegin(response -> events.add("begin"))
+            .onResponseHeaders(response -> events.add("headers"))
+            .onResponseContent((response, buffer) ->
+            {
+                events.add("content");
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                content.writeBytes(bytes);
+            })
+            .onResponseSuccess(response -> events.add("success"))
+            .onComplete(result -> events.add("complete"))
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+        assertEquals(HttpStatus.OK_200, response2.getStatus());
+        assertEquals("/gzip", response2.getContentAsString());
+        assertEquals("/gzip", content.toString(StandardCharsets.UTF_8));
+        assertEquals(List.of("begin", "headers", "content", "success", "complete"), events);
+        assertNull(response2.getHeaders().get(HttpHeader.CONTENT_ENCODING));
+        assertEquals("/gzip".length(), response2.getHeaders().getLongField(HttpHeader.CONTENT_LENGTH));
+
+        assertEquals(1, requests.get());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testStaleResponseRevalidated(Scenario scenario) throws Exception
+    {
+        start(scenario, "no-cache", "\"v1\"");
+
+        ContentResponse response1 = send(scenario, "/stale", null);
+        assertEquals(HttpStatus.OK_200, response1.getStatus());
+        assertEquals("/stale", response1.getContentAsString());
+
+        ContentResponse response2 = send(scenario, "/stale", null);
+        assertEquals(HttpStatus.OK_200, response2.getStatus());
+        assertEquals("/stale", response2.getContentAsString());
+        assertEquals("\"v1\"", response2.getHeaders().get(HttpHeader.ETAG));
+
+        assertEquals(2, requests.get());
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getRevalidationCount());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testNoStoreNotCached(Scenario scenario) throws Exception
+    {
+        start(scenario, "no-store", null);
+
+        send(scenario, "/no-store", null);
+        ContentResponse response = send(scenario, "/no-store", null);
+        assertEquals("/no-store", response.getContentAsString());
+
+        assertEquals(2, requests.get());
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testVary(Scenario scenario) throws Exception
+    {
+        start(scenario, "max-age=60", null);
+
+        assertEquals("/vary-a", send(scenario, "/vary", "-a").getContentAsString());
+        assertEquals("/vary-a", send(scenario, "/vary", "-a").getContentAsString());
+        assertEquals(1, requests.get());
+
+        assertEquals("/vary-b", send(scenario, "/vary", "-b").getContentAsString());
+        assertEquals(2, requests.get());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testUnsafeMethodInvalidates(Scenario scenario) throws Exception
+    {
+        start(scenario, "max-age=60", null);
+
+        send(scenario, "/resource", null);
+        assertEquals(1, cache.getEntryCount());
+
+        ContentResponse response = client.newRequest("localhost", connector.getLocalPort())
+            .scheme(scenario.getScheme())
+            .method(HttpMethod.DELETE)
+            .path("/resource")
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals(0, cache.getEntryCount());
+
+        send(scenario, "/resource", null);
+        assertEquals(3, requests.get());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testLeastRecentlyUsedEviction(Scenario scenario) throws Exception
+    {
+        cache.setMaxMemorySize(10);
+        start(scenario, "max-age=60", null);
+
+        send(scenario, "/first", null);
+        send(scenario, "/second", null);
+        assertEquals(1, cache.getEntryCount());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals("/second".length(), cache.getMemorySize());
+
+        send(scenario, "/second", null);
+        assertEquals(2, requests.get());
+    }
+}
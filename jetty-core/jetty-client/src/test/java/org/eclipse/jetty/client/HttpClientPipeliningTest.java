@@ -0,0 +1,418 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jetty.client.transport.HttpClientTransportOverHTTP;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.matchesRegex;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpClientPipeliningTest
+{
+    private HttpClient client;
+
+    private void startClient(int maxPipelinedRequests) throws Exception
+    {
+        QueuedThreadPool clientThreads = new QueuedThreadPool();
+        clientThreads.setName("client");
+        HttpClientTransportOverHTTP transport = new HttpClientTransportOverHTTP(1);
+        transport.setMaxPipelinedRequests(maxPipelinedRequests);
+        client = new HttpClient(transport);
+        client.setExecutor(clientThreads);
+        client.setMaxConnectionsPerDestination(1);
+        client.start();
+    }
+
+    @AfterEach
+    public void dispose() throws Exception
+    {
+        if (client != null)
+            client.stop();
+    }
+
+    @Test
+    public void testIdempotentRequestsArePipelined() throws Exception
+    {
+        startClient(4);
+
+        try (ServerSocket server = new ServerSocket(0))
+        {
+            server.setSoTimeout(5000);
+            int requests = 3;
+            List<CompletableFuture<ContentResponse>> completables = new ArrayList<>();
+            for (int i = 0; i < requests; ++i)
+            {
+                Request request = client.newRequest("localhost", server.getLocalPort())
+                    .path("/" + i)
+                    .timeout(5, TimeUnit.SECONDS);
+                completables.add(new CompletableResponseListener(request).send());
+            }
+
+            try (Socket socket = server.accept())
+            {
+                socket.setSoTimeout(5000);
+                InputStream input = socket.getInputStream();
+                // All the requests must arrive before any response is written.
+                StringBuilder responses = new StringBuilder();
+                for (int i = 0; i < requests; ++i)
+                {
+                    assertThat(readRequest(input), startsWith("GET /" + i + " "));
+                    responses.append(response("" + i, false));
+                }
+
+                OutputStream output = socket.getOutputStream();
+                output.write(responses.toString().getBytes(UTF_8));
+                output.flush();
+
+                for (int i = 0; i < requests; ++i)
+                {
+                    ContentResponse response = completables.get(i).get(5, TimeUnit.SECONDS);
+                    assertEquals(HttpStatus.OK_200, response.getStatus());
+                    assertEquals("" + i, response.getContentAsString());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testNonIdempotentRequestIsNotPipelined() throws Exception
+    {
+        startClient(4);
+
+        try (ServerSocket server = new ServerSocket(0))
+        {
+            server.setSoTimeout(5000);
+            Request request1 = client.newRequest("localhost", server.getLocalPort())
+                .method(HttpMethod.POST)
+                .path("/1")
+                .body(new StringRequestContent("A"))
+                .timeout(5, TimeUnit.SECONDS);
+            CompletableFuture<ContentResponse> completable1 = new CompletableResponseListener(request1).send();
+            Request request2 = client.newRequest("localhost", server.getLocalPort())
+                .path("/2")
+                .timeout(5, TimeUnit.SECONDS);
+            CompletableFuture<ContentResponse> completable2 = new CompletableResponseListener(request2).send();
+
+            try (Socket socket = server.accept())
+            {
+                socket.setSoTimeout(5000);
+                InputStream input = socket.getInputStream();
+                assertThat(readRequest(input), startsWith("POST /1 "));
+                assertEquals('A', input.read());
+
+                // The second request must not be written before the first response.
+                socket.setSoTimeout(500);
+                assertThrows(SocketTimeoutException.class, input::read);
+                socket.setSoTimeout(5000);
+
+                OutputStream output = socket.getOutputStream();
+                output.write(response("1", false).getBytes(UTF_8));
+                output.flush();
+                assertEquals("1", completable1.get(5, TimeUnit.SECONDS).getContentAsString());
+
+                assertThat(readRequest(input), startsWith("GET /2 "));
+                output.write(response("2", false).getBytes(UTF_8));
+                output.flush();
+                assertEquals("2", completable2.get(5, TimeUnit.SECONDS).getContentAsString());
+            }
+        }
+    }
+
+    @Test
+    public void testUnansweredPipelinedRequestIsResent() throws Exception
+    {
+        startClient(4);
+
+        try (ServerSocket server = new ServerSocket(0))
+        {
+            server.setSoTimeout(5000);
+            List<CompletableFuture<ContentResponse>> completables = new ArrayList<>();
+            for (int i = 0; i < 2; ++i)
+            {
+                Request request = client.newRequest("localhost", server.getLocalPort())
+                    .path("/" + i)
+                    .timeout(5, TimeUnit.SECONDS);
+                completables.add(new CompletableResponseListener(request).send());
+            }
+
+            try (Socket socket = server.accept())
+            {
+                socket.setSoTimeout(5000);
+                InputStream input = socket.getInputStream();
+                assertThat(readRequest(input), startsWith("GET /0 "));
+                assertThat(readRequest(input), startsWith("GET /1 "));
+
+                // Answer only the first request, and close the connection.
+                OutputStream output = socket.getOutputStream();
+                output.write(response("0", true).getBytes(UTF_8));
+                output.flush();
+            }
+
+            assertEquals("0", completables.get(0).get(5, TimeUnit.SECONDS).getContentAsString());
+
+            // The second request must be resent on a new connection.
+            try (Socket socket = server.accept())
+            {
+                socket.setSoTimeout(5000);
+                InputStream input = socket.getInputStream();
+                assertThat(readRequest(input), startsWith("GET /1 "));
+                OutputStream output = socket.getOutputStream();
+                output.write(response("1", false).getBytes(UTF_8));
+                output.flush();
+
+                assertEquals("1", completables.get(1).get(5, TimeUnit.SECONDS).getContentAsString());
+            }
+        }
+    }
+
+    @Test
+    public void testUnansweredPipelinedRequestWithNonReplayableContentFails() throws Exception
+    {
+        startClient(4);
+
+        try (ServerSocket server = new ServerSocket(0))
+        {
+            server.setSoTimeout(5000);
+            Request request1 = client.newRequest("localhost", server.getLocalPort())
+                .path("/1")
+                .timeout(5, TimeUnit.SECONDS);
+            CompletableFuture<ContentResponse> completable1 = new CompletableResponseListener(request1).send();
+            byte[] content = "ABC".getBytes(UTF_8);
+            Request request2 = client.newRequest("localhost", server.getLocalPort())
+                .method(HttpMethod.PUT)
+                .path("/2")
+                .headers(headers -> headers.put("Content-Length", String.valueOf(content.length)))
+                .body(new InputStreamRequestContent(new ByteArrayInputStream(content)))
+                .timeout(5, TimeUnit.SECONDS);
+            CompletableFuture<ContentResponse> completable2 = new CompletableResponseListener(request2).send();
+
+            try (Socket socket = server.accept())
+            {
+                socket.setSoTimeout(5000);
+                InputStream input = socket.getInputStream();
+                assertThat(readRequest(input), startsWith("GET /1 "));
+                assertThat(readRequest(input), startsWith("PUT /2 "));
+                assertEquals(content.length, input.readNBytes(content.length).length);
+
+                OutputStream output = socket.getOutputStream();
+                output.write(response("1", true).getBytes(UTF_8));
+                output.flush();
+            }
+
+            assertEquals("1", completable1.get(5, TimeUnit.SECONDS).getContentAsString());
+            assertThrows(ExecutionException.class, () -> completable2.get(5, TimeUnit.SECONDS));
+
+            // The request with non-replayable content must not be resent.
+            server.setSoTimeout(1000);
+            assertThrows(SocketTimeoutException.class, server::accept);
+        }
+    }
+
+    @Test
+    public void testResponseBeforeRequestContentIsNotPipelined() throws Exception
+    {
+        startClient(4);
+
+        try (ServerSocket server = new ServerSocket(0))
+        {
+            server.setSoTimeout(5000);
+            AsyncRequestContent content = new AsyncRequestContent();
+            content.write(UTF_8.encode("ABC"), Callback.NOOP);
+            CountDownLatch responseLatch = new CountDownLatch(1);
+            CountDownLatch sentLatch = new CountDownLatch(1);
+            CountDownLatch releaseLatch = new CountDownLatch(1);
+            AtomicReference<CompletableFuture<ContentResponse>> completable2 = new AtomicReference<>();
+            Request request1 = client.newRequest("localhost", server.getLocalPort())
+                .method(HttpMethod.PUT)
+                .path("/1")
+                .headers(headers -> headers.put("Content-Length", "6"))
+                .body(content)
+                .onResponseSuccess(response -> responseLatch.countDown())
+                .onRequestSuccess(request ->
+                {
+                    // Send another request before the first exchange terminates.
+                    Request request2 = client.newRequest("localhost", server.getLocalPort())
+                        .path("/2")
+                        .timeout(5, TimeUnit.SECONDS);
+                    completable2.set(new CompletableResponseListener(request2).send());
+                    sentLatch.countDown();
+                    try
+                    {
+                        releaseLatch.await(5, TimeUnit.SECONDS);
+                    }
+                    catch (InterruptedException x)
+                    {
+                        throw new RuntimeException(x);
+                    }
+                })
+                .timeout(5, TimeUnit.SECONDS);
+            CompletableFuture<ContentResponse> completable1 = new CompletableResponseListener(request1).send();
+
+            try (Socket socket = server.accept())
+            {
+                socket.setSoTimeout(5000);
+                InputStream input = socket.getInputStream();
+                assertThat(readRequest(input), startsWith("PUT /1 "));
+                assertEquals("ABC", new String(input.readNBytes(3), UTF_8));
+
+                // Respond before the request content has been received.
+                OutputStream output = socket.getOutputStream();
+                output.write(("HTTP/1.1 413 Payload Too Large\r\n" +
+                    "Content-Length: 0\r\n" +
+                    "\r\n").getBytes(UTF_8));
+                output.flush();
+                assertTrue(responseLatch.await(5, TimeUnit.SECONDS));
+
+                // Complete the request content from another thread,
+                // as it notifies the request listeners.
+                client.getExecutor().execute(() ->
+                {
+                    content.write(UTF_8.encode("DEF"), Callback.NOOP);
+                    content.close();
+                });
+                assertEquals("DEF", new String(input.readNBytes(3), UTF_8));
+                assertTrue(sentLatch.await(5, TimeUnit.SECONDS));
+
+                // The second request must not be written before the
+                // first exchange terminates, as the first channel
+                // would otherwise receive the second response.
+                socket.setSoTimeout(500);
+                assertThrows(SocketTimeoutException.class, input::read);
+                socket.setSoTimeout(5000);
+                releaseLatch.countDown();
+
+                assertEquals(HttpStatus.PAYLOAD_TOO_LARGE_413, completable1.get(5, TimeUnit.SECONDS).getStatus());
+
+                assertThat(readRequest(input), startsWith("GET /2 "));
+                output.write(response("2", false).getBytes(UTF_8));
+                output.flush();
+                assertEquals("2", completable2.get().get(5, TimeUnit.SECONDS).getContentAsString());
+            }
+        }
+    }
+
+    @Test
+    public void testManyPipelinedRequests() throws Exception
+    {
+        Server server = new Server();
+        ServerConnector connector = new ServerConnector(server, 1, 1);
+        server.addConnector(connector);
+        server.setHandler(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(org.eclipse.jetty.server.Request request, Response response, Callback callback)
+            {
+                String path = request.getHttpURI().getPath();
+                response.getHeaders().put("X-Remote-Port", String.valueOf(org.eclipse.jetty.server.Request.getRemotePort(request)));
+                Content.Sink.write(response, true, path.repeat(ThreadLocalRandom.current().nextInt(1, 64)), callback);
+                return true;
+            }
+        });
+        server.start();
+
+        try
+        {
+            int maxPipelinedRequests = 8;
+            startClient(maxPipelinedRequests);
+
+            int requests = 128;
+            List<CompletableFuture<ContentResponse>> completables = new ArrayList<>();
+            for (int i = 0; i < requests; ++i)
+            {
+                Request request = client.newRequest("localhost", connector.getLocalPort())
+                    .path("/" + i)
+                    .timeout(5, TimeUnit.SECONDS);
+                completables.add(new CompletableResponseListener(request).send());
+            }
+
+            Set<String> ports = new HashSet<>();
+            for (int i = 0; i < requests; ++i)
+            {
+                ContentResponse response = completables.get(i).get(5, TimeUnit.SECONDS);
+                assertEquals(HttpStatus.OK_200, response.getStatus());
+                String content = response.getContentAsString();
+                assertThat(content, matchesRegex("(/" + i + ")+"));
+                ports.add(response.getHeaders().get("X-Remote-Port"));
+            }
+            // All the requests used the same connection.
+            assertEquals(1, ports.size());
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    private String response(String content, boolean close)
+    {
+        return "HTTP/1.1 200 OK\r\n" +
+            "Content-Length: " + content.length() + "\r\n" +
+            (close ? "Connection: close\r\n" : "") +
+            "\r\n" +
+            content;
+    }
+
+    private String readRequest(InputStream input) throws IOException
+    {
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        int crlfs = 0;
+        while (crlfs < 4)
+        {
+            int read = input.read();
+            if (read < 0)
+                throw new IOException("Unexpected EOF");
+            head.write(read);
+            if (read == '\r' || read == '\n')
+                ++crlfs;
+            else
+                crlfs = 0;
+        }
+        return head.toString(UTF_8);
+    }
+}
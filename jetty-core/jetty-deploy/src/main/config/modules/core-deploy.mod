@@ -31,5 +31,8 @@ contextHandlerClass?=org.eclipse.jetty.server.handler.ResourceHandler$ResourceCo
 ## Monitored directory scan period (seconds)
 # jetty.deploy.scanInterval=0
 
+## Whether to watch the monitored directory for changes rather than walking it on every scan
+# jetty.deploy.useWatchService=false
+
 ## Default ContextHandler class for core deployments
 # contextHandlerClass=org.eclipse.jetty.server.handler.ResourceHandler$ResourceContext
@@ -60,6 +60,7 @@ public abstract class ScanningAppProvider extends ContainerLifeCycle implements
     private boolean _useRealPaths;
     private String _environmentName;
     private boolean _deferInitialScan = false;
+    private boolean _useWatchService;
 
     private final Scanner.DiscreteListener _scannerListener = new Scanner.DiscreteListener()
     {
@@ -233,6 +234,7 @@ public abstract class ScanningAppProvider extends ContainerLifeCycle implements
         _scanner = new Scanner(null, _useRealPaths);
         _scanner.setScanDirs(files);
         _scanner.setScanInterval(_scanInterval);
+        _scanner.setUseWatchService(_useWatchService);
         _scanner.setFilenameFilter(_filenameFilter);
         _scanner.setReportDirs(true);
         _scanner.setScanDepth(1); //consider direct dir children of monitored dir
@@ -436,6 +438,21 @@ public abstract class ScanningAppProvider extends ContainerLifeCycle implements
         _scanInterval = scanInterval;
     }
 
+    @ManagedAttribute("whether monitored directories are watched rather than walked on every scan")
+    public boolean isUseWatchService()
+    {
+        return _useWatchService;
+    }
+
+    /**
+     * @param useWatchService true to watch the monitored directories for changes rather than walking them on every scan
+     * @see Scanner#setUseWatchService(boolean)
+     */
+    public void setUseWatchService(boolean useWatchService)
+    {
+        _useWatchService = useWatchService;
+    }
+
     @ManagedOperation(value = "Scan the monitored directories", impact = "ACTION")
     public void scan()
     {
@@ -24,6 +24,7 @@ import java.util.Map;
 
 import org.eclipse.jetty.http.HttpTokens.EndOfContent;
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.ByteScanner;
 import org.eclipse.jetty.util.HostPort;
 import org.eclipse.jetty.util.Index;
 import org.eclipse.jetty.util.NanoTime;
@@ -1560,6 +1561,7 @@ public class HttpParser
                             _string.append(t.getChar());
                             _length = _string.length();
                             setState(FieldState.IN_VALUE);
+                            parseFieldValue(buffer);
                             break;
 
                         default:
@@ -1592,6 +1594,7 @@ public class HttpParser
                         case OTEXT: // TODO review? should this be a utf8 string?
                             _string.append(t.getChar());
                             _length = _string.length();
+                            parseFieldValue(buffer);
                             break;
 
                         default:
@@ -1607,6 +1610,46 @@ public class HttpParser
         return false;
     }
 
+    /**
+     * <p>Appends to the field value the bytes that follow in the buffer, up to
+     * the first control character (such as {@code CR}, {@code LF} or {@code HTAB}),
+     * which is then parsed one byte at a time by {@link #parseFields(ByteBuffer)}.</p>
+     * <p>All the other bytes are legal in a field value, so they are found with
+     * {@link ByteScanner}, 8 bytes at a time, rather than by {@link #next(ByteBuffer)}.</p>
+     *
+     * @param buffer the buffer to parse
+     */
+    private void parseFieldValue(ByteBuffer buffer)
+    {
+        int position = buffer.position();
+        int limit = buffer.limit();
+        if (_maxHeaderBytes > 0)
+            limit = (int)Math.min(limit, (long)position + _maxHeaderBytes - _headerBytes);
+        int end = ByteScanner.indexOfControl(buffer, position, limit);
+        if (end < 0)
+            end = limit;
+        if (end == position)
+            return;
+
+        for (int i = position; i < end; ++i)
+        {
+            _string.append((char)(0xFF & buffer.get(i)));
+        }
+
+        // Trailing spaces are not part of the value, unless more characters follow.
+        int last = end - 1;
+        while (last >= position && buffer.get(last) == HttpTokens.SPACE)
+        {
+            --last;
+        }
+        if (last >= position)
+            _length = _string.length() - (end - 1 - last);
+
+        buffer.position(end);
+        if (_maxHeaderBytes > 0)
+            _headerBytes += end - position;
+    }
+
     /**
      * Parse until next Event.
      *
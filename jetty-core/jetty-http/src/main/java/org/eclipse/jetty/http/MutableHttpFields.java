@@ -41,6 +41,11 @@ class MutableHttpFields implements HttpFields.Mutable
     private HttpField[] _fields;
     private boolean _immutable;
     private int _size;
+    // Bits of the HttpHeader ordinals that may be present in _fields, so that
+    // lookups of absent headers do not have to scan. Bits may be stale after
+    // a removal, in which case a lookup just falls back to a scan.
+    private long _headers0;
+    private long _headers1;
 
     /**
      * Initialize an empty HttpFields.
@@ -72,6 +77,7 @@ class MutableHttpFields implements HttpFields.Mutable
             _immutable = true;
             _fields = immutable._fields;
             _size = immutable._size;
+            index(0);
         }
         else if (fields != null)
         {
@@ -110,6 +116,7 @@ class MutableHttpFields implements HttpFields.Mutable
         }
         if (!put)
             _fields[_size++] = replaceField;
+        index(0);
     }
 
     /**
@@ -127,6 +134,7 @@ class MutableHttpFields implements HttpFields.Mutable
             if (f.getHeader() == null || !removeFields.contains(f.getHeader()))
                 _fields[_size++] = f;
         }
+        index(0);
     }
 
     @Override
@@ -140,6 +148,7 @@ class MutableHttpFields implements HttpFields.Mutable
                 _fields = Arrays.copyOf(_fields, _size + SIZE_INCREMENT);
             }
             _fields[_size++] = field;
+            index(field);
         }
         return this;
     }
@@ -150,6 +159,7 @@ class MutableHttpFields implements HttpFields.Mutable
         if (fields.size() == 0)
             return this;
 
+        int from = _size;
         if (_immutable || _size + fields.size() >= _fields.length)
         {
             _immutable = false;
@@ -173,6 +183,7 @@ class MutableHttpFields implements HttpFields.Mutable
                 _fields[_size++] = f;
             }
         }
+        index(from);
         return this;
     }
 
@@ -201,9 +212,58 @@ class MutableHttpFields implements HttpFields.Mutable
             _immutable = false;
         }
         _size = 0;
+        _headers0 = 0;
+        _headers1 = 0;
         return this;
     }
 
+    private void index(int from)
+    {
+        for (int i = from; i < _size; i++)
+        {
+            HttpField f = _fields[i];
+            if (f != null)
+                index(f);
+        }
+    }
+
+    private void index(HttpField field)
+    {
+        HttpHeader header = field.getHeader();
+        if (header == null)
+            return;
+        int ordinal = header.ordinal();
+        if (ordinal < 64)
+            _headers0 |= 1L << ordinal;
+        else if (ordinal < 128)
+            _headers1 |= 1L << (ordinal - 64);
+    }
+
+    private void unindex(HttpHeader header)
+    {
+        int ordinal = header.ordinal();
+        if (ordinal < 64)
+            _headers0 &= ~(1L << ordinal);
+        else if (ordinal < 128)
+            _headers1 &= ~(1L << (ordinal - 64));
+    }
+
+    /**
+     * @param header the header to look for
+     * @return false if the header is definitely not present, true if it may be present
+     */
+    private boolean mayContain(HttpHeader header)
+    {
+        if (header == null)
+            return true;
+        int ordinal = header.ordinal();
+        if (ordinal < 64)
+            return (_headers0 & (1L << ordinal)) != 0;
+        if (ordinal < 128)
+            return (_headers1 & (1L << (ordinal - 64))) != 0;
+        return true;
+    }
+
     @Override
     public int hashCode()
     {
@@ -242,10 +302,42 @@ class MutableHttpFields implements HttpFields.Mutable
         return _fields[index];
     }
 
+    @Override
+    public boolean contains(HttpHeader header)
+    {
+        // default impl overridden for efficiency
+        return getField(header) != null;
+    }
+
+    @Override
+    public boolean contains(HttpHeader header, String value)
+    {
+        // default impl overridden for efficiency
+        if (!mayContain(header))
+            return false;
+        for (int i = 0; i < _size; i++)
+        {
+            HttpField f = _fields[i];
+            if (f != null && f.getHeader() == header && f.contains(value))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String get(HttpHeader header)
+    {
+        // default impl overridden for efficiency
+        HttpField field = getField(header);
+        return field == null ? null : field.getValue();
+    }
+
     @Override
     public HttpField getField(HttpHeader header)
     {
         // default impl overridden for efficiency
+        if (!mayContain(header))
+            return null;
         for (int i = 0; i < _size; i++)
         {
             HttpField f = _fields[i];
@@ -326,6 +418,7 @@ class MutableHttpFields implements HttpFields.Mutable
                 else
                 {
                     _fields[i] = field;
+                    index(field);
                     put = true;
                 }
             }
@@ -421,19 +514,26 @@ class MutableHttpFields implements HttpFields.Mutable
         if (newField == null)
             remove(first);
         else
+        {
             _fields[first] = newField;
+            index(newField);
+        }
         return this;
     }
 
     @Override
     public Mutable remove(HttpHeader name)
     {
+        if (!mayContain(name))
+            return this;
         for (int i = 0; i < _size; i++)
         {
             HttpField f = _fields[i];
             if (f.getHeader() == name)
                 remove(i--);
         }
+        if (name != null)
+            unindex(name);
         return this;
     }
 
@@ -519,6 +619,7 @@ class MutableHttpFields implements HttpFields.Mutable
                 _fields = Arrays.copyOf(_fields, _fields.length + SIZE_INCREMENT);
             System.arraycopy(_fields, _index, _fields, _index + 1, last - _index);
             _fields[_index++] = field;
+            index(field);
             _last = -1;
         }
 
@@ -582,7 +683,10 @@ class MutableHttpFields implements HttpFields.Mutable
             if (field == null)
                 remove();
             else
+            {
                 _fields[_last] = field;
+                index(field);
+            }
         }
     }
 }
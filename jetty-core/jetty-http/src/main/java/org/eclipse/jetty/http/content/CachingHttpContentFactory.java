@@ -16,13 +16,14 @@ package org.eclipse.jetty.http.content;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.http.CompressedContentFormat;
 import org.eclipse.jetty.http.HttpField;
@@ -35,7 +36,11 @@ import org.eclipse.jetty.io.Retainable;
 import org.eclipse.jetty.io.RetainableByteBuffer;
 import org.eclipse.jetty.util.NanoTime;
 import org.eclipse.jetty.util.StringUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.resource.Resource;
+import org.eclipse.jetty.util.thread.AutoLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,10 +50,17 @@ import org.slf4j.LoggerFactory;
  * using it as a caching authority. Only HttpContent instances whose path is not a directory are cached.
  * </p>
  * <p>
- * No eviction is done by this {@link HttpContent.Factory}, once an entry is in the cache it is always
+ * No validation is done by this {@link HttpContent.Factory}, once an entry is in the cache it is always
  * assumed to be valid. This class can be extended to implement the validation behaviours on
  * {@link CachingHttpContent} which allow entries to be evicted once they become invalid.
  * </p>
+ * <p>
+ * When the cache is full, entries are evicted with a W-TinyLFU policy: new entries enter a small LRU
+ * admission window, and when they leave the window they are only admitted to the main segmented LRU
+ * if their access frequency, estimated by a count-min sketch, is higher than the frequency of the main
+ * victim. Entries are weighted by the bytes they occupy, so that a single scan of many resources
+ * cannot evict the frequently accessed ones. Every eviction decision is O(1).
+ * </p>
  * <br>
  * The default values for the cache are:
  * <ul>
@@ -58,16 +70,28 @@ import org.slf4j.LoggerFactory;
  * </ul>
  * @see ValidatingCachingHttpContentFactory
  */
+@ManagedObject("Caching HttpContent Factory")
 public class CachingHttpContentFactory implements HttpContent.Factory
 {
     private static final Logger LOG = LoggerFactory.getLogger(CachingHttpContentFactory.class);
     private static final int DEFAULT_MAX_CACHED_FILE_SIZE = 128 * 1024 * 1024;
     private static final int DEFAULT_MAX_CACHED_FILES = 2048;
     private static final long DEFAULT_MAX_CACHE_SIZE = 256 * 1024 * 1024;
+    // The admission window holds 1% of the cache, and the protected segment 80% of the rest.
+    private static final double WINDOW_RATIO = 0.01;
+    private static final double PROTECTED_RATIO = 0.80;
 
     private final HttpContent.Factory _authority;
     private final ConcurrentHashMap<String, CachingHttpContent> _cache = new ConcurrentHashMap<>();
     private final AtomicLong _cachedSize = new AtomicLong();
+    private final AutoLock _lock = new AutoLock();
+    private final FrequencySketch _sketch = new FrequencySketch();
+    private final Segment _window = new Segment();
+    private final Segment _probation = new Segment();
+    private final Segment _protected = new Segment();
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _evictions = new LongAdder();
     private final ByteBufferPool _bufferPool;
     private int _maxCachedFileSize = DEFAULT_MAX_CACHED_FILE_SIZE;
     private int _maxCachedFiles = DEFAULT_MAX_CACHED_FILES;
@@ -78,6 +102,7 @@ public class CachingHttpContentFactory implements HttpContent.Factory
     {
         _authority = authority;
         _bufferPool = bufferPool != null ? bufferPool : ByteBufferPool.NON_POOLING;
+        _sketch.ensureCapacity(_maxCachedFiles);
     }
 
     protected ConcurrentMap<String, CachingHttpContent> getCache()
@@ -85,16 +110,45 @@ public class CachingHttpContentFactory implements HttpContent.Factory
         return _cache;
     }
 
+    @ManagedAttribute("The bytes occupied by the cached contents")
     public long getCachedSize()
     {
         return _cachedSize.get();
     }
 
+    @ManagedAttribute("The number of cached contents")
     public int getCachedFiles()
     {
         return _cache.size();
     }
 
+    @ManagedAttribute("The number of requests served from the cache")
+    public long getCacheHits()
+    {
+        return _hits.longValue();
+    }
+
+    @ManagedAttribute("The number of requests not served from the cache")
+    public long getCacheMisses()
+    {
+        return _misses.longValue();
+    }
+
+    @ManagedAttribute("The number of contents evicted to respect the cache limits")
+    public long getCacheEvictions()
+    {
+        return _evictions.longValue();
+    }
+
+    @ManagedOperation(value = "Resets the cache statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        _hits.reset();
+        _misses.reset();
+        _evictions.reset();
+    }
+
+    @ManagedAttribute("The max size in bytes of a cached content")
     public int getMaxCachedFileSize()
     {
         return _maxCachedFileSize;
@@ -106,6 +160,7 @@ public class CachingHttpContentFactory implements HttpContent.Factory
         shrinkCache();
     }
 
+    @ManagedAttribute("The max bytes occupied by the cached contents")
     public long getMaxCacheSize()
     {
         return _maxCacheSize;
@@ -121,6 +176,7 @@ public class CachingHttpContentFactory implements HttpContent.Factory
      * Get the max number of cached files..
      * @return the max number of cached files.
      */
+    @ManagedAttribute("The max number of cached contents")
     public int getMaxCachedFiles()
     {
         return _maxCachedFiles;
@@ -133,6 +189,10 @@ public class CachingHttpContentFactory implements HttpContent.Factory
     public void setMaxCachedFiles(int maxCachedFiles)
     {
         _maxCachedFiles = maxCachedFiles;
+        try (AutoLock ignored = _lock.lock())
+        {
+            _sketch.ensureCapacity(maxCachedFiles);
+        }
         shrinkCache();
     }
 
@@ -148,45 +208,140 @@ public class CachingHttpContentFactory implements HttpContent.Factory
 
     private void shrinkCache()
     {
-        // While we need to shrink
-        int numCacheEntries = _cache.size();
-        while (numCacheEntries > 0 && (numCacheEntries > _maxCachedFiles || _cachedSize.get() > _maxCacheSize))
+        try (AutoLock ignored = _lock.lock())
         {
-            // Scan the entire cache and generate an ordered list by last accessed time.
-            SortedSet<CachingHttpContent> sorted = new TreeSet<>((c1, c2) ->
+            while (isOverCapacity(_window.size() + _probation.size() + _protected.size(), _window._weight + _probation._weight + _protected._weight))
             {
-                long delta = NanoTime.elapsed(c2.getLastAccessedNanos(), c1.getLastAccessedNanos());
-                if (delta != 0)
-                    return delta < 0 ? -1 : 1;
+                // Evict from the least valuable segment first.
+                CachingHttpContent victim = _probation.first();
+                if (victim == null)
+                    victim = _protected.first();
+                if (victim == null)
+                    victim = _window.first();
+                if (victim == null)
+                    break;
+                evict(victim);
+            }
+        }
+    }
 
-                delta = c1.getContentLengthValue() - c2.getContentLengthValue();
-                if (delta != 0)
-                    return delta < 0 ? -1 : 1;
+    private boolean isOverCapacity(int count, long weight)
+    {
+        return count > _maxCachedFiles || weight > _maxCacheSize;
+    }
 
-                return c1.getKey().compareTo(c2.getKey());
-            });
-            sorted.addAll(_cache.values());
+    /**
+     * <p>Adds a new entry to the admission window, then moves the window overflow to the main segments,
+     * evicting the entries with the lowest estimated frequency as needed.</p>
+     */
+    private void admit(CachingHttpContent content)
+    {
+        try (AutoLock ignored = _lock.lock())
+        {
+            // The content may have been removed before we acquired the lock.
+            if (_cache.get(content.getKey()) != content)
+                return;
 
-            // TODO: Can we remove the buffers from the content before evicting.
-            // Invalidate least recently used first
-            for (CachingHttpContent content : sorted)
+            _sketch.increment(content.getKey().hashCode());
+            _window.add(content);
+
+            int maxWindowCount = Math.max(1, (int)(_maxCachedFiles * WINDOW_RATIO));
+            long maxWindowWeight = Math.max(1, (long)(_maxCacheSize * WINDOW_RATIO));
+            while (_window.size() > 1 && (_window.size() > maxWindowCount || _window._weight > maxWindowWeight))
             {
-                if (_cache.size() <= _maxCachedFiles && _cachedSize.get() <= _maxCacheSize)
-                    break;
-                removeFromCache(content);
+                CachingHttpContent candidate = _window.removeFirst();
+                admitToMain(candidate, _maxCachedFiles - _window.size(), _maxCacheSize - _window._weight);
+            }
+
+            // The window alone may exceed the capacity if a single content is large.
+            shrinkCache();
+        }
+    }
+
+    private void admitToMain(CachingHttpContent candidate, int maxMainCount, long maxMainWeight)
+    {
+        int candidateFrequency = _sketch.frequency(candidate.getKey().hashCode());
+        while (isOverCapacity(_probation.size() + _protected.size() + 1, _probation._weight + _protected._weight + weigh(candidate), maxMainCount, maxMainWeight))
+        {
+            CachingHttpContent victim = _probation.first();
+            if (victim == null)
+                victim = _protected.first();
+            if (victim == null)
+                break;
+
+            // Keep the entry that is most likely to be accessed again.
+            if (candidateFrequency <= _sketch.frequency(victim.getKey().hashCode()))
+            {
+                evict(candidate);
+                return;
             }
+            evict(victim);
+        }
+        _probation.add(candidate);
+    }
+
+    private static boolean isOverCapacity(int count, long weight, int maxCount, long maxWeight)
+    {
+        return count > maxCount || weight > maxWeight;
+    }
 
-            numCacheEntries = _cache.size();
+    /**
+     * <p>Records a cache hit, promoting the entry in its segment.</p>
+     * <p>The bookkeeping is skipped if another thread is updating the policy, so that
+     * cache hits are never blocked; the lost accesses only make the policy less precise.</p>
+     */
+    private void onAccess(CachingHttpContent content)
+    {
+        try (AutoLock lock = _lock.tryLock())
+        {
+            if (!lock.isHeldByCurrentThread())
+                return;
+
+            String key = content.getKey();
+            _sketch.increment(key.hashCode());
+            if (_window.touch(content) || _protected.touch(content))
+                return;
+
+            if (_probation.remove(content))
+            {
+                // Promote to the protected segment, demoting its least recently used entries.
+                _protected.add(content);
+                long maxMainWeight = _maxCacheSize - _window._weight;
+                int maxMainCount = _maxCachedFiles - _window.size();
+                long maxProtectedWeight = (long)(maxMainWeight * PROTECTED_RATIO);
+                int maxProtectedCount = (int)(maxMainCount * PROTECTED_RATIO);
+                while (_protected.size() > 1 && isOverCapacity(_protected.size(), _protected._weight, maxProtectedCount, maxProtectedWeight))
+                {
+                    _probation.add(_protected.removeFirst());
+                }
+            }
         }
     }
 
+    private void evict(CachingHttpContent content)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Evicting {}", content.getKey());
+        _evictions.increment();
+        removeFromCache(content);
+    }
+
+    private static long weigh(CachingHttpContent content)
+    {
+        return Math.max(0, content.getBytesOccupied());
+    }
+
     protected void removeFromCache(CachingHttpContent content)
     {
-        CachingHttpContent removed = _cache.remove(content.getKey());
-        if (removed != null)
+        if (_cache.remove(content.getKey(), content))
         {
-            removed.release();
-            _cachedSize.addAndGet(-removed.getBytesOccupied());
+            try (AutoLock ignored = _lock.lock())
+            {
+                if (!_window.remove(content) && !_probation.remove(content))
+                    _protected.remove(content);
+            }
+            content.release();
+            _cachedSize.addAndGet(-content.getBytesOccupied());
         }
     }
 
@@ -231,12 +386,17 @@ public class CachingHttpContentFactory implements HttpContent.Factory
             {
                 // If retain fails the CachingHttpContent was already evicted.
                 if (cachingHttpContent.retain())
+                {
+                    _hits.increment();
+                    onAccess(cachingHttpContent);
                     return (cachingHttpContent instanceof NotFoundHttpContent) ? null : cachingHttpContent;
+                }
             }
             else
                 removeFromCache(cachingHttpContent);
         }
 
+        _misses.increment();
         HttpContent httpContent = _authority.getContent(path);
         if (!isCacheable(httpContent))
             return httpContent;
@@ -257,8 +417,8 @@ public class CachingHttpContentFactory implements HttpContent.Factory
 
         if (added.get())
         {
-            // We want to shrink cache only if we have just added an entry.
-            shrinkCache();
+            // We want to update the eviction policy only if we have just added an entry.
+            admit(cachingHttpContent);
         }
         else if (httpContent != null)
         {
@@ -280,6 +440,143 @@ public class CachingHttpContentFactory implements HttpContent.Factory
         return new NotFoundHttpContent(p);
     }
 
+    /**
+     * <p>A segment of the cache, in least recently used order, with the total weight of its entries.</p>
+     * <p>Must be accessed with the lock held.</p>
+     */
+    private static class Segment
+    {
+        private final LinkedHashMap<String, CachingHttpContent> _entries = new LinkedHashMap<>(16, 0.75F, true);
+        private long _weight;
+
+        private int size()
+        {
+            return _entries.size();
+        }
+
+        private void add(CachingHttpContent content)
+        {
+            _entries.put(content.getKey(), content);
+            _weight += weigh(content);
+        }
+
+        private CachingHttpContent first()
+        {
+            Iterator<CachingHttpContent> iterator = _entries.values().iterator();
+            return iterator.hasNext() ? iterator.next() : null;
+        }
+
+        private CachingHttpContent removeFirst()
+        {
+            Iterator<CachingHttpContent> iterator = _entries.values().iterator();
+            if (!iterator.hasNext())
+                return null;
+            CachingHttpContent content = iterator.next();
+            iterator.remove();
+            _weight -= weigh(content);
+            return content;
+        }
+
+        private boolean touch(CachingHttpContent content)
+        {
+            // An access ordered LinkedHashMap moves the entry to the end on get().
+            return _entries.get(content.getKey()) == content;
+        }
+
+        private boolean remove(CachingHttpContent content)
+        {
+            if (!_entries.remove(content.getKey(), content))
+                return false;
+            _weight -= weigh(content);
+            return true;
+        }
+    }
+
+    /**
+     * <p>A count-min sketch of 4-bit counters, estimating the access frequency of keys.</p>
+     * <p>To keep the estimates recent, all the counters are halved once the number of
+     * increments reaches 10 times the table size. Must be accessed with the lock held.</p>
+     */
+    private static class FrequencySketch
+    {
+        private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private long[] _table = new long[0];
+        private int _sampleSize;
+        private int _size;
+
+        private void ensureCapacity(int maxEntries)
+        {
+            int length = Integer.highestOneBit(Math.max(16, Math.min(maxEntries, 1 << 24)) - 1) << 1;
+            if (_table.length == length)
+                return;
+            _table = new long[length];
+            _sampleSize = 10 * length;
+            _size = 0;
+        }
+
+        private int frequency(int hashCode)
+        {
+            int hash = spread(hashCode);
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < SEEDS.length; ++i)
+            {
+                int offset = counterOffset(hash, i);
+                int count = (int)((_table[indexOf(hash, i)] >>> offset) & 0xFL);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        private void increment(int hashCode)
+        {
+            int hash = spread(hashCode);
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; ++i)
+            {
+                int index = indexOf(hash, i);
+                int offset = counterOffset(hash, i);
+                if (((_table[index] >>> offset) & 0xFL) != 0xFL)
+                {
+                    _table[index] += 1L << offset;
+                    added = true;
+                }
+            }
+            if (added && ++_size >= _sampleSize)
+                reset();
+        }
+
+        private void reset()
+        {
+            for (int i = 0; i < _table.length; ++i)
+            {
+                _table[i] = (_table[i] >>> 1) & RESET_MASK;
+            }
+            _size /= 2;
+        }
+
+        private int indexOf(int hash, int i)
+        {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return (int)h & (_table.length - 1);
+        }
+
+        private static int counterOffset(int hash, int i)
+        {
+            // Each long holds 16 counters of 4 bits.
+            return ((hash >>> (i << 3)) & 0xF) << 2;
+        }
+
+        private static int spread(int x)
+        {
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            return (x >>> 16) ^ x;
+        }
+    }
+
     protected interface CachingHttpContent extends HttpContent
     {
         long getLastAccessedNanos();
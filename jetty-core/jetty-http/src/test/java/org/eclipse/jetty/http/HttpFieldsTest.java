@@ -415,6 +415,46 @@ public class HttpFieldsTest
         assertNull(header.get(HttpHeader.AGE));
     }
 
+    @ParameterizedTest
+    @MethodSource("mutables")
+    public void testGetKnownAfterMutations(HttpFields.Mutable header)
+    {
+        assertFalse(header.contains(HttpHeader.ACCEPT));
+
+        header.add("Accept", "a");
+        header.add(HttpHeader.HOST, "localhost");
+        header.add(HttpHeader.ACCEPT, "b");
+        assertEquals("a", header.get(HttpHeader.ACCEPT));
+        assertTrue(header.contains(HttpHeader.ACCEPT, "b"));
+
+        header.remove(HttpHeader.ACCEPT);
+        assertNull(header.getField(HttpHeader.ACCEPT));
+        assertEquals("localhost", header.get(HttpHeader.HOST));
+
+        ListIterator<HttpField> iterator = header.listIterator();
+        iterator.next();
+        iterator.set(new HttpField(HttpHeader.AGE, "10"));
+        iterator.add(new HttpField(HttpHeader.VARY, "Accept"));
+        assertNull(header.getField(HttpHeader.HOST));
+        assertEquals("10", header.get(HttpHeader.AGE));
+        assertEquals("Accept", header.get(HttpHeader.VARY));
+
+        header.computeField(HttpHeader.AGE, (h, l) -> new HttpField(HttpHeader.ETAG, "W/\"1\""));
+        assertEquals("W/\"1\"", header.get(HttpHeader.ETAG));
+
+        HttpFields immutable = header.asImmutable();
+        HttpFields.Mutable copy = HttpFields.build(immutable);
+        assertEquals("Accept", copy.get(HttpHeader.VARY));
+        copy.add(HttpFields.build().add(HttpHeader.SERVER, "jetty"));
+        assertEquals("jetty", copy.get(HttpHeader.SERVER));
+        assertNull(header.get(HttpHeader.SERVER));
+
+        header.clear();
+        assertNull(header.getField(HttpHeader.VARY));
+        header.put("Vary", "*");
+        assertEquals("*", header.get(HttpHeader.VARY));
+    }
+
     @ParameterizedTest
     @MethodSource("mutables")
     public void testCRLF(HttpFields.Mutable header)
@@ -494,6 +494,46 @@ public class HttpParserTest
         assertThat(_bad, containsString("Illegal character"));
     }
 
+    @ParameterizedTest
+    @ValueSource(strings = {"\r\n", "\n"})
+    public void testLongFieldValue(String eoln)
+    {
+        String value = "Mozilla/5.0 (X11; Linux x86_64; rv:109.0) Gecko/20100101 Firefox/115.0 caf" + (char)0xE9 + " \t tab";
+        String longValue = "x".repeat(1000);
+        ByteBuffer buffer = BufferUtil.toBuffer(
+            "GET / HTTP/1.0" + eoln +
+                "User-Agent:  " + value + "   " + eoln +
+                "Header: " + longValue + eoln +
+                eoln, StandardCharsets.ISO_8859_1);
+
+        HttpParser.RequestHandler handler = new Handler();
+        HttpParser parser = new HttpParser(handler);
+        parseAll(parser, buffer);
+
+        assertThat(_bad, Matchers.nullValue());
+        assertEquals("User-Agent", _hdr[0]);
+        assertEquals(value, _val[0]);
+        assertEquals("Header", _hdr[1]);
+        assertEquals(longValue, _val[1]);
+        assertEquals(1, _headers);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"\r\n", "\n"})
+    public void testControlCharacterInLongFieldValue(String eoln)
+    {
+        ByteBuffer buffer = BufferUtil.toBuffer(
+            "GET / HTTP/1.0" + eoln +
+                "Header: " + "x".repeat(100) + (char)0x7F + "x".repeat(100) + eoln +
+                eoln);
+
+        HttpParser.RequestHandler handler = new Handler();
+        HttpParser parser = new HttpParser(handler);
+        parseAll(parser, buffer);
+
+        assertThat(_bad, containsString("Illegal character"));
+    }
+
     @ParameterizedTest
     @ValueSource(strings = {"\r\n", "\n"})
     public void testWhiteSpaceAfterName(String eoln)
@@ -0,0 +1,140 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http.content;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.io.ArrayByteBufferPool;
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDir;
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDirExtension;
+import org.eclipse.jetty.util.resource.ResourceFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+@ExtendWith(WorkDirExtension.class)
+public class CachingHttpContentFactoryTest
+{
+    private Path _dir;
+    private CachingHttpContentFactory _factory;
+
+    @BeforeEach
+    public void prepare(WorkDir workDir) throws Exception
+    {
+        _dir = workDir.getEmptyPathDir();
+        ResourceHttpContentFactory authority = new ResourceHttpContentFactory(ResourceFactory.root().newResource(_dir), MimeTypes.DEFAULTS);
+        _factory = new CachingHttpContentFactory(authority, new ArrayByteBufferPool());
+    }
+
+    private void createFiles(String prefix, int count, int size) throws Exception
+    {
+        for (int i = 0; i < count; i++)
+        {
+            Files.write(_dir.resolve(prefix + i), new byte[size]);
+        }
+    }
+
+    private boolean isCached(String path)
+    {
+        return _factory.getCache().containsKey(path);
+    }
+
+    private void access(String path) throws Exception
+    {
+        HttpContent content = _factory.getContent(path);
+        assertThat(content, notNullValue());
+        content.release();
+    }
+
+    @Test
+    public void testHitsAndMisses() throws Exception
+    {
+        createFiles("file", 1, 16);
+
+        access("/file0");
+        access("/file0");
+        access("/file0");
+        assertThat(_factory.getCacheMisses(), is(1L));
+        assertThat(_factory.getCacheHits(), is(2L));
+        assertThat(_factory.getCachedFiles(), is(1));
+        assertThat(_factory.getCachedSize(), is(16L));
+
+        // Not found contents are cached too.
+        assertThat(_factory.getContent("/missing"), nullValue());
+        assertThat(_factory.getContent("/missing"), nullValue());
+        assertThat(_factory.getCacheMisses(), is(2L));
+        assertThat(_factory.getCacheHits(), is(3L));
+
+        _factory.flushCache();
+        assertThat(_factory.getCachedFiles(), is(0));
+        assertThat(_factory.getCachedSize(), is(0L));
+    }
+
+    @Test
+    public void testFrequentContentSurvivesScan() throws Exception
+    {
+        _factory.setMaxCachedFiles(10);
+        createFiles("hot", 5, 16);
+        createFiles("cold", 100, 16);
+
+        for (int round = 0; round < 5; round++)
+        {
+            for (int i = 0; i < 5; i++)
+            {
+                access("/hot" + i);
+            }
+        }
+
+        // A scan of contents accessed only once must not evict the frequently accessed ones.
+        for (int i = 0; i < 100; i++)
+        {
+            access("/cold" + i);
+        }
+
+        for (int i = 0; i < 5; i++)
+        {
+            assertThat(isCached("/hot" + i), is(true));
+        }
+        assertThat(_factory.getCachedFiles(), lessThanOrEqualTo(10));
+        assertThat(_factory.getCacheEvictions(), greaterThan(0L));
+    }
+
+    @Test
+    public void testMaxCacheSize() throws Exception
+    {
+        _factory.setMaxCacheSize(1024);
+        createFiles("file", 50, 100);
+
+        for (int i = 0; i < 50; i++)
+        {
+            access("/file" + i);
+            assertThat(_factory.getCachedSize(), lessThanOrEqualTo(1024L));
+        }
+        assertThat(_factory.getCachedFiles(), lessThanOrEqualTo(10));
+
+        // Lowering the limits shrinks the cache.
+        _factory.setMaxCachedFiles(2);
+        assertThat(_factory.getCachedFiles(), lessThanOrEqualTo(2));
+        assertThat(_factory.getCachedSize(), lessThanOrEqualTo(200L));
+    }
+}
@@ -190,6 +190,7 @@ public class HpackContext
     private final Map<String, Entry> _nameMap = new HashMap<>();
     private int _maxTableSize;
     private int _tableSize;
+    private long _modifications;
 
     HpackContext(int maxTableSize)
     {
@@ -205,6 +206,7 @@ public class HpackContext
         if (LOG.isDebugEnabled())
             LOG.debug(String.format("HdrTbl[%x] resized max=%d->%d", hashCode(), _maxTableSize, newMaxDynamicTableSize));
         _maxTableSize = newMaxDynamicTableSize;
+        _modifications++;
         _dynamicTable.evict();
     }
 
@@ -247,6 +249,7 @@ public class HpackContext
 
     public Entry add(HttpField field)
     {
+        _modifications++;
         Entry entry = new Entry(field);
         int size = entry.getSize();
         if (size > _maxTableSize)
@@ -267,6 +270,15 @@ public class HpackContext
         return entry;
     }
 
+    /**
+     * @return the number of times the dynamic table has been modified, so that
+     * encodings that depend on the dynamic table state can be checked for validity
+     */
+    long getModifications()
+    {
+        return _modifications;
+    }
+
     /**
      * @return Current dynamic table size in entries
      */
@@ -73,6 +73,7 @@ public class HpackEncoder
             HttpHeader.AUTHORIZATION,
             HttpHeader.SET_COOKIE,
             HttpHeader.SET_COOKIE2);
+    private static final int MAX_CACHED_HEADER_BLOCK_SIZE = 1024;
     private static final EnumSet<HttpHeader> IGNORED_HEADERS = EnumSet.of(HttpHeader.CONNECTION, HttpHeader.KEEP_ALIVE,
         HttpHeader.PROXY_CONNECTION, HttpHeader.TRANSFER_ENCODING, HttpHeader.UPGRADE);
     private static final PreEncodedHttpField TE_TRAILERS = new PreEncodedHttpField(HttpHeader.TE, "trailers");
@@ -100,6 +101,7 @@ public class HpackEncoder
     private int _headerListSize;
     private boolean _validateEncoding = true;
     private boolean _maxDynamicTableSizeSent = false;
+    private HeaderBlock[] _headerBlocks = new HeaderBlock[0];
 
     public HpackEncoder()
     {
@@ -173,6 +175,29 @@ public class HpackEncoder
         _validateEncoding = validateEncoding;
     }
 
+    public int getHeaderBlockCacheSize()
+    {
+        return _headerBlocks.length;
+    }
+
+    /**
+     * <p>Sets the number of encoded header blocks to cache.</p>
+     * <p>When the same sequence of fields is encoded again, and the dynamic
+     * table has not been modified since, the cached encoded bytes are reused
+     * instead of encoding every field again. Only the encodings that do not
+     * modify the dynamic table are cached, since only those can be replayed.</p>
+     *
+     * @param headerBlockCacheSize the number of header blocks to cache, rounded
+     * up to a power of 2, or {@code 0} to disable the cache
+     */
+    public void setHeaderBlockCacheSize(int headerBlockCacheSize)
+    {
+        if (headerBlockCacheSize < 0)
+            throw new IllegalArgumentException("Invalid header block cache size " + headerBlockCacheSize);
+        int size = headerBlockCacheSize <= 1 ? headerBlockCacheSize : Integer.highestOneBit(headerBlockCacheSize - 1) << 1;
+        _headerBlocks = new HeaderBlock[size];
+    }
+
     public void encode(ByteBuffer buffer, MetaData metadata) throws HpackException
     {
         try
@@ -235,47 +260,12 @@ public class HpackEncoder
                 encode(buffer, status);
             }
 
-            // Remove fields as specified in RFC 7540, 8.1.2.2.
             if (fields != null)
             {
-                // Remove the headers specified in the Connection header,
-                // for example: Connection: Close, TE, Upgrade, Custom.
-                Set<String> hopHeaders = null;
-                for (String value : fields.getCSV(HttpHeader.CONNECTION, false))
-                {
-                    if (hopHeaders == null)
-                        hopHeaders = new HashSet<>();
-                    hopHeaders.add(StringUtil.asciiToLowerCase(value));
-                }
-
-                boolean contentLengthEncoded = false;
-                for (HttpField field : fields)
-                {
-                    HttpHeader header = field.getHeader();
-                    if (header != null && IGNORED_HEADERS.contains(header))
-                        continue;
-                    if (header == HttpHeader.TE)
-                    {
-                        if (field.contains("trailers"))
-                            encode(buffer, TE_TRAILERS);
-                        continue;
-                    }
-                    String name = field.getLowerCaseName();
-                    if (hopHeaders != null && hopHeaders.contains(name))
-                        continue;
-                    if (header == HttpHeader.CONTENT_LENGTH)
-                        contentLengthEncoded = true;
-                    encode(buffer, field);
-                }
-
-                if (!contentLengthEncoded)
-                {
-                    long contentLength = metadata.getContentLength();
-                    if (contentLength == 0)
-                        encode(buffer, HttpFields.CONTENT_LENGTH_0);
-                    else if (contentLength > 0)
-                        encode(buffer, new HttpField(HttpHeader.CONTENT_LENGTH, String.valueOf(contentLength)));
-                }
+                if (_headerBlocks.length == 0)
+                    encodeFields(buffer, metadata, fields);
+                else
+                    encodeCachedFields(buffer, metadata, fields);
             }
 
             int maxHeaderListSize = getMaxHeaderListSize();
@@ -297,6 +287,85 @@ public class HpackEncoder
         }
     }
 
+    private void encodeCachedFields(ByteBuffer buffer, MetaData metadata, HttpFields fields)
+    {
+        long contentLength = metadata.getContentLength();
+        int hash = Long.hashCode(contentLength);
+        for (HttpField field : fields)
+        {
+            hash = 31 * hash + field.hashCode();
+        }
+
+        HeaderBlock[] headerBlocks = _headerBlocks;
+        int slot = hash & (headerBlocks.length - 1);
+        long modifications = _context.getModifications();
+        HeaderBlock headerBlock = headerBlocks[slot];
+        if (headerBlock != null && headerBlock.matches(hash, modifications, contentLength, fields))
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("encode cached header block {}", headerBlock);
+            buffer.put(headerBlock._encoded);
+            _headerListSize += headerBlock._headerListSize;
+            return;
+        }
+
+        int position = buffer.position();
+        int headerListSize = _headerListSize;
+        encodeFields(buffer, metadata, fields);
+
+        // Only the encodings that did not modify the dynamic table can be replayed.
+        int length = buffer.position() - position;
+        if (modifications == _context.getModifications() && length <= MAX_CACHED_HEADER_BLOCK_SIZE)
+        {
+            byte[] encoded = new byte[length];
+            buffer.get(position, encoded);
+            headerBlocks[slot] = new HeaderBlock(hash, modifications, contentLength, fields, encoded, _headerListSize - headerListSize);
+        }
+    }
+
+    private void encodeFields(ByteBuffer buffer, MetaData metadata, HttpFields fields)
+    {
+        // Remove fields as specified in RFC 7540, 8.1.2.2.
+        // Remove the headers specified in the Connection header,
+        // for example: Connection: Close, TE, Upgrade, Custom.
+        Set<String> hopHeaders = null;
+        for (String value : fields.getCSV(HttpHeader.CONNECTION, false))
+        {
+            if (hopHeaders == null)
+                hopHeaders = new HashSet<>();
+            hopHeaders.add(StringUtil.asciiToLowerCase(value));
+        }
+
+        boolean contentLengthEncoded = false;
+        for (HttpField field : fields)
+        {
+            HttpHeader header = field.getHeader();
+            if (header != null && IGNORED_HEADERS.contains(header))
+                continue;
+            if (header == HttpHeader.TE)
+            {
+                if (field.contains("trailers"))
+                    encode(buffer, TE_TRAILERS);
+                continue;
+            }
+            String name = field.getLowerCaseName();
+            if (hopHeaders != null && hopHeaders.contains(name))
+                continue;
+            if (header == HttpHeader.CONTENT_LENGTH)
+                contentLengthEncoded = true;
+            encode(buffer, field);
+        }
+
+        if (!contentLengthEncoded)
+        {
+            long contentLength = metadata.getContentLength();
+            if (contentLength == 0)
+                encode(buffer, HttpFields.CONTENT_LENGTH_0);
+            else if (contentLength > 0)
+                encode(buffer, new HttpField(HttpHeader.CONTENT_LENGTH, String.valueOf(contentLength)));
+        }
+    }
+
     public void encodeMaxDynamicTableSize(ByteBuffer buffer, int maxTableSize)
     {
         buffer.put((byte)0x20);
@@ -466,4 +535,47 @@ public class HpackEncoder
     {
         NBitStringEncoder.encode(buffer, 8, value, huffman);
     }
+
+    /**
+     * <p>The encoded bytes of a sequence of fields, valid as long
+     * as the dynamic table is not modified.</p>
+     */
+    private static class HeaderBlock
+    {
+        private final int _hash;
+        private final long _modifications;
+        private final long _contentLength;
+        private final HttpField[] _fields;
+        private final byte[] _encoded;
+        private final int _headerListSize;
+
+        private HeaderBlock(int hash, long modifications, long contentLength, HttpFields fields, byte[] encoded, int headerListSize)
+        {
+            _hash = hash;
+            _modifications = modifications;
+            _contentLength = contentLength;
+            _fields = fields.stream().toArray(HttpField[]::new);
+            _encoded = encoded;
+            _headerListSize = headerListSize;
+        }
+
+        private boolean matches(int hash, long modifications, long contentLength, HttpFields fields)
+        {
+            if (_hash != hash || _modifications != modifications || _contentLength != contentLength || _fields.length != fields.size())
+                return false;
+            int i = 0;
+            for (HttpField field : fields)
+            {
+                if (!_fields[i++].equals(field))
+                    return false;
+            }
+            return true;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x[fields=%d,octets=%d]", getClass().getSimpleName(), hashCode(), _fields.length, _encoded.length);
+        }
+    }
 }
@@ -14,6 +14,7 @@
 package org.eclipse.jetty.http2.hpack;
 
 import java.nio.ByteBuffer;
+import java.util.List;
 
 import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpFields;
@@ -22,6 +23,7 @@ import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.http.MetaData;
 import org.eclipse.jetty.http.compression.NBitIntegerDecoder;
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.NanoTime;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -313,6 +315,63 @@ public class HpackEncoderTest
         assertThat(context.size(), Matchers.is(1));
     }
 
+    @ParameterizedTest
+    @ValueSource(ints = {64, 256, HpackContext.DEFAULT_MAX_TABLE_CAPACITY})
+    public void testHeaderBlockCache(int tableCapacity) throws Exception
+    {
+        HpackEncoder encoder = newHpackEncoder(tableCapacity);
+        HpackEncoder cachingEncoder = newHpackEncoder(tableCapacity);
+        cachingEncoder.setHeaderBlockCacheSize(5);
+        assertThat(cachingEncoder.getHeaderBlockCacheSize(), is(8));
+        HpackDecoder decoder = new HpackDecoder(8192, NanoTime::now);
+        decoder.setMaxTableCapacity(tableCapacity);
+
+        List<HttpFields> responses = List.of(
+            HttpFields.build()
+                .put(HttpHeader.CONTENT_TYPE, "application/json")
+                .put(HttpHeader.CACHE_CONTROL, "no-cache")
+                .put(HttpHeader.VARY, "Accept-Encoding"),
+            HttpFields.build()
+                .put(HttpHeader.CONTENT_TYPE, "text/html")
+                .put("X-Custom", "value"),
+            HttpFields.build()
+                .put(HttpHeader.CONTENT_TYPE, "application/json")
+                .put(HttpHeader.CACHE_CONTROL, "no-cache")
+                .put(HttpHeader.VARY, "Accept-Encoding")
+                .put(HttpHeader.CONNECTION, "close")
+        );
+
+        for (int i = 0; i < 50; i++)
+        {
+            // Interleave the header sets, with a new value from time to time to modify the dynamic table.
+            HttpFields.Mutable fields = HttpFields.build(responses.get(i % responses.size()));
+            if (i % 7 == 0)
+                fields.put("X-Request", "r" + i);
+            MetaData.Response response = new MetaData.Response(200, null, HttpVersion.HTTP_2, fields, 100);
+
+            ByteBuffer expected = BufferUtil.allocate(4096);
+            int pos = BufferUtil.flipToFill(expected);
+            encoder.encode(expected, response);
+            BufferUtil.flipToFlush(expected, pos);
+
+            ByteBuffer actual = BufferUtil.allocate(4096);
+            pos = BufferUtil.flipToFill(actual);
+            cachingEncoder.encode(actual, response);
+            BufferUtil.flipToFlush(actual, pos);
+
+            // The cached encoding must be identical to the regular one.
+            assertEquals(BufferUtil.toHexString(expected), BufferUtil.toHexString(actual));
+
+            MetaData.Response decoded = (MetaData.Response)decoder.decode(actual);
+            assertThat(decoded.getStatus(), is(200));
+            for (HttpField field : fields)
+            {
+                if (field.getHeader() != HttpHeader.CONNECTION)
+                    assertThat(decoded.getHttpFields().get(field.getName()), is(field.getValue()));
+            }
+        }
+    }
+
     private static HpackEncoder newHpackEncoder(int tableCapacity)
     {
         HpackEncoder encoder = new HpackEncoder();
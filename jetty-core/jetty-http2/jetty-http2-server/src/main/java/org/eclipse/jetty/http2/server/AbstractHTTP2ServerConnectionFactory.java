@@ -66,6 +66,7 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
     private final HttpConfiguration httpConfiguration;
     private int maxDecoderTableCapacity = HpackContext.DEFAULT_MAX_TABLE_CAPACITY;
     private int maxEncoderTableCapacity = HpackContext.DEFAULT_MAX_TABLE_CAPACITY;
+    private int encoderHeaderBlockCacheSize = 8;
     private int initialSessionRecvWindow = 1024 * 1024;
     private int initialStreamRecvWindow = 512 * 1024;
     private int maxConcurrentStreams = 128;
@@ -128,6 +129,25 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         this.maxDecoderTableCapacity = maxDecoderTableCapacity;
     }
 
+    @ManagedAttribute("The number of HPACK encoded header blocks cached per connection")
+    public int getEncoderHeaderBlockCacheSize()
+    {
+        return encoderHeaderBlockCacheSize;
+    }
+
+    /**
+     * <p>Sets the number of HPACK encoded header blocks cached per connection,
+     * so that responses with the same headers reuse their encoded bytes.</p>
+     * <p>Setting this value to {@code 0} disables the cache.</p>
+     *
+     * @param encoderHeaderBlockCacheSize the number of encoded header blocks cached per connection
+     * @see org.eclipse.jetty.http2.hpack.HpackEncoder#setHeaderBlockCacheSize(int)
+     */
+    public void setEncoderHeaderBlockCacheSize(int encoderHeaderBlockCacheSize)
+    {
+        this.encoderHeaderBlockCacheSize = encoderHeaderBlockCacheSize;
+    }
+
     @ManagedAttribute("The initial size of session's flow control receive window")
     public int getInitialSessionRecvWindow()
     {
@@ -303,6 +323,7 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         ServerSessionListener listener = newSessionListener(connector, endPoint);
 
         Generator generator = new Generator(connector.getByteBufferPool(), isUseOutputDirectByteBuffers(), getMaxHeaderBlockFragment());
+        generator.getHpackEncoder().setHeaderBlockCacheSize(getEncoderHeaderBlockCacheSize());
         FlowControlStrategy flowControl = getFlowControlStrategyFactory().newFlowControlStrategy();
 
         ServerParser parser = newServerParser(connector, getRateControlFactory().newRateControl(endPoint));
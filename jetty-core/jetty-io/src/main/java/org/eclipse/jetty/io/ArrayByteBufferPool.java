@@ -16,6 +16,7 @@ package org.eclipse.jetty.io;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.util.Arrays;
@@ -35,6 +36,7 @@ import org.eclipse.jetty.io.internal.QueuedPool;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.ConcurrentPool;
 import org.eclipse.jetty.util.Pool;
+import org.eclipse.jetty.util.VirtualThreads;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.annotation.ManagedOperation;
@@ -51,6 +53,11 @@ import org.slf4j.LoggerFactory;
  * 2048, and so on with capacities 3072, 4096, 5120, etc.</p>
  * <p>The {@code maxHeapMemory} and {@code maxDirectMemory} default heuristic is to use {@link Runtime#maxMemory()}
  * divided by 8.</p>
+ * <p>Optionally, a bounded thread-local cache (see {@link #setThreadLocalCacheSize(int)}) can be enabled in front
+ * of the buckets, so that a platform thread that repeatedly acquires and releases buffers of the same capacity
+ * does not contend on the shared bucket state. The thread-local cache refills from and drains to the
+ * buckets in batches, and the memory it holds is accounted in the {@code maxHeapMemory}
+ * and {@code maxDirectMemory} limits.</p>
  */
 @ManagedObject
 public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
@@ -66,7 +73,12 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
     private final long _maxDirectMemory;
     private final IntUnaryOperator _bucketIndexFor;
     private final AtomicBoolean _evictor = new AtomicBoolean(false);
+    private final Set<ThreadLocalCache> _threadLocalCaches = ConcurrentHashMap.newKeySet();
+    // The threads only hold their cache weakly, so that they do not retain a discarded pool;
+    // the caches are strongly held by _threadLocalCaches until they are discarded.
+    private final ThreadLocal<WeakReference<ThreadLocalCache>> _threadLocalCache = new ThreadLocal<>();
     private boolean _statisticsEnabled;
+    private int _threadLocalCacheSize;
 
     /**
      * Creates a new ArrayByteBufferPool with a default configuration.
@@ -153,8 +165,8 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
         for (int i = 0; i < directArray.length; i++)
         {
             int capacity = Math.min(bucketCapacity.applyAsInt(i), maxCapacity);
-            directArray[i] = new RetainedBucket(capacity, maxBucketSize);
-            indirectArray[i] = new RetainedBucket(capacity, maxBucketSize);
+            directArray[i] = new RetainedBucket(i, capacity, maxBucketSize);
+            indirectArray[i] = new RetainedBucket(i, capacity, maxBucketSize);
         }
 
         _minCapacity = minCapacity;
@@ -186,6 +198,43 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
         _statisticsEnabled = enabled;
     }
 
+    /**
+     * @return the max number of buffers per bucket held in each thread-local cache, or 0 if the cache is disabled
+     */
+    @ManagedAttribute("The max number of buffers per bucket cached by each thread")
+    public int getThreadLocalCacheSize()
+    {
+        return _threadLocalCacheSize;
+    }
+
+    /**
+     * <p>Sets the max number of buffers per bucket held in each thread-local cache.</p>
+     * <p>The thread-local cache is only used by platform threads, and should be enabled
+     * before the pool is used. A value of 0 (the default) disables the cache.</p>
+     *
+     * @param size the max number of buffers per bucket held in each thread-local cache
+     */
+    public void setThreadLocalCacheSize(int size)
+    {
+        _threadLocalCacheSize = Math.max(0, size);
+        if (_threadLocalCacheSize == 0)
+            discardThreadLocalCaches();
+    }
+
+    @ManagedAttribute("The number of acquires served by the thread-local caches")
+    public long getThreadLocalCacheHits()
+    {
+        return Arrays.stream(_direct).mapToLong(RetainedBucket::getLocalHits).sum() +
+            Arrays.stream(_indirect).mapToLong(RetainedBucket::getLocalHits).sum();
+    }
+
+    @ManagedAttribute("The number of acquires not served by the thread-local caches")
+    public long getThreadLocalCacheMisses()
+    {
+        return Arrays.stream(_direct).mapToLong(RetainedBucket::getLocalMisses).sum() +
+            Arrays.stream(_indirect).mapToLong(RetainedBucket::getLocalMisses).sum();
+    }
+
     @ManagedAttribute("The minimum pooled buffer capacity")
     public int getMinCapacity()
     {
@@ -209,6 +258,30 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
 
         bucket.recordAcquire();
 
+        // Try to acquire from the thread-local cache.
+        ThreadLocalCache cache = getThreadLocalCache();
+        if (cache != null)
+        {
+            LocalBuffer local = cache.poll(bucket);
+            if (local == null)
+            {
+                bucket.recordLocalMiss();
+                cache.refill(bucket);
+                local = cache.poll(bucket);
+            }
+            else
+            {
+                bucket.recordLocalHit();
+            }
+
+            if (local != null)
+            {
+                bucket.recordPooled();
+                local.acquire();
+                return local;
+            }
+        }
+
         // Try to acquire a pooled entry.
         Pool.Entry<RetainableByteBuffer> entry = bucket.getPool().acquire();
         if (entry == null)
@@ -244,12 +317,37 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
             return buffer.release();
         }
 
+        if (actual instanceof LocalBuffer localBuffer)
+        {
+            // prevent the actual local buffer from being cached again, but release the wrapped buffer
+            localBuffer.remove();
+            return buffer.release();
+        }
+
         return ByteBufferPool.super.removeAndRelease(buffer);
     }
 
     private void reserve(RetainedBucket bucket, ByteBuffer byteBuffer)
     {
-        bucket.recordRelease();
+        // Move the buffer to the thread-local cache, if it has room.
+        ThreadLocalCache cache = getThreadLocalCache();
+        if (cache != null && !cache.isFull(bucket))
+        {
+            bucket.recordRelease();
+            BufferUtil.reset(byteBuffer);
+            cache.offer(new LocalBuffer(byteBuffer, bucket));
+            // Check the memory 1% of the times.
+            if (cache.use() % 100 == 0)
+                checkMaxMemory(bucket, byteBuffer.isDirect());
+            return;
+        }
+        reserve(bucket, byteBuffer, true);
+    }
+
+    private void reserve(RetainedBucket bucket, ByteBuffer byteBuffer, boolean recordRelease)
+    {
+        if (recordRelease)
+            bucket.recordRelease();
 
         // Try to reserve an entry to put the buffer into the pool.
         Pool.Entry<RetainableByteBuffer> entry = bucket.getPool().reserve();
@@ -280,6 +378,14 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
         RetainableByteBuffer buffer = entry.getPooled();
         BufferUtil.reset(buffer.getByteBuffer());
 
+        // Move the buffer to the thread-local cache, if it has room.
+        ThreadLocalCache cache = getThreadLocalCache();
+        if (cache != null && !cache.isFull(bucket) && entry.remove())
+        {
+            cache.offer(new LocalBuffer(buffer.getByteBuffer(), bucket));
+            return;
+        }
+
         // Release the buffer and check the memory 1% of the times.
         int used = ((Buffer)buffer).use();
         if (entry.release())
@@ -294,6 +400,71 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
         entry.remove();
     }
 
+    private void release(LocalBuffer buffer)
+    {
+        RetainedBucket bucket = buffer._bucket;
+        bucket.recordRelease();
+        BufferUtil.reset(buffer.getByteBuffer());
+
+        ThreadLocalCache cache = getThreadLocalCache();
+        if (cache == null)
+        {
+            // The buffer was released by a thread without cache, return it to the bucket.
+            reserve(bucket, buffer.getByteBuffer(), false);
+            return;
+        }
+
+        // When the cache is full, drain a batch of buffers to the bucket to make room.
+        if (cache.isFull(bucket))
+            cache.drain(bucket);
+        cache.offer(buffer);
+
+        // Check the memory 1% of the times.
+        if (cache.use() % 100 == 0)
+            checkMaxMemory(bucket, buffer.isDirect());
+    }
+
+    private ThreadLocalCache getThreadLocalCache()
+    {
+        if (_threadLocalCacheSize <= 0 || VirtualThreads.isVirtualThread())
+            return null;
+        WeakReference<ThreadLocalCache> reference = _threadLocalCache.get();
+        ThreadLocalCache cache = reference == null ? null : reference.get();
+        if (cache == null || cache.isDiscarded())
+        {
+            // Replace a discarded cache, so that its buffers can be garbage collected.
+            cache = new ThreadLocalCache(Thread.currentThread());
+            _threadLocalCache.set(new WeakReference<>(cache));
+            _threadLocalCaches.add(cache);
+        }
+        return cache;
+    }
+
+    private void discardThreadLocalCaches()
+    {
+        // The caches cannot be emptied by other threads, so forget them:
+        // their owner threads replace them on their next use.
+        _threadLocalCaches.removeIf(cache ->
+        {
+            cache.discard();
+            return true;
+        });
+    }
+
+    private long getThreadLocalMemory(boolean direct)
+    {
+        long memory = 0;
+        for (ThreadLocalCache cache : _threadLocalCaches)
+        {
+            // Forget the caches of threads that have exited.
+            if (!cache._thread.isAlive())
+                _threadLocalCaches.remove(cache);
+            else
+                memory += cache.getMemory(direct);
+        }
+        return memory;
+    }
+
     private boolean remove(RetainedBucket bucket, Pool.Entry<RetainableByteBuffer> entry)
     {
         // Cannot release, discard this buffer.
@@ -313,7 +484,10 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
             if (excess > 0)
             {
                 bucket.recordEvict();
-                evict(excess, direct);
+                excess = evict(excess, direct);
+                // The thread-local caches cannot be evicted by other threads, so discard them.
+                if (excess > 0)
+                    discardThreadLocalCaches();
             }
         }
         finally
@@ -322,7 +496,7 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
         }
     }
 
-    private void evict(long excessMemory, boolean direct)
+    private long evict(long excessMemory, boolean direct)
     {
         RetainedBucket[] buckets = direct ? _direct : _indirect;
         int length = buckets.length;
@@ -336,8 +510,9 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
             int evicted = bucket.evict();
             excessMemory -= evicted;
             if (excessMemory <= 0)
-                return;
+                return excessMemory;
         }
+        return excessMemory;
     }
 
     public Pool<RetainableByteBuffer> poolFor(int capacity, boolean direct)
@@ -410,7 +585,7 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
         long size = 0;
         for (RetainedBucket bucket : direct ? _direct : _indirect)
             size += (long)bucket.getPool().getIdleCount() * bucket.getCapacity();
-        return size;
+        return size + getThreadLocalMemory(direct);
     }
 
     public long getAvailableDirectMemory()
@@ -426,6 +601,7 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
     @ManagedOperation(value = "Clears this ByteBufferPool", impact = "ACTION")
     public void clear()
     {
+        discardThreadLocalCaches();
         clearBuckets(_direct);
         clearBuckets(_indirect);
     }
@@ -468,10 +644,13 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
         private final LongAdder _evicts = new LongAdder();
         private final LongAdder _removes = new LongAdder();
         private final LongAdder _releases = new LongAdder();
+        private final LongAdder _localHits = new LongAdder();
+        private final LongAdder _localMisses = new LongAdder();
         private final Pool<RetainableByteBuffer> _pool;
+        private final int _index;
         private final int _capacity;
 
-        private RetainedBucket(int capacity, int poolSize)
+        private RetainedBucket(int index, int capacity, int poolSize)
         {
             if (poolSize <= ConcurrentPool.OPTIMAL_MAX_SIZE)
                 _pool = new ConcurrentPool<>(ConcurrentPool.StrategyType.THREAD_ID, poolSize, e -> 1);
@@ -480,6 +659,7 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
                     new ConcurrentPool<>(ConcurrentPool.StrategyType.THREAD_ID, ConcurrentPool.OPTIMAL_MAX_SIZE, e -> 1),
                     new QueuedPool<>(poolSize - ConcurrentPool.OPTIMAL_MAX_SIZE)
                 );
+            _index = index;
             _capacity = capacity;
         }
 
@@ -519,6 +699,33 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
                 _removes.increment();
         }
 
+        public void recordLocalHit()
+        {
+            if (isStatisticsEnabled())
+                _localHits.increment();
+        }
+
+        public void recordLocalMiss()
+        {
+            if (isStatisticsEnabled())
+                _localMisses.increment();
+        }
+
+        private long getLocalHits()
+        {
+            return _localHits.longValue();
+        }
+
+        private long getLocalMisses()
+        {
+            return _localMisses.longValue();
+        }
+
+        private int getIndex()
+        {
+            return _index;
+        }
+
         private int getCapacity()
         {
             return _capacity;
@@ -554,6 +761,8 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
             _evicts.reset();
             _removes.reset();
             _releases.reset();
+            _localHits.reset();
+            _localMisses.reset();
             getPool().stream().forEach(Pool.Entry::remove);
         }
 
@@ -572,7 +781,7 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
             long pooled = _pooled.longValue();
             long acquires = _acquires.longValue();
             float hitRatio = acquires == 0 ? Float.NaN : pooled * 100F / acquires;
-            return String.format("%s{capacity=%d,in-use=%d/%d,pooled/acquires=%d/%d(%.3f%%),non-pooled/evicts/removes/releases=%d/%d/%d/%d}",
+            return String.format("%s{capacity=%d,in-use=%d/%d,pooled/acquires=%d/%d(%.3f%%),non-pooled/evicts/removes/releases=%d/%d/%d/%d,local-hits/misses=%d/%d}",
                 super.toString(),
                 getCapacity(),
                 inUse,
@@ -583,7 +792,9 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
                 _nonPooled.longValue(),
                 _evicts.longValue(),
                 _removes.longValue(),
-                _releases.longValue()
+                _releases.longValue(),
+                _localHits.longValue(),
+                _localMisses.longValue()
             );
         }
 
@@ -667,6 +878,182 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
         }
     }
 
+    /**
+     * <p>A pooled buffer held by a {@link ThreadLocalCache}, detached from the bucket {@link Pool}.</p>
+     */
+    private class LocalBuffer extends AbstractRetainableByteBuffer
+    {
+        private final RetainedBucket _bucket;
+        private volatile boolean _removed;
+
+        private LocalBuffer(ByteBuffer buffer, RetainedBucket bucket)
+        {
+            super(buffer);
+            _bucket = Objects.requireNonNull(bucket);
+        }
+
+        @Override
+        public boolean release()
+        {
+            boolean released = super.release();
+            if (released && !_removed)
+                ArrayByteBufferPool.this.release(this);
+            return released;
+        }
+
+        private void remove()
+        {
+            _removed = true;
+        }
+    }
+
+    /**
+     * <p>A per-thread cache of {@link LocalBuffer}s, with a bounded stack for each bucket.</p>
+     * <p>Only the owner thread accesses the stacks; other threads may only
+     * read the memory counters and request the cache to be discarded.</p>
+     */
+    private class ThreadLocalCache
+    {
+        private final Thread _thread;
+        private final LocalBuffer[][] _direct = new LocalBuffer[ArrayByteBufferPool.this._direct.length][];
+        private final LocalBuffer[][] _indirect = new LocalBuffer[ArrayByteBufferPool.this._indirect.length][];
+        private final int[] _directSizes = new int[_direct.length];
+        private final int[] _indirectSizes = new int[_indirect.length];
+        private volatile long _directMemory;
+        private volatile long _heapMemory;
+        private volatile boolean _discarded;
+        private int _usages;
+
+        private ThreadLocalCache(Thread thread)
+        {
+            _thread = thread;
+        }
+
+        private long getMemory(boolean direct)
+        {
+            return direct ? _directMemory : _heapMemory;
+        }
+
+        private int use()
+        {
+            if (++_usages < 0)
+                _usages = 0;
+            return _usages;
+        }
+
+        private void discard()
+        {
+            _discarded = true;
+        }
+
+        private boolean isDiscarded()
+        {
+            return _discarded;
+        }
+
+        private LocalBuffer[] stack(RetainedBucket bucket, boolean direct)
+        {
+            LocalBuffer[][] stacks = direct ? _direct : _indirect;
+            int index = bucket.getIndex();
+            LocalBuffer[] stack = stacks[index];
+            if (stack == null || stack.length != _threadLocalCacheSize)
+            {
+                LocalBuffer[] resized = new LocalBuffer[_threadLocalCacheSize];
+                int[] sizes = direct ? _directSizes : _indirectSizes;
+                if (stack != null)
+                {
+                    int size = Math.min(sizes[index], resized.length);
+                    System.arraycopy(stack, 0, resized, 0, size);
+                    for (int i = size; i < sizes[index]; ++i)
+                        addMemory(direct, -bucket.getCapacity());
+                    sizes[index] = size;
+                }
+                stack = stacks[index] = resized;
+            }
+            return stack;
+        }
+
+        private boolean isDirect(RetainedBucket bucket)
+        {
+            return ArrayByteBufferPool.this._direct[bucket.getIndex()] == bucket;
+        }
+
+        private boolean isFull(RetainedBucket bucket)
+        {
+            boolean direct = isDirect(bucket);
+            int[] sizes = direct ? _directSizes : _indirectSizes;
+            return sizes[bucket.getIndex()] >= stack(bucket, direct).length;
+        }
+
+        private LocalBuffer poll(RetainedBucket bucket)
+        {
+            boolean direct = isDirect(bucket);
+            LocalBuffer[] stack = stack(bucket, direct);
+            int[] sizes = direct ? _directSizes : _indirectSizes;
+            int index = bucket.getIndex();
+            int size = sizes[index];
+            if (size == 0)
+                return null;
+            LocalBuffer buffer = stack[--size];
+            stack[size] = null;
+            sizes[index] = size;
+            addMemory(direct, -bucket.getCapacity());
+            return buffer;
+        }
+
+        private void offer(LocalBuffer buffer)
+        {
+            RetainedBucket bucket = buffer._bucket;
+            boolean direct = isDirect(bucket);
+            LocalBuffer[] stack = stack(bucket, direct);
+            int[] sizes = direct ? _directSizes : _indirectSizes;
+            int index = bucket.getIndex();
+            stack[sizes[index]++] = buffer;
+            addMemory(direct, bucket.getCapacity());
+        }
+
+        /**
+         * <p>Moves a batch of up to half the cache size of idle buffers from the bucket to this cache.</p>
+         */
+        private void refill(RetainedBucket bucket)
+        {
+            int batch = Math.max(1, _threadLocalCacheSize / 2);
+            for (int i = 0; i < batch; ++i)
+            {
+                Pool.Entry<RetainableByteBuffer> entry = bucket.getPool().acquire();
+                if (entry == null)
+                    return;
+                ByteBuffer byteBuffer = entry.getPooled().getByteBuffer();
+                if (entry.remove())
+                    offer(new LocalBuffer(byteBuffer, bucket));
+            }
+        }
+
+        /**
+         * <p>Moves a batch of half the cache size of buffers from this cache to the bucket.</p>
+         */
+        private void drain(RetainedBucket bucket)
+        {
+            int batch = Math.max(1, _threadLocalCacheSize / 2);
+            for (int i = 0; i < batch; ++i)
+            {
+                LocalBuffer buffer = poll(bucket);
+                if (buffer == null)
+                    return;
+                reserve(bucket, buffer.getByteBuffer(), false);
+            }
+        }
+
+        private void addMemory(boolean direct, long delta)
+        {
+            // Only the owner thread writes the counters.
+            if (direct)
+                _directMemory = _directMemory + delta;
+            else
+                _heapMemory = _heapMemory + delta;
+        }
+    }
+
     /**
      * A variant of the {@link ArrayByteBufferPool} that
      * uses buckets of buffers that increase in size by a power of
@@ -26,6 +26,7 @@ import java.nio.channels.NetworkChannel;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.SelectorProvider;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.util.Map;
@@ -99,6 +100,7 @@ public class ClientConnector extends ContainerLifeCycle
     private SslContextFactory.Client sslContextFactory;
     private SelectorManager selectorManager;
     private int selectors = 1;
+    private SelectorProvider selectorProvider = SelectorProvider.provider();
     private boolean connectBlocking;
     private Duration connectTimeout = Duration.ofSeconds(5);
     private Duration idleTimeout = Duration.ofSeconds(30);
@@ -227,6 +229,29 @@ public class ClientConnector extends ContainerLifeCycle
         this.selectors = selectors;
     }
 
+    /**
+     * @return the {@link SelectorProvider} used to open the selectors and the channels
+     */
+    @ManagedAttribute("The SelectorProvider")
+    public SelectorProvider getSelectorProvider()
+    {
+        return selectorProvider;
+    }
+
+    /**
+     * <p>Sets the {@link SelectorProvider} used to open the selectors
+     * and the channels, by default {@link SelectorProvider#provider()}.</p>
+     *
+     * @param selectorProvider the {@link SelectorProvider} used to open the selectors and the channels
+     * @see SelectorManager#setSelectorProvider(SelectorProvider)
+     */
+    public void setSelectorProvider(SelectorProvider selectorProvider)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+        this.selectorProvider = Objects.requireNonNull(selectorProvider);
+    }
+
     /**
      * @return whether {@link #connect(SocketAddress, Map)} operations are performed in blocking mode
      */
@@ -402,6 +427,7 @@ public class ClientConnector extends ContainerLifeCycle
             setSslContextFactory(newSslContextFactory());
         selectorManager = newSelectorManager();
         selectorManager.setConnectTimeout(getConnectTimeout().toMillis());
+        selectorManager.setSelectorProvider(getSelectorProvider());
         addBean(selectorManager);
         super.doStart();
     }
@@ -438,7 +464,8 @@ public class ClientConnector extends ContainerLifeCycle
                 address = transport.getSocketAddress();
             context.putIfAbsent(REMOTE_SOCKET_ADDRESS_CONTEXT_KEY, address);
 
-            channel = transport.newSelectableChannel();
+            // The channel must be opened by the same provider of the selectors it is registered with.
+            channel = transport.newSelectableChannel(selectorManager.getSelectorProvider());
             configure(channel);
 
             if (channel instanceof NetworkChannel networkChannel)
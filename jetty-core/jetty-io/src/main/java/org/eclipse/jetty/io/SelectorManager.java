@@ -22,9 +22,11 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.SelectorProvider;
 import java.util.Arrays;
 import java.util.EventListener;
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -62,6 +64,7 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
     private final IntUnaryOperator _selectorIndexUpdate;
     private final List<AcceptListener> _acceptListeners = new CopyOnWriteArrayList<>();
     private long _connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private SelectorProvider _selectorProvider = SelectorProvider.provider();
     private ThreadPoolBudget.Lease _lease;
 
     private static int defaultSelectors(Executor executor)
@@ -129,6 +132,35 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
         _connectTimeout = milliseconds;
     }
 
+    /**
+     * @return the {@link SelectorProvider} used to open the {@link Selector}s
+     * @see #setSelectorProvider(SelectorProvider)
+     */
+    @ManagedAttribute("The SelectorProvider")
+    public SelectorProvider getSelectorProvider()
+    {
+        return _selectorProvider;
+    }
+
+    /**
+     * <p>Sets the {@link SelectorProvider} used to open the {@link Selector}s,
+     * by default the JVM-wide {@link SelectorProvider#provider()}.</p>
+     * <p>This allows to use a different {@link Selector} implementation, for
+     * example the JDK {@code poll(2)} one, or a third party one.
+     * Since a {@link SelectableChannel} can only be registered with selectors
+     * of the same provider, the channels managed by this {@link SelectorManager}
+     * must be opened with the same {@link SelectorProvider}, as done by
+     * {@code ServerConnector} and {@link ClientConnector}.</p>
+     *
+     * @param selectorProvider the {@link SelectorProvider} used to open the {@link Selector}s
+     */
+    public void setSelectorProvider(SelectorProvider selectorProvider)
+    {
+        if (isRunning())
+            throw new IllegalStateException(getState());
+        _selectorProvider = Objects.requireNonNull(selectorProvider);
+    }
+
     /**
      * Executes the given task in a different thread.
      *
@@ -269,7 +301,7 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
 
     protected Selector newSelector() throws IOException
     {
-        return Selector.open();
+        return getSelectorProvider().openSelector();
     }
 
     @Override
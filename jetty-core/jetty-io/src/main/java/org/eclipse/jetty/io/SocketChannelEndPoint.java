@@ -13,13 +13,19 @@
 
 package org.eclipse.jetty.io;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.channels.WritePendingException;
+import java.util.Objects;
 
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.thread.Scheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,6 +37,8 @@ public class SocketChannelEndPoint extends SelectableChannelEndPoint
 {
     private static final Logger LOG = LoggerFactory.getLogger(SocketChannelEndPoint.class);
 
+    private volatile FileRegion _fileRegion;
+
     public SocketChannelEndPoint(SocketChannel channel, ManagedSelector selector, SelectionKey key, Scheduler scheduler)
     {
         super(scheduler, channel, selector, key);
@@ -126,6 +134,83 @@ public class SocketChannelEndPoint extends SelectableChannelEndPoint
                 return false;
         }
 
-        return true;
+        FileRegion fileRegion = _fileRegion;
+        return fileRegion == null || transfer(fileRegion);
+    }
+
+    /**
+     * <p>Writes a region of a file to this endpoint, using
+     * {@link FileChannel#transferTo(long, long, WritableByteChannel)}
+     * so that the bytes are copied by the kernel without being copied to user space.</p>
+     * <p>Like {@link #write(Callback, ByteBuffer...)}, the callback is completed
+     * when all the bytes of the region have been written, or when the write fails.</p>
+     *
+     * @param callback the callback to complete when the region has been written
+     * @param file the file to transfer the bytes from
+     * @param position the position in the file of the first byte to transfer
+     * @param length the number of bytes to transfer
+     * @throws WritePendingException if another write operation is pending
+     */
+    public void transferFrom(Callback callback, FileChannel file, long position, long length) throws WritePendingException
+    {
+        Objects.requireNonNull(file);
+        if (position < 0 || length < 0)
+            throw new IllegalArgumentException("Invalid file region " + position + "+" + length);
+        if (_fileRegion != null)
+            throw new WritePendingException();
+        if (LOG.isDebugEnabled())
+            LOG.debug("transferFrom {} {}+{} {}", file, position, length, this);
+        _fileRegion = new FileRegion(file, position, length);
+        // The WriteFlusher calls flush(), which transfers the
+        // file region, until it is completed or failed.
+        // The file region is cleared before the callback is notified,
+        // so that the callback can transfer another file region.
+        write(Callback.from(() -> _fileRegion = null, callback), BufferUtil.EMPTY_BUFFER);
+    }
+
+    private boolean transfer(FileRegion fileRegion) throws IOException
+    {
+        try
+        {
+            while (fileRegion._remaining > 0)
+            {
+                long transferred = fileRegion._file.transferTo(fileRegion._position, fileRegion._remaining, getChannel());
+                if (LOG.isDebugEnabled())
+                    LOG.debug("transferred {} {}", transferred, this);
+                if (transferred > 0)
+                {
+                    fileRegion._position += transferred;
+                    fileRegion._remaining -= transferred;
+                    notIdle();
+                }
+                else
+                {
+                    // Nothing is transferred either because the socket is congested,
+                    // or because the file has been truncated during the transfer.
+                    if (fileRegion._position >= fileRegion._file.size())
+                        throw new EOFException("Unexpected end of file " + fileRegion._file);
+                    return false;
+                }
+            }
+            return true;
+        }
+        catch (IOException e)
+        {
+            throw new EofException(e);
+        }
+    }
+
+    private static class FileRegion
+    {
+        private final FileChannel _file;
+        private long _position;
+        private long _remaining;
+
+        private FileRegion(FileChannel file, long position, long length)
+        {
+            _file = file;
+            _position = position;
+            _remaining = length;
+        }
     }
 }
@@ -21,6 +21,7 @@ import java.nio.channels.DatagramChannel;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.SelectorProvider;
 import java.nio.file.Path;
 import java.util.Map;
 import java.util.Objects;
@@ -124,6 +125,23 @@ public interface Transport
         return null;
     }
 
+    /**
+     * <p>Creates a new {@link SelectableChannel} like {@link #newSelectableChannel()},
+     * but opened by the given {@link SelectorProvider}, so that it can be registered
+     * with the selectors opened by the same provider.</p>
+     * <p>The default implementation ignores the provider and calls
+     * {@link #newSelectableChannel()}.</p>
+     *
+     * @param selectorProvider the {@link SelectorProvider} that opens the channel
+     * @return a new {@link SelectableChannel} used for the socket communication,
+     * or {@code null} if the communication does not use sockets.
+     * @throws IOException if the {@link SelectableChannel} cannot be created
+     */
+    default SelectableChannel newSelectableChannel(SelectorProvider selectorProvider) throws IOException
+    {
+        return newSelectableChannel();
+    }
+
     /**
      * <p>For {@code Transport}s that are based on sockets, or for {@code Transport}s
      * that are layered on top of another {@code Transport} that is based on sockets,
@@ -210,6 +228,12 @@ public interface Transport
             return SocketChannel.open();
         }
 
+        @Override
+        public SelectableChannel newSelectableChannel(SelectorProvider selectorProvider) throws IOException
+        {
+            return selectorProvider.openSocketChannel();
+        }
+
         @Override
         public EndPoint newEndPoint(Scheduler scheduler, ManagedSelector selector, SelectableChannel selectable, SelectionKey selectionKey)
         {
@@ -233,6 +257,12 @@ public interface Transport
             return DatagramChannel.open();
         }
 
+        @Override
+        public SelectableChannel newSelectableChannel(SelectorProvider selectorProvider) throws IOException
+        {
+            return selectorProvider.openDatagramChannel();
+        }
+
         @Override
         public EndPoint newEndPoint(Scheduler scheduler, ManagedSelector selector, SelectableChannel selectable, SelectionKey selectionKey)
         {
@@ -297,6 +327,12 @@ public interface Transport
             return SocketChannel.open(StandardProtocolFamily.UNIX);
         }
 
+        @Override
+        public SelectableChannel newSelectableChannel(SelectorProvider selectorProvider) throws IOException
+        {
+            return selectorProvider.openSocketChannel(StandardProtocolFamily.UNIX);
+        }
+
         @Override
         public EndPoint newEndPoint(Scheduler scheduler, ManagedSelector selector, SelectableChannel selectable, SelectionKey selectionKey)
         {
@@ -320,6 +356,12 @@ public interface Transport
             return DatagramChannel.open(StandardProtocolFamily.UNIX);
         }
 
+        @Override
+        public SelectableChannel newSelectableChannel(SelectorProvider selectorProvider) throws IOException
+        {
+            return selectorProvider.openDatagramChannel(StandardProtocolFamily.UNIX);
+        }
+
         @Override
         public EndPoint newEndPoint(Scheduler scheduler, ManagedSelector selector, SelectableChannel selectable, SelectionKey selectionKey)
         {
@@ -387,6 +429,12 @@ public interface Transport
             return wrapped.newSelectableChannel();
         }
 
+        @Override
+        public SelectableChannel newSelectableChannel(SelectorProvider selectorProvider) throws IOException
+        {
+            return wrapped.newSelectableChannel(selectorProvider);
+        }
+
         @Override
         public EndPoint newEndPoint(Scheduler scheduler, ManagedSelector selector, SelectableChannel selectable, SelectionKey selectionKey)
         {
@@ -43,6 +43,7 @@ import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.ExceptionUtil;
 import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.NanoTime;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 import org.eclipse.jetty.util.thread.AutoLock;
@@ -112,6 +113,8 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
     private final List<SslHandshakeListener> handshakeListeners = new ArrayList<>();
     private final AtomicLong _bytesIn = new AtomicLong();
     private final AtomicLong _bytesOut = new AtomicLong();
+    private final AtomicLong _smallRecordsOut = new AtomicLong();
+    private final AtomicLong _fullRecordsOut = new AtomicLong();
     private final ByteBufferPool _bufferPool;
     private final SSLEngine _sslEngine;
     private final SslContextFactory _sslContextFactory;
@@ -128,6 +131,11 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
     private FlushState _flushState = FlushState.IDLE;
     private FillState _fillState = FillState.IDLE;
     private boolean _underflown;
+    private int _smallRecordSize;
+    private int _smallRecordBytes = 16 * 1024;
+    private long _smallRecordIdleTimeout = 1000;
+    private long _smallRecordBytesLeft = _smallRecordBytes;
+    private long _lastWrapNanoTime = NanoTime.now();
     private final Runnable _runFillable = new RunnableTask("runFillable")
     {
         @Override
@@ -288,6 +296,85 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
         _requireCloseMessage = requireCloseMessage;
     }
 
+    /**
+     * @return the max number of application bytes of the TLS records written at the
+     * start of the connection or after it has been idle, or 0 if TLS records are always
+     * written at the max size
+     */
+    public int getSmallRecordSize()
+    {
+        return _smallRecordSize;
+    }
+
+    /**
+     * <p>Sets the max number of application bytes of the TLS records written at the
+     * start of the connection, and after it has been idle for {@link #getSmallRecordIdleTimeout()},
+     * until {@link #getSmallRecordBytes()} application bytes have been written.</p>
+     * <p>A peer can only decrypt a TLS record once it has received all of it, so small
+     * records reduce the time to the first bytes, while full-size records reduce
+     * the overhead once the connection has ramped up. The small records of a flush
+     * are written to the network together, as far as the encrypted buffer allows.</p>
+     *
+     * @param smallRecordSize the max number of application bytes of the small TLS records,
+     * or 0 to always write TLS records at the max size
+     */
+    public void setSmallRecordSize(int smallRecordSize)
+    {
+        _smallRecordSize = smallRecordSize;
+    }
+
+    /**
+     * @return the number of application bytes written in small TLS records
+     * before TLS records are written at the max size
+     */
+    public int getSmallRecordBytes()
+    {
+        return _smallRecordBytes;
+    }
+
+    /**
+     * @param smallRecordBytes the number of application bytes written in small TLS records
+     * before TLS records are written at the max size
+     */
+    public void setSmallRecordBytes(int smallRecordBytes)
+    {
+        _smallRecordBytes = smallRecordBytes;
+        _smallRecordBytesLeft = smallRecordBytes;
+    }
+
+    /**
+     * @return the idle time in milliseconds after which small TLS records are written again
+     */
+    public long getSmallRecordIdleTimeout()
+    {
+        return _smallRecordIdleTimeout;
+    }
+
+    /**
+     * @param smallRecordIdleTimeout the idle time in milliseconds after which small TLS records
+     * are written again, or 0 to only write small TLS records at the start of the connection
+     */
+    public void setSmallRecordIdleTimeout(long smallRecordIdleTimeout)
+    {
+        _smallRecordIdleTimeout = smallRecordIdleTimeout;
+    }
+
+    /**
+     * @return the number of TLS records with application bytes written with at most {@link #getSmallRecordSize()} bytes
+     */
+    public long getSmallRecordsOut()
+    {
+        return _smallRecordsOut.get();
+    }
+
+    /**
+     * @return the number of TLS records with application bytes written with up to the max size
+     */
+    public long getFullRecordsOut()
+    {
+        return _fullRecordsOut.get();
+    }
+
     private boolean isHandshakeInitial()
     {
         return _handshake.get() == HandshakeState.INITIAL;
@@ -331,11 +418,18 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
             _encryptedInput = _bufferPool.acquire(getPacketBufferSize(), _encryptedDirectBuffers);
     }
 
-    private void acquireEncryptedOutput()
+    /**
+     * @param smallRecords whether small TLS records are wrapped, in which case the buffer
+     * has room for several of them to be written to the network at once
+     */
+    private void acquireEncryptedOutput(boolean smallRecords)
     {
         // TODO: before the output was done with the BBP only.
         if (_encryptedOutput == null)
-            _encryptedOutput = _bufferPool.acquire(getPacketBufferSize(), _encryptedDirectBuffers);
+        {
+            int packetBufferSize = getPacketBufferSize();
+            _encryptedOutput = _bufferPool.acquire(smallRecords ? 2 * packetBufferSize : packetBufferSize, _encryptedDirectBuffers);
+        }
     }
 
     @Override
@@ -955,6 +1049,64 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
             }
         }
 
+        /**
+         * @return the max number of application bytes of the next TLS record, or 0 for the max size
+         */
+        private int getRecordSize()
+        {
+            if (_smallRecordSize <= 0)
+                return 0;
+            long idleTimeout = _smallRecordIdleTimeout;
+            if (idleTimeout > 0 && NanoTime.millisSince(_lastWrapNanoTime) >= idleTimeout)
+                _smallRecordBytesLeft = _smallRecordBytes;
+            return _smallRecordBytesLeft > 0 ? _smallRecordSize : 0;
+        }
+
+        private void onWrapped(int bytesConsumed, int recordSize)
+        {
+            if (bytesConsumed <= 0)
+                return;
+            _lastWrapNanoTime = NanoTime.now();
+            if (recordSize > 0)
+            {
+                _smallRecordBytesLeft -= bytesConsumed;
+                _smallRecordsOut.incrementAndGet();
+            }
+            else
+            {
+                _fullRecordsOut.incrementAndGet();
+            }
+        }
+
+        private ByteBuffer[] slice(ByteBuffer[] buffers, int length)
+        {
+            List<ByteBuffer> slices = new ArrayList<>(buffers.length);
+            for (ByteBuffer buffer : buffers)
+            {
+                if (length == 0)
+                    break;
+                int size = Math.min(buffer.remaining(), length);
+                if (size > 0)
+                {
+                    slices.add(buffer.slice(buffer.position(), size));
+                    length -= size;
+                }
+            }
+            return slices.toArray(ByteBuffer[]::new);
+        }
+
+        private void skip(ByteBuffer[] buffers, int length)
+        {
+            for (ByteBuffer buffer : buffers)
+            {
+                if (length == 0)
+                    break;
+                int size = Math.min(buffer.remaining(), length);
+                buffer.position(buffer.position() + size);
+                length -= size;
+            }
+        }
+
         private void handshakeSucceeded() throws SSLException
         {
             if (_handshake.compareAndSet(HandshakeState.HANDSHAKE, HandshakeState.SUCCEEDED))
@@ -1094,7 +1246,8 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
                             }
 
                             int packetBufferSize = getPacketBufferSize();
-                            acquireEncryptedOutput();
+                            int recordSize = status == HandshakeStatus.NOT_HANDSHAKING ? getRecordSize() : 0;
+                            acquireEncryptedOutput(recordSize > 0);
 
                             if (_handshake.compareAndSet(HandshakeState.INITIAL, HandshakeState.HANDSHAKE))
                             {
@@ -1110,12 +1263,22 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
                             SSLEngineResult wrapResult;
                             try
                             {
-                                wrapResult = wrap(_sslEngine, appOuts, encryptedOutputBuffer);
+                                if (recordSize > 0 && BufferUtil.remaining(appOuts) > recordSize)
+                                {
+                                    // Limit the application bytes to produce a small record.
+                                    wrapResult = wrap(_sslEngine, slice(appOuts, recordSize), encryptedOutputBuffer);
+                                    skip(appOuts, wrapResult.bytesConsumed());
+                                }
+                                else
+                                {
+                                    wrapResult = wrap(_sslEngine, appOuts, encryptedOutputBuffer);
+                                }
                             }
                             finally
                             {
                                 BufferUtil.flipToFlush(encryptedOutputBuffer, pos);
                             }
+                            onWrapped(wrapResult.bytesConsumed(), recordSize);
                             if (LOG.isDebugEnabled())
                                 LOG.debug("wrap {} {} ioDone={}/{}",
                                     StringUtil.replace(wrapResult.toString(), '\n', ' '),
@@ -1126,6 +1289,15 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
                             // Was all the data consumed?
                             isEmpty = BufferUtil.isEmpty(appOuts);
 
+                            // Keep wrapping small records while the encrypted output has room for
+                            // another one, as the SSLEngine needs a full packet buffer to wrap,
+                            // so that they are written to the network at once.
+                            if (recordSize > 0 && !isEmpty &&
+                                wrapResult.getStatus() == Status.OK && wrapResult.bytesConsumed() > 0 &&
+                                wrapResult.getHandshakeStatus() == HandshakeStatus.NOT_HANDSHAKING &&
+                                encryptedOutputBuffer.capacity() - encryptedOutputBuffer.remaining() >= getPacketBufferSize())
+                                continue;
+
                             // if we have net bytes, let's try to flush them
                             boolean flushed = true;
                             int remaining = encryptedOutputBuffer.remaining();
@@ -13,10 +13,13 @@
 
 package org.eclipse.jetty.io;
 
+import java.lang.ref.WeakReference;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jetty.io.internal.CompoundPool;
 import org.eclipse.jetty.util.ConcurrentPool;
@@ -33,6 +36,7 @@ import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.sameInstance;
 import static org.hamcrest.core.Is.is;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -484,4 +488,145 @@ public class ArrayByteBufferPoolTest
         assertTrue(retained0.release());
         assertThat(pool.getHeapByteBufferCount(), is(3L));
     }
+
+    @Test
+    public void testThreadLocalCache()
+    {
+        ArrayByteBufferPool pool = new ArrayByteBufferPool(0, 1024, 4096, Integer.MAX_VALUE);
+        pool.setStatisticsEnabled(true);
+        pool.setThreadLocalCacheSize(4);
+
+        // The first buffer is allocated, then cached by the thread on release.
+        RetainableByteBuffer buffer = pool.acquire(1024, true);
+        buffer.release();
+        assertThat(pool.getThreadLocalCacheMisses(), is(1L));
+        assertThat(pool.getDirectMemory(), is(1024L));
+        assertThat(pool.getDirectByteBufferCount(), is(0L));
+
+        // Subsequent acquires are served by the thread-local cache.
+        buffer = pool.acquire(1024, true);
+        buffer.release();
+        for (int i = 0; i < 9; ++i)
+        {
+            RetainableByteBuffer cached = pool.acquire(1024, true);
+            assertThat(cached, sameInstance(buffer));
+            assertThat(pool.getDirectMemory(), is(0L));
+            cached.release();
+        }
+        assertThat(pool.getThreadLocalCacheHits(), is(10L));
+        assertThat(pool.getThreadLocalCacheMisses(), is(1L));
+
+        // Overflowing the thread-local cache drains a batch to the bucket.
+        List<RetainableByteBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 6; ++i)
+        {
+            buffers.add(pool.acquire(1024, true));
+        }
+        buffers.forEach(RetainableByteBuffer::release);
+        assertThat(pool.getDirectByteBufferCount(), greaterThan(0L));
+        assertThat(pool.getDirectMemory(), is(6 * 1024L));
+
+        // Misses refill the thread-local cache from the bucket in batch.
+        pool.clear();
+        pool.setThreadLocalCacheSize(4);
+        for (int i = 0; i < 4; ++i)
+        {
+            buffers.set(i, pool.acquire(2048, false));
+        }
+        buffers.subList(0, 4).forEach(pool::removeAndRelease);
+        assertThat(pool.getHeapMemory(), is(0L));
+    }
+
+    @Test
+    public void testThreadLocalCacheRefill()
+    {
+        ArrayByteBufferPool pool = new ArrayByteBufferPool(0, 1024, 4096, Integer.MAX_VALUE);
+        pool.setStatisticsEnabled(true);
+
+        // Fill the bucket while the thread-local cache is disabled.
+        List<RetainableByteBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 4; ++i)
+        {
+            buffers.add(pool.acquire(1024, false));
+        }
+        buffers.forEach(RetainableByteBuffer::release);
+        assertThat(pool.getHeapByteBufferCount(), is(4L));
+
+        // A miss moves a batch of half the cache size from the bucket.
+        pool.setThreadLocalCacheSize(4);
+        RetainableByteBuffer buffer = pool.acquire(1024, false);
+        assertThat(pool.getThreadLocalCacheMisses(), is(1L));
+        assertThat(pool.getHeapByteBufferCount(), is(2L));
+        RetainableByteBuffer cached = pool.acquire(1024, false);
+        assertThat(pool.getThreadLocalCacheHits(), is(1L));
+
+        buffer.release();
+        cached.release();
+        assertThat(pool.getHeapMemory(), is(4 * 1024L));
+    }
+
+    @Test
+    public void testThreadLocalCacheMaxMemory() throws Exception
+    {
+        ArrayByteBufferPool pool = new ArrayByteBufferPool(0, 1024, 4096, Integer.MAX_VALUE, 4096, 4096);
+        pool.setThreadLocalCacheSize(16);
+
+        for (int round = 0; round < 100; ++round)
+        {
+            List<RetainableByteBuffer> buffers = new ArrayList<>();
+            for (int i = 0; i < 16; ++i)
+            {
+                buffers.add(pool.acquire(1024, true));
+            }
+            buffers.forEach(RetainableByteBuffer::release);
+        }
+
+        // The next access of the thread discards the cache if the memory is exceeded.
+        pool.acquire(1024, true).release();
+        assertThat(pool.getDirectMemory(), lessThan(16 * 1024L));
+
+        // Buffers cached by another thread are accounted.
+        pool.clear();
+        CountDownLatch cached = new CountDownLatch(1);
+        CountDownLatch exit = new CountDownLatch(1);
+        Thread thread = new Thread(() ->
+        {
+            pool.acquire(4096, false).release();
+            cached.countDown();
+            try
+            {
+                exit.await();
+            }
+            catch (InterruptedException ignored)
+            {
+                // Just exit.
+            }
+        });
+        thread.start();
+        assertTrue(cached.await(5, TimeUnit.SECONDS));
+        assertThat(pool.getHeapMemory(), is(4096L));
+
+        // The cache of an exited thread is forgotten.
+        exit.countDown();
+        thread.join();
+        assertThat(pool.getHeapMemory(), is(0L));
+    }
+
+    @Test
+    public void testThreadLocalCacheDoesNotRetainPool() throws Exception
+    {
+        ArrayByteBufferPool pool = new ArrayByteBufferPool();
+        pool.setThreadLocalCacheSize(4);
+        pool.acquire(1024, true).release();
+        WeakReference<ArrayByteBufferPool> reference = new WeakReference<>(pool);
+        pool = null;
+
+        // The cache of this thread must not keep the discarded pool and its buffers alive.
+        for (int i = 0; i < 50 && reference.get() != null; ++i)
+        {
+            System.gc();
+            Thread.sleep(100);
+        }
+        assertNull(reference.get());
+    }
 }
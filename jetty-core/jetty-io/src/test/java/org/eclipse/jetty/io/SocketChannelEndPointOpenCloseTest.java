@@ -14,10 +14,18 @@
 package org.eclipse.jetty.io;
 
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.FutureCallback;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -171,4 +179,30 @@ public class SocketChannelEndPointOpenCloseTest
         assertFalse(c.server.isOpen());
         assertTrue(c.server.isOutputShutdown());
     }
+
+    @Test
+    public void testTransferFromCallback() throws Exception
+    {
+        EndPointPair c = newConnection();
+        Path path = Files.createTempFile("transfer", ".txt");
+        try (FileChannel file = FileChannel.open(Files.writeString(path, "0123456789"), StandardOpenOption.READ))
+        {
+            // The second region is transferred from the completion of the first one.
+            FutureCallback complete = new FutureCallback();
+            c.server.transferFrom(Callback.from(() -> c.server.transferFrom(complete, file, 5, 5), complete::failed), file, 0, 3);
+            complete.get(5, TimeUnit.SECONDS);
+
+            ByteBuffer buffer = BufferUtil.allocate(4096);
+            while (buffer.remaining() < 8)
+            {
+                if (c.client.fill(buffer) < 0)
+                    break;
+            }
+            assertEquals("01256789", BufferUtil.toString(buffer, StandardCharsets.UTF_8));
+        }
+        finally
+        {
+            Files.delete(path);
+        }
+    }
 }
@@ -14,6 +14,7 @@
 package org.eclipse.jetty.io;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
@@ -25,6 +26,10 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -48,7 +53,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -90,6 +98,12 @@ public class SslConnectionTest
             SslConnection sslConnection = new SslConnection(_bufferPool, getExecutor(), _sslCtxFactory, endpoint, engine);
             sslConnection.setRenegotiationAllowed(_sslCtxFactory.isRenegotiationAllowed());
             sslConnection.setRenegotiationLimit(_sslCtxFactory.getRenegotiationLimit());
+            if (_sslCtxFactory instanceof SslContextFactory.Server server)
+            {
+                sslConnection.setSmallRecordSize(server.getSmallRecordSize());
+                sslConnection.setSmallRecordBytes(server.getSmallRecordBytes());
+                sslConnection.setSmallRecordIdleTimeout(server.getSmallRecordIdleTimeout());
+            }
             SslConnection.SslEndPoint sslEndPoint = sslConnection.getSslEndPoint();
             Connection appConnection = new TestConnection(sslEndPoint);
             sslEndPoint.setConnection(appConnection);
@@ -112,11 +126,47 @@ public class SslConnectionTest
 
     private static class TestEP extends SocketChannelEndPoint
     {
+        private final ByteArrayOutputStream _written = new ByteArrayOutputStream();
+        private final List<Integer> _writeEnds = new ArrayList<>();
+
         public TestEP(SelectableChannel channel, ManagedSelector selector, SelectionKey key, Scheduler scheduler)
         {
             super((SocketChannel)channel, selector, key, scheduler);
         }
 
+        /**
+         * @return the bytes written to the network
+         */
+        public synchronized byte[] getWritten()
+        {
+            return _written.toByteArray();
+        }
+
+        /**
+         * @return the index of the network write of the byte at the given offset
+         */
+        public synchronized int getWrite(int offset)
+        {
+            for (int i = 0; i < _writeEnds.size(); i++)
+            {
+                if (offset < _writeEnds.get(i))
+                    return i;
+            }
+            return -1;
+        }
+
+        private synchronized void onWritten(ByteBuffer[] buffers, int length)
+        {
+            for (ByteBuffer buffer : buffers)
+            {
+                byte[] bytes = new byte[Math.min(buffer.remaining(), length)];
+                buffer.get(bytes);
+                _written.writeBytes(bytes);
+                length -= bytes.length;
+            }
+            _writeEnds.add(_written.size());
+        }
+
         @Override
         protected void onIncompleteFlush()
         {
@@ -134,7 +184,17 @@ public class SslConnectionTest
                     return false;
                 }
             }
-            return super.flush(buffers);
+            ByteBuffer[] written = new ByteBuffer[buffers.length];
+            for (int i = 0; i < buffers.length; i++)
+            {
+                written[i] = buffers[i].duplicate();
+            }
+            long remaining = BufferUtil.remaining(buffers);
+            boolean flushed = super.flush(buffers);
+            int length = (int)(remaining - BufferUtil.remaining(buffers));
+            if (length > 0)
+                onWritten(written, length);
+            return flushed;
         }
     }
 
@@ -300,6 +360,73 @@ public class SslConnectionTest
         }
     }
 
+    @Test
+    public void testSmallRecords() throws Exception
+    {
+        // With TLS 1.2 and AES-GCM each record adds 24 bytes to its application bytes.
+        _sslCtxFactory.setIncludeProtocols("TLSv1.2");
+        _sslCtxFactory.setIncludeCipherSuites("TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256");
+        SslContextFactory.Server sslServerFactory = (SslContextFactory.Server)_sslCtxFactory;
+        sslServerFactory.setSmallRecordSize(100);
+        sslServerFactory.setSmallRecordBytes(1000);
+        sslServerFactory.setSmallRecordIdleTimeout(0);
+        startSSL();
+        try (Socket client = newClient())
+        {
+            client.setSoTimeout(TIMEOUT);
+            try (SocketChannel server = _connector.accept())
+            {
+                server.configureBlocking(false);
+                _manager.accept(server);
+
+                byte[] content = "x".repeat(4000).getBytes(StandardCharsets.UTF_8);
+                client.getOutputStream().write(content);
+                byte[] buffer = new byte[content.length];
+                int len = 0;
+                while (len < content.length)
+                {
+                    int read = client.getInputStream().read(buffer, len, buffer.length - len);
+                    assertThat(read, greaterThanOrEqualTo(0));
+                    len += read;
+                }
+                assertEquals(new String(content, StandardCharsets.UTF_8), new String(buffer, StandardCharsets.UTF_8));
+
+                // The first 1000 bytes are written in records of at most 100 bytes, the rest in full-size records.
+                SslConnection sslConnection = (SslConnection)_lastEndp.getConnection();
+                long smallRecords = sslConnection.getSmallRecordsOut();
+                long fullRecords = sslConnection.getFullRecordsOut();
+                assertThat(smallRecords, greaterThanOrEqualTo(10L));
+                assertThat(fullRecords, greaterThanOrEqualTo(1L));
+
+                // Check the application records written to the network.
+                TestEP endPoint = (TestEP)_lastEndp;
+                byte[] written = endPoint.getWritten();
+                List<Integer> recordBytes = new ArrayList<>();
+                Set<Integer> smallRecordWrites = new HashSet<>();
+                int offset = 0;
+                while (offset + 5 <= written.length)
+                {
+                    int length = ((written[offset + 3] & 0xFF) << 8) | (written[offset + 4] & 0xFF);
+                    if (written[offset] == 23)
+                    {
+                        if (recordBytes.size() < smallRecords)
+                            smallRecordWrites.add(endPoint.getWrite(offset));
+                        recordBytes.add(length - 24);
+                    }
+                    offset += 5 + length;
+                }
+                assertEquals(smallRecords + fullRecords, recordBytes.size());
+                assertEquals(content.length, recordBytes.stream().mapToInt(Integer::intValue).sum());
+                for (int i = 0; i < smallRecords; i++)
+                {
+                    assertThat(recordBytes.get(i), lessThanOrEqualTo(100));
+                }
+                // The small records are batched into fewer network writes.
+                assertThat(smallRecordWrites.size(), lessThan((int)smallRecords));
+            }
+        }
+    }
+
     @Test
     public void testRenegotiate() throws Exception
     {
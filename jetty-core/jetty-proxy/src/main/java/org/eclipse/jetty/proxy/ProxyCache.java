@@ -0,0 +1,922 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.proxy;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.client.Result;
+import org.eclipse.jetty.http.DateParser;
+import org.eclipse.jetty.http.EtagUtils;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpURI;
+import org.eclipse.jetty.http.QuotedCSV;
+import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.io.content.ByteBufferContentSource;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.NanoTime;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A shared HTTP cache, as defined by
+ * <a href="https://datatracker.ietf.org/doc/html/rfc9111">RFC 9111</a>,
+ * for {@link ProxyHandler.Reverse}.</p>
+ * <p>The cache stores the cacheable responses to {@code GET} requests, keyed by the
+ * proxy-to-server URI and the request header values nominated by the {@code Vary}
+ * response header; only the most recent variant of a resource is retained.</p>
+ * <p>Concurrent requests that miss the cache for the same key are collapsed into
+ * a single proxy-to-server request, and they are all served from its response.
+ * Responses that turn out not to be cacheable are only served to the request that
+ * triggered the proxy-to-server request, while the other requests are proxied
+ * normally; for a while after that, requests for the same key bypass the cache.</p>
+ * <p>Stale responses are revalidated with {@code If-None-Match} or
+ * {@code If-Modified-Since}, and may be served while being revalidated in the
+ * background ({@code stale-while-revalidate}) or when the server fails
+ * ({@code stale-if-error}), as defined by
+ * <a href="https://datatracker.ietf.org/doc/html/rfc5861">RFC 5861</a>.</p>
+ * <p>The total size of the stored content is bounded by {@link #getMaxMemorySize()}:
+ * the least recently used entries are evicted to make room for new ones.</p>
+ *
+ * @see ProxyHandler.Reverse#setProxyCache(ProxyCache)
+ */
+@ManagedObject("Shared cache for reverse proxies")
+public class ProxyCache
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ProxyCache.class);
+    private static final long MAX_HEURISTIC_LIFETIME = TimeUnit.DAYS.toMillis(1);
+    private static final int MAX_PASSES = 4096;
+
+    private final AutoLock lock = new AutoLock();
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75F, true);
+    private final Map<String, Fetch> fetches = new HashMap<>();
+    private final Map<String, Long> passes = new LinkedHashMap<>()
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest)
+        {
+            return size() > MAX_PASSES;
+        }
+    };
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private long memorySize;
+    private long maxMemorySize = 64 * 1024 * 1024;
+    private int maxEntrySize = 1024 * 1024;
+    private long passPeriod = 10;
+    private long staleWhileRevalidate;
+    private long staleIfError;
+
+    /**
+     * @return the max total size in bytes of the stored response content
+     */
+    @ManagedAttribute("The max total size in bytes of the stored response content")
+    public long getMaxMemorySize()
+    {
+        return maxMemorySize;
+    }
+
+    /**
+     * @param maxMemorySize the max total size in bytes of the stored response content
+     */
+    public void setMaxMemorySize(long maxMemorySize)
+    {
+        this.maxMemorySize = maxMemorySize;
+    }
+
+    /**
+     * @return the max size in bytes of the content of a single response that can be stored
+     */
+    @ManagedAttribute("The max size in bytes of the content of a single stored response")
+    public int getMaxEntrySize()
+    {
+        return maxEntrySize;
+    }
+
+    /**
+     * @param maxEntrySize the max size in bytes of the content of a single response that can be stored
+     */
+    public void setMaxEntrySize(int maxEntrySize)
+    {
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    /**
+     * @return the period in seconds during which requests bypass the cache
+     * after a response for the same key was found not cacheable
+     */
+    @ManagedAttribute("The period in seconds during which requests for a non cacheable resource bypass the cache")
+    public long getPassPeriod()
+    {
+        return passPeriod;
+    }
+
+    /**
+     * @param passPeriod the period in seconds during which requests bypass the cache
+     * after a response for the same key was found not cacheable
+     */
+    public void setPassPeriod(long passPeriod)
+    {
+        this.passPeriod = passPeriod;
+    }
+
+    /**
+     * @return the {@code stale-while-revalidate} period in seconds for
+     * responses that do not specify the directive
+     */
+    @ManagedAttribute("The default stale-while-revalidate period in seconds")
+    public long getStaleWhileRevalidate()
+    {
+        return staleWhileRevalidate;
+    }
+
+    /**
+     * @param staleWhileRevalidate the {@code stale-while-revalidate} period in
+     * seconds for responses that do not specify the directive
+     */
+    public void setStaleWhileRevalidate(long staleWhileRevalidate)
+    {
+        this.staleWhileRevalidate = staleWhileRevalidate;
+    }
+
+    /**
+     * @return the {@code stale-if-error} period in seconds for
+     * responses that do not specify the directive
+     */
+    @ManagedAttribute("The default stale-if-error period in seconds")
+    public long getStaleIfError()
+    {
+        return staleIfError;
+    }
+
+    /**
+     * @param staleIfError the {@code stale-if-error} period in seconds
+     * for responses that do not specify the directive
+     */
+    public void setStaleIfError(long staleIfError)
+    {
+        this.staleIfError = staleIfError;
+    }
+
+    @ManagedAttribute("The total size in bytes of the stored response content")
+    public long getMemorySize()
+    {
+        try (AutoLock ignored = lock.lock())
+        {
+            return memorySize;
+        }
+    }
+
+    @ManagedAttribute("The number of stored responses")
+    public int getEntryCount()
+    {
+        try (AutoLock ignored = lock.lock())
+        {
+            return entries.size();
+        }
+    }
+
+    @ManagedAttribute("The number of requests served with a fresh stored response")
+    public long getHitCount()
+    {
+        return hits.longValue();
+    }
+
+    @ManagedAttribute("The number of requests served with a stale stored response")
+    public long getStaleHitCount()
+    {
+        return staleHits.longValue();
+    }
+
+    @ManagedAttribute("The number of proxy-to-server requests sent by the cache")
+    public long getMissCount()
+    {
+        return misses.longValue();
+    }
+
+    @ManagedAttribute("The number of requests that waited for a proxy-to-server request already in progress")
+    public long getCollapsedCount()
+    {
+        return collapsed.longValue();
+    }
+
+    @ManagedAttribute("The number of stored responses refreshed by a 304 response")
+    public long getRevalidationCount()
+    {
+        return revalidations.longValue();
+    }
+
+    @ManagedAttribute("The number of stored responses evicted to honor the max memory size")
+    public long getEvictionCount()
+    {
+        return evictions.longValue();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        hits.reset();
+        staleHits.reset();
+        misses.reset();
+        collapsed.reset();
+        revalidations.reset();
+        evictions.reset();
+    }
+
+    /**
+     * <p>Removes all the stored responses.</p>
+     */
+    @ManagedOperation(value = "Removes all the stored responses", impact = "ACTION")
+    public void clear()
+    {
+        try (AutoLock ignored = lock.lock())
+        {
+            entries.clear();
+            passes.clear();
+            memorySize = 0;
+        }
+    }
+
+    /**
+     * <p>Handles the given client-to-proxy request, either serving it from the cache,
+     * or by sending a proxy-to-server request whose response will be stored.</p>
+     *
+     * @param proxyHandler the proxy handler
+     * @param clientToProxyRequest the client-to-proxy request
+     * @param proxyToClientResponse the proxy-to-client response
+     * @param proxyToClientCallback the proxy-to-client callback
+     * @return whether the request is handled by the cache, or it must be proxied normally
+     */
+    boolean handle(ProxyHandler.Reverse proxyHandler, Request clientToProxyRequest, Response proxyToClientResponse, Callback proxyToClientCallback)
+    {
+        HttpMethod method = HttpMethod.fromString(clientToProxyRequest.getMethod());
+        if (method == null || !method.isSafe())
+        {
+            // Conservatively invalidate before the unsafe request is proxied.
+            String key = proxyHandler.rewriteHttpURI(clientToProxyRequest).asString();
+            if (remove(key) && LOG.isDebugEnabled())
+                LOG.debug("{} invalidated {} by {}", ProxyHandler.requestId(clientToProxyRequest), key, clientToProxyRequest.getMethod());
+            return false;
+        }
+        if (method != HttpMethod.GET)
+            return false;
+
+        HttpFields requestHeaders = clientToProxyRequest.getHeaders();
+        if (requestHeaders.contains(HttpHeader.IF_MODIFIED_SINCE) ||
+            requestHeaders.contains(HttpHeader.IF_MATCH) ||
+            requestHeaders.contains(HttpHeader.IF_UNMODIFIED_SINCE) ||
+            requestHeaders.contains(HttpHeader.RANGE))
+            return false;
+        CacheControl cacheControl = CacheControl.from(requestHeaders);
+        if (cacheControl.noStore())
+            return false;
+
+        HttpURI httpURI = proxyHandler.rewriteHttpURI(clientToProxyRequest);
+        String key = httpURI.asString();
+        Waiter waiter = new Waiter(clientToProxyRequest, proxyToClientResponse, proxyToClientCallback);
+        long now = NanoTime.now();
+        Entry entry;
+        Fetch fetch = null;
+        boolean stale = false;
+        try (AutoLock ignored = lock.lock())
+        {
+            Long passUntil = passes.get(key);
+            if (passUntil != null)
+            {
+                if (NanoTime.isBefore(now, passUntil))
+                    return false;
+                passes.remove(key);
+            }
+
+            entry = entries.get(key);
+            if (entry != null && !entry.matches(requestHeaders))
+                entry = null;
+            boolean revalidate = cacheControl.noCache();
+            if (entry != null && !revalidate && entry.isFresh(now, cacheControl.maxAge()))
+            {
+                hits.increment();
+            }
+            else if (entry != null && !revalidate && entry.isStaleWhileRevalidate(now))
+            {
+                stale = true;
+                staleHits.increment();
+                if (!fetches.containsKey(key))
+                {
+                    fetch = new Fetch(key, entry);
+                    fetches.put(key, fetch);
+                }
+            }
+            else
+            {
+                Fetch existing = fetches.get(key);
+                if (existing == null)
+                {
+                    fetch = new Fetch(key, entry);
+                    fetch.leader = clientToProxyRequest;
+                    fetches.put(key, fetch);
+                }
+                else
+                {
+                    collapsed.increment();
+                }
+                Fetch target = existing == null ? fetch : existing;
+                target.waiters.add(waiter);
+                entry = null;
+            }
+        }
+
+        if (fetch != null)
+        {
+            // Build the proxy-to-server request before serving a stale
+            // response, since the client-to-proxy request is then recycled.
+            misses.increment();
+            org.eclipse.jetty.client.Request proxyToServerRequest = newProxyToServerRequest(proxyHandler, clientToProxyRequest, httpURI, fetch);
+            if (stale)
+                serve(proxyHandler, waiter, entry, now);
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} P2S cache fetch {} revalidating {}", ProxyHandler.requestId(clientToProxyRequest), key, fetch.stale);
+            proxyToServerRequest.send(new FetchListener(proxyHandler, fetch));
+        }
+        else if (entry != null)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} P2C cache hit {}", ProxyHandler.requestId(clientToProxyRequest), entry);
+            serve(proxyHandler, waiter, entry, now);
+        }
+        else if (LOG.isDebugEnabled())
+        {
+            LOG.debug("{} P2C cache collapsed {}", ProxyHandler.requestId(clientToProxyRequest), key);
+        }
+        return true;
+    }
+
+    private org.eclipse.jetty.client.Request newProxyToServerRequest(ProxyHandler proxyHandler, Request clientToProxyRequest, HttpURI httpURI, Fetch fetch)
+    {
+        org.eclipse.jetty.client.Request proxyToServerRequest = proxyHandler.newProxyToServerRequest(clientToProxyRequest, httpURI);
+        proxyHandler.copyRequestHeaders(clientToProxyRequest, proxyToServerRequest);
+        proxyHandler.addProxyHeaders(clientToProxyRequest, proxyToServerRequest);
+        // Remember the request headers for the Vary and Authorization checks.
+        fetch.requestHeaders = HttpFields.build(clientToProxyRequest.getHeaders()).asImmutable();
+        Entry stale = fetch.stale;
+        proxyToServerRequest.headers(headers ->
+        {
+            // The proxy-to-server request is shared, so the conditions must be those of the cache.
+            headers.remove(HttpHeader.IF_NONE_MATCH);
+            if (stale != null && stale.etag() != null)
+                headers.put(HttpHeader.IF_NONE_MATCH, stale.etag());
+            else if (stale != null && stale.lastModified() != null)
+                headers.put(HttpHeader.IF_MODIFIED_SINCE, stale.lastModified());
+        });
+        return proxyToServerRequest;
+    }
+
+    private void serve(ProxyHandler proxyHandler, Waiter waiter, Entry entry, long now)
+    {
+        Response proxyToClientResponse = waiter.proxyToClientResponse();
+        proxyToClientResponse.setStatus(entry.status());
+        HttpFields.Mutable proxyToClientHeaders = proxyToClientResponse.getHeaders();
+        for (HttpField field : entry.headers())
+        {
+            HttpField newField = proxyHandler.filterServerToProxyResponseField(field);
+            if (newField != null)
+                proxyToClientHeaders.add(newField);
+        }
+        proxyToClientHeaders.put(HttpHeader.AGE, TimeUnit.MILLISECONDS.toSeconds(entry.age(now)));
+
+        String ifNoneMatch = waiter.clientToProxyRequest().getHeaders().get(HttpHeader.IF_NONE_MATCH);
+        if (ifNoneMatch != null && entry.etag() != null && entry.status() == HttpStatus.OK_200 && matches(ifNoneMatch, entry.etag()))
+        {
+            proxyToClientResponse.setStatus(HttpStatus.NOT_MODIFIED_304);
+            proxyToClientHeaders.remove(HttpHeader.CONTENT_LENGTH);
+            proxyToClientResponse.write(true, BufferUtil.EMPTY_BUFFER, waiter.proxyToClientCallback());
+            return;
+        }
+
+        // Serve the content via a Content.Source, as it is done for proxied request content.
+        List<ByteBuffer> content = new ArrayList<>(entry.content().size());
+        for (ByteBuffer buffer : entry.content())
+        {
+            content.add(buffer.asReadOnlyBuffer());
+        }
+        Content.copy(new ByteBufferContentSource(content), proxyToClientResponse, waiter.proxyToClientCallback());
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag)
+    {
+        String opaqueTag = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (String value : new QuotedCSV(true, ifNoneMatch).getValues())
+        {
+            if ("*".equals(value))
+                return true;
+            // If-None-Match uses the weak comparison.
+            String candidate = value.startsWith("W/") ? value.substring(2) : value;
+            if (EtagUtils.matches(opaqueTag, candidate))
+                return true;
+        }
+        return false;
+    }
+
+    private void complete(ProxyHandler.Reverse proxyHandler, Fetch fetch, Result result)
+    {
+        List<Waiter> waiters;
+        try (AutoLock ignored = lock.lock())
+        {
+            fetches.remove(fetch.key, fetch);
+            waiters = List.copyOf(fetch.waiters);
+        }
+
+        long now = NanoTime.now();
+        Entry stale = fetch.stale;
+        org.eclipse.jetty.client.Response serverToProxyResponse = result.getResponse();
+        if (result.isFailed())
+        {
+            if (fetch.tooLarge)
+            {
+                pass(fetch.key, now);
+                waiters.forEach(waiter -> proxyHandler.handleUncached(waiter.clientToProxyRequest(), waiter.proxyToClientResponse(), waiter.proxyToClientCallback()));
+                return;
+            }
+            if (stale != null && stale.isStaleIfError(now))
+            {
+                waiters.forEach(waiter -> serveStale(proxyHandler, waiter, stale, now));
+                return;
+            }
+            int status = result.getFailure() instanceof TimeoutException ? HttpStatus.GATEWAY_TIMEOUT_504 : HttpStatus.BAD_GATEWAY_502;
+            waiters.forEach(waiter -> Response.writeError(waiter.clientToProxyRequest(), waiter.proxyToClientResponse(), waiter.proxyToClientCallback(), status));
+            return;
+        }
+
+        int status = serverToProxyResponse.getStatus();
+        if (status == HttpStatus.NOT_MODIFIED_304 && stale != null)
+        {
+            Entry fresh = refresh(stale, serverToProxyResponse.getHeaders());
+            revalidations.increment();
+            replace(stale, fresh);
+            serveAll(proxyHandler, fetch, waiters, fresh, now);
+            return;
+        }
+
+        if (isServerError(status) && stale != null && stale.isStaleIfError(now))
+        {
+            waiters.forEach(waiter -> serveStale(proxyHandler, waiter, stale, now));
+            return;
+        }
+
+        Entry entry = newEntry(fetch, serverToProxyResponse);
+        if (entry.lifetime() >= 0)
+        {
+            store(entry);
+            serveAll(proxyHandler, fetch, waiters, entry, now);
+            return;
+        }
+
+        // Not cacheable: only the request that triggered
+        // the fetch can be served, the others are proxied.
+        if (stale != null)
+            remove(fetch.key);
+        pass(fetch.key, now);
+        for (int i = 0; i < waiters.size(); ++i)
+        {
+            Waiter waiter = waiters.get(i);
+            if (i == 0 && waiter.clientToProxyRequest() == fetch.leader)
+                serve(proxyHandler, waiter, entry, now);
+            else
+                proxyHandler.handleUncached(waiter.clientToProxyRequest(), waiter.proxyToClientResponse(), waiter.proxyToClientCallback());
+        }
+    }
+
+    private void serveAll(ProxyHandler.Reverse proxyHandler, Fetch fetch, List<Waiter> waiters, Entry entry, long now)
+    {
+        for (Waiter waiter : waiters)
+        {
+            if (entry.matches(waiter.clientToProxyRequest().getHeaders()))
+                serve(proxyHandler, waiter, entry, now);
+            else
+                proxyHandler.handleUncached(waiter.clientToProxyRequest(), waiter.proxyToClientResponse(), waiter.proxyToClientCallback());
+        }
+    }
+
+    private void serveStale(ProxyHandler proxyHandler, Waiter waiter, Entry stale, long now)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("{} P2C cache stale-if-error {}", ProxyHandler.requestId(waiter.clientToProxyRequest()), stale);
+        staleHits.increment();
+        serve(proxyHandler, waiter, stale, now);
+    }
+
+    private static boolean isServerError(int status)
+    {
+        return status == HttpStatus.INTERNAL_SERVER_ERROR_500 ||
+            status == HttpStatus.BAD_GATEWAY_502 ||
+            status == HttpStatus.SERVICE_UNAVAILABLE_503 ||
+            status == HttpStatus.GATEWAY_TIMEOUT_504;
+    }
+
+    private static boolean isStorable(int status)
+    {
+        return switch (status)
+        {
+            case HttpStatus.OK_200, HttpStatus.NON_AUTHORITATIVE_INFORMATION_203, HttpStatus.NO_CONTENT_204,
+                HttpStatus.MULTIPLE_CHOICES_300, HttpStatus.MOVED_PERMANENTLY_301, HttpStatus.PERMANENT_REDIRECT_308,
+                HttpStatus.NOT_FOUND_404, HttpStatus.METHOD_NOT_ALLOWED_405, HttpStatus.GONE_410,
+                HttpStatus.URI_TOO_LONG_414, HttpStatus.NOT_IMPLEMENTED_501 -> true;
+            default -> false;
+        };
+    }
+
+    private void pass(String key, long now)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Bypassing cache for {}", key);
+        try (AutoLock ignored = lock.lock())
+        {
+            passes.put(key, now + TimeUnit.SECONDS.toNanos(getPassPeriod()));
+        }
+    }
+
+    private void store(Entry entry)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Storing {}", entry);
+        try (AutoLock ignored = lock.lock())
+        {
+            Entry old = entries.put(entry.key(), entry);
+            if (old != null)
+                memorySize -= old.size();
+            memorySize += entry.size();
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (memorySize > maxMemorySize && iterator.hasNext())
+            {
+                Entry eldest = iterator.next();
+                iterator.remove();
+                memorySize -= eldest.size();
+                evictions.increment();
+            }
+        }
+    }
+
+    private void replace(Entry oldEntry, Entry newEntry)
+    {
+        try (AutoLock ignored = lock.lock())
+        {
+            // The content is shared, so the memory size does not change.
+            entries.replace(oldEntry.key(), oldEntry, newEntry);
+        }
+    }
+
+    private boolean remove(String key)
+    {
+        try (AutoLock ignored = lock.lock())
+        {
+            Entry entry = entries.remove(key);
+            if (entry == null)
+                return false;
+            memorySize -= entry.size();
+            return true;
+        }
+    }
+
+    /**
+     * <p>Creates an entry for the given response; the entry has a negative
+     * lifetime if the response cannot be stored by a shared cache.</p>
+     */
+    private Entry newEntry(Fetch fetch, org.eclipse.jetty.client.Response serverToProxyResponse)
+    {
+        HttpFields responseHeaders = serverToProxyResponse.getHeaders();
+        CacheControl cacheControl = CacheControl.from(responseHeaders);
+        boolean storable = isStorable(serverToProxyResponse.getStatus()) &&
+            !cacheControl.noStore() &&
+            !cacheControl.isPrivate() &&
+            !responseHeaders.contains(HttpHeader.SET_COOKIE);
+        // Responses to authorized requests can only be stored if explicitly allowed.
+        if (fetch.requestHeaders.contains(HttpHeader.AUTHORIZATION) &&
+            !cacheControl.isPublic() && cacheControl.sMaxAge() < 0 && !cacheControl.mustRevalidate())
+            storable = false;
+
+        List<HttpField> varyFields = new ArrayList<>();
+        for (String name : responseHeaders.getCSV(HttpHeader.VARY, false))
+        {
+            if ("*".equals(name))
+                storable = false;
+            varyFields.add(new HttpField(name, String.join(",", fetch.requestHeaders.getValuesList(name))));
+        }
+
+        HttpFields.Mutable headers = HttpFields.build();
+        for (HttpField field : responseHeaders)
+        {
+            HttpHeader header = field.getHeader();
+            if (ProxyHandler.HOP_HEADERS.contains(header) || header == HttpHeader.AGE)
+                continue;
+            headers.add(field);
+        }
+        if (serverToProxyResponse.getStatus() != HttpStatus.NO_CONTENT_204)
+            headers.put(HttpHeader.CONTENT_LENGTH, fetch.size);
+        Entry entry = newEntry(fetch.key, serverToProxyResponse.getStatus(), headers.asImmutable(), varyFields, List.copyOf(fetch.content), fetch.size, responseHeaders);
+        if (storable)
+            return entry;
+        return entry.withLifetime(-1);
+    }
+
+    private Entry newEntry(String key, int status, HttpFields headers, List<HttpField> varyFields, List<ByteBuffer> content, long size, HttpFields received)
+    {
+        long now = System.currentTimeMillis();
+        String dateValue = received.get(HttpHeader.DATE);
+        long date = dateValue == null ? -1 : DateParser.parseDate(dateValue);
+        if (date < 0)
+            date = now;
+        CacheControl cacheControl = CacheControl.from(headers);
+        long lifetime = freshnessLifetime(headers, cacheControl, date);
+        String etag = headers.get(HttpHeader.ETAG);
+        String lastModified = headers.get(HttpHeader.LAST_MODIFIED);
+        if (lifetime < 0 && (etag != null || lastModified != null))
+            lifetime = 0;
+        long ageValue = 0;
+        try
+        {
+            ageValue = TimeUnit.SECONDS.toMillis(Math.max(0, received.getLongField(HttpHeader.AGE)));
+        }
+        catch (NumberFormatException x)
+        {
+            // Ignore an invalid Age value.
+        }
+        long initialAge = Math.max(Math.max(0, now - date), ageValue);
+        boolean mustRevalidate = cacheControl.noCache() || cacheControl.mustRevalidate();
+        long staleWhileRevalidate = mustRevalidate ? 0 : TimeUnit.SECONDS.toMillis(cacheControl.staleWhileRevalidate() >= 0 ? cacheControl.staleWhileRevalidate() : getStaleWhileRevalidate());
+        long staleIfError = mustRevalidate ? 0 : TimeUnit.SECONDS.toMillis(cacheControl.staleIfError() >= 0 ? cacheControl.staleIfError() : getStaleIfError());
+        return new Entry(key, status, headers, List.copyOf(varyFields), content, size, NanoTime.now(), initialAge,
+            lifetime, staleWhileRevalidate, staleIfError, etag, lastModified);
+    }
+
+    private Entry refresh(Entry entry, HttpFields notModifiedHeaders)
+    {
+        HttpFields.Mutable headers = HttpFields.build(entry.headers());
+        List<HttpField> updates = new ArrayList<>();
+        for (HttpField field : notModifiedHeaders)
+        {
+            HttpHeader header = field.getHeader();
+            if (ProxyHandler.HOP_HEADERS.contains(header) || header == HttpHeader.CONTENT_LENGTH || header == HttpHeader.AGE)
+                continue;
+            headers.remove(field.getName());
+            updates.add(field);
+        }
+        updates.forEach(headers::add);
+        Entry fresh = newEntry(entry.key(), entry.status(), headers.asImmutable(), entry.varyFields(), entry.content(), entry.size(), notModifiedHeaders);
+        return fresh.lifetime() < 0 ? fresh.withLifetime(0) : fresh;
+    }
+
+    /**
+     * @return the freshness lifetime in milliseconds of a response with the given headers,
+     * or a negative value if the response has no explicit or heuristic freshness lifetime
+     */
+    private static long freshnessLifetime(HttpFields headers, CacheControl cacheControl, long date)
+    {
+        if (cacheControl.noCache())
+            return 0;
+        if (cacheControl.sMaxAge() >= 0)
+            return TimeUnit.SECONDS.toMillis(cacheControl.sMaxAge());
+        if (cacheControl.maxAge() >= 0)
+            return TimeUnit.SECONDS.toMillis(cacheControl.maxAge());
+        String expires = headers.get(HttpHeader.EXPIRES);
+        if (expires != null)
+        {
+            // An invalid Expires value means already expired.
+            long expiresDate = DateParser.parseDate(expires);
+            return Math.max(0, expiresDate - date);
+        }
+        String lastModified = headers.get(HttpHeader.LAST_MODIFIED);
+        if (lastModified != null)
+        {
+            long lastModifiedDate = DateParser.parseDate(lastModified);
+            if (lastModifiedDate > 0 && lastModifiedDate < date)
+                return Math.min(MAX_HEURISTIC_LIFETIME, (date - lastModifiedDate) / 10);
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "%s@%x[entries=%d,size=%d/%d]".formatted(getClass().getSimpleName(), hashCode(), getEntryCount(), getMemorySize(), getMaxMemorySize());
+    }
+
+    private record Waiter(Request clientToProxyRequest, Response proxyToClientResponse, Callback proxyToClientCallback)
+    {
+    }
+
+    private record Entry(String key, int status, HttpFields headers, List<HttpField> varyFields, List<ByteBuffer> content, long size,
+                         long responseNanoTime, long initialAge, long lifetime, long staleWhileRevalidate, long staleIfError,
+                         String etag, String lastModified)
+    {
+        private Entry withLifetime(long lifetime)
+        {
+            return new Entry(key, status, headers, varyFields, content, size, responseNanoTime, initialAge,
+                lifetime, staleWhileRevalidate, staleIfError, etag, lastModified);
+        }
+
+        private boolean matches(HttpFields requestHeaders)
+        {
+            for (HttpField field : varyFields)
+            {
+                String value = String.join(",", requestHeaders.getValuesList(field.getName()));
+                if (!field.getValue().equals(value))
+                    return false;
+            }
+            return true;
+        }
+
+        private long age(long now)
+        {
+            return initialAge + NanoTime.millisElapsed(responseNanoTime, now);
+        }
+
+        private boolean isFresh(long now, long maxAge)
+        {
+            long age = age(now);
+            if (age >= lifetime)
+                return false;
+            return maxAge < 0 || age <= TimeUnit.SECONDS.toMillis(maxAge);
+        }
+
+        private boolean isStaleWhileRevalidate(long now)
+        {
+            return age(now) < lifetime + staleWhileRevalidate;
+        }
+
+        private boolean isStaleIfError(long now)
+        {
+            return age(now) < lifetime + staleIfError;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "%s@%x[%s,status=%d,length=%d,lifetime=%d]".formatted(getClass().getSimpleName(), hashCode(), key, status, size, lifetime);
+        }
+    }
+
+    private record CacheControl(boolean noStore, boolean noCache, boolean isPrivate, boolean isPublic, boolean mustRevalidate,
+                                long maxAge, long sMaxAge, long staleWhileRevalidate, long staleIfError)
+    {
+        private static final CacheControl NONE = new CacheControl(false, false, false, false, false, -1, -1, -1, -1);
+
+        private static CacheControl from(HttpFields headers)
+        {
+            List<String> directives = headers.getCSV(HttpHeader.CACHE_CONTROL, false);
+            if (directives.isEmpty())
+                return NONE;
+            boolean noStore = false;
+            boolean noCache = false;
+            boolean isPrivate = false;
+            boolean isPublic = false;
+            boolean mustRevalidate = false;
+            long maxAge = -1;
+            long sMaxAge = -1;
+            long staleWhileRevalidate = -1;
+            long staleIfError = -1;
+            for (String directive : directives)
+            {
+                int equals = directive.indexOf('=');
+                String name = (equals < 0 ? directive : directive.substring(0, equals)).trim().toLowerCase(Locale.ENGLISH);
+                switch (name)
+                {
+                    case "no-store" -> noStore = true;
+                    case "no-cache" -> noCache = true;
+                    case "private" -> isPrivate = true;
+                    case "public" -> isPublic = true;
+                    case "must-revalidate", "proxy-revalidate" -> mustRevalidate = true;
+                    case "max-age" -> maxAge = seconds(directive, equals);
+                    case "s-maxage" -> sMaxAge = seconds(directive, equals);
+                    case "stale-while-revalidate" -> staleWhileRevalidate = seconds(directive, equals);
+                    case "stale-if-error" -> staleIfError = seconds(directive, equals);
+                    default ->
+                    {
+                    }
+                }
+            }
+            return new CacheControl(noStore, noCache, isPrivate, isPublic, mustRevalidate, maxAge, sMaxAge, staleWhileRevalidate, staleIfError);
+        }
+
+        private static long seconds(String directive, int equals)
+        {
+            if (equals < 0)
+                return 0;
+            try
+            {
+                String value = directive.substring(equals + 1).trim();
+                if (value.length() > 1 && value.charAt(0) == '"')
+                    value = value.substring(1, value.length() - 1);
+                return Math.max(0, Long.parseLong(value));
+            }
+            catch (NumberFormatException x)
+            {
+                // An invalid value means already expired.
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * <p>A proxy-to-server request sent by the cache, and the
+     * client-to-proxy requests waiting for its response.</p>
+     */
+    private static class Fetch
+    {
+        private final String key;
+        private final Entry stale;
+        private final List<Waiter> waiters = new ArrayList<>();
+        private final List<ByteBuffer> content = new ArrayList<>();
+        private Request leader;
+        private HttpFields requestHeaders;
+        private long size;
+        private boolean tooLarge;
+
+        private Fetch(String key, Entry stale)
+        {
+            this.key = key;
+            this.stale = stale;
+        }
+    }
+
+    private class FetchListener implements org.eclipse.jetty.client.Response.Listener
+    {
+        private final ProxyHandler.Reverse proxyHandler;
+        private final Fetch fetch;
+
+        private FetchListener(ProxyHandler.Reverse proxyHandler, Fetch fetch)
+        {
+            this.proxyHandler = proxyHandler;
+            this.fetch = fetch;
+        }
+
+        @Override
+        public void onHeaders(org.eclipse.jetty.client.Response serverToProxyResponse)
+        {
+            long length = serverToProxyResponse.getHeaders().getLongField(HttpHeader.CONTENT_LENGTH);
+            if (length > getMaxEntrySize())
+                abort(serverToProxyResponse);
+        }
+
+        @Override
+        public void onContent(org.eclipse.jetty.client.Response serverToProxyResponse, ByteBuffer content)
+        {
+            if (fetch.tooLarge)
+                return;
+            int length = content.remaining();
+            if (fetch.size + length > getMaxEntrySize())
+            {
+                abort(serverToProxyResponse);
+                return;
+            }
+            fetch.size += length;
+            fetch.content.add(BufferUtil.copy(content));
+        }
+
+        private void abort(org.eclipse.jetty.client.Response serverToProxyResponse)
+        {
+            fetch.tooLarge = true;
+            fetch.content.clear();
+            serverToProxyResponse.abort(new IllegalStateException("Response content larger than " + getMaxEntrySize()));
+        }
+
+        @Override
+        public void onComplete(Result result)
+        {
+            complete(proxyHandler, fetch, result);
+        }
+    }
+}
@@ -75,7 +75,7 @@ public abstract class ProxyHandler extends Handler.Abstract
     private static final String CLIENT_TO_PROXY_REQUEST_ATTRIBUTE = ProxyHandler.class.getName() + ".clientToProxyRequest";
     private static final String PROXY_TO_CLIENT_RESPONSE_ATTRIBUTE = ProxyHandler.class.getName() + ".proxyToClientResponse";
     private static final String PROXY_TO_SERVER_CONTINUE_ATTRIBUTE = ProxyHandler.class.getName() + ".proxyToServerContinue";
-    private static final EnumSet<HttpHeader> HOP_HEADERS = EnumSet.of(
+    static final EnumSet<HttpHeader> HOP_HEADERS = EnumSet.of(
         HttpHeader.CONNECTION,
         HttpHeader.KEEP_ALIVE,
         HttpHeader.PROXY_AUTHORIZATION,
@@ -519,6 +519,7 @@ public abstract class ProxyHandler extends Handler.Abstract
     public static class Reverse extends ProxyHandler
     {
         private final Function<Request, HttpURI> httpURIRewriter;
+        private ProxyCache proxyCache;
 
         /**
          * <p>Convenience constructor that provides a rewrite function
@@ -561,6 +562,41 @@ public abstract class ProxyHandler extends Handler.Abstract
             return httpURIRewriter;
         }
 
+        /**
+         * @return the shared cache for proxied responses, or null if responses are not cached
+         */
+        public ProxyCache getProxyCache()
+        {
+            return proxyCache;
+        }
+
+        /**
+         * <p>Sets the shared cache for proxied responses.</p>
+         * <p>By default, responses are not cached and every
+         * request is proxied to the server.</p>
+         *
+         * @param proxyCache the shared cache for proxied responses, or null to disable caching
+         */
+        public void setProxyCache(ProxyCache proxyCache)
+        {
+            updateBean(this.proxyCache, proxyCache);
+            this.proxyCache = proxyCache;
+        }
+
+        @Override
+        public boolean handle(Request clientToProxyRequest, Response proxyToClientResponse, Callback proxyToClientCallback)
+        {
+            ProxyCache proxyCache = getProxyCache();
+            if (proxyCache != null && proxyCache.handle(this, clientToProxyRequest, proxyToClientResponse, proxyToClientCallback))
+                return true;
+            return super.handle(clientToProxyRequest, proxyToClientResponse, proxyToClientCallback);
+        }
+
+        void handleUncached(Request clientToProxyRequest, Response proxyToClientResponse, Callback proxyToClientCallback)
+        {
+            super.handle(clientToProxyRequest, proxyToClientResponse, proxyToClientCallback);
+        }
+
         /**
          * {@inheritDoc}
          * <p>Applications that use this class typically provide a rewrite
@@ -0,0 +1,226 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.proxy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.eclipse.jetty.client.CompletableResponseListener;
+import org.eclipse.jetty.client.ContentResponse;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpURI;
+import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.Callback;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReverseProxyCacheTest extends AbstractProxyTest
+{
+    private final ProxyCache proxyCache = new ProxyCache();
+    private final AtomicInteger serverRequests = new AtomicInteger();
+
+    private void start(Handler handler) throws Exception
+    {
+        startServer(handler);
+        ProxyHandler.Reverse proxyHandler = new ProxyHandler.Reverse(clientToProxyRequest ->
+            HttpURI.build(clientToProxyRequest.getHttpURI()).port(serverConnector.getLocalPort()));
+        proxyHandler.setProxyCache(proxyCache);
+        startProxy(proxyHandler);
+        startClient();
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean())
+        {
+            assertTrue(System.nanoTime() - deadline < 0);
+            Thread.sleep(10);
+        }
+    }
+
+    private ContentResponse send(String path) throws Exception
+    {
+        return client.newRequest("localhost", proxyConnector.getLocalPort())
+            .path(path)
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+    }
+
+    @Test
+    public void testFreshResponseServedFromCache() throws Exception
+    {
+        start(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                serverRequests.incrementAndGet();
+                response.getHeaders().put(HttpHeader.CACHE_CONTROL, "max-age=60");
+                response.getHeaders().put(HttpHeader.ETAG, "\"v1\"");
+                Content.Sink.write(response, true, "content", callback);
+                return true;
+            }
+        });
+
+        assertEquals("content", send("/fresh").getContentAsString());
+        ContentResponse response = send("/fresh");
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals("content", response.getContentAsString());
+        assertNotNull(response.getHeaders().get(HttpHeader.AGE));
+
+        ContentResponse notModified = client.newRequest("localhost", proxyConnector.getLocalPort())
+            .path("/fresh")
+            .headers(headers -> headers.put(HttpHeader.IF_NONE_MATCH, "\"v1\""))
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+        assertEquals(HttpStatus.NOT_MODIFIED_304, notModified.getStatus());
+
+        assertEquals(1, serverRequests.get());
+        assertEquals(2, proxyCache.getHitCount());
+    }
+
+    @Test
+    public void testConcurrentMissesCollapsed() throws Exception
+    {
+        CountDownLatch serverLatch = new CountDownLatch(1);
+        start(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback) throws Exception
+            {
+                serverRequests.incrementAndGet();
+                assertTrue(serverLatch.await(5, TimeUnit.SECONDS));
+                response.getHeaders().put(HttpHeader.CACHE_CONTROL, "max-age=60");
+                Content.Sink.write(response, true, "content", callback);
+                return true;
+            }
+        });
+
+        int count = 8;
+        List<CompletableFuture<ContentResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < count; ++i)
+        {
+            futures.add(new CompletableResponseListener(client.newRequest("localhost", proxyConnector.getLocalPort())
+                .path("/collapsed")
+                .timeout(5, TimeUnit.SECONDS)).send());
+        }
+        awaitUntil(() -> proxyCache.getCollapsedCount() == count - 1);
+        serverLatch.countDown();
+
+        for (CompletableFuture<ContentResponse> future : futures)
+        {
+            ContentResponse response = future.get(5, TimeUnit.SECONDS);
+            assertEquals(HttpStatus.OK_200, response.getStatus());
+            assertEquals("content", response.getContentAsString());
+        }
+        assertEquals(1, serverRequests.get());
+    }
+
+    @Test
+    public void testStaleWhileRevalidate() throws Exception
+    {
+        start(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                serverRequests.incrementAndGet();
+                response.getHeaders().put(HttpHeader.CACHE_CONTROL, "max-age=0, stale-while-revalidate=60");
+                response.getHeaders().put(HttpHeader.ETAG, "\"v1\"");
+                if ("\"v1\"".equals(request.getHeaders().get(HttpHeader.IF_NONE_MATCH)))
+                {
+                    response.setStatus(HttpStatus.NOT_MODIFIED_304);
+                    callback.succeeded();
+                    return true;
+                }
+                Content.Sink.write(response, true, "content", callback);
+                return true;
+            }
+        });
+
+        assertEquals("content", send("/swr").getContentAsString());
+        // Served stale while the revalidation happens in the background.
+        ContentResponse response = send("/swr");
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals("content", response.getContentAsString());
+        assertEquals(1, proxyCache.getStaleHitCount());
+
+        awaitUntil(() -> proxyCache.getRevalidationCount() == 1);
+        assertEquals(2, serverRequests.get());
+        assertEquals(1, proxyCache.getEntryCount());
+    }
+
+    @Test
+    public void testStaleIfError() throws Exception
+    {
+        start(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                if (serverRequests.incrementAndGet() > 1)
+                {
+                    Response.writeError(request, response, callback, HttpStatus.SERVICE_UNAVAILABLE_503);
+                    return true;
+                }
+                response.getHeaders().put(HttpHeader.CACHE_CONTROL, "max-age=0, stale-if-error=60");
+                Content.Sink.write(response, true, "content", callback);
+                return true;
+            }
+        });
+
+        assertEquals("content", send("/sie").getContentAsString());
+        ContentResponse response = send("/sie");
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals("content", response.getContentAsString());
+        assertEquals(2, serverRequests.get());
+        assertEquals(1, proxyCache.getStaleHitCount());
+    }
+
+    @Test
+    public void testPrivateResponseNotStored() throws Exception
+    {
+        start(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                serverRequests.incrementAndGet();
+                response.getHeaders().put(HttpHeader.CACHE_CONTROL, "private, max-age=60");
+                Content.Sink.write(response, true, "content", callback);
+                return true;
+            }
+        });
+
+        assertEquals("content", send("/private").getContentAsString());
+        assertEquals("content", send("/private").getContentAsString());
+        assertEquals(2, serverRequests.get());
+        assertEquals(0, proxyCache.getEntryCount());
+        // The second request bypassed the cache.
+        assertEquals(1, proxyCache.getMissCount());
+    }
+}
@@ -26,6 +26,13 @@ import org.slf4j.LoggerFactory;
 /**
  * <p>A container that groups {@link Rule}s and is itself a {@code Rule}.</p>
  * <p>The contained rules will be applied only if the container rule matches.</p>
+ * <p>The rules are compiled on the first request into an index of the
+ * literal prefixes of the {@link PatternRule}s and {@link RegexRule}s,
+ * so that only the rules that may match the request URI are evaluated,
+ * in the order they have been added.
+ * The index is rebuilt when rules are added or removed, but not when the
+ * pattern of a rule is modified, which should therefore be done before
+ * the rule is added to the container.</p>
  */
 public class RuleContainer extends Rule implements Iterable<Rule>, Dumpable
 {
@@ -36,6 +43,7 @@ public class RuleContainer extends Rule implements Iterable<Rule>, Dumpable
 
     private String _originalPathAttribute;
     private String _originalQueryStringAttribute;
+    private volatile RuleIndex _index;
 
     /**
      * @return the list of {@code Rule}s
@@ -53,6 +61,7 @@ public class RuleContainer extends Rule implements Iterable<Rule>, Dumpable
     {
         clear();
         _rules.addAll(rules);
+        _index = null;
     }
 
     @Override
@@ -69,6 +78,7 @@ public class RuleContainer extends Rule implements Iterable<Rule>, Dumpable
     public void addRule(Rule rule)
     {
         _rules.add(rule);
+        _index = null;
     }
 
     /**
@@ -77,6 +87,7 @@ public class RuleContainer extends Rule implements Iterable<Rule>, Dumpable
     public void clear()
     {
         _rules.clear();
+        _index = null;
     }
 
     /**
@@ -124,9 +135,17 @@ public class RuleContainer extends Rule implements Iterable<Rule>, Dumpable
                 input.setAttribute(originalQueryStringAttribute, httpURI.getQuery());
         }
 
+        RuleIndex index = _index;
+        if (index == null)
+            _index = index = new RuleIndex(_rules);
+
         boolean match = false;
-        for (Rule rule : _rules)
+        int[] byPath = index.getPathCandidates(input.getHttpURI());
+        int[] byPathQuery = index.getPathQueryCandidates(input.getHttpURI());
+        int next = -1;
+        while ((next = index.next(next, byPath, byPathQuery)) >= 0)
         {
+            Rule rule = index.getRule(next);
             if (LOG.isDebugEnabled())
                 LOG.debug("applying {}", rule);
             Handler output = rule.matchAndApply(input);
@@ -151,6 +170,14 @@ public class RuleContainer extends Rule implements Iterable<Rule>, Dumpable
                         LOG.debug("terminating {}", rule);
                     break;
                 }
+
+                // The rule may have rewritten the URI, so the
+                // candidates for the next rules must be looked up again.
+                if (index.isIndexed())
+                {
+                    byPath = index.getPathCandidates(input.getHttpURI());
+                    byPathQuery = index.getPathQueryCandidates(input.getHttpURI());
+                }
             }
         }
 
@@ -0,0 +1,253 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.rewrite.handler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jetty.http.HttpURI;
+import org.eclipse.jetty.util.Index;
+
+/**
+ * <p>A compiled form of a list of {@link Rule}s that selects the rules
+ * that may match a request, in the order of the list.</p>
+ * <p>{@link PatternRule}s are indexed by the literal prefix of their
+ * Servlet pattern, and {@link RegexRule}s by the literal prefix of their
+ * regular expression, in two {@link Index} tries.
+ * A trie lookup with the request path (or path and query) returns the
+ * rules whose prefix is a prefix of the target; only those rules, and the
+ * rules that cannot be indexed, are candidates.</p>
+ * <p>The candidates are still applied through {@link Rule#matchAndApply(Rule.Handler)},
+ * so the index only skips rules that cannot match.</p>
+ */
+class RuleIndex
+{
+    private static final int[] NONE = new int[0];
+
+    private final Rule[] _rules;
+    private final int[] _always;
+    private final Index<int[]> _pathPrefixes;
+    private final Index<int[]> _pathQueryPrefixes;
+
+    RuleIndex(List<Rule> rules)
+    {
+        _rules = rules.toArray(new Rule[0]);
+        List<Integer> always = new ArrayList<>();
+        Map<String, List<Integer>> pathPrefixes = new HashMap<>();
+        Map<String, List<Integer>> pathQueryPrefixes = new HashMap<>();
+        for (int i = 0; i < _rules.length; ++i)
+        {
+            Rule rule = _rules[i];
+            String prefix = null;
+            Map<String, List<Integer>> prefixes = null;
+            if (rule instanceof PatternRule patternRule && isMatchInherited(rule, PatternRule.class))
+            {
+                prefix = patternPrefix(patternRule.getPattern());
+                prefixes = pathPrefixes;
+            }
+            else if (rule instanceof RegexRule regexRule && isMatchInherited(rule, RegexRule.class))
+            {
+                String regex = regexRule.getRegex();
+                prefix = regex == null ? null : regexPrefix(regex);
+                prefixes = pathQueryPrefixes;
+            }
+
+            if (prefix == null || prefix.isEmpty())
+                always.add(i);
+            else
+                prefixes.computeIfAbsent(prefix, k -> new ArrayList<>()).add(i);
+        }
+        _always = toArray(always);
+        _pathPrefixes = toIndex(pathPrefixes);
+        _pathQueryPrefixes = toIndex(pathQueryPrefixes);
+    }
+
+    Rule getRule(int index)
+    {
+        return _rules[index];
+    }
+
+    /**
+     * @return whether some rules are skipped depending on the request URI
+     */
+    boolean isIndexed()
+    {
+        return _always.length < _rules.length;
+    }
+
+    /**
+     * @param uri the request URI
+     * @return the sorted indexes of the {@link PatternRule}s that may match the URI path
+     */
+    int[] getPathCandidates(HttpURI uri)
+    {
+        return lookup(_pathPrefixes, uri.getPath());
+    }
+
+    /**
+     * @param uri the request URI
+     * @return the sorted indexes of the {@link RegexRule}s that may match the URI path and query
+     */
+    int[] getPathQueryCandidates(HttpURI uri)
+    {
+        return lookup(_pathQueryPrefixes, uri.getPathQuery());
+    }
+
+    /**
+     * @param after the index of the last rule applied, or {@code -1}
+     * @param byPath the candidates returned by {@link #getPathCandidates(HttpURI)}
+     * @param byPathQuery the candidates returned by {@link #getPathQueryCandidates(HttpURI)}
+     * @return the index of the next candidate rule, or {@code -1} if there are no more candidates
+     */
+    int next(int after, int[] byPath, int[] byPathQuery)
+    {
+        int next = next(_always, after, Integer.MAX_VALUE);
+        next = next(byPath, after, next);
+        next = next(byPathQuery, after, next);
+        return next == Integer.MAX_VALUE ? -1 : next;
+    }
+
+    private static int next(int[] candidates, int after, int min)
+    {
+        int i = Arrays.binarySearch(candidates, after + 1);
+        if (i < 0)
+            i = -i - 1;
+        return i < candidates.length ? Math.min(min, candidates[i]) : min;
+    }
+
+    private static int[] lookup(Index<int[]> index, String target)
+    {
+        if (index.isEmpty() || target == null)
+            return NONE;
+        int[] candidates = index.getBest(target);
+        return candidates == null ? NONE : candidates;
+    }
+
+    private static Index<int[]> toIndex(Map<String, List<Integer>> prefixes)
+    {
+        // The trie lookup returns the value of the longest key that is a prefix
+        // of the target, so the value of each key also includes the rules of
+        // all the keys that are a prefix of it.
+        Index.Builder<int[]> builder = new Index.Builder<int[]>().caseSensitive(true);
+        for (String key : prefixes.keySet())
+        {
+            List<Integer> rules = new ArrayList<>();
+            for (int i = 1; i <= key.length(); ++i)
+            {
+                List<Integer> prefixRules = prefixes.get(key.substring(0, i));
+                if (prefixRules != null)
+                    rules.addAll(prefixRules);
+            }
+            int[] candidates = toArray(rules);
+            Arrays.sort(candidates);
+            builder.with(key, candidates);
+        }
+        return builder.build();
+    }
+
+    private static int[] toArray(List<Integer> list)
+    {
+        return list.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static boolean isMatchInherited(Rule rule, Class<? extends Rule> ruleClass)
+    {
+        try
+        {
+            return rule.getClass().getMethod("matchAndApply", Rule.Handler.class).getDeclaringClass() == ruleClass;
+        }
+        catch (NoSuchMethodException x)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * <p>Returns a string that is a prefix of every path matched by the given
+     * Servlet pattern, as matched by {@link PatternRule}.</p>
+     *
+     * @param pattern the Servlet pattern
+     * @return the literal prefix, or {@code null} if the pattern has none
+     */
+    static String patternPrefix(String pattern)
+    {
+        if (pattern == null)
+            return null;
+        // The root pattern only matches "/".
+        if (pattern.isEmpty())
+            return "/";
+        // Suffix patterns and the default pattern.
+        if (pattern.charAt(0) != '/' || pattern.length() == 1)
+            return null;
+        // A prefix pattern such as "/foo/*" matches "/foo" and "/foo/...".
+        if (pattern.endsWith("/*"))
+            return pattern.substring(0, pattern.length() - 2);
+        // An exact pattern.
+        return pattern;
+    }
+
+    /**
+     * <p>Returns a string that is a prefix of every input matched
+     * in its entirety by the given regular expression.</p>
+     * <p>The prefix is made of the leading literal characters of the
+     * regular expression, excluding those followed by a quantifier.
+     * Expressions that contain an alternation have no prefix.</p>
+     *
+     * @param regex the regular expression
+     * @return the literal prefix, possibly empty
+     */
+    static String regexPrefix(String regex)
+    {
+        if (regex.indexOf('|') >= 0)
+            return "";
+
+        StringBuilder prefix = new StringBuilder();
+        int i = regex.startsWith("^") ? 1 : 0;
+        while (i < regex.length())
+        {
+            char c = regex.charAt(i);
+            char literal;
+            int next;
+            if (c == '\\')
+            {
+                // Only an escaped punctuation character is a literal,
+                // as opposed to character classes, back references, etc.
+                if (i + 1 == regex.length())
+                    break;
+                literal = regex.charAt(i + 1);
+                if (Character.isLetterOrDigit(literal))
+                    break;
+                next = i + 2;
+            }
+            else
+            {
+                literal = c;
+                next = i + 1;
+            }
+
+            if (Character.isSurrogate(literal) || (c != '\\' && "[](){}.*+?^$".indexOf(c) >= 0))
+                break;
+            // A quantifier applies to the last literal, that may be absent.
+            if (next < regex.length() && "?*+{".indexOf(regex.charAt(next)) >= 0)
+                break;
+
+            prefix.append(literal);
+            i = next;
+        }
+        return prefix.toString();
+    }
+}
@@ -0,0 +1,160 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.rewrite.handler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.Callback;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class RuleContainerTest extends AbstractRuleTest
+{
+    public static Stream<Arguments> patternPrefixes()
+    {
+        return Stream.of(
+            Arguments.of("", "/"),
+            Arguments.of("/", null),
+            Arguments.of("/*", ""),
+            Arguments.of("*.jsp", null),
+            Arguments.of("/foo/*", "/foo"),
+            Arguments.of("/foo/bar", "/foo/bar")
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("patternPrefixes")
+    public void testPatternPrefix(String pattern, String prefix)
+    {
+        assertEquals(prefix, RuleIndex.patternPrefix(pattern));
+    }
+
+    public static Stream<Arguments> regexPrefixes()
+    {
+        return Stream.of(
+            Arguments.of("/.*", "/"),
+            Arguments.of("^/foo/(.*)", "/foo/"),
+            Arguments.of("/foo\\.html", "/foo.html"),
+            Arguments.of("/foo\\d+", "/foo"),
+            Arguments.of("/foos?/bar", "/foo"),
+            Arguments.of("/fo{2}/bar", "/f"),
+            Arguments.of("/foo[0-9]", "/foo"),
+            Arguments.of("/old/(.*)|/older/(.*)", ""),
+            Arguments.of("(?i)/foo", ""),
+            Arguments.of("/foo\\?x=(.*)", "/foo?x=")
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("regexPrefixes")
+    public void testRegexPrefix(String regex, String prefix)
+    {
+        assertEquals(prefix, RuleIndex.regexPrefix(regex));
+    }
+
+    @Test
+    public void testManyRulesFirstMatchWins() throws Exception
+    {
+        for (int i = 0; i < 500; ++i)
+        {
+            _rewriteHandler.addRule(new RedirectPatternRule("/page" + i + "/*", "/redirect/pattern/" + i));
+            _rewriteHandler.addRule(new RedirectRegexRule("/regex" + i + "/(.*)", "/redirect/regex/" + i + "/$1"));
+        }
+        start(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                callback.succeeded();
+                return true;
+            }
+        });
+
+        assertRedirect("/page42/foo", "/redirect/pattern/42");
+        assertRedirect("/page4", "/redirect/pattern/4");
+        assertRedirect("/regex417/foo?a=b", "/redirect/regex/417/foo?a=b");
+
+        String request = """
+            GET /page42x HTTP/1.1
+            Host: localhost
+
+            """;
+        HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request));
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+
+        // A rule that matches everything, set as the first rule, takes precedence.
+        List<Rule> rules = new ArrayList<>(_rewriteHandler.getRules());
+        rules.add(0, new RedirectRegexRule("/.*", "/all"));
+        _rewriteHandler.setRules(rules);
+        assertRedirect("/page42/foo", "/all");
+    }
+
+    @Test
+    public void testCandidatesLookedUpAfterRewrite() throws Exception
+    {
+        // Non-candidate rules for the original path become
+        // candidates once the path has been rewritten.
+        _rewriteHandler.addRule(new RewritePatternRule("/old/*", "/new"));
+        _rewriteHandler.addRule(new HeaderPatternRule("/old/*", "X-Old", "true"));
+        _rewriteHandler.addRule(new HeaderRegexRule("/new/(.*)", "X-New", "$1"));
+        _rewriteHandler.addRule(new HeaderPatternRule("/other/*", "X-Other", "true"));
+        start(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                response.getHeaders().put("X-Path", request.getHttpURI().getPath());
+                callback.succeeded();
+                return true;
+            }
+        });
+
+        String request = """
+            GET /old/foo HTTP/1.1
+            Host: localhost
+
+            """;
+        HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request));
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals("/new/foo", response.get("X-Path"));
+        assertNull(response.get("X-Old"));
+        assertEquals("foo", response.get("X-New"));
+        assertNull(response.get("X-Other"));
+    }
+
+    private void assertRedirect(String pathQuery, String location) throws Exception
+    {
+        String request = """
+            GET %s HTTP/1.1
+            Host: localhost
+
+            """.formatted(pathQuery);
+        HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request));
+        assertEquals(HttpStatus.FOUND_302, response.getStatus());
+        assertEquals(location, response.get(HttpHeader.LOCATION));
+    }
+}
@@ -41,4 +41,7 @@ jetty.requestlog.dir?=logs
 
 ## Timezone of the log file rollover
 # jetty.requestlog.timezone=GMT
+
+## Whether to block request threads when the log queue is full, rather than dropping entries
+# jetty.requestlog.blockWhenFull=false
 # end::documentation[]
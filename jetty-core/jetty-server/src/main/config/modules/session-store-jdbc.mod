@@ -28,6 +28,10 @@ db-connection-type?=datasource
 #jetty.session.gracePeriod.seconds=3600
 #jetty.session.savePeriod.seconds=0
 
+## Period in ms of the batch write of the queued session updates and deletes, 0 to write them immediately
+#jetty.session.jdbc.writeBehindPeriod.ms=0
+#jetty.session.jdbc.writeBehindBatchSize=100
+
 #jetty.session.jdbc.blobType=
 #jetty.session.jdbc.longType=
 #jetty.session.jdbc.stringType=
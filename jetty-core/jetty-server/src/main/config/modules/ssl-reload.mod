@@ -15,4 +15,7 @@ etc/jetty-ssl-context-reload.xml
 # tag::documentation[]
 # Monitored directory scan period, in seconds.
 # jetty.sslContext.reload.scanInterval=1
+
+# Whether to watch the KeyStore directory for changes rather than walking it on every scan.
+# jetty.sslContext.reload.useWatchService=false
 # end::documentation[]
@@ -133,4 +133,14 @@ etc/jetty-ssl-context.xml
 
 ## The max number of TLS renegotiations per connection.
 # jetty.sslContext.renegotiationLimit=5
+
+## The max application bytes of the TLS records written at the start of a connection
+## or after it has been idle, or 0 to always write full-size TLS records.
+# jetty.sslContext.smallRecordSize=0
+
+## The number of application bytes written in small TLS records before full-size TLS records are written.
+# jetty.sslContext.smallRecordBytes=16384
+
+## The idle time (in milliseconds) after which small TLS records are written again.
+# jetty.sslContext.smallRecordIdleTimeout=1000
 # end::documentation-ssl-context[]
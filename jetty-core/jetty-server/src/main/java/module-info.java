@@ -21,6 +21,7 @@ module org.eclipse.jetty.server
 
     exports org.eclipse.jetty.server;
     exports org.eclipse.jetty.server.handler;
+    exports org.eclipse.jetty.server.handler.compression;
     exports org.eclipse.jetty.server.handler.gzip;
 
     exports org.eclipse.jetty.server.handler.jmx to
@@ -28,4 +29,6 @@ module org.eclipse.jetty.server
 
     exports org.eclipse.jetty.server.jmx to
          org.eclipse.jetty.jmx;
+
+    uses org.eclipse.jetty.server.handler.compression.Compression;
 }
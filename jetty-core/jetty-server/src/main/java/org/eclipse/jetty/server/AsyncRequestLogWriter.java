@@ -14,21 +14,45 @@
 package org.eclipse.jetty.server;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.thread.AutoLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * An asynchronously writing RequestLogWriter
+ * <p>An asynchronously writing RequestLogWriter.</p>
+ * <p>Request log entries are queued by the request threads and written in
+ * batches by a background thread, so that the output is flushed once per
+ * batch rather than once per entry.</p>
+ * <p>When the queue is full, entries are dropped and counted, unless
+ * {@link #setBlockWhenFull(boolean)} is {@code true}, in which case
+ * the request threads wait for space in the queue.</p>
+ * <p>Only the writing is asynchronous: entries are still formatted by the
+ * {@link RequestLog} on the request thread, because the {@link Request} and
+ * {@link Response} must not be accessed once the request is completed.
+ * The entries are written through the same output stream as
+ * {@link RequestLogWriter}, so that the log file rollover is preserved.</p>
  */
+@ManagedObject("Request Log writer which writes asynchronously to file")
 public class AsyncRequestLogWriter extends RequestLogWriter
 {
     private static final Logger LOG = LoggerFactory.getLogger(AsyncRequestLogWriter.class);
     private final BlockingQueue<String> _queue;
+    private final LongAdder _dropped = new LongAdder();
+    private final AutoLock.WithCondition _lock = new AutoLock.WithCondition();
     private transient AsyncRequestLogWriter.WriterThread _thread;
+    private boolean _blockWhenFull;
+    private int _maxBatchSize = 1024;
     private boolean _warnedFull;
 
     public AsyncRequestLogWriter()
@@ -49,6 +73,65 @@ public class AsyncRequestLogWriter extends RequestLogWriter
         _queue = queue;
     }
 
+    /**
+     * @return whether request threads block when the queue is full, rather than dropping the entry
+     */
+    @ManagedAttribute("Whether request threads block when the queue is full, rather than dropping the entry")
+    public boolean isBlockWhenFull()
+    {
+        return _blockWhenFull;
+    }
+
+    /**
+     * <p>Sets whether request threads block when the queue is full.</p>
+     * <p>When {@code false} (the default), entries that do not fit in the queue
+     * are dropped and counted in {@link #getDroppedEntries()}; when {@code true},
+     * the request threads wait until the background thread frees space in the queue.</p>
+     *
+     * @param blockWhenFull whether request threads block when the queue is full
+     */
+    public void setBlockWhenFull(boolean blockWhenFull)
+    {
+        _blockWhenFull = blockWhenFull;
+    }
+
+    /**
+     * @return the max number of entries written in a single batch
+     */
+    @ManagedAttribute("The max number of entries written in a single batch")
+    public int getMaxBatchSize()
+    {
+        return _maxBatchSize;
+    }
+
+    /**
+     * @param maxBatchSize the max number of entries written in a single batch
+     */
+    public void setMaxBatchSize(int maxBatchSize)
+    {
+        if (maxBatchSize < 1)
+            throw new IllegalArgumentException("Invalid maxBatchSize " + maxBatchSize);
+        _maxBatchSize = maxBatchSize;
+    }
+
+    @ManagedAttribute("The number of entries waiting to be written")
+    public int getQueueSize()
+    {
+        return _queue.size();
+    }
+
+    @ManagedAttribute("The number of entries dropped because the queue was full")
+    public long getDroppedEntries()
+    {
+        return _dropped.sum();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        _dropped.reset();
+    }
+
     private class WriterThread extends Thread
     {
         WriterThread()
@@ -59,19 +142,25 @@ public class AsyncRequestLogWriter extends RequestLogWriter
         @Override
         public void run()
         {
+            List<String> batch = new ArrayList<>();
             while (isRunning())
             {
                 try
                 {
                     String log = _queue.poll(10, TimeUnit.SECONDS);
                     if (log != null)
-                        AsyncRequestLogWriter.super.write(log);
-
-                    while (!_queue.isEmpty())
                     {
-                        log = _queue.poll();
-                        if (log != null)
-                            AsyncRequestLogWriter.super.write(log);
+                        batch.add(log);
+                        _queue.drainTo(batch, getMaxBatchSize() - 1);
+                        AsyncRequestLogWriter.super.write(batch);
+                        if (isBlockWhenFull())
+                        {
+                            // Wake up the request threads waiting for space in the queue.
+                            try (AutoLock.WithCondition l = _lock.lock())
+                            {
+                                l.signalAll();
+                            }
+                        }
                     }
                 }
                 catch (InterruptedException e)
@@ -82,6 +171,10 @@ public class AsyncRequestLogWriter extends RequestLogWriter
                 {
                     LOG.warn("Failed to write log", t);
                 }
+                finally
+                {
+                    batch.clear();
+                }
             }
         }
     }
@@ -99,6 +192,11 @@ public class AsyncRequestLogWriter extends RequestLogWriter
     {
         _thread.interrupt();
         _thread.join();
+        // Write the entries queued before the stop.
+        List<String> batch = new ArrayList<>();
+        _queue.drainTo(batch);
+        if (!batch.isEmpty())
+            super.write(batch);
         super.doStop();
         _thread = null;
     }
@@ -106,11 +204,30 @@ public class AsyncRequestLogWriter extends RequestLogWriter
     @Override
     public void write(String log) throws IOException
     {
-        if (!_queue.offer(log))
+        if (_queue.offer(log))
+            return;
+
+        if (isBlockWhenFull() && isRunning())
         {
-            if (_warnedFull)
-                LOG.warn("Log Queue overflow");
-            _warnedFull = true;
+            try (AutoLock.WithCondition l = _lock.lock())
+            {
+                while (isRunning())
+                {
+                    if (_queue.offer(log))
+                        return;
+                    l.await(100, TimeUnit.MILLISECONDS);
+                }
+            }
+            catch (InterruptedException x)
+            {
+                _dropped.increment();
+                throw new InterruptedIOException();
+            }
         }
+
+        _dropped.increment();
+        if (!_warnedFull)
+            LOG.warn("Log Queue overflow, dropping entries");
+        _warnedFull = true;
     }
 }
@@ -17,6 +17,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.util.List;
 import java.util.TimeZone;
 
 import org.eclipse.jetty.util.RolloverFileOutputStream;
@@ -182,6 +183,29 @@ public class RequestLogWriter extends AbstractLifeCycle implements RequestLog.Wr
         }
     }
 
+    /**
+     * <p>Writes the given request log entries, flushing the output only once
+     * after the last entry, rather than once per entry.</p>
+     *
+     * @param requestEntries the request log entries to write
+     * @throws IOException if the entries cannot be written
+     */
+    protected void write(List<String> requestEntries) throws IOException
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            if (_writer == null)
+                return;
+            String lineSeparator = System.lineSeparator();
+            for (String requestEntry : requestEntries)
+            {
+                _writer.write(requestEntry);
+                _writer.write(lineSeparator);
+            }
+            _writer.flush();
+        }
+    }
+
     @Override
     protected void doStart() throws Exception
     {
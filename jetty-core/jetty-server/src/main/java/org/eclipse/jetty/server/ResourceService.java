@@ -15,8 +15,12 @@ package org.eclipse.jetty.server;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -46,6 +50,7 @@ import org.eclipse.jetty.io.Content;
 import org.eclipse.jetty.io.IOResources;
 import org.eclipse.jetty.server.handler.ContextHandler;
 import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.URIUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -71,6 +76,7 @@ public class ResourceService
     private boolean _dirAllowed = true;
     private boolean _acceptRanges = true;
     private HttpField _cacheControl;
+    private long _minFileTransferSize = -1;
 
     public ResourceService()
     {
@@ -682,6 +688,8 @@ public class ResourceService
             response.setStatus(HttpStatus.PARTIAL_CONTENT_206);
             response.getHeaders().put(HttpHeader.CONTENT_RANGE, range.toHeaderValue(contentLength));
 
+            if (writeFileTransfer(response, callback, content, range.first(), range.getLength()))
+                return;
             // TODO use a buffer pool
             IOResources.copy(content.getResource(), response, null, 0, false, range.first(), range.getLength(), callback);
             return;
@@ -704,6 +712,10 @@ public class ResourceService
     {
         try
         {
+            long contentLength = content.getContentLengthValue();
+            if (contentLength >= 0 && writeFileTransfer(response, callback, content, 0, contentLength))
+                return;
+
             ByteBuffer buffer = content.getByteBuffer(); // this buffer is going to be consumed by response.write()
             if (buffer != null)
             {
@@ -726,6 +738,39 @@ public class ResourceService
         }
     }
 
+    /**
+     * <p>Writes a region of the content file with {@link Response#writeFile(Response, boolean, FileChannel, long, long, Callback)},
+     * if the region is large enough and the response supports it, so that the kernel copies the file bytes to the network.</p>
+     *
+     * @return whether the file region is being written, or {@code false} if it must be written with buffers
+     */
+    private boolean writeFileTransfer(Response response, Callback callback, HttpContent content, long position, long length)
+    {
+        if (_minFileTransferSize < 0 || length < _minFileTransferSize || !Response.isFileTransferSupported(response))
+            return false;
+
+        Path path = content.getResource().getPath();
+        if (path == null || path.getFileSystem() != FileSystems.getDefault())
+            return false;
+
+        FileChannel file;
+        try
+        {
+            file = FileChannel.open(path, StandardOpenOption.READ);
+        }
+        catch (Throwable x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Could not open {}, falling back to buffered write", path, x);
+            return false;
+        }
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("transferring {} {}+{}", path, position, length);
+        Response.writeFile(response, true, file, position, length, Callback.from(callback, () -> IO.close(file)));
+        return true;
+    }
+
     protected void putHeaders(Response response, HttpContent content, long contentLength)
     {
         // TODO it is very inefficient to do many put's to a HttpFields, as each put is a full iteration.
@@ -893,6 +938,31 @@ public class ResourceService
         _welcomeMode = Objects.requireNonNull(welcomeMode);
     }
 
+    /**
+     * @return the minimum size in bytes of file content sent without copying it to user space, or -1 if disabled
+     * @see #setMinFileTransferSize(long)
+     */
+    public long getMinFileTransferSize()
+    {
+        return _minFileTransferSize;
+    }
+
+    /**
+     * <p>Sets the minimum size in bytes of file content (or of a single requested range of it)
+     * sent with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+     * so that the kernel copies the file bytes directly to the network.</p>
+     * <p>File transfers are only used when the response supports them (see
+     * {@link Response#isFileTransferSupported(Response)}), otherwise the content
+     * is written with buffers, as it is the case for TLS, HTTP/2 or compressed responses.</p>
+     *
+     * @param minFileTransferSize the minimum size of file content sent without copying it to user space,
+     * or -1 to disable file transfers
+     */
+    public void setMinFileTransferSize(long minFileTransferSize)
+    {
+        _minFileTransferSize = minFileTransferSize;
+    }
+
     @Override
     public String toString()
     {
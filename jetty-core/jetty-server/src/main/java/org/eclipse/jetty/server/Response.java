@@ -15,6 +15,7 @@ package org.eclipse.jetty.server;
 
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ListIterator;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeoutException;
@@ -646,6 +647,50 @@ public interface Response extends Content.Sink
         return -1;
     }
 
+    /**
+     * <p>Tests whether the given response can send file content with
+     * {@link #writeFile(Response, boolean, FileChannel, long, long, Callback)}.</p>
+     * <p>File content can only be sent if no {@link Wrapper} of the response transforms
+     * its content (for example to compress it), if its {@code Content-Length} is known,
+     * and if the transport writes the bytes to the network without transforming them,
+     * as it is the case for cleartext HTTP/1.1, but not for TLS or HTTP/2.</p>
+     *
+     * @param response the HTTP response
+     * @return whether the response can send file content without copying it to user space
+     */
+    static boolean isFileTransferSupported(Response response)
+    {
+        if (response instanceof HttpChannelState.ChannelResponse channelResponse)
+            return channelResponse.isFileTransferSupported();
+        if (response instanceof Wrapper wrapper)
+            return wrapper.isFileTransferSupported();
+        return false;
+    }
+
+    /**
+     * <p>Writes a region of a file as response content, letting the kernel copy the
+     * bytes to the network without copying them to user space.</p>
+     * <p>The response is committed, if necessary, before the file content is sent.</p>
+     *
+     * @param response the HTTP response
+     * @param last whether the file region is the last content of the response
+     * @param file the file to send the bytes from
+     * @param position the position in the file of the first byte to send
+     * @param length the number of bytes to send
+     * @param callback the callback to complete when the write is complete
+     * @throws UnsupportedOperationException if the response cannot send file content
+     * @see #isFileTransferSupported(Response)
+     */
+    static void writeFile(Response response, boolean last, FileChannel file, long position, long length, Callback callback)
+    {
+        if (response instanceof HttpChannelState.ChannelResponse channelResponse)
+            channelResponse.writeFile(last, file, position, length, callback);
+        else if (response instanceof Wrapper wrapper)
+            wrapper.writeFile(last, file, position, length, callback);
+        else
+            throw new UnsupportedOperationException();
+    }
+
     /**
      * <p>Wraps a {@link Response} as a {@link OutputStream} that performs buffering. The necessary
      * {@link ByteBufferPool} is taken from the request's connector while the size and direction of the buffer
@@ -682,6 +727,27 @@ public interface Response extends Content.Sink
 
     class Wrapper implements Response
     {
+        private static final ClassValue<Boolean> WRITE_OVERRIDDEN = new ClassValue<>()
+        {
+            @Override
+            protected Boolean computeValue(Class<?> type)
+            {
+                for (Class<?> c = type; c != Wrapper.class; c = c.getSuperclass())
+                {
+                    try
+                    {
+                        c.getDeclaredMethod("write", boolean.class, ByteBuffer.class, Callback.class);
+                        return true;
+                    }
+                    catch (NoSuchMethodException ignored)
+                    {
+                        // Look at the superclass.
+                    }
+                }
+                return false;
+            }
+        };
+
         private final Request _request;
         private final Response _wrapped;
 
@@ -767,5 +833,37 @@ public interface Response extends Content.Sink
         {
             getWrapped().write(last, byteBuffer, callback);
         }
+
+        /**
+         * <p>Tests whether file content can be sent through this wrapper with
+         * {@link #writeFile(boolean, FileChannel, long, long, Callback)}.</p>
+         * <p>File content bypasses {@link #write(boolean, ByteBuffer, Callback)}, so
+         * by default it is only supported by the wrapped response if this wrapper does
+         * not override {@code write()}, which may transform the content.
+         * Wrappers that override {@code write()} without transforming the content may
+         * override this method and {@link #writeFile(boolean, FileChannel, long, long, Callback)}.</p>
+         *
+         * @return whether file content can be sent without copying it to user space
+         * @see Response#isFileTransferSupported(Response)
+         */
+        public boolean isFileTransferSupported()
+        {
+            return !WRITE_OVERRIDDEN.get(getClass()) && Response.isFileTransferSupported(getWrapped());
+        }
+
+        /**
+         * <p>Writes a region of a file as content of the wrapped response.</p>
+         *
+         * @param last whether the file region is the last content of the response
+         * @param file the file to send the bytes from
+         * @param position the position in the file of the first byte to send
+         * @param length the number of bytes to send
+         * @param callback the callback to complete when the write is complete
+         * @see #isFileTransferSupported()
+         */
+        public void writeFile(boolean last, FileChannel file, long position, long length, Callback callback)
+        {
+            Response.writeFile(getWrapped(), last, file, position, length, callback);
+        }
     }
 }
@@ -336,7 +336,8 @@ public class ServerConnector extends AbstractNetworkConnector
         if (serverChannel == null)
         {
             InetSocketAddress bindAddress = getHost() == null ? new InetSocketAddress(getPort()) : new InetSocketAddress(getHost(), getPort());
-            serverChannel = ServerSocketChannel.open();
+            // The channel must be opened by the same provider of the selectors it is registered with.
+            serverChannel = getSelectorManager().getSelectorProvider().openServerSocketChannel();
             setSocketOption(serverChannel, StandardSocketOptions.SO_REUSEADDR, getReuseAddress());
             setSocketOption(serverChannel, StandardSocketOptions.SO_REUSEPORT, isReusePort());
             try
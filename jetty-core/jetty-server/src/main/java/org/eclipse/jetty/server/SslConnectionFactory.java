@@ -16,6 +16,7 @@ package org.eclipse.jetty.server;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLSession;
 
@@ -25,10 +26,14 @@ import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.io.ssl.SslConnection;
 import org.eclipse.jetty.io.ssl.SslHandshakeListener;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.annotation.Name;
 import org.eclipse.jetty.util.component.ContainerLifeCycle;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 
+@ManagedObject
 public class SslConnectionFactory extends AbstractConnectionFactory implements ConnectionFactory.Detecting, ConnectionFactory.Configuring
 {
     private static final int TLS_ALERT_FRAME_TYPE = 0x15;
@@ -40,6 +45,20 @@ public class SslConnectionFactory extends AbstractConnectionFactory implements C
     private boolean _directBuffersForEncryption = false;
     private boolean _directBuffersForDecryption = false;
     private boolean _ensureSecureRequestCustomizer = true;
+    private final LongAdder _smallRecordsOut = new LongAdder();
+    private final LongAdder _fullRecordsOut = new LongAdder();
+    private final Connection.Listener _recordsListener = new Connection.Listener()
+    {
+        @Override
+        public void onClosed(Connection connection)
+        {
+            if (connection instanceof SslConnection sslConnection)
+            {
+                _smallRecordsOut.add(sslConnection.getSmallRecordsOut());
+                _fullRecordsOut.add(sslConnection.getFullRecordsOut());
+            }
+        }
+    };
 
     public SslConnectionFactory()
     {
@@ -104,6 +123,34 @@ public class SslConnectionFactory extends AbstractConnectionFactory implements C
         _ensureSecureRequestCustomizer = ensureSecureRequestCustomizer;
     }
 
+    /**
+     * @return the number of TLS records written with at most
+     * {@link SslContextFactory.Server#getSmallRecordSize()} application bytes
+     * by the connections that have been closed
+     */
+    @ManagedAttribute("The number of small TLS records written by closed connections")
+    public long getSmallRecordsOut()
+    {
+        return _smallRecordsOut.sum();
+    }
+
+    /**
+     * @return the number of TLS records written up to the max size
+     * by the connections that have been closed
+     */
+    @ManagedAttribute("The number of full-size TLS records written by closed connections")
+    public long getFullRecordsOut()
+    {
+        return _fullRecordsOut.sum();
+    }
+
+    @ManagedOperation(value = "Resets the TLS record statistics", impact = "ACTION")
+    public void resetRecordStatistics()
+    {
+        _smallRecordsOut.reset();
+        _fullRecordsOut.reset();
+    }
+
     @Override
     protected void doStart() throws Exception
     {
@@ -153,6 +200,9 @@ public class SslConnectionFactory extends AbstractConnectionFactory implements C
         SslConnection sslConnection = newSslConnection(connector, endPoint, engine);
         sslConnection.setRenegotiationAllowed(_sslContextFactory.isRenegotiationAllowed());
         sslConnection.setRenegotiationLimit(_sslContextFactory.getRenegotiationLimit());
+        sslConnection.setSmallRecordSize(_sslContextFactory.getSmallRecordSize());
+        sslConnection.setSmallRecordBytes(_sslContextFactory.getSmallRecordBytes());
+        sslConnection.setSmallRecordIdleTimeout(_sslContextFactory.getSmallRecordIdleTimeout());
         configure(sslConnection, connector, endPoint);
 
         ConnectionFactory next = connector.getConnectionFactory(_nextProtocol);
@@ -176,6 +226,7 @@ public class SslConnectionFactory extends AbstractConnectionFactory implements C
             if (connector instanceof ContainerLifeCycle container)
                 container.getBeans(SslHandshakeListener.class).forEach(sslConnection::addHandshakeListener);
             getBeans(SslHandshakeListener.class).forEach(sslConnection::addHandshakeListener);
+            sslConnection.addEventListener(_recordsListener);
         }
         return super.configure(connection, connector, endPoint);
     }
@@ -14,6 +14,7 @@
 package org.eclipse.jetty.server.handler;
 
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.Response;
@@ -33,7 +34,25 @@ public class ContextResponse extends Response.Wrapper
     @Override
     public void write(boolean last, ByteBuffer content, Callback callback)
     {
-        Callback contextCallback = new Callback()
+        super.write(last, content, newContextCallback(callback));
+    }
+
+    @Override
+    public boolean isFileTransferSupported()
+    {
+        // The content is not transformed, only the callback is run in the context scope.
+        return Response.isFileTransferSupported(getWrapped());
+    }
+
+    @Override
+    public void writeFile(boolean last, FileChannel file, long position, long length, Callback callback)
+    {
+        super.writeFile(last, file, position, length, newContextCallback(callback));
+    }
+
+    private Callback newContextCallback(Callback callback)
+    {
+        return new Callback()
         {
             @Override
             public void succeeded()
@@ -53,6 +72,5 @@ public class ContextResponse extends Response.Wrapper
                 return Invocable.getInvocationType(callback);
             }
         };
-        super.write(last, content, contextCallback);
     }
 }
@@ -24,6 +24,7 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -37,6 +38,7 @@ import org.eclipse.jetty.util.NanoTime;
 import org.eclipse.jetty.util.ProcessorUtils;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.thread.AutoLock;
 import org.eclipse.jetty.util.thread.Scheduler;
 import org.eclipse.jetty.util.thread.ThreadPool;
 import org.slf4j.Logger;
@@ -73,6 +75,13 @@ import org.slf4j.LoggerFactory;
  * priority, followed by requests performed by admin users, etc.
  * so that regardless of the load, "ping" and "admin" requests will
  * always be able to access the web application.</p>
+ * <p>In {@link #setAdaptive(boolean) adaptive} mode, the limit of concurrent
+ * requests is not fixed, but it is continuously tuned between
+ * {@link #getMinRequestCount()} and {@link #getMaxRequestCount()}
+ * from the observed request latency, using a gradient algorithm:
+ * the limit grows while the latency stays close to its long term
+ * average, and shrinks when the latency increases, for example
+ * because a downstream resource slows down.</p>
  */
 @ManagedObject
 public class QoSHandler extends ConditionalHandler.Abstract
@@ -84,10 +93,17 @@ public class QoSHandler extends ConditionalHandler.Abstract
     private final AtomicInteger state = new AtomicInteger();
     private final Map<Integer, Queue<Entry>> queues = new ConcurrentHashMap<>();
     private final Set<Integer> priorities = new ConcurrentSkipListSet<>(Comparator.reverseOrder());
+    private final AtomicInteger shrinks = new AtomicInteger();
+    private final LongAdder shedRequests = new LongAdder();
     private CyclicTimeouts<Entry> timeouts;
     private int maxRequests;
     private int maxSuspendedRequests = 1024;
     private Duration maxSuspend = Duration.ZERO;
+    private boolean adaptive;
+    private int minRequests = 1;
+    private double rttTolerance = 1.5;
+    private volatile int requestLimit;
+    private AdaptiveLimit adaptiveLimit;
 
     public QoSHandler()
     {
@@ -181,6 +197,106 @@ public class QoSHandler extends ConditionalHandler.Abstract
         return Math.max(0, -permits);
     }
 
+    /**
+     * @return whether the limit of concurrent requests adapts to the request latency
+     */
+    @ManagedAttribute(value = "Whether the limit of concurrent requests adapts to the request latency", readonly = true)
+    public boolean isAdaptive()
+    {
+        return adaptive;
+    }
+
+    /**
+     * <p>Sets whether the limit of concurrent requests adapts to the request latency.</p>
+     * <p>When {@code true}, the limit starts at {@link #getMaxRequestCount()} and
+     * is then tuned between {@link #getMinRequestCount()} and {@link #getMaxRequestCount()}
+     * depending on the latency of the requests forwarded to the child {@code Handler}.</p>
+     *
+     * @param adaptive whether the limit of concurrent requests adapts to the request latency
+     */
+    public void setAdaptive(boolean adaptive)
+    {
+        if (isStarted())
+            throw new IllegalStateException("Cannot change adaptive: " + this);
+        this.adaptive = adaptive;
+    }
+
+    /**
+     * @return the min number of concurrent requests in adaptive mode
+     */
+    @ManagedAttribute(value = "The minimum number of concurrent requests in adaptive mode", readonly = true)
+    public int getMinRequestCount()
+    {
+        return minRequests;
+    }
+
+    /**
+     * <p>Sets the min number of concurrent requests in adaptive mode,
+     * that is the value below which the limit is never reduced.</p>
+     *
+     * @param minRequests the min number of concurrent requests in adaptive mode
+     */
+    public void setMinRequestCount(int minRequests)
+    {
+        if (isStarted())
+            throw new IllegalStateException("Cannot change minRequests: " + this);
+        if (minRequests < 1)
+            throw new IllegalArgumentException("Invalid minRequests " + minRequests);
+        this.minRequests = minRequests;
+    }
+
+    /**
+     * @return the tolerated ratio between the latency of a request and the average latency
+     */
+    @ManagedAttribute("The tolerated ratio between the latency of a request and the average latency")
+    public double getRttTolerance()
+    {
+        return rttTolerance;
+    }
+
+    /**
+     * <p>Sets the tolerated ratio between the latency of a request and the average
+     * latency before the limit is reduced in adaptive mode.</p>
+     * <p>For example, a value of {@code 1.5} means that the limit is reduced only
+     * when the request latency is more than 50% above the average latency.</p>
+     *
+     * @param rttTolerance the tolerated ratio, a value {@code >= 1}
+     */
+    public void setRttTolerance(double rttTolerance)
+    {
+        if (rttTolerance < 1)
+            throw new IllegalArgumentException("Invalid rttTolerance " + rttTolerance);
+        this.rttTolerance = rttTolerance;
+    }
+
+    /**
+     * @return the current limit of concurrent requests
+     */
+    @ManagedAttribute("The current limit of concurrent requests")
+    public int getRequestLimit()
+    {
+        return requestLimit;
+    }
+
+    /**
+     * @return the estimated request latency in nanoseconds, or {@code 0} if not in adaptive mode
+     */
+    @ManagedAttribute("The estimated request latency in nanoseconds")
+    public long getRttEstimate()
+    {
+        AdaptiveLimit adaptiveLimit = this.adaptiveLimit;
+        return adaptiveLimit == null ? 0 : adaptiveLimit.rttEstimate;
+    }
+
+    /**
+     * @return the number of requests that were rejected or expired while suspended
+     */
+    @ManagedAttribute("The number of requests that were rejected or expired while suspended")
+    public long getShedRequestCount()
+    {
+        return shedRequests.sum();
+    }
+
     @Override
     protected void doStart() throws Exception
     {
@@ -198,9 +314,12 @@ public class QoSHandler extends ConditionalHandler.Abstract
             setMaxRequestCount(maxRequests);
         }
         state.set(maxRequests);
+        shrinks.set(0);
+        requestLimit = maxRequests;
+        adaptiveLimit = isAdaptive() ? new AdaptiveLimit(Math.min(getMinRequestCount(), maxRequests), maxRequests) : null;
 
         if (LOG.isDebugEnabled())
-            LOG.debug("{} initialized maxRequests={}", this, maxRequests);
+            LOG.debug("{} initialized maxRequests={} adaptive={}", this, maxRequests, isAdaptive());
 
         super.doStart();
     }
@@ -268,6 +387,8 @@ public class QoSHandler extends ConditionalHandler.Abstract
             lock.readLock().unlock();
         }
 
+        if (tooManyRequests)
+            shedRequests.increment();
         if (expired || tooManyRequests)
         {
             notAvailable(response, callback);
@@ -329,10 +450,29 @@ public class QoSHandler extends ConditionalHandler.Abstract
     {
         if (LOG.isDebugEnabled())
             LOG.debug("{} forwarding {}", this, request);
-        Request.addCompletionListener(request, this::resume);
+        AdaptiveLimit adaptiveLimit = this.adaptiveLimit;
+        if (adaptiveLimit == null)
+        {
+            Request.addCompletionListener(request, this::resume);
+        }
+        else
+        {
+            long begin = nanoTime();
+            Request.addCompletionListener(request, x ->
+            {
+                adaptiveLimit.onSample(NanoTime.elapsed(begin, nanoTime()));
+                resume(x);
+            });
+        }
         return nextHandler(request, response, callback);
     }
 
+    // Overridden in tests to control the latency samples.
+    long nanoTime()
+    {
+        return NanoTime.now();
+    }
+
     private void suspend(Request request, Response response, Callback callback)
     {
         int priority = Math.max(0, getPriority(request));
@@ -354,6 +494,11 @@ public class QoSHandler extends ConditionalHandler.Abstract
 
     private void resume(Throwable x)
     {
+        // The limit has been reduced while all permits were
+        // in use, so this permit is dropped rather than returned.
+        if (consumeShrink())
+            return;
+
         // Allows concurrency with process(), but not with expire().
         lock.readLock().lock();
         try
@@ -384,6 +529,48 @@ public class QoSHandler extends ConditionalHandler.Abstract
         }
     }
 
+    private boolean consumeShrink()
+    {
+        while (true)
+        {
+            int shrink = shrinks.get();
+            if (shrink <= 0)
+                return false;
+            if (shrinks.compareAndSet(shrink, shrink - 1))
+                return true;
+        }
+    }
+
+    private void grow(int delta)
+    {
+        // Each additional permit either cancels a pending
+        // shrink or resumes a suspended request, if any.
+        for (int i = 0; i < delta; ++i)
+        {
+            resume(null);
+        }
+    }
+
+    private void shrink(int delta)
+    {
+        for (int i = 0; i < delta; ++i)
+        {
+            while (true)
+            {
+                // Take an idle permit if there is one, otherwise
+                // drop the next permit returned by a completed request.
+                int permits = state.get();
+                if (permits <= 0)
+                {
+                    shrinks.incrementAndGet();
+                    break;
+                }
+                if (state.compareAndSet(permits, permits - 1))
+                    break;
+            }
+        }
+    }
+
     private boolean resumeSuspended()
     {
         for (Integer priority : priorities)
@@ -452,6 +639,7 @@ public class QoSHandler extends ConditionalHandler.Abstract
                 {
                     // See correspondent state machine logic in process() and resume().
                     state.incrementAndGet();
+                    shedRequests.increment();
                     if (LOG.isDebugEnabled())
                         LOG.debug("{} timeout {}", QoSHandler.this, request);
                     request.setAttribute(EXPIRED_ATTRIBUTE_NAME, true);
@@ -486,6 +674,82 @@ public class QoSHandler extends ConditionalHandler.Abstract
         }
     }
 
+    /**
+     * <p>A gradient concurrency limit, where the limit is multiplied by
+     * the ratio between the long term average latency and the short
+     * term average latency, and then incremented by the square root of
+     * the limit so that the limit may grow when the latency is stable.</p>
+     */
+    private class AdaptiveLimit
+    {
+        private static final int WARMUP_SAMPLES = 10;
+        private static final double SHORT_RTT_FACTOR = 2.0 / (10 + 1);
+        private static final double LONG_RTT_FACTOR = 2.0 / (600 + 1);
+        private static final double SMOOTHING = 0.2;
+
+        private final AutoLock lock = new AutoLock();
+        private final int minLimit;
+        private final int maxLimit;
+        private double estimatedLimit;
+        private double shortRtt;
+        private double longRtt;
+        private long samples;
+        private volatile long rttEstimate;
+
+        private AdaptiveLimit(int minLimit, int maxLimit)
+        {
+            this.minLimit = Math.max(1, minLimit);
+            this.maxLimit = maxLimit;
+            this.estimatedLimit = maxLimit;
+        }
+
+        private void onSample(long rttNanos)
+        {
+            double rtt = Math.max(1, rttNanos);
+            try (AutoLock ignored = lock.lock())
+            {
+                // Simple average during warmup, then an exponential moving average.
+                ++samples;
+                if (samples <= WARMUP_SAMPLES)
+                {
+                    shortRtt += (rtt - shortRtt) / samples;
+                    longRtt = shortRtt;
+                }
+                else
+                {
+                    shortRtt += (rtt - shortRtt) * SHORT_RTT_FACTOR;
+                    longRtt += (rtt - longRtt) * LONG_RTT_FACTOR;
+                }
+                // Recover quickly after a period of high latency.
+                if (longRtt / shortRtt > 2)
+                    longRtt *= 0.95;
+                rttEstimate = (long)longRtt;
+
+                // Do not grow the limit if it is not being used.
+                int limit = requestLimit;
+                int inFlight = limit + shrinks.get() - Math.max(0, state.get());
+                if (inFlight < estimatedLimit / 2)
+                    return;
+
+                double gradient = Math.max(0.5, Math.min(1.0, getRttTolerance() * longRtt / shortRtt));
+                double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+                newLimit = estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+                estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+
+                int newRequestLimit = (int)estimatedLimit;
+                if (newRequestLimit == limit)
+                    return;
+                if (LOG.isDebugEnabled())
+                    LOG.debug("{} limit {}->{} shortRtt={}ns longRtt={}ns", QoSHandler.this, limit, newRequestLimit, (long)shortRtt, rttEstimate);
+                requestLimit = newRequestLimit;
+                if (newRequestLimit > limit)
+                    grow(newRequestLimit - limit);
+                else
+                    shrink(limit - newRequestLimit);
+            }
+        }
+    }
+
     private class Timeouts extends CyclicTimeouts<Entry>
     {
         private Timeouts(Scheduler scheduler)
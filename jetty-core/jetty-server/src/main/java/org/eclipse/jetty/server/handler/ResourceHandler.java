@@ -356,6 +356,25 @@ public class ResourceHandler extends Handler.Wrapper
         return _resourceService.getEncodingCacheSize();
     }
 
+    /**
+     * @return the minimum size in bytes of file content sent without copying it to user space, or -1 if disabled
+     * @see ResourceService#getMinFileTransferSize()
+     */
+    public long getMinFileTransferSize()
+    {
+        return _resourceService.getMinFileTransferSize();
+    }
+
+    /**
+     * @param minFileTransferSize the minimum size of file content sent without copying it to user space,
+     * or -1 to disable file transfers
+     * @see ResourceService#setMinFileTransferSize(long)
+     */
+    public void setMinFileTransferSize(long minFileTransferSize)
+    {
+        _resourceService.setMinFileTransferSize(minFileTransferSize);
+    }
+
     public void setMimeTypes(MimeTypes mimeTypes)
     {
         _mimeTypes = mimeTypes;
@@ -0,0 +1,124 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler.compression;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+
+/**
+ * <p>A compression codec that can be used by {@link CompressionHandler} to encode response content.</p>
+ * <p>Implementations are responsible for the framing of their format (for example the GZIP header and trailer)
+ * and for pooling any expensive codec state, typically with a {@link org.eclipse.jetty.util.compression.CompressionPool}.</p>
+ * <p>Implementations other than the built-in {@link GzipCompression} and {@link DeflateCompression}
+ * (for example brotli or zstd codecs that depend on native libraries) may be discovered by the
+ * {@link java.util.ServiceLoader} when a {@link CompressionHandler} is created.</p>
+ */
+@ManagedObject
+public abstract class Compression extends ContainerLifeCycle
+{
+    private final CompressedContentFormat _format;
+
+    protected Compression(CompressedContentFormat format)
+    {
+        _format = format;
+    }
+
+    /**
+     * @return the format of this compression, used for the {@code Content-Encoding} and {@code ETag} suffix.
+     */
+    public CompressedContentFormat getFormat()
+    {
+        return _format;
+    }
+
+    /**
+     * @return the {@code Content-Encoding} token of this compression, e.g. {@code gzip}.
+     */
+    @ManagedAttribute("The content encoding token")
+    public String getEncoding()
+    {
+        return _format.getEncoding();
+    }
+
+    /**
+     * @return the compression level used when no level is configured for a response.
+     */
+    @ManagedAttribute("The default compression level")
+    public abstract int getDefaultLevel();
+
+    /**
+     * @return the highest compression level supported by this compression.
+     */
+    public abstract int getMaxLevel();
+
+    /**
+     * <p>Acquires an {@link Encoder}, that must be released once the response has been compressed.</p>
+     *
+     * @param level the compression level, or a negative value for the {@link #getDefaultLevel() default level}
+     * @param syncFlush whether each chunk of content must be flushed by the encoder as soon as possible
+     * @return an encoder ready to compress a new response
+     */
+    public abstract Encoder acquireEncoder(int level, boolean syncFlush);
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,%s}", getClass().getSimpleName(), hashCode(), getState(), getEncoding());
+    }
+
+    /**
+     * <p>A stateful encoder for a single response body.</p>
+     * <p>Content is passed with {@link #addInput(ByteBuffer)} and compressed bytes are produced
+     * by {@link #encode(ByteBuffer)} until {@link #needsInput()} returns true.
+     * Once all the content has been added, {@link #finish()} is called and {@link #encode(ByteBuffer)}
+     * is called until {@link #isFinished()} returns true.</p>
+     */
+    public interface Encoder
+    {
+        /**
+         * @param content the content to compress, consumed by subsequent calls to {@link #encode(ByteBuffer)}
+         */
+        void addInput(ByteBuffer content);
+
+        /**
+         * @return whether all the input content has been consumed
+         */
+        boolean needsInput();
+
+        /**
+         * <p>Indicates that no more content will be added.</p>
+         */
+        void finish();
+
+        /**
+         * @param output the buffer, in fill mode, to encode into
+         * @return the number of bytes written into the output buffer
+         */
+        int encode(ByteBuffer output);
+
+        /**
+         * @return whether all the compressed bytes, including any trailer, have been encoded
+         */
+        boolean isFinished();
+
+        /**
+         * <p>Releases the resources of this encoder, possibly returning them to a pool.</p>
+         */
+        void release();
+    }
+}
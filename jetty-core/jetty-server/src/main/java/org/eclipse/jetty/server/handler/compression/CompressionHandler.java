@@ -0,0 +1,542 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler.compression;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.eclipse.jetty.http.EtagUtils;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.http.PreEncodedHttpField;
+import org.eclipse.jetty.http.QuotedCSV;
+import org.eclipse.jetty.http.pathmap.PathSpecSet;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.handler.gzip.HeaderWrappingRequest;
+import org.eclipse.jetty.util.AsciiLowerCaseSet;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.IncludeExclude;
+import org.eclipse.jetty.util.StringUtil;
+import org.eclipse.jetty.util.TypeUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A {@link Handler} that compresses response content with one of several {@link Compression} codecs.</p>
+ * <p>Unlike {@link org.eclipse.jetty.server.handler.gzip.GzipHandler}, which only emits {@code gzip},
+ * the codec is selected per request from the {@code Accept-Encoding} quality values, using the order
+ * of the {@link #getEncodings() configured encodings} as server preference for equal qualities.
+ * The {@link GzipCompression gzip} and {@link DeflateCompression deflate} codecs are always available;
+ * other codecs (e.g. brotli or zstd) are discovered with the {@link ServiceLoader} and preferred to the built-in ones.</p>
+ * <p>The compression level may be configured per MIME type with {@link #setCompressionLevel(String, int)}
+ * and per response size with {@link #setCompressionLevelForSize(long, int)}, so that for example large
+ * responses are compressed with a cheaper level than small JSON documents.</p>
+ * <p>This handler does not decompress request content; use
+ * {@link org.eclipse.jetty.server.handler.gzip.GzipHandler} for that.</p>
+ */
+@ManagedObject
+public class CompressionHandler extends Handler.Wrapper
+{
+    public static final String COMPRESSION_HANDLER_ETAGS = "o.e.j.s.h.compression.CompressionHandler.etag";
+    public static final int DEFAULT_MIN_COMPRESS_SIZE = 32;
+    static final int MIN_BUFFER_SIZE = 32;
+    private static final Logger LOG = LoggerFactory.getLogger(CompressionHandler.class);
+
+    private final Map<String, Compression> _compressions = new ConcurrentHashMap<>();
+    private final List<String> _encodings = new CopyOnWriteArrayList<>();
+    private final Map<String, Integer> _mimeTypeLevels = new ConcurrentHashMap<>();
+    private final NavigableMap<Long, Integer> _sizeLevels = new ConcurrentSkipListMap<>();
+    private final IncludeExclude<String> _methods = new IncludeExclude<>();
+    private final IncludeExclude<String> _paths = new IncludeExclude<>(PathSpecSet.class);
+    private final IncludeExclude<String> _mimeTypes = new IncludeExclude<>(AsciiLowerCaseSet.class);
+    private int _minCompressSize = DEFAULT_MIN_COMPRESS_SIZE;
+    private boolean _syncFlush;
+    private HttpField _vary = new PreEncodedHttpField(HttpHeader.VARY, HttpHeader.ACCEPT_ENCODING.asString());
+
+    public CompressionHandler()
+    {
+        this(null);
+    }
+
+    public CompressionHandler(Handler handler)
+    {
+        super(handler);
+        TypeUtil.serviceStream(ServiceLoader.load(Compression.class)).forEach(this::addCompression);
+        addCompression(new GzipCompression());
+        addCompression(new DeflateCompression());
+
+        _methods.include(HttpMethod.GET.asString());
+        _methods.include(HttpMethod.POST.asString());
+        for (String type : MimeTypes.DEFAULTS.getMimeMap().values())
+        {
+            if ("image/svg+xml".equals(type))
+                _paths.exclude("*.svgz");
+            else if (type.startsWith("image/") ||
+                type.startsWith("audio/") ||
+                type.startsWith("video/"))
+                _mimeTypes.exclude(type);
+        }
+
+        _mimeTypes.exclude("application/compress");
+        _paths.exclude("*.z");
+        _mimeTypes.exclude("application/zip");
+        _paths.exclude("*.zip");
+        _mimeTypes.exclude("application/x-gtar");
+        _paths.exclude("*.tgz");
+        _mimeTypes.exclude("application/java-archive");
+        _paths.exclude("*.jar");
+        _mimeTypes.exclude("application/gzip");
+        _paths.exclude("*.gz", "*.gzip");
+        _mimeTypes.exclude("application/x-bzip2");
+        _paths.exclude("*.bz2", "*.bzip", "*.bz");
+        _mimeTypes.exclude("application/brotli");
+        _paths.exclude("*.br", "*.brotli");
+        _mimeTypes.exclude("application/x-xz");
+        _paths.exclude("*.xz");
+        _mimeTypes.exclude("application/x-rar-compressed");
+        _paths.exclude("*.rar");
+        _mimeTypes.exclude("application/zstd");
+        _paths.exclude("*.zst", "*.zstd");
+
+        // Server-Sent Events need every event flushed, which defeats compression.
+        _mimeTypes.exclude("text/event-stream");
+    }
+
+    /**
+     * <p>Adds a {@link Compression}, unless one with the same encoding is already present.
+     * The compression is added at the end of the {@link #getEncodings() encoding preference order}.</p>
+     *
+     * @param compression the compression to add
+     * @return whether the compression was added
+     */
+    public boolean addCompression(Compression compression)
+    {
+        String encoding = compression.getEncoding();
+        if (_compressions.putIfAbsent(encoding, compression) != null)
+            return false;
+        _encodings.add(encoding);
+        addBean(compression, true);
+        return true;
+    }
+
+    /**
+     * @param encoding the encoding of the compression to remove
+     * @return the removed compression, or null if no compression has that encoding
+     */
+    public Compression removeCompression(String encoding)
+    {
+        Compression compression = _compressions.remove(StringUtil.asciiToLowerCase(encoding));
+        if (compression != null)
+        {
+            _encodings.remove(compression.getEncoding());
+            removeBean(compression);
+        }
+        return compression;
+    }
+
+    /**
+     * @param encoding the encoding
+     * @return the compression for the encoding, or null if none is configured
+     */
+    public Compression getCompression(String encoding)
+    {
+        return _compressions.get(StringUtil.asciiToLowerCase(encoding));
+    }
+
+    public List<Compression> getCompressions()
+    {
+        return _encodings.stream().map(_compressions::get).toList();
+    }
+
+    /**
+     * @return the configured encodings, in server preference order
+     */
+    @ManagedAttribute("The supported encodings in server preference order")
+    public List<String> getEncodings()
+    {
+        return List.copyOf(_encodings);
+    }
+
+    /**
+     * <p>Sets the server preference order of the encodings, used to choose between
+     * encodings that have the same quality in the {@code Accept-Encoding} header.
+     * Configured encodings that are not listed keep their relative order after the listed ones.</p>
+     *
+     * @param encodings the encodings in preference order
+     */
+    public void setEncodings(String... encodings)
+    {
+        List<String> ordered = new ArrayList<>();
+        for (String encoding : encodings)
+        {
+            String e = StringUtil.asciiToLowerCase(encoding);
+            if (!_compressions.containsKey(e))
+                throw new IllegalArgumentException("Unknown encoding " + encoding);
+            if (!ordered.contains(e))
+                ordered.add(e);
+        }
+        for (String e : _encodings)
+        {
+            if (!ordered.contains(e))
+                ordered.add(e);
+        }
+        _encodings.clear();
+        _encodings.addAll(ordered);
+    }
+
+    /**
+     * @return The VARY field to use.
+     */
+    public HttpField getVary()
+    {
+        return _vary;
+    }
+
+    /**
+     * @param vary The VARY field to use. It if is not an instance of {@link PreEncodedHttpField},
+     *             then it will be converted to one.
+     */
+    public void setVary(HttpField vary)
+    {
+        if (isRunning())
+            throw new IllegalStateException(getState());
+
+        if (vary == null || (vary instanceof PreEncodedHttpField))
+            _vary = vary;
+        else
+            _vary = new PreEncodedHttpField(vary.getHeader(), vary.getName(), vary.getValue());
+    }
+
+    /**
+     * @return the minimum response size, in bytes, that triggers compression
+     */
+    @ManagedAttribute("The minimum response size that triggers compression")
+    public int getMinCompressSize()
+    {
+        return _minCompressSize;
+    }
+
+    /**
+     * @param minCompressSize the minimum response size, in bytes, that triggers compression
+     */
+    public void setMinCompressSize(int minCompressSize)
+    {
+        _minCompressSize = Math.max(0, minCompressSize);
+    }
+
+    /**
+     * @return whether each write is flushed by the encoder as soon as possible
+     */
+    @ManagedAttribute("Whether each write is flushed by the encoder")
+    public boolean isSyncFlush()
+    {
+        return _syncFlush;
+    }
+
+    /**
+     * @param syncFlush whether each write is flushed by the encoder as soon as possible,
+     * which is needed to stream content but may hurt compression ratio
+     */
+    public void setSyncFlush(boolean syncFlush)
+    {
+        _syncFlush = syncFlush;
+    }
+
+    /**
+     * <p>Sets the compression level for responses of the given MIME type.</p>
+     *
+     * @param mimeType the MIME type (without charset or other parameters)
+     * @param level the compression level, or a negative value to use the compression default level
+     */
+    public void setCompressionLevel(String mimeType, int level)
+    {
+        _mimeTypeLevels.put(StringUtil.asciiToLowerCase(mimeType), level);
+    }
+
+    /**
+     * <p>Sets the maximum compression level for responses whose length is known
+     * and greater than or equal to the given size.</p>
+     *
+     * @param minSize the minimum response size, in bytes, for the level to apply
+     * @param level the maximum compression level for responses of at least {@code minSize} bytes
+     */
+    public void setCompressionLevelForSize(long minSize, int level)
+    {
+        _sizeLevels.put(minSize, level);
+    }
+
+    /**
+     * <p>Returns the compression level to use for a response.</p>
+     * <p>The level is the one configured for the MIME type, or the compression default level,
+     * lowered to the level configured for the largest size threshold not greater than the content length,
+     * and capped to the {@link Compression#getMaxLevel() maximum level} of the compression.</p>
+     *
+     * @param compression the compression that will encode the response
+     * @param mimeType the response MIME type, or null if unknown
+     * @param contentLength the response content length, or a negative value if unknown
+     * @return the compression level
+     */
+    public int getCompressionLevel(Compression compression, String mimeType, long contentLength)
+    {
+        Integer mimeTypeLevel = mimeType == null ? null : _mimeTypeLevels.get(StringUtil.asciiToLowerCase(mimeType));
+        int level = mimeTypeLevel == null ? compression.getDefaultLevel() : mimeTypeLevel;
+        if (contentLength >= 0)
+        {
+            Map.Entry<Long, Integer> sizeLevel = _sizeLevels.floorEntry(contentLength);
+            if (sizeLevel != null)
+                level = level < 0 ? sizeLevel.getValue() : Math.min(level, sizeLevel.getValue());
+        }
+        return Math.min(level, compression.getMaxLevel());
+    }
+
+    public void setIncludedMethods(String... methods)
+    {
+        _methods.getIncluded().clear();
+        _methods.include(methods);
+    }
+
+    public void setExcludedMethods(String... methods)
+    {
+        _methods.getExcluded().clear();
+        _methods.exclude(methods);
+    }
+
+    public String[] getIncludedMethods()
+    {
+        return _methods.getIncluded().toArray(new String[0]);
+    }
+
+    public String[] getExcludedMethods()
+    {
+        return _methods.getExcluded().toArray(new String[0]);
+    }
+
+    /**
+     * @param pathspecs Path specs (as per servlet spec) to include
+     */
+    public void setIncludedPaths(String... pathspecs)
+    {
+        _paths.getIncluded().clear();
+        _paths.include(pathspecs);
+    }
+
+    /**
+     * @param pathspecs Path specs (as per servlet spec) to exclude
+     */
+    public void setExcludedPaths(String... pathspecs)
+    {
+        _paths.getExcluded().clear();
+        _paths.exclude(pathspecs);
+    }
+
+    public String[] getIncludedPaths()
+    {
+        return _paths.getIncluded().toArray(new String[0]);
+    }
+
+    public String[] getExcludedPaths()
+    {
+        return _paths.getExcluded().toArray(new String[0]);
+    }
+
+    /**
+     * @param types The mime types to include (without charset or other parameters)
+     */
+    public void setIncludedMimeTypes(String... types)
+    {
+        _mimeTypes.getIncluded().clear();
+        _mimeTypes.include(types);
+    }
+
+    /**
+     * @param types The mime types to exclude (without charset or other parameters)
+     */
+    public void setExcludedMimeTypes(String... types)
+    {
+        _mimeTypes.getExcluded().clear();
+        _mimeTypes.exclude(types);
+    }
+
+    public String[] getIncludedMimeTypes()
+    {
+        return _mimeTypes.getIncluded().toArray(new String[0]);
+    }
+
+    public String[] getExcludedMimeTypes()
+    {
+        return _mimeTypes.getExcluded().toArray(new String[0]);
+    }
+
+    /**
+     * @param mimeType the MIME type to test
+     * @return whether the MIME type is allowed by the MIME type filters
+     */
+    public boolean isMimeTypeCompressible(String mimeType)
+    {
+        return _mimeTypes.test(mimeType);
+    }
+
+    protected boolean isPathCompressible(String pathInContext)
+    {
+        if (pathInContext == null)
+            return true;
+        return _paths.test(pathInContext);
+    }
+
+    protected boolean isMimeTypeCompressible(MimeTypes mimeTypes, String pathInContext)
+    {
+        // Exclude non-compressible mime-types known from URI extension
+        String mimeType = mimeTypes.getMimeByExtension(pathInContext);
+        if (mimeType != null)
+            return isMimeTypeCompressible(HttpField.getValueParameters(mimeType, null));
+        return true;
+    }
+
+    /**
+     * <p>Selects the {@link Compression} to use from the {@code Accept-Encoding} header.</p>
+     *
+     * @param fields the request headers
+     * @return the compression with the highest quality and server preference, or null if none is acceptable
+     */
+    protected Compression selectCompression(HttpFields fields)
+    {
+        List<String> accepted = fields.getQualityCSV(HttpHeader.ACCEPT_ENCODING, this::preference);
+        for (String value : accepted)
+        {
+            String encoding = StringUtil.asciiToLowerCase(value);
+            if ("*".equals(encoding))
+                return selectWildcardCompression(fields);
+            Compression compression = _compressions.get(encoding);
+            if (compression != null)
+                return compression;
+        }
+        return null;
+    }
+
+    private Compression selectWildcardCompression(HttpFields fields)
+    {
+        // The wildcard only applies to the encodings not explicitly listed, including those listed with q=0.
+        QuotedCSV listed = new QuotedCSV(false);
+        for (HttpField field : fields.getFields(HttpHeader.ACCEPT_ENCODING))
+        {
+            listed.addValue(field.getValue());
+        }
+        List<String> excluded = listed.getValues().stream()
+            .map(v -> StringUtil.asciiToLowerCase(HttpField.getValueParameters(v, null)))
+            .toList();
+        for (String encoding : _encodings)
+        {
+            if (!excluded.contains(encoding))
+                return _compressions.get(encoding);
+        }
+        return null;
+    }
+
+    private int preference(String value)
+    {
+        int index = _encodings.indexOf(StringUtil.asciiToLowerCase(value));
+        return index < 0 ? 0 : _encodings.size() - index;
+    }
+
+    @Override
+    public boolean handle(Request request, Response response, Callback callback) throws Exception
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("{} handle {}", this, request);
+
+        Handler next = getHandler();
+        if (next == null)
+            return false;
+
+        // Are we already being compressed?
+        if (Response.as(response, CompressionResponseAndCallback.class) != null)
+            return next.handle(request, response, callback);
+
+        String pathInContext = Request.getPathInContext(request);
+        boolean tryCompress = _methods.test(request.getMethod()) &&
+            isPathCompressible(pathInContext) &&
+            isMimeTypeCompressible(request.getContext().getMimeTypes(), pathInContext);
+
+        // Can we skip looking at the request and wrapping request or response?
+        if (!tryCompress)
+            // No need for a Vary header, as we will never compress
+            return next.handle(request, response, callback);
+
+        if (_vary != null)
+        {
+            // The response may vary based on the presence or lack of Accept-Encoding.
+            response.getHeaders().ensureField(_vary);
+        }
+
+        // Strip compression suffixes from conditional etags, so the next handlers can match them.
+        HttpFields fields = request.getHeaders();
+        if (fields.contains(HttpHeader.IF_MATCH) || fields.contains(HttpHeader.IF_NONE_MATCH))
+            request = stripEtagSuffixes(request, fields);
+
+        Compression compression = selectCompression(fields);
+        if (compression != null)
+        {
+            CompressionResponseAndCallback compressionResponseAndCallback = new CompressionResponseAndCallback(this, compression, request, response, callback);
+            response = compressionResponseAndCallback;
+            callback = compressionResponseAndCallback;
+        }
+
+        return next.handle(request, response, callback);
+    }
+
+    private Request stripEtagSuffixes(Request request, HttpFields fields)
+    {
+        HttpFields.Mutable newFields = null;
+        for (HttpField field : fields)
+        {
+            HttpHeader header = field.getHeader();
+            if (header != HttpHeader.IF_MATCH && header != HttpHeader.IF_NONE_MATCH)
+                continue;
+            String etags = field.getValue();
+            if (!etags.contains(EtagUtils.ETAG_SEPARATOR))
+                continue;
+            String etagsNoSuffix = etags;
+            for (Compression compression : _compressions.values())
+            {
+                etagsNoSuffix = compression.getFormat().stripSuffixes(etagsNoSuffix);
+            }
+            if (etagsNoSuffix.equals(etags))
+                continue;
+            if (newFields == null)
+                newFields = HttpFields.build(fields);
+            newFields.put(header, etagsNoSuffix);
+            request.setAttribute(COMPRESSION_HANDLER_ETAGS, etags);
+        }
+        return newFields == null ? request : new HeaderWrappingRequest(request, newFields.asImmutable());
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,%s,min=%s}", getClass().getSimpleName(), hashCode(), getState(), _encodings, _minCompressSize);
+    }
+}
@@ -0,0 +1,414 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler.compression;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritePendingException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.io.RetainableByteBuffer;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.IteratingNestedCallback;
+import org.eclipse.jetty.util.thread.Invocable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A {@link Response} and {@link Callback} wrapper that compresses the response content
+ * with the {@link Compression} selected by {@link CompressionHandler}.</p>
+ */
+public class CompressionResponseAndCallback extends Response.Wrapper implements Callback, Invocable
+{
+    private static final Logger LOG = LoggerFactory.getLogger(CompressionResponseAndCallback.class);
+
+    private enum State
+    {
+        // first state, indicating that content might be compressed, pending the state of the response
+        MIGHT_COMPRESS,
+        // the response is not being compressed (this is a final state)
+        NOT_COMPRESSING,
+        // The response is being committed (no changes to compress state can be made at this point)
+        COMMITTING,
+        // The response is compressing its body content
+        COMPRESSING,
+        // The last content is being compressed and the encoder is being finished
+        FINISHING,
+        // The content has finished compressing (this is a final state)
+        FINISHED
+    }
+
+    private final AtomicReference<State> _state = new AtomicReference<>(State.MIGHT_COMPRESS);
+    private final Callback _callback;
+    private final CompressionHandler _handler;
+    private final Compression _compression;
+    private final int _bufferSize;
+    private Compression.Encoder _encoder;
+    private RetainableByteBuffer _buffer;
+    private boolean _last;
+
+    public CompressionResponseAndCallback(CompressionHandler handler, Compression compression, Request request, Response response, Callback callback)
+    {
+        super(request, response);
+        _callback = callback;
+        _handler = handler;
+        _compression = compression;
+        _bufferSize = Math.max(CompressionHandler.MIN_BUFFER_SIZE, request.getConnectionMetaData().getHttpConfiguration().getOutputBufferSize());
+    }
+
+    public Compression getCompression()
+    {
+        return _compression;
+    }
+
+    @Override
+    public void succeeded()
+    {
+        // We need to write nothing here to intercept the committing of the
+        // response and possibly change headers in case write is never called.
+        if (_last)
+            _callback.succeeded();
+        else
+            write(true, null, _callback);
+    }
+
+    @Override
+    public void failed(Throwable x)
+    {
+        _callback.failed(x);
+    }
+
+    @Override
+    public InvocationType getInvocationType()
+    {
+        return _callback.getInvocationType();
+    }
+
+    @Override
+    public void write(boolean last, ByteBuffer content, Callback callback)
+    {
+        _last = last;
+        switch (_state.get())
+        {
+            case MIGHT_COMPRESS -> commit(last, callback, content);
+            case NOT_COMPRESSING -> super.write(last, content, callback);
+            case COMMITTING -> callback.failed(new WritePendingException());
+            case COMPRESSING -> compress(last, callback, content);
+            default ->
+            {
+                if (BufferUtil.isEmpty(content))
+                    callback.succeeded();
+                else
+                    callback.failed(new IllegalStateException("state=" + _state.get()));
+            }
+        }
+    }
+
+    private void compress(boolean last, Callback callback, ByteBuffer content)
+    {
+        if (content != null || last)
+            new CompressBufferCB(last, callback, content).iterate();
+        else
+            callback.succeeded();
+    }
+
+    protected void commit(boolean last, Callback callback, ByteBuffer content)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("commit(last={}, callback={}, content={})", last, callback, BufferUtil.toDetailString(content));
+
+        Request request = getRequest();
+        HttpFields.Mutable fields = getHeaders();
+
+        // Are we excluding because of status?
+        int sc = getStatus();
+        if (sc > 0 && (sc < 200 || sc == 204 || sc == 205 || sc >= 300))
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} exclude by status {}", this, sc);
+            noCompression();
+
+            if (sc == HttpStatus.NOT_MODIFIED_304)
+            {
+                String requestEtags = (String)request.getAttribute(CompressionHandler.COMPRESSION_HANDLER_ETAGS);
+                String responseEtag = fields.get(HttpHeader.ETAG);
+                if (requestEtags != null && responseEtag != null)
+                {
+                    String responseEtagCompressed = _compression.getFormat().etag(responseEtag);
+                    if (requestEtags.contains(responseEtagCompressed))
+                        fields.put(HttpHeader.ETAG, responseEtagCompressed);
+                }
+            }
+
+            super.write(last, content, callback);
+            return;
+        }
+
+        // Are we excluding because of mime-type?
+        String mimeType = null;
+        String ct = fields.get(HttpHeader.CONTENT_TYPE);
+        if (ct != null)
+        {
+            mimeType = HttpField.getValueParameters(ct, null);
+            if (!_handler.isMimeTypeCompressible(mimeType))
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("{} exclude by mimeType {}", this, ct);
+                noCompression();
+                super.write(last, content, callback);
+                return;
+            }
+        }
+
+        // Has the Content-Encoding header already been set?
+        String ce = fields.get(HttpHeader.CONTENT_ENCODING);
+        if (ce != null)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} exclude by content-encoding {}", this, ce);
+            noCompression();
+            super.write(last, content, callback);
+            return;
+        }
+
+        // If there is nothing to write, don't compress.
+        if (last && BufferUtil.isEmpty(content))
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} exclude by nothing to write", this);
+            noCompression();
+            super.write(true, content, callback);
+            return;
+        }
+
+        // Are we the thread that commits?
+        if (_state.compareAndSet(State.MIGHT_COMPRESS, State.COMMITTING))
+        {
+            long contentLength = fields.getLongField(HttpHeader.CONTENT_LENGTH);
+            if (contentLength < 0 && last)
+                contentLength = BufferUtil.length(content);
+
+            if (contentLength >= 0 && contentLength < _handler.getMinCompressSize())
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("{} exclude by minCompressSize {}", this, contentLength);
+                _state.set(State.NOT_COMPRESSING);
+                super.write(last, content, callback);
+                return;
+            }
+
+            int level = _handler.getCompressionLevel(_compression, mimeType, contentLength);
+            _encoder = _compression.acquireEncoder(level, _handler.isSyncFlush());
+
+            fields.put(_compression.getFormat().getContentEncoding());
+
+            // Adjust headers
+            fields.remove(HttpHeader.CONTENT_LENGTH);
+            String etag = fields.get(HttpHeader.ETAG);
+            if (etag != null)
+                fields.put(HttpHeader.ETAG, _compression.getFormat().etag(etag));
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} compressing level {} with {}", this, level, _encoder);
+            _state.set(State.COMPRESSING);
+
+            if (BufferUtil.isEmpty(content))
+            {
+                // We are committing, but have no content to compress, so flush empty buffer to write headers.
+                super.write(last, content, callback);
+            }
+            else
+            {
+                compress(last, callback, content);
+            }
+        }
+        else
+        {
+            callback.failed(new WritePendingException());
+        }
+    }
+
+    public void noCompression()
+    {
+        while (true)
+        {
+            switch (_state.get())
+            {
+                case NOT_COMPRESSING:
+                    return;
+
+                case MIGHT_COMPRESS:
+                    if (_state.compareAndSet(State.MIGHT_COMPRESS, State.NOT_COMPRESSING))
+                        return;
+                    break;
+
+                default:
+                    throw new IllegalStateException(_state.get().toString());
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,%s}", getClass().getSimpleName(), hashCode(), _compression.getEncoding(), _state.get());
+    }
+
+    private class CompressBufferCB extends IteratingNestedCallback
+    {
+        private final ByteBuffer _content;
+        private final boolean _last;
+
+        public CompressBufferCB(boolean complete, Callback callback, ByteBuffer content)
+        {
+            super(callback);
+            _content = content;
+            _last = complete;
+
+            if (_content != null)
+                _encoder.addInput(_content);
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("CompressBufferCB(complete={}, callback={}, content={})", complete, callback, BufferUtil.toDetailString(content));
+        }
+
+        @Override
+        protected void onCompleteFailure(Throwable x)
+        {
+            cleanup();
+            super.onCompleteFailure(x);
+        }
+
+        @Override
+        protected Action process() throws Exception
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("CompressBufferCB.process(): _last={}, _buffer={}, _content={}", _last, _buffer, BufferUtil.toDetailString(_content));
+
+            State state = _state.get();
+
+            // Are we finished?
+            if (state == State.FINISHED)
+            {
+                // The last compressed bytes have been written, so cleanup and succeed.
+                cleanup();
+                return Action.SUCCEEDED;
+            }
+
+            if (_buffer == null)
+                _buffer = getRequest().getComponents().getByteBufferPool().acquire(_bufferSize, false);
+            // Previous writes always fully consume the buffer.
+            ByteBuffer outputBuffer = _buffer.getByteBuffer();
+            BufferUtil.clearToFill(outputBuffer);
+
+            return switch (state)
+            {
+                case COMPRESSING -> compressing(outputBuffer);
+                case FINISHING -> finishing(outputBuffer);
+                default -> throw new IllegalStateException("Unexpected state [" + _state.get() + "]");
+            };
+        }
+
+        private void cleanup()
+        {
+            if (_encoder != null)
+            {
+                _state.set(State.FINISHED);
+                _encoder.release();
+                _encoder = null;
+            }
+
+            if (_buffer != null)
+            {
+                _buffer.release();
+                _buffer = null;
+            }
+        }
+
+        private Action compressing(ByteBuffer outputBuffer)
+        {
+            if (!_encoder.needsInput())
+            {
+                int len = _encoder.encode(outputBuffer);
+                if (len > 0)
+                {
+                    BufferUtil.flipToFlush(outputBuffer, 0);
+                    write(false, outputBuffer);
+                    return Action.SCHEDULED;
+                }
+            }
+
+            if (_last)
+            {
+                _state.set(State.FINISHING);
+                _encoder.finish();
+                return finishing(outputBuffer);
+            }
+
+            // The content held by CompressBufferCB is fully consumed as input to the encoder, we are done.
+            if (BufferUtil.isEmpty(_content))
+                return Action.SUCCEEDED;
+
+            // No progress made on encoding, but the _content wasn't consumed, we shouldn't be able to reach this.
+            throw new AssertionError("No progress on encode made for " + this);
+        }
+
+        private Action finishing(ByteBuffer outputBuffer)
+        {
+            int len = _encoder.encode(outputBuffer);
+            if (_encoder.isFinished())
+            {
+                _state.set(State.FINISHED);
+                BufferUtil.flipToFlush(outputBuffer, 0);
+                write(true, outputBuffer);
+                return Action.SCHEDULED;
+            }
+
+            if (len > 0)
+            {
+                BufferUtil.flipToFlush(outputBuffer, 0);
+                write(false, outputBuffer);
+                return Action.SCHEDULED;
+            }
+
+            // No progress made on encoding, encoder not finished, we shouldn't be able to reach this.
+            throw new AssertionError("No progress on encode made for " + this);
+        }
+
+        private void write(boolean last, ByteBuffer outputBuffer)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("write() last={}, outputBuffer={}", last, BufferUtil.toDetailString(outputBuffer));
+            CompressionResponseAndCallback.super.write(last, outputBuffer, this);
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s[content=%s last=%b buffer=%s encoder=%s %s]",
+                super.toString(),
+                BufferUtil.toDetailString(_content),
+                _last,
+                _buffer,
+                _encoder,
+                _state.get());
+        }
+    }
+}
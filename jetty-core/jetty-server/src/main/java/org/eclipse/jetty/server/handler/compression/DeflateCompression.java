@@ -0,0 +1,193 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler.compression;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+
+import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.compression.CompressionPool;
+import org.eclipse.jetty.util.compression.DeflaterPool;
+
+/**
+ * <p>The {@code deflate} content coding, a zlib stream as defined by RFC 1950.</p>
+ * <p>A {@link DeflaterPool} is lazily created for each compression level in use,
+ * so that pooled {@link Deflater}s never need to change their level.</p>
+ */
+@ManagedObject
+public class DeflateCompression extends Compression
+{
+    public static final CompressedContentFormat DEFLATE = new CompressedContentFormat("deflate", ".deflate");
+
+    private final Map<Integer, DeflaterPool> _pools = new ConcurrentHashMap<>();
+    private final boolean _nowrap;
+    private int _poolCapacity = CompressionPool.DEFAULT_CAPACITY;
+    private int _defaultLevel = Deflater.DEFAULT_COMPRESSION;
+
+    public DeflateCompression()
+    {
+        this(DEFLATE, false);
+    }
+
+    protected DeflateCompression(CompressedContentFormat format, boolean nowrap)
+    {
+        super(format);
+        _nowrap = nowrap;
+    }
+
+    /**
+     * @return the capacity of each per-level {@link DeflaterPool}
+     */
+    @ManagedAttribute("The capacity of each per-level Deflater pool")
+    public int getPoolCapacity()
+    {
+        return _poolCapacity;
+    }
+
+    /**
+     * @param capacity the capacity of each per-level {@link DeflaterPool}
+     */
+    public void setPoolCapacity(int capacity)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+        _poolCapacity = capacity;
+    }
+
+    @Override
+    public int getDefaultLevel()
+    {
+        return _defaultLevel;
+    }
+
+    /**
+     * @param level the default compression level, from {@link Deflater#NO_COMPRESSION} to {@link Deflater#BEST_COMPRESSION},
+     * or {@link Deflater#DEFAULT_COMPRESSION}
+     */
+    public void setDefaultLevel(int level)
+    {
+        _defaultLevel = toDeflaterLevel(level);
+    }
+
+    @Override
+    public int getMaxLevel()
+    {
+        return Deflater.BEST_COMPRESSION;
+    }
+
+    @Override
+    public Compression.Encoder acquireEncoder(int level, boolean syncFlush)
+    {
+        int deflaterLevel = level < 0 ? _defaultLevel : toDeflaterLevel(level);
+        DeflaterPool pool = _pools.computeIfAbsent(deflaterLevel, this::newDeflaterPool);
+        return newEncoder(pool.acquire(), syncFlush);
+    }
+
+    protected Compression.Encoder newEncoder(DeflaterPool.Entry entry, boolean syncFlush)
+    {
+        return new Encoder(entry, syncFlush);
+    }
+
+    private DeflaterPool newDeflaterPool(int level)
+    {
+        DeflaterPool pool = new DeflaterPool(_poolCapacity, level, _nowrap);
+        addBean(pool, true);
+        return pool;
+    }
+
+    private int toDeflaterLevel(int level)
+    {
+        if (level < 0)
+            return Deflater.DEFAULT_COMPRESSION;
+        return Math.min(level, Deflater.BEST_COMPRESSION);
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        super.doStop();
+        _pools.values().forEach(this::removeBean);
+        _pools.clear();
+    }
+
+    /**
+     * <p>An {@link Compression.Encoder} backed by a pooled {@link Deflater}.</p>
+     */
+    protected static class Encoder implements Compression.Encoder
+    {
+        private final DeflaterPool.Entry _entry;
+        private final Deflater _deflater;
+        private final int _flushMode;
+
+        protected Encoder(DeflaterPool.Entry entry, boolean syncFlush)
+        {
+            _entry = entry;
+            _deflater = entry.get();
+            _flushMode = syncFlush ? Deflater.SYNC_FLUSH : Deflater.NO_FLUSH;
+        }
+
+        protected Deflater getDeflater()
+        {
+            return _deflater;
+        }
+
+        @Override
+        public void addInput(ByteBuffer content)
+        {
+            _deflater.setInput(content);
+        }
+
+        @Override
+        public boolean needsInput()
+        {
+            return _deflater.needsInput();
+        }
+
+        @Override
+        public void finish()
+        {
+            _deflater.finish();
+        }
+
+        @Override
+        public int encode(ByteBuffer output)
+        {
+            if (_deflater.finished())
+                return 0;
+            return _deflater.deflate(output, _flushMode);
+        }
+
+        @Override
+        public boolean isFinished()
+        {
+            return _deflater.finished();
+        }
+
+        @Override
+        public void release()
+        {
+            _entry.release();
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x{in=%d,out=%d}", getClass().getSimpleName(), hashCode(), _deflater.getBytesRead(), _deflater.getBytesWritten());
+        }
+    }
+}
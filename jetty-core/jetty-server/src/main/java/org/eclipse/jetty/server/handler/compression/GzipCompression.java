@@ -0,0 +1,101 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler.compression;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.compression.DeflaterPool;
+
+/**
+ * <p>The {@code gzip} content coding, as defined by RFC 1952.</p>
+ */
+@ManagedObject
+public class GzipCompression extends DeflateCompression
+{
+    // Per RFC-1952 this is the "unknown" OS value byte.
+    private static final byte OS_UNKNOWN = (byte)0xFF;
+    private static final byte[] GZIP_HEADER = new byte[]{
+        (byte)0x1f, (byte)0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, OS_UNKNOWN
+    };
+    // Per RFC-1952, the GZIP trailer is 8 bytes
+    private static final int GZIP_TRAILER_SIZE = 8;
+
+    public GzipCompression()
+    {
+        super(CompressedContentFormat.GZIP, true);
+    }
+
+    @Override
+    protected Compression.Encoder newEncoder(DeflaterPool.Entry entry, boolean syncFlush)
+    {
+        return new GzipEncoder(entry, syncFlush);
+    }
+
+    private static class GzipEncoder extends Encoder
+    {
+        private final CRC32 _crc = new CRC32();
+        private boolean _header;
+        private boolean _trailer;
+
+        private GzipEncoder(DeflaterPool.Entry entry, boolean syncFlush)
+        {
+            super(entry, syncFlush);
+        }
+
+        @Override
+        public void addInput(ByteBuffer content)
+        {
+            _crc.update(content.slice());
+            super.addInput(content);
+        }
+
+        @Override
+        public int encode(ByteBuffer output)
+        {
+            int start = output.position();
+            if (!_header)
+            {
+                if (output.remaining() < GZIP_HEADER.length)
+                    return 0;
+                output.put(GZIP_HEADER, 0, GZIP_HEADER.length);
+                _header = true;
+            }
+
+            super.encode(output);
+
+            if (super.isFinished() && !_trailer && output.remaining() >= GZIP_TRAILER_SIZE)
+            {
+                // Per RFC-1952, the GZIP trailer is LITTLE_ENDIAN
+                ByteOrder order = output.order();
+                output.order(ByteOrder.LITTLE_ENDIAN);
+                output.putInt((int)_crc.getValue());
+                output.putInt(getDeflater().getTotalIn());
+                output.order(order);
+                _trailer = true;
+            }
+            return output.position() - start;
+        }
+
+        @Override
+        public boolean isFinished()
+        {
+            return _trailer;
+        }
+    }
+}
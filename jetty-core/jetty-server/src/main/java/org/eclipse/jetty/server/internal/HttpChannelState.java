@@ -15,6 +15,7 @@ package org.eclipse.jetty.server.internal;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.WritePendingException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -1221,7 +1222,48 @@ public class HttpChannelState implements HttpChannel, Components
         @Override
         public void write(boolean last, ByteBuffer content, Callback callback)
         {
-            long length = BufferUtil.length(content);
+            write(last, content, null, 0, BufferUtil.length(content), callback);
+        }
+
+        /**
+         * @return whether {@link #writeFile(boolean, FileChannel, long, long, Callback)}
+         * can send file content without copying it to user space
+         * @see HttpStream#isFileTransferSupported()
+         */
+        public boolean isFileTransferSupported()
+        {
+            HttpStream stream;
+            try (AutoLock ignored = _request._lock.lock())
+            {
+                HttpChannelState httpChannelState = _request.lockedGetHttpChannelState();
+                if (_writeFailure != null || _writeCallback != null)
+                    return false;
+                stream = httpChannelState._stream;
+            }
+            // The content length must be known, so that the file bytes need no framing.
+            return stream != null && stream.isFileTransferSupported() && getHeaders().getLongField(HttpHeader.CONTENT_LENGTH) >= 0;
+        }
+
+        /**
+         * <p>Writes a region of a file as response content, without copying it to user space.</p>
+         * <p>The response is committed, if necessary, before the file content is transferred.</p>
+         *
+         * @param last whether the file region is the last content of the response
+         * @param file the file to send the bytes from
+         * @param position the position in the file of the first byte to send
+         * @param length the number of bytes to send
+         * @param callback the callback to complete when the write is complete
+         * @see #isFileTransferSupported()
+         */
+        public void writeFile(boolean last, FileChannel file, long position, long length, Callback callback)
+        {
+            Callback transferred = last ? Callback.from(() -> write(true, null, callback), callback::failed) : callback;
+            Callback committed = Callback.from(() -> write(false, null, file, position, length, transferred), callback::failed);
+            write(false, null, committed);
+        }
+
+        private void write(boolean last, ByteBuffer content, FileChannel file, long position, long length, Callback callback)
+        {
 
             HttpChannelState httpChannelState;
             HttpStream stream;
@@ -1240,7 +1282,7 @@ public class HttpChannelState implements HttpChannel, Components
                         if (_writeCallback instanceof InterimCallback interimCallback)
                         {
                             // Do this write after the interim callback.
-                            interimCallback.whenComplete((v, t) -> write(last, content, callback));
+                            interimCallback.whenComplete((v, t) -> write(last, content, file, position, length, callback));
                             return;
                         }
                         writeFailure = new WritePendingException();
@@ -1294,6 +1336,14 @@ public class HttpChannelState implements HttpChannel, Components
                     responseMetaData = lockedPrepareResponse(httpChannelState, last);
             }
 
+            if (file != null)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("transferring {} {}+{} {}", file, position, length, this);
+                stream.transferFrom(file, position, length, this);
+                return;
+            }
+
             if (LOG.isDebugEnabled())
                 LOG.debug("writing last={} {} {}", last, BufferUtil.toDetailString(content), this);
             stream.send(_request._metaData, responseMetaData, last, content, this);
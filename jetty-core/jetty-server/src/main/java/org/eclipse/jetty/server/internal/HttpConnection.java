@@ -15,6 +15,7 @@ package org.eclipse.jetty.server.internal;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.WritePendingException;
 import java.util.List;
 import java.util.Objects;
@@ -53,6 +54,7 @@ import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.io.EofException;
 import org.eclipse.jetty.io.RetainableByteBuffer;
 import org.eclipse.jetty.io.RuntimeIOException;
+import org.eclipse.jetty.io.SocketChannelEndPoint;
 import org.eclipse.jetty.io.ssl.SslConnection;
 import org.eclipse.jetty.server.AbstractMetaDataConnection;
 import org.eclipse.jetty.server.ConnectionFactory;
@@ -1422,6 +1424,26 @@ public class HttpConnection extends AbstractMetaDataConnection implements Runnab
                 _sendCallback.iterate();
         }
 
+        @Override
+        public boolean isFileTransferSupported()
+        {
+            // The file bytes can only be transferred if they are not encrypted and
+            // the response is not a HEAD response, which must not send the content.
+            return getEndPoint() instanceof SocketChannelEndPoint && !HttpMethod.HEAD.is(_request.getMethod());
+        }
+
+        @Override
+        public void transferFrom(FileChannel file, long position, long length, Callback callback)
+        {
+            if (!_generator.isCommitted() || _generator.isChunking() || !(getEndPoint() instanceof SocketChannelEndPoint endPoint))
+            {
+                callback.failed(new IllegalStateException("Cannot transfer file content"));
+                return;
+            }
+            bytesOut.add(length);
+            endPoint.transferFrom(callback, file, position, length);
+        }
+
         @Override
         public long getIdleTimeout()
         {
@@ -0,0 +1,80 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDir;
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDirExtension;
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@ExtendWith(WorkDirExtension.class)
+public class AsyncRequestLogWriterTest
+{
+    public WorkDir workDir;
+
+    @Test
+    public void testAllEntriesWrittenInOrder() throws Exception
+    {
+        Path logFile = workDir.getEmptyPathDir().resolve("request.log");
+        AsyncRequestLogWriter writer = new AsyncRequestLogWriter(logFile.toString(), new BlockingArrayQueue<>(16));
+        writer.setBlockWhenFull(true);
+        writer.setMaxBatchSize(8);
+        writer.start();
+        try
+        {
+            for (int i = 0; i < 5000; i++)
+            {
+                writer.write("entry " + i);
+            }
+        }
+        finally
+        {
+            LifeCycle.stop(writer);
+        }
+
+        List<String> lines = Files.readAllLines(logFile, StandardCharsets.UTF_8);
+        assertEquals(IntStream.range(0, 5000).mapToObj(i -> "entry " + i).toList(), lines);
+        assertEquals(0, writer.getDroppedEntries());
+    }
+
+    @Test
+    public void testEntriesDroppedWhenFull() throws Exception
+    {
+        Path logFile = workDir.getEmptyPathDir().resolve("request.log");
+        AsyncRequestLogWriter writer = new AsyncRequestLogWriter(logFile.toString(), new BlockingArrayQueue<>(4));
+        // Not started, so nothing drains the queue.
+        for (int i = 0; i < 10; i++)
+        {
+            writer.write("entry " + i);
+        }
+        assertEquals(4, writer.getQueueSize());
+        assertEquals(6, writer.getDroppedEntries());
+
+        // The queued entries are written on stop.
+        writer.start();
+        writer.stop();
+        List<String> lines = Files.readAllLines(logFile, StandardCharsets.UTF_8);
+        assertEquals(List.of("entry 0", "entry 1", "entry 2", "entry 3"), lines);
+    }
+}
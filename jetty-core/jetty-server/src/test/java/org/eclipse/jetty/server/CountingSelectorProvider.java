@@ -0,0 +1,90 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import java.io.IOException;
+import java.net.ProtocolFamily;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.Pipe;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.AbstractSelector;
+import java.nio.channels.spi.SelectorProvider;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link SelectorProvider} that forwards to the default provider,
+ * counting the selectors and the TCP channels that it opens.
+ */
+public class CountingSelectorProvider extends SelectorProvider
+{
+    private final SelectorProvider provider = SelectorProvider.provider();
+    private final AtomicInteger selectors = new AtomicInteger();
+    private final AtomicInteger serverSocketChannels = new AtomicInteger();
+    private final AtomicInteger socketChannels = new AtomicInteger();
+
+    public int getSelectors()
+    {
+        return selectors.get();
+    }
+
+    public int getServerSocketChannels()
+    {
+        return serverSocketChannels.get();
+    }
+
+    public int getSocketChannels()
+    {
+        return socketChannels.get();
+    }
+
+    @Override
+    public DatagramChannel openDatagramChannel() throws IOException
+    {
+        return provider.openDatagramChannel();
+    }
+
+    @Override
+    public DatagramChannel openDatagramChannel(ProtocolFamily family) throws IOException
+    {
+        return provider.openDatagramChannel(family);
+    }
+
+    @Override
+    public Pipe openPipe() throws IOException
+    {
+        return provider.openPipe();
+    }
+
+    @Override
+    public AbstractSelector openSelector() throws IOException
+    {
+        selectors.incrementAndGet();
+        return provider.openSelector();
+    }
+
+    @Override
+    public ServerSocketChannel openServerSocketChannel() throws IOException
+    {
+        serverSocketChannels.incrementAndGet();
+        return provider.openServerSocketChannel();
+    }
+
+    @Override
+    public SocketChannel openSocketChannel() throws IOException
+    {
+        socketChannels.incrementAndGet();
+        return provider.openSocketChannel();
+    }
+}
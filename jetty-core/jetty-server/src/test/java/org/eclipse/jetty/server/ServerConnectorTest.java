@@ -28,20 +28,30 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.SelectorProvider;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.io.AbstractConnection;
+import org.eclipse.jetty.io.ClientConnectionFactory;
+import org.eclipse.jetty.io.ClientConnector;
+import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.io.SocketChannelEndPoint;
+import org.eclipse.jetty.io.Transport;
 import org.eclipse.jetty.logging.StacklessLogging;
 import org.eclipse.jetty.server.handler.DefaultHandler;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.Promise;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.DisabledOnOs;
@@ -362,4 +372,79 @@ public class ServerConnectorTest
             assertThat(x.getMessage(), containsString("0.0.0.0:" + port));
         }
     }
+
+    @Test
+    public void testSelectorProvider() throws Exception
+    {
+        CountingSelectorProvider selectorProvider = new CountingSelectorProvider();
+        Server server = new Server();
+        ServerConnector connector = new ServerConnector(server, 1, 2);
+        connector.getSelectorManager().setSelectorProvider(selectorProvider);
+        server.addConnector(connector);
+        server.setHandler(new DefaultHandler());
+
+        try
+        {
+            server.start();
+            assertThrows(IllegalStateException.class, () -> connector.getSelectorManager().setSelectorProvider(SelectorProvider.provider()));
+            assertEquals(2, selectorProvider.getSelectors());
+            assertEquals(1, selectorProvider.getServerSocketChannels());
+
+            try (Socket socket = new Socket("localhost", connector.getLocalPort()))
+            {
+                socket.getOutputStream().write("GET / HTTP/1.0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+                HttpTester.Response response = HttpTester.parseResponse(socket.getInputStream());
+                assertNotNull(response);
+                assertEquals(HttpStatus.NOT_FOUND_404, response.getStatus());
+            }
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testClientConnectorSelectorProvider() throws Exception
+    {
+        Server server = new Server();
+        ServerConnector connector = new ServerConnector(server, 1, 1);
+        server.addConnector(connector);
+        server.setHandler(new DefaultHandler());
+
+        CountingSelectorProvider selectorProvider = new CountingSelectorProvider();
+        ClientConnector clientConnector = new ClientConnector();
+        clientConnector.setSelectorProvider(selectorProvider);
+
+        try
+        {
+            server.start();
+            clientConnector.start();
+            assertThrows(IllegalStateException.class, () -> clientConnector.setSelectorProvider(SelectorProvider.provider()));
+            assertEquals(1, selectorProvider.getSelectors());
+
+            Map<String, Object> context = new HashMap<>();
+            context.put(Transport.class.getName(), Transport.TCP_IP);
+            context.put(ClientConnector.CLIENT_CONNECTION_FACTORY_CONTEXT_KEY, (ClientConnectionFactory)(endPoint, ctx) -> new AbstractConnection(endPoint, clientConnector.getExecutor())
+            {
+                @Override
+                public void onFillable()
+                {
+                }
+            });
+            Promise.Completable<Connection> promise = new Promise.Completable<>();
+            context.put(ClientConnector.CONNECTION_PROMISE_CONTEXT_KEY, promise);
+            clientConnector.connect(new InetSocketAddress("localhost", connector.getLocalPort()), context);
+
+            Connection connection = promise.get(5, TimeUnit.SECONDS);
+            // The client channel is opened by the configured provider.
+            assertEquals(1, selectorProvider.getSocketChannels());
+            connection.close();
+        }
+        finally
+        {
+            clientConnector.stop();
+            server.stop();
+        }
+    }
 }
@@ -19,8 +19,10 @@ import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.IntStream;
 
 import org.eclipse.jetty.http.HttpStatus;
@@ -33,6 +35,7 @@ import org.eclipse.jetty.server.Response;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.NanoTime;
 import org.eclipse.jetty.util.VirtualThreads;
 import org.eclipse.jetty.util.component.LifeCycle;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
@@ -46,7 +49,9 @@ import org.junit.jupiter.params.provider.ValueSource;
 import static org.awaitility.Awaitility.await;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -493,6 +498,86 @@ public class QoSHandlerTest
         });
     }
 
+    @Test
+    public void testAdaptiveLimit() throws Exception
+    {
+        int maxRequests = 32;
+        // The latency of the requests is controlled by advancing this clock.
+        AtomicLong nanoTime = new AtomicLong(NanoTime.now());
+        QoSHandler qosHandler = new QoSHandler()
+        {
+            @Override
+            long nanoTime()
+            {
+                return nanoTime.get();
+            }
+        };
+        qosHandler.setAdaptive(true);
+        qosHandler.setMaxRequestCount(maxRequests);
+        qosHandler.setMinRequestCount(2);
+        List<Callback> callbacks = new CopyOnWriteArrayList<>();
+        qosHandler.setHandler(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                // Save the callback but do not succeed it yet.
+                callbacks.add(callback);
+                return true;
+            }
+        });
+        start(qosHandler);
+        assertEquals(maxRequests, qosHandler.getRequestLimit());
+
+        // Fast requests do not reduce the limit.
+        for (int i = 0; i < 10; i++)
+        {
+            sendConcurrentRequests(maxRequests, callbacks, () -> nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(10)));
+        }
+        assertEquals(maxRequests, qosHandler.getRequestLimit());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(10), qosHandler.getRttEstimate());
+
+        // A latency increase reduces the limit.
+        for (int i = 0; i < 2; i++)
+        {
+            sendConcurrentRequests(qosHandler.getRequestLimit(), callbacks, () -> nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(250)));
+        }
+        int limit = qosHandler.getRequestLimit();
+        assertThat(limit, lessThan(maxRequests));
+        assertThat(limit, greaterThanOrEqualTo(qosHandler.getMinRequestCount()));
+        assertEquals(0, qosHandler.getSuspendedRequestCount());
+        assertEquals(0, qosHandler.getShedRequestCount());
+    }
+
+    private void sendConcurrentRequests(int count, List<Callback> callbacks, Runnable elapse)
+    {
+        List<LocalConnector.LocalEndPoint> endPoints = IntStream.range(0, count)
+            .mapToObj(i -> connector.executeRequest("""
+                GET /%d HTTP/1.1
+                Host: localhost
+                
+                """.formatted(i)))
+            .toList();
+        // Wait for all the requests to be handled concurrently,
+        // then complete them all with the same latency.
+        await().atMost(5, TimeUnit.SECONDS).until(callbacks::size, is(count));
+        elapse.run();
+        callbacks.forEach(Callback::succeeded);
+        callbacks.clear();
+        endPoints.forEach(endPoint ->
+        {
+            try
+            {
+                HttpTester.Response response = HttpTester.parseResponse(endPoint.getResponse(false, 15, TimeUnit.SECONDS));
+                assertEquals(HttpStatus.OK_200, response.getStatus());
+            }
+            catch (Exception x)
+            {
+                fail(x);
+            }
+        });
+    }
+
     @Test
     @DisabledForJreRange(max = JRE.JAVA_20)
     public void testRequestInVirtualThreadIsResumedInVirtualThread() throws Exception
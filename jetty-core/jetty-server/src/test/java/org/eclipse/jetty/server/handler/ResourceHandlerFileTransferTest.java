@@ -0,0 +1,345 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.io.ManagedSelector;
+import org.eclipse.jetty.io.SocketChannelEndPoint;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.gzip.GzipHandler;
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDir;
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDirExtension;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.resource.ResourceFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(WorkDirExtension.class)
+public class ResourceHandlerFileTransferTest
+{
+    private Server _server;
+    private ServerConnector _connector;
+    private Path _docRoot;
+    private byte[] _bytes;
+    private final AtomicLong _transferred = new AtomicLong();
+
+    @BeforeEach
+    public void before(WorkDir workDir) throws Exception
+    {
+        _docRoot = workDir.getEmptyPathDir();
+        // Large enough to congest the connection, so that the transfer must wait for the socket to be writable.
+        _bytes = new byte[8 * 1024 * 1024];
+        new Random().nextBytes(_bytes);
+        Files.write(_docRoot.resolve("large.bin"), _bytes);
+
+        _server = new Server();
+        _connector = new ServerConnector(_server)
+        {
+            @Override
+            protected SocketChannelEndPoint newEndPoint(SocketChannel channel, ManagedSelector selectSet, SelectionKey key) throws IOException
+            {
+                // Record the bytes written with transferFrom(), to verify that the file transfer path is taken.
+                SocketChannelEndPoint endPoint = new SocketChannelEndPoint(channel, selectSet, key, getScheduler())
+                {
+                    @Override
+                    public void transferFrom(Callback callback, FileChannel file, long position, long length)
+                    {
+                        _transferred.addAndGet(length);
+                        super.transferFrom(callback, file, position, length);
+                    }
+                };
+                endPoint.setIdleTimeout(getIdleTimeout());
+                return endPoint;
+            }
+        };
+        _server.addConnector(_connector);
+    }
+
+    @AfterEach
+    public void after() throws Exception
+    {
+        _server.stop();
+    }
+
+    private ResourceHandler newResourceHandler()
+    {
+        ResourceHandler resourceHandler = new ResourceHandler();
+        resourceHandler.setBaseResource(ResourceFactory.of(resourceHandler).newResource(_docRoot));
+        resourceHandler.setMinFileTransferSize(0);
+        return resourceHandler;
+    }
+
+    private HttpTester.Response request(String request) throws Exception
+    {
+        try (Socket socket = new Socket("localhost", _connector.getLocalPort()))
+        {
+            OutputStream output = socket.getOutputStream();
+            output.write(request.getBytes(StandardCharsets.UTF_8));
+            output.flush();
+
+            HttpTester.Input input = HttpTester.from(socket.getInputStream());
+            HttpTester.Response response = HttpTester.parseResponse(input);
+            assertNotNull(response);
+            return response;
+        }
+    }
+
+    @Test
+    public void testWriteFile() throws Exception
+    {
+        AtomicBoolean supported = new AtomicBoolean();
+        _server.setHandler(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback) throws Exception
+            {
+                response.getHeaders().put(HttpHeader.CONTENT_LENGTH, 1000);
+                supported.set(Response.isFileTransferSupported(response));
+                FileChannel file = FileChannel.open(_docRoot.resolve("large.bin"), StandardOpenOption.READ);
+                Response.writeFile(response, true, file, 10, 1000, Callback.from(callback, () -> IO.close(file)));
+                return true;
+            }
+        });
+        _server.start();
+
+        HttpTester.Response response = request("""
+            GET / HTTP/1.1\r
+            Host: localhost\r
+            Connection: close\r
+            \r
+            """);
+        assertTrue(supported.get());
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertArrayEquals(Arrays.copyOfRange(_bytes, 10, 1010), response.getContentBytes());
+        assertEquals(1000, _transferred.get());
+    }
+
+    @Test
+    public void testWriteFileFromCallback() throws Exception
+    {
+        _server.setHandler(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback) throws Exception
+            {
+                response.getHeaders().put(HttpHeader.CONTENT_LENGTH, 2000);
+                FileChannel file = FileChannel.open(_docRoot.resolve("large.bin"), StandardOpenOption.READ);
+                Callback complete = Callback.from(callback, () -> IO.close(file));
+                // The second region is transferred from the completion of the first one.
+                Response.writeFile(response, false, file, 0, 1000, Callback.from(
+                    () -> Response.writeFile(response, true, file, 5000, 1000, complete),
+                    complete::failed));
+                return true;
+            }
+        });
+        _server.start();
+
+        HttpTester.Response response = request("""
+            GET / HTTP/1.1\r
+            Host: localhost\r
+            Connection: close\r
+            \r
+            """);
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        byte[] expected = new byte[2000];
+        System.arraycopy(_bytes, 0, expected, 0, 1000);
+        System.arraycopy(_bytes, 5000, expected, 1000, 1000);
+        assertArrayEquals(expected, response.getContentBytes());
+        assertEquals(2000, _transferred.get());
+    }
+
+    @Test
+    public void testFileTransfer() throws Exception
+    {
+        _server.setHandler(newResourceHandler());
+        _server.start();
+
+        HttpTester.Response response = request("""
+            GET /large.bin HTTP/1.1\r
+            Host: localhost\r
+            Connection: close\r
+            \r
+            """);
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertThat(response.getLongField(HttpHeader.CONTENT_LENGTH), is((long)_bytes.length));
+        assertArrayEquals(_bytes, response.getContentBytes());
+        assertEquals(_bytes.length, _transferred.get());
+    }
+
+    @Test
+    public void testFileTransferRange() throws Exception
+    {
+        _server.setHandler(newResourceHandler());
+        _server.start();
+
+        HttpTester.Response response = request("""
+            GET /large.bin HTTP/1.1\r
+            Host: localhost\r
+            Range: bytes=100-2000099\r
+            Connection: close\r
+            \r
+            """);
+        assertEquals(HttpStatus.PARTIAL_CONTENT_206, response.getStatus());
+        assertArrayEquals(Arrays.copyOfRange(_bytes, 100, 2000100), response.getContentBytes());
+        assertEquals(2000000, _transferred.get());
+    }
+
+    @Test
+    public void testFileTransferInContext() throws Exception
+    {
+        ContextHandler contextHandler = new ContextHandler("/ctx");
+        contextHandler.setHandler(newResourceHandler());
+        _server.setHandler(contextHandler);
+        _server.start();
+
+        HttpTester.Response response = request("""
+            GET /ctx/large.bin HTTP/1.1\r
+            Host: localhost\r
+            Connection: close\r
+            \r
+            """);
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertArrayEquals(_bytes, response.getContentBytes());
+        // The ContextResponse wrapper does not prevent the file transfer.
+        assertEquals(_bytes.length, _transferred.get());
+    }
+
+    @Test
+    public void testWrapperOverridingWriteFallsBackToBufferedWrite() throws Exception
+    {
+        AtomicLong written = new AtomicLong();
+        ResourceHandler resourceHandler = newResourceHandler();
+        _server.setHandler(new Handler.Wrapper(resourceHandler)
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback) throws Exception
+            {
+                Response wrapper = new Response.Wrapper(request, response)
+                {
+                    @Override
+                    public void write(boolean last, ByteBuffer byteBuffer, Callback callback)
+                    {
+                        written.addAndGet(byteBuffer == null ? 0 : byteBuffer.remaining());
+                        super.write(last, byteBuffer, callback);
+                    }
+                };
+                return super.handle(request, wrapper, callback);
+            }
+        });
+        _server.start();
+
+        HttpTester.Response response = request("""
+            GET /large.bin HTTP/1.1\r
+            Host: localhost\r
+            Connection: close\r
+            \r
+            """);
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertArrayEquals(_bytes, response.getContentBytes());
+        // The content is written through the wrapper, not transferred from the file.
+        assertEquals(0, _transferred.get());
+        assertEquals(_bytes.length, written.get());
+    }
+
+    @Test
+    public void testFileTransferHead() throws Exception
+    {
+        _server.setHandler(newResourceHandler());
+        _server.start();
+
+        try (Socket socket = new Socket("localhost", _connector.getLocalPort()))
+        {
+            OutputStream output = socket.getOutputStream();
+            output.write("""
+                HEAD /large.bin HTTP/1.1\r
+                Host: localhost\r
+                \r
+                GET /large.bin HTTP/1.1\r
+                Host: localhost\r
+                Connection: close\r
+                \r
+                """.getBytes(StandardCharsets.UTF_8));
+            output.flush();
+
+            HttpTester.Input input = HttpTester.from(socket.getInputStream());
+            HttpTester.Response head = HttpTester.parseResponse(input, true);
+            assertNotNull(head);
+            assertEquals(HttpStatus.OK_200, head.getStatus());
+            HttpTester.Response get = HttpTester.parseResponse(input);
+            assertNotNull(get);
+            assertArrayEquals(_bytes, get.getContentBytes());
+            // Only the GET content is transferred.
+            assertEquals(_bytes.length, _transferred.get());
+        }
+    }
+
+    @Test
+    public void testGzipFallsBackToBufferedWrite() throws Exception
+    {
+        Files.write(_docRoot.resolve("large.txt"), _bytes);
+        GzipHandler gzipHandler = new GzipHandler();
+        gzipHandler.setHandler(newResourceHandler());
+        _server.setHandler(gzipHandler);
+        _server.start();
+
+        HttpTester.Response response = request("""
+            GET /large.txt HTTP/1.1\r
+            Host: localhost\r
+            Accept-Encoding: gzip\r
+            Connection: close\r
+            \r
+            """);
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals("gzip", response.get(HttpHeader.CONTENT_ENCODING));
+        try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(response.getContentBytes())))
+        {
+            assertArrayEquals(_bytes, IO.readBytes(input));
+        }
+        assertEquals(0, _transferred.get());
+    }
+}
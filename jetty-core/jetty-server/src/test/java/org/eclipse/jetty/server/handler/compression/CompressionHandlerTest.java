@@ -0,0 +1,222 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler.compression;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class CompressionHandlerTest
+{
+    private static final String CONTENT = "Lorem ipsum dolor sit amet, consectetur adipiscing elit. ".repeat(64);
+
+    private Server _server;
+    private LocalConnector _connector;
+    private CompressionHandler _compressionHandler;
+
+    @BeforeEach
+    public void init()
+    {
+        _server = new Server();
+        _connector = new LocalConnector(_server);
+        _server.addConnector(_connector);
+        _compressionHandler = new CompressionHandler(new ContentHandler());
+        _server.setHandler(_compressionHandler);
+    }
+
+    @AfterEach
+    public void destroy()
+    {
+        LifeCycle.stop(_server);
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+        "gzip|gzip",
+        "deflate|deflate",
+        "br, gzip;q=0.5, deflate;q=0.8|deflate",
+        "deflate, gzip|gzip",
+        "gzip;q=0, *|deflate",
+        "*|gzip",
+        "identity|",
+        "br|",
+    })
+    public void testEncodingSelection(String acceptEncoding, String expectedEncoding) throws Exception
+    {
+        _server.start();
+
+        HttpTester.Response response = request(acceptEncoding, null);
+
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.get(HttpHeader.VARY), is("Accept-Encoding"));
+        assertThat(response.get(HttpHeader.CONTENT_ENCODING), is(expectedEncoding));
+        assertThat(decode(response), is(CONTENT));
+    }
+
+    @Test
+    public void testServerPreference() throws Exception
+    {
+        _compressionHandler.setEncodings("deflate");
+        assertThat(_compressionHandler.getEncodings(), contains("deflate", "gzip"));
+        _server.start();
+
+        HttpTester.Response response = request("gzip, deflate", null);
+
+        assertThat(response.get(HttpHeader.CONTENT_ENCODING), is("deflate"));
+        assertThat(decode(response), is(CONTENT));
+    }
+
+    @Test
+    public void testSmallContentNotCompressed() throws Exception
+    {
+        _compressionHandler.setMinCompressSize(CONTENT.length() + 1);
+        _server.start();
+
+        HttpTester.Response response = request("gzip", null);
+
+        assertThat(response.get(HttpHeader.CONTENT_ENCODING), nullValue());
+        assertThat(response.getContent(), is(CONTENT));
+    }
+
+    @Test
+    public void testExcludedMimeTypeNotCompressed() throws Exception
+    {
+        _compressionHandler.setExcludedMimeTypes("text/plain");
+        _server.start();
+
+        HttpTester.Response response = request("gzip", null);
+
+        assertThat(response.get(HttpHeader.CONTENT_ENCODING), nullValue());
+        assertThat(response.getContent(), is(CONTENT));
+    }
+
+    @Test
+    public void testEtagSuffix() throws Exception
+    {
+        _server.start();
+
+        HttpTester.Response response = request("deflate", null);
+        assertThat(response.get(HttpHeader.ETAG), is("W/\"tag--deflate\""));
+
+        response = request("deflate", "W/\"tag--deflate\"");
+        assertThat(response.getStatus(), is(304));
+        assertThat(response.get(HttpHeader.ETAG), is("W/\"tag--deflate\""));
+    }
+
+    @Test
+    public void testCompressionLevel()
+    {
+        Compression gzip = _compressionHandler.getCompression("gzip");
+        _compressionHandler.setCompressionLevel("application/json", 9);
+        _compressionHandler.setCompressionLevelForSize(1024 * 1024, 1);
+
+        assertThat(_compressionHandler.getCompressionLevel(gzip, "text/plain", 100), is(gzip.getDefaultLevel()));
+        assertThat(_compressionHandler.getCompressionLevel(gzip, "application/json", 100), is(9));
+        assertThat(_compressionHandler.getCompressionLevel(gzip, "application/json", -1), is(9));
+        assertThat(_compressionHandler.getCompressionLevel(gzip, "application/json", 2 * 1024 * 1024), is(1));
+        assertThat(_compressionHandler.getCompressionLevel(gzip, "text/plain", 2 * 1024 * 1024), is(1));
+
+        _compressionHandler.setCompressionLevel("text/html", 42);
+        assertThat(_compressionHandler.getCompressionLevel(gzip, "text/html", 100), is(gzip.getMaxLevel()));
+    }
+
+    @Test
+    public void testCompressionWithLevels() throws Exception
+    {
+        _compressionHandler.setCompressionLevel("text/plain", 1);
+        _server.start();
+
+        HttpTester.Response response = request("gzip", null);
+
+        assertThat(response.get(HttpHeader.CONTENT_ENCODING), is("gzip"));
+        assertThat(decode(response), is(CONTENT));
+    }
+
+    private HttpTester.Response request(String acceptEncoding, String ifNoneMatch) throws Exception
+    {
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setURI("/");
+        request.setVersion("HTTP/1.0");
+        request.setHeader("Host", "tester");
+        if (acceptEncoding != null)
+            request.setHeader("Accept-Encoding", acceptEncoding);
+        if (ifNoneMatch != null)
+            request.setHeader("If-None-Match", ifNoneMatch);
+        return HttpTester.parseResponse(_connector.getResponse(request.generate()));
+    }
+
+    private static String decode(HttpTester.Response response) throws Exception
+    {
+        String encoding = response.get(HttpHeader.CONTENT_ENCODING);
+        if (encoding == null)
+            return response.getContent();
+        InputStream input = new ByteArrayInputStream(response.getContentBytes());
+        input = switch (encoding)
+        {
+            case "gzip" -> new GZIPInputStream(input);
+            case "deflate" -> new InflaterInputStream(input);
+            default -> throw new IllegalStateException(encoding);
+        };
+        return IO.toString(input, StandardCharsets.UTF_8);
+    }
+
+    private static class ContentHandler extends Handler.Abstract
+    {
+        @Override
+        public boolean handle(Request request, Response response, Callback callback)
+        {
+            response.getHeaders().put(HttpHeader.ETAG, "W/\"tag\"");
+            if ("W/\"tag\"".equals(request.getHeaders().get(HttpHeader.IF_NONE_MATCH)))
+            {
+                response.setStatus(304);
+                callback.succeeded();
+                return true;
+            }
+            response.getHeaders().put(HttpHeader.CONTENT_TYPE, "text/plain;charset=utf-8");
+            ByteBuffer content = BufferUtil.toBuffer(CONTENT, StandardCharsets.UTF_8);
+            response.getHeaders().put(HttpHeader.CONTENT_LENGTH, content.remaining());
+            // Write in two chunks to exercise streaming compression.
+            ByteBuffer first = content.slice(0, content.remaining() / 2);
+            ByteBuffer second = content.slice(content.remaining() / 2, content.remaining() - content.remaining() / 2);
+            response.write(false, first, Callback.from(() -> response.write(true, second, callback), callback::failed));
+            return true;
+        }
+    }
+}
@@ -21,6 +21,8 @@ public abstract class AbstractSessionDataStoreFactory implements SessionDataStor
 
     int _gracePeriodSec = AbstractSessionDataStore.DEFAULT_GRACE_PERIOD_SEC;
     int _savePeriodSec = AbstractSessionDataStore.DEFAULT_SAVE_PERIOD_SEC;
+    SessionDataSerializer _serializer;
+    boolean _saveChangedAttributesOnly;
 
     /**
      * Get the gracePeriodSec.
@@ -57,4 +59,42 @@ public abstract class AbstractSessionDataStoreFactory implements SessionDataStor
     {
         _savePeriodSec = savePeriodSec;
     }
+
+    /**
+     * Get the serializer of the attribute values, used by the
+     * stores that extend {@link ObjectStreamSessionDataStore}.
+     * @return the serializer, or null to use java serialization
+     */
+    public SessionDataSerializer getSerializer()
+    {
+        return _serializer;
+    }
+
+    /**
+     * Set the serializer of the attribute values, used by the
+     * stores that extend {@link ObjectStreamSessionDataStore}.
+     * @param serializer the serializer, or null to use java serialization
+     */
+    public void setSerializer(SessionDataSerializer serializer)
+    {
+        _serializer = serializer;
+    }
+
+    /**
+     * @return whether the stores that extend {@link ObjectStreamSessionDataStore} only save changed attributes
+     * @see ObjectStreamSessionDataStore#setSaveChangedAttributesOnly(boolean)
+     */
+    public boolean isSaveChangedAttributesOnly()
+    {
+        return _saveChangedAttributesOnly;
+    }
+
+    /**
+     * @param saveChangedAttributesOnly whether the stores that extend {@link ObjectStreamSessionDataStore} only save changed attributes
+     * @see ObjectStreamSessionDataStore#setSaveChangedAttributesOnly(boolean)
+     */
+    public void setSaveChangedAttributesOnly(boolean saveChangedAttributesOnly)
+    {
+        _saveChangedAttributesOnly = saveChangedAttributesOnly;
+    }
 }
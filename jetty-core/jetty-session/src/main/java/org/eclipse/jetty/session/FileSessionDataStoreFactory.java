@@ -66,6 +66,8 @@ public class FileSessionDataStoreFactory extends AbstractSessionDataStoreFactory
         fsds.setStoreDir(getStoreDir());
         fsds.setGracePeriodSec(getGracePeriodSec());
         fsds.setSavePeriodSec(getSavePeriodSec());
+        fsds.setSerializer(getSerializer());
+        fsds.setSaveChangedAttributesOnly(isSaveChangedAttributesOnly());
         return fsds;
     }
 }
@@ -24,12 +24,26 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.NanoTime;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.statistic.SampleStatistic;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.util.thread.Scheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,6 +51,16 @@ import org.slf4j.LoggerFactory;
  * JDBCSessionDataStore
  *
  * Session data stored in database
+ *
+ * If a {@link #setWriteBehindPeriodMs(int) write behind period} is set, the updates
+ * of existing sessions and the deletes of sessions are queued, coalescing the updates
+ * of the same session, and written every period with JDBC batches by a background task.
+ * The insert of a new session is always written immediately, as is the update of a
+ * session with changed attributes if the {@link SessionCache#isFlushOnResponseCommit()
+ * session cache flushes on response commit}, so that the changes are visible to other
+ * nodes before the response is sent. The queue is written before a session is loaded,
+ * checked for existence or checked for expiry, so that this node always sees its own
+ * writes, but other nodes may see the session as it was up to a period ago.
  */
 @ManagedObject
 public class JDBCSessionDataStore extends ObjectStreamSessionDataStore
@@ -55,6 +79,16 @@ public class JDBCSessionDataStore extends ObjectStreamSessionDataStore
 
     private static final ByteArrayInputStream EMPTY = new ByteArrayInputStream(new byte[0]);
 
+    private final Map<String, WriteBehind> _writeBehinds = new ConcurrentHashMap<>();
+    private final AutoLock _writeBehindLock = new AutoLock();
+    private final LongAdder _coalescedWrites = new LongAdder();
+    private final SampleStatistic _flushLatency = new SampleStatistic();
+    private int _writeBehindPeriodMs;
+    private int _writeBehindBatchSize = 100;
+    private Scheduler _scheduler;
+    private boolean _ownScheduler;
+    private Scheduler.Task _flushTask;
+
     /**
      * SessionTableSchema
      */
@@ -332,6 +366,35 @@ public class JDBCSessionDataStore extends ObjectStreamSessionDataStore
             return statement;
         }
 
+        /**
+         * Get a statement that updates all the columns of a session but the attribute map.
+         *
+         * @param connection the connection
+         * @param id the session id
+         * @param context the session context
+         * @return the update statement, with the parameters 1 to 6 to be set
+         * @throws SQLException if the statement cannot be prepared
+         */
+        public PreparedStatement getUpdateSessionMetaDataStatement(Connection connection, String id, SessionContext context)
+            throws SQLException
+        {
+            String s = "update " + getSchemaTableName() +
+                " set " + getLastNodeColumn() + " = ?, " + getAccessTimeColumn() + " = ?, " +
+                getLastAccessTimeColumn() + " = ?, " + getLastSavedTimeColumn() + " = ?, " + getExpiryTimeColumn() + " = ?, " +
+                getMaxIntervalColumn() + " = ? where " + getIdColumn() + " = ? and " + getContextPathColumn() +
+                " = ? and " + getVirtualHostColumn() + " = ?";
+
+            String cp = context.getCanonicalContextPath();
+            if (_dbAdaptor.isEmptyStringNull() && StringUtil.isBlank(cp))
+                cp = NULL_CONTEXT_PATH;
+
+            PreparedStatement statement = connection.prepareStatement(s);
+            statement.setString(7, id);
+            statement.setString(8, cp);
+            statement.setString(9, context.getVhost());
+            return statement;
+        }
+
         public PreparedStatement getExpiredSessionsStatement(Connection connection, String canonicalContextPath, String vhost, long expiry)
             throws SQLException
         {
@@ -401,6 +464,27 @@ public class JDBCSessionDataStore extends ObjectStreamSessionDataStore
             return statement;
         }
 
+        public PreparedStatement getLastSavedStatement(Connection connection, String id, SessionContext context)
+            throws SQLException
+        {
+            if (_dbAdaptor == null)
+                throw new IllegalStateException("No DB adaptor");
+
+            String cp = context.getCanonicalContextPath();
+            if (_dbAdaptor.isEmptyStringNull() && StringUtil.isBlank(cp))
+                cp = NULL_CONTEXT_PATH;
+
+            PreparedStatement statement = connection.prepareStatement("select " + getLastSavedTimeColumn() +
+                " from " + getSchemaTableName() +
+                " where " + getIdColumn() + " = ? and " +
+                getContextPathColumn() + " = ? and " +
+                getVirtualHostColumn() + " = ?");
+            statement.setString(1, id);
+            statement.setString(2, cp);
+            statement.setString(3, context.getVhost());
+            return statement;
+        }
+
         public PreparedStatement getLoadStatement(Connection connection, String id, SessionContext contextId)
             throws SQLException
         {
@@ -610,11 +694,37 @@ public class JDBCSessionDataStore extends ObjectStreamSessionDataStore
 
         initialize();
         super.doStart();
+
+        if (isWriteBehind())
+        {
+            if (_context != null && _context.getSessionManager() instanceof AbstractSessionManager sessionManager)
+            {
+                Server server = sessionManager.getServer();
+                if (server != null)
+                    _scheduler = server.getScheduler();
+            }
+            if (_scheduler == null)
+            {
+                _scheduler = new ScheduledExecutorScheduler(String.format("Session-JDBC-WriteBehind-%x", hashCode()), false);
+                _ownScheduler = true;
+                _scheduler.start();
+            }
+            scheduleFlush();
+        }
     }
 
     @Override
     protected void doStop() throws Exception
     {
+        if (_flushTask != null)
+            _flushTask.cancel();
+        _flushTask = null;
+        flush();
+        if (_ownScheduler)
+            _scheduler.stop();
+        _scheduler = null;
+        _ownScheduler = false;
+
         super.doStop();
         _initialized = false;
         if (!_schemaProvided)
@@ -643,6 +753,7 @@ public class JDBCSessionDataStore extends ObjectStreamSessionDataStore
     @Override
     public SessionData doLoad(String id) throws Exception
     {
+        flush(id);
         try (Connection connection = _dbAdaptor.getConnection();
              PreparedStatement statement = _sessionTableSchema.getLoadStatement(connection, id, _context);
              ResultSet result = statement.executeQuery())
@@ -683,6 +794,23 @@ public class JDBCSessionDataStore extends ObjectStreamSessionDataStore
 
     @Override
     public boolean delete(String id) throws Exception
+    {
+        if (isWriteBehind() && isRunning())
+        {
+            // The result of the delete is not known until the queue is written.
+            if (_writeBehinds.put(id, WriteBehind.DELETE) != null)
+                _coalescedWrites.increment();
+            return true;
+        }
+
+        try (AutoLock ignored = _writeBehindLock.lock())
+        {
+            _writeBehinds.remove(id);
+            return doDelete(id);
+        }
+    }
+
+    protected boolean doDelete(String id) throws Exception
     {
         try (Connection connection = _dbAdaptor.getConnection();
              PreparedStatement statement = _sessionTableSchema.getDeleteStatement(connection, id, _context))
@@ -702,16 +830,213 @@ public class JDBCSessionDataStore extends ObjectStreamSessionDataStore
         if (data == null || id == null)
             return;
 
-        if (lastSaveTime <= 0)
+        if (lastSaveTime > 0 && isWriteBehind() && isRunning() && !isWriteThrough(data))
+        {
+            _writeBehinds.merge(id, newWriteBehind(data, _writeBehinds.get(id)), (previous, writeBehind) ->
+            {
+                _coalescedWrites.increment();
+                return WriteBehind.coalesce(previous, writeBehind);
+            });
+            return;
+        }
+
+        try (AutoLock ignored = _writeBehindLock.lock())
+        {
+            WriteBehind previous = _writeBehinds.remove(id);
+            if (previous == WriteBehind.DELETE)
+                doDelete(id);
+
+            if (lastSaveTime <= 0)
+            {
+                doInsert(id, data);
+            }
+            else if (previous != null && previous != WriteBehind.DELETE && previous.attributes() != null && isMetaDataOnly(data))
+            {
+                // This update does not write the attributes, so write the queued ones with it.
+                doUpdate(id, WriteBehind.coalesce(previous, newWriteBehind(data, previous)));
+            }
+            else
+            {
+                doUpdate(id, data);
+            }
+        }
+    }
+
+    /**
+     * @param data the session data to store
+     * @return whether the session data must be written immediately even in write behind mode
+     */
+    protected boolean isWriteThrough(SessionData data)
+    {
+        if (!data.isDirty() || _context == null)
+            return false;
+        SessionCache cache = _context.getSessionManager().getSessionCache();
+        return cache != null && cache.isFlushOnResponseCommit();
+    }
+
+    /**
+     * @param data the session data to store
+     * @return whether the update of the session does not need to write the attributes
+     */
+    private boolean isMetaDataOnly(SessionData data)
+    {
+        //no need to rewrite the attribute map if no attribute has been set since the last save
+        return isSaveChangedAttributesOnly() && data.getDirtyAttributes().isEmpty();
+    }
+
+    /**
+     * @param data the session data to store
+     * @param queued the write already queued for the session, or null
+     * @return the write of the session data
+     */
+    private WriteBehind newWriteBehind(SessionData data, WriteBehind queued) throws Exception
+    {
+        byte[] attributes = null;
+        //if the session is not dirty, the attributes of the queued write are as good as new ones
+        boolean queuedAttributes = queued != null && queued != WriteBehind.DELETE && queued.attributes() != null;
+        if (!isMetaDataOnly(data) && !(queuedAttributes && !data.isDirty()))
+        {
+            try (ByteArrayOutputStream baos = new ByteArrayOutputStream())
+            {
+                serializeAttributes(data, baos);
+                attributes = baos.toByteArray();
+            }
+        }
+        return new WriteBehind(data.getLastNode(), data.getAccessed(), data.getLastAccessed(), data.getLastSaved(),
+            data.getExpiry(), data.getMaxInactiveMs(), attributes);
+    }
+
+    /**
+     * Writes the queued updates and deletes of sessions in batches.
+     */
+    @ManagedOperation(value = "write the queued session updates and deletes", impact = "ACTION")
+    public void flush()
+    {
+        if (_writeBehinds.isEmpty())
+            return;
+
+        try (AutoLock ignored = _writeBehindLock.lock())
         {
-            doInsert(id, data);
+            List<String> ids = new ArrayList<>(_writeBehinds.keySet());
+            for (int i = 0; i < ids.size(); i += getWriteBehindBatchSize())
+            {
+                flush(ids.subList(i, Math.min(ids.size(), i + getWriteBehindBatchSize())));
+            }
         }
-        else
+    }
+
+    private void flush(String id)
+    {
+        if (!_writeBehinds.containsKey(id))
+            return;
+        try (AutoLock ignored = _writeBehindLock.lock())
         {
-            doUpdate(id, data);
+            flush(List.of(id));
         }
     }
 
+    private void flush(List<String> ids)
+    {
+        assert _writeBehindLock.isHeldByCurrentThread();
+
+        Map<String, WriteBehind> batch = new LinkedHashMap<>();
+        for (String id : ids)
+        {
+            WriteBehind writeBehind = _writeBehinds.remove(id);
+            if (writeBehind != null)
+                batch.put(id, writeBehind);
+        }
+        if (batch.isEmpty())
+            return;
+
+        long start = NanoTime.now();
+        try (Connection connection = _dbAdaptor.getConnection())
+        {
+            connection.setAutoCommit(false);
+            String anyId = ids.get(0);
+            try (PreparedStatement update = _sessionTableSchema.getUpdateSessionStatement(connection, anyId, _context);
+                 PreparedStatement updateMetaData = _sessionTableSchema.getUpdateSessionMetaDataStatement(connection, anyId, _context);
+                 PreparedStatement delete = _sessionTableSchema.getDeleteStatement(connection, anyId, _context))
+            {
+                int updates = 0;
+                int metaDataUpdates = 0;
+                int deletes = 0;
+                for (Map.Entry<String, WriteBehind> entry : batch.entrySet())
+                {
+                    String id = entry.getKey();
+                    WriteBehind writeBehind = entry.getValue();
+                    if (writeBehind == WriteBehind.DELETE)
+                    {
+                        delete.setString(1, id);
+                        delete.addBatch();
+                        deletes++;
+                    }
+                    else if (writeBehind.attributes() == null)
+                    {
+                        writeBehind.bind(updateMetaData);
+                        updateMetaData.setString(7, id);
+                        updateMetaData.addBatch();
+                        metaDataUpdates++;
+                    }
+                    else
+                    {
+                        writeBehind.bind(update);
+                        byte[] bytes = writeBehind.attributes();
+                        update.setBinaryStream(7, new ByteArrayInputStream(bytes), bytes.length); //attribute map as blob
+                        update.setString(8, id);
+                        update.addBatch();
+                        updates++;
+                    }
+                }
+                if (updates > 0)
+                    update.executeBatch();
+                if (metaDataUpdates > 0)
+                    updateMetaData.executeBatch();
+                if (deletes > 0)
+                    delete.executeBatch();
+                connection.commit();
+
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Flushed {} updates, {} metadata updates and {} deletes", updates, metaDataUpdates, deletes);
+            }
+            catch (Exception e)
+            {
+                connection.rollback();
+                throw e;
+            }
+            finally
+            {
+                connection.setAutoCommit(true);
+            }
+        }
+        catch (Exception e)
+        {
+            LOG.warn("Unable to write {} queued sessions", batch.size(), e);
+            // Queue again the writes, coalesced with the writes queued since.
+            batch.forEach((id, writeBehind) -> _writeBehinds.merge(id, writeBehind, (queued, failed) -> WriteBehind.coalesce(failed, queued)));
+        }
+        finally
+        {
+            _flushLatency.record(NanoTime.millisSince(start));
+        }
+    }
+
+    private void scheduleFlush()
+    {
+        _flushTask = _scheduler.schedule(() ->
+        {
+            try
+            {
+                flush();
+            }
+            finally
+            {
+                if (isRunning())
+                    scheduleFlush();
+            }
+        }, getWriteBehindPeriodMs(), TimeUnit.MILLISECONDS);
+    }
+
     protected void doInsert(String id, SessionData data)
         throws Exception
     {
@@ -762,7 +1087,10 @@ public class JDBCSessionDataStore extends ObjectStreamSessionDataStore
         try (Connection connection = _dbAdaptor.getConnection())
         {
             connection.setAutoCommit(true);
-            try (PreparedStatement statement = _sessionTableSchema.getUpdateSessionStatement(connection, data.getId(), _context))
+            boolean metaDataOnly = isMetaDataOnly(data);
+            try (PreparedStatement statement = metaDataOnly
+                ? _sessionTableSchema.getUpdateSessionMetaDataStatement(connection, data.getId(), _context)
+                : _sessionTableSchema.getUpdateSessionStatement(connection, data.getId(), _context))
             {
                 statement.setString(1, data.getLastNode()); //should be my node id
                 statement.setLong(2, data.getAccessed()); //accessTime
@@ -771,14 +1099,17 @@ public class JDBCSessionDataStore extends ObjectStreamSessionDataStore
                 statement.setLong(5, data.getExpiry());
                 statement.setLong(6, data.getMaxInactiveMs());
 
-                try (ByteArrayOutputStream baos = new ByteArrayOutputStream();)
+                if (!metaDataOnly)
                 {
-                    serializeAttributes(data, baos);
-
-                    byte[] bytes = baos.toByteArray();
-                    try (ByteArrayInputStream bais = new ByteArrayInputStream(bytes))
+                    try (ByteArrayOutputStream baos = new ByteArrayOutputStream();)
                     {
-                        statement.setBinaryStream(7, bais, bytes.length); //attribute map as blob
+                        serializeAttributes(data, baos);
+
+                        byte[] bytes = baos.toByteArray();
+                        try (ByteArrayInputStream bais = new ByteArrayInputStream(bytes))
+                        {
+                            statement.setBinaryStream(7, bais, bytes.length); //attribute map as blob
+                        }
                     }
                 }
 
@@ -790,11 +1121,38 @@ public class JDBCSessionDataStore extends ObjectStreamSessionDataStore
         }
     }
 
+    private void doUpdate(String id, WriteBehind writeBehind) throws Exception
+    {
+        try (Connection connection = _dbAdaptor.getConnection())
+        {
+            connection.setAutoCommit(true);
+            try (PreparedStatement statement = writeBehind.attributes() == null
+                ? _sessionTableSchema.getUpdateSessionMetaDataStatement(connection, id, _context)
+                : _sessionTableSchema.getUpdateSessionStatement(connection, id, _context))
+            {
+                writeBehind.bind(statement);
+                if (writeBehind.attributes() != null)
+                {
+                    byte[] bytes = writeBehind.attributes();
+                    statement.setBinaryStream(7, new ByteArrayInputStream(bytes), bytes.length); //attribute map as blob
+                }
+
+                statement.executeUpdate();
+
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Updated session {} with queued attributes", id);
+            }
+        }
+    }
+
     @Override
     public Set<String> doCheckExpired(Set<String> candidates, long time)
     {
         if (LOG.isDebugEnabled())
             LOG.debug("Getting expired sessions at time {}", time);
+
+        // The db must see the latest expiry times.
+        flush();
         
         Set<String> expiredSessionKeys = new HashSet<>();
         try (Connection connection = _dbAdaptor.getConnection())
@@ -877,6 +1235,7 @@ public class JDBCSessionDataStore extends ObjectStreamSessionDataStore
     public Set<String> doGetExpired(long timeLimit)
     {
         Set<String> expired = new HashSet<>();
+        flush();
         
         //Get sessions for my context but managed by any node that expired at or before the timeLimit   
         try (Connection connection = _dbAdaptor.getConnection())
@@ -943,6 +1302,88 @@ public class JDBCSessionDataStore extends ObjectStreamSessionDataStore
         _schemaProvided = true;
     }
 
+    /**
+     * @return the period in milliseconds of the batch write of the queued session
+     * updates and deletes, or 0 if they are written immediately
+     */
+    @ManagedAttribute(value = "period in ms of the batch write of the queued session updates and deletes", readonly = true)
+    public int getWriteBehindPeriodMs()
+    {
+        return _writeBehindPeriodMs;
+    }
+
+    /**
+     * @param writeBehindPeriodMs the period in milliseconds of the batch write of the queued
+     * session updates and deletes, or 0 to write them immediately
+     */
+    public void setWriteBehindPeriodMs(int writeBehindPeriodMs)
+    {
+        checkStarted();
+        _writeBehindPeriodMs = writeBehindPeriodMs;
+    }
+
+    public boolean isWriteBehind()
+    {
+        return _writeBehindPeriodMs > 0;
+    }
+
+    /**
+     * @return the max number of session updates and deletes written in a JDBC batch
+     */
+    @ManagedAttribute(value = "max number of session updates and deletes in a JDBC batch", readonly = true)
+    public int getWriteBehindBatchSize()
+    {
+        return _writeBehindBatchSize;
+    }
+
+    /**
+     * @param writeBehindBatchSize the max number of session updates and deletes written in a JDBC batch
+     */
+    public void setWriteBehindBatchSize(int writeBehindBatchSize)
+    {
+        checkStarted();
+        if (writeBehindBatchSize <= 0)
+            throw new IllegalArgumentException("Invalid batch size " + writeBehindBatchSize);
+        _writeBehindBatchSize = writeBehindBatchSize;
+    }
+
+    @ManagedAttribute("number of session updates and deletes waiting to be written")
+    public int getWriteBehindQueueSize()
+    {
+        return _writeBehinds.size();
+    }
+
+    @ManagedAttribute("number of session writes coalesced with a queued write of the same session")
+    public long getCoalescedWrites()
+    {
+        return _coalescedWrites.sum();
+    }
+
+    @ManagedAttribute("number of batch writes of the queued sessions")
+    public long getFlushCount()
+    {
+        return _flushLatency.getCount();
+    }
+
+    @ManagedAttribute("max time in ms of a batch write of the queued sessions")
+    public long getFlushLatencyMax()
+    {
+        return _flushLatency.getMax();
+    }
+
+    @ManagedAttribute("mean time in ms of a batch write of the queued sessions")
+    public double getFlushLatencyMean()
+    {
+        return _flushLatency.getMean();
+    }
+
+    @ManagedOperation(value = "reset statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        _coalescedWrites.reset();
+        _flushLatency.reset();
+    }
+
     @Override
     @ManagedAttribute(value = "does this store serialize sessions", readonly = true)
     public boolean isPassivating()
@@ -954,6 +1395,7 @@ public class JDBCSessionDataStore extends ObjectStreamSessionDataStore
     public boolean doExists(String id)
         throws Exception
     {
+        flush(id);
         try (Connection connection = _dbAdaptor.getConnection())
         {
             connection.setAutoCommit(true);
@@ -980,4 +1422,63 @@ public class JDBCSessionDataStore extends ObjectStreamSessionDataStore
             }
         }
     }
+
+    @Override
+    public long getLastSaved(String id) throws Exception
+    {
+        flush(id);
+        try (Connection connection = _dbAdaptor.getConnection();
+             PreparedStatement statement = _sessionTableSchema.getLastSavedStatement(connection, id, _context);
+             ResultSet result = statement.executeQuery())
+        {
+            return result.next() ? result.getLong(_sessionTableSchema.getLastSavedTimeColumn()) : -1;
+        }
+    }
+
+    @Override
+    public boolean isLastSavedEfficient()
+    {
+        return true;
+    }
+
+    /**
+     * The values of a session to write, or {@link #DELETE} to delete the session.
+     *
+     * @param attributes the serialized attributes, or null if they have not changed
+     */
+    private record WriteBehind(String lastNode, long accessed, long lastAccessed, long lastSaved, long expiry, long maxInactiveMs, byte[] attributes)
+    {
+        private static final WriteBehind DELETE = new WriteBehind(null, 0, 0, 0, 0, 0, null);
+
+        /**
+         * @param previous the queued write
+         * @param next the write that follows the queued write
+         * @return the write with the same effect as both writes
+         */
+        private static WriteBehind coalesce(WriteBehind previous, WriteBehind next)
+        {
+            // An update does not bring back a deleted session, as when the delete is written before the update.
+            if (previous == DELETE || next == DELETE)
+                return DELETE;
+            // Keep the attributes of the previous update if the next update does not change them.
+            if (next.attributes() == null && previous.attributes() != null)
+                return next.withAttributes(previous.attributes());
+            return next;
+        }
+
+        private WriteBehind withAttributes(byte[] attributes)
+        {
+            return new WriteBehind(lastNode, accessed, lastAccessed, lastSaved, expiry, maxInactiveMs, attributes);
+        }
+
+        private void bind(PreparedStatement statement) throws SQLException
+        {
+            statement.setString(1, lastNode); //should be my node id
+            statement.setLong(2, accessed); //accessTime
+            statement.setLong(3, lastAccessed); //lastAccessTime
+            statement.setLong(4, lastSaved); //last saved time
+            statement.setLong(5, expiry);
+            statement.setLong(6, maxInactiveMs);
+        }
+    }
 }
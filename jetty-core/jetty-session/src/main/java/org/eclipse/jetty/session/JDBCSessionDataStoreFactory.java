@@ -29,6 +29,10 @@ public class JDBCSessionDataStoreFactory extends AbstractSessionDataStoreFactory
      */
     JDBCSessionDataStore.SessionTableSchema _schema;
 
+    int _writeBehindPeriodMs;
+
+    int _writeBehindBatchSize = 100;
+
     @Override
     public SessionDataStore getSessionDataStore(SessionManager manager)
     {
@@ -37,6 +41,10 @@ public class JDBCSessionDataStoreFactory extends AbstractSessionDataStoreFactory
         ds.setSessionTableSchema(_schema);
         ds.setGracePeriodSec(getGracePeriodSec());
         ds.setSavePeriodSec(getSavePeriodSec());
+        ds.setSerializer(getSerializer());
+        ds.setSaveChangedAttributesOnly(isSaveChangedAttributesOnly());
+        ds.setWriteBehindPeriodMs(getWriteBehindPeriodMs());
+        ds.setWriteBehindBatchSize(getWriteBehindBatchSize());
         return ds;
     }
 
@@ -57,4 +65,31 @@ public class JDBCSessionDataStoreFactory extends AbstractSessionDataStoreFactory
     {
         _schema = schema;
     }
+
+    public int getWriteBehindPeriodMs()
+    {
+        return _writeBehindPeriodMs;
+    }
+
+    /**
+     * @param writeBehindPeriodMs the period in milliseconds of the batch write of the queued
+     * session updates and deletes, or 0 to write them immediately
+     */
+    public void setWriteBehindPeriodMs(int writeBehindPeriodMs)
+    {
+        _writeBehindPeriodMs = writeBehindPeriodMs;
+    }
+
+    public int getWriteBehindBatchSize()
+    {
+        return _writeBehindBatchSize;
+    }
+
+    /**
+     * @param writeBehindBatchSize the max number of session updates and deletes written in a JDBC batch
+     */
+    public void setWriteBehindBatchSize(int writeBehindBatchSize)
+    {
+        _writeBehindBatchSize = writeBehindBatchSize;
+    }
 }
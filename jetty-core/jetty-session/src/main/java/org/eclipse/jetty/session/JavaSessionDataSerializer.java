@@ -0,0 +1,54 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+
+import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
+
+/**
+ * JavaSessionDataSerializer
+ *
+ * A {@link SessionDataSerializer} that uses java serialization for each attribute,
+ * recording whether the value must be loaded by the container classloader or by
+ * the context classloader, like {@link SessionData#serializeAttributes(SessionData, ObjectOutputStream)}.
+ */
+public class JavaSessionDataSerializer implements SessionDataSerializer
+{
+    @Override
+    public byte[] serialize(String name, Object value) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+        {
+            out.writeBoolean(SessionData.isServerClass(value.getClass()));
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Object deserialize(String name, byte[] bytes) throws IOException, ClassNotFoundException
+    {
+        try (ClassLoadingObjectInputStream in = new ClassLoadingObjectInputStream(new ByteArrayInputStream(bytes)))
+        {
+            boolean isServerClassLoader = in.readBoolean();
+            ClassLoader loader = isServerClassLoader ? SessionData.class.getClassLoader() : Thread.currentThread().getContextClassLoader();
+            return in.readObject(loader);
+        }
+    }
+}
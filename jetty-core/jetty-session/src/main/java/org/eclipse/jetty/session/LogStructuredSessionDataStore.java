@@ -0,0 +1,1131 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * LogStructuredSessionDataStore
+ *
+ * A file-based store of session data that appends the sessions to segment files,
+ * rather than rewriting one file per session like the {@link FileSessionDataStore}.
+ *
+ * The segments of a context are kept in a directory named after the context under
+ * the {@link #getStoreDir() store dir}. Each store or delete of a session appends a
+ * record, checksummed with a CRC32, to the active segment; when the active segment
+ * exceeds {@link #getMaxSegmentSize()} bytes, a new segment is started. An in-memory
+ * index maps each session id to the location of its last record, and a second index
+ * orders the sessions by expiry, so that finding the expired sessions does not
+ * require reading the disk. Both indexes are rebuilt at start by replaying the
+ * segments in order; a partially written record at the end of the last segment,
+ * for example after a crash, is truncated.
+ *
+ * If a {@link #setSerializer(SessionDataSerializer) serializer} is set and
+ * {@link #isSaveChangedAttributesOnly()} is true, a save of a session that was last
+ * saved or loaded by this store appends a delta record, that only contains the
+ * attributes that have been set or removed since, rather than all the attributes.
+ * Loading the session then reads the last full record and the following delta records,
+ * up to a few, after which a full record is written again.
+ *
+ * A segment that is no longer written to is compacted when the ratio of its bytes
+ * that are still needed drops below {@link #getCompactionRatio()}, the segment with
+ * the lowest ratio first: the live records are copied to the active segment and the
+ * segment file is deleted; a full record and its delta records are merged into a
+ * single full record. The delete records are needed, and copied, while an older
+ * segment may still hold a record that they hide.
+ * A segment found with invalid records when the store starts is compacted first,
+ * resuming the scan at the next valid record, so that no valid record is lost.
+ * Compaction runs every {@link #getCompactionIntervalSec()} seconds.
+ *
+ * If {@link #isMemoryMapped()} is true, the segments that are no longer written to
+ * are memory mapped for reading. Note that a mapped file cannot be deleted on some
+ * platforms until its mapping is garbage collected; a compacted segment that could
+ * not be deleted is marked, and deleted the next time the store starts.
+ */
+@ManagedObject
+public class LogStructuredSessionDataStore extends ObjectStreamSessionDataStore
+{
+    private static final Logger LOG = LoggerFactory.getLogger(LogStructuredSessionDataStore.class);
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String COMPACTED_SUFFIX = ".compacted";
+    private static final int HEADER_LENGTH = 2 * Integer.BYTES;
+    private static final byte STORE = 1;
+    private static final byte DELETE = 2;
+    private static final byte DELTA = 3;
+    private static final int MAX_DELTA_RECORDS = 8;
+
+    private final AutoLock _lock = new AutoLock();
+    private final Map<String, Location> _index = new ConcurrentHashMap<>();
+    private final NavigableSet<Expiry> _expiries = new ConcurrentSkipListSet<>();
+    private final List<Segment> _segments = new ArrayList<>();
+    private File _storeDir;
+    private Path _contextDir;
+    private int _maxSegmentSize = 64 * 1024 * 1024;
+    private double _compactionRatio = 0.5D;
+    private int _compactionIntervalSec = 60;
+    private boolean _memoryMapped;
+    private boolean _syncWrites;
+    private Scheduler _scheduler;
+    private boolean _ownScheduler;
+    private Scheduler.Task _compactionTask;
+
+    @ManagedAttribute(value = "dir where sessions are stored", readonly = true)
+    public File getStoreDir()
+    {
+        return _storeDir;
+    }
+
+    public void setStoreDir(File storeDir)
+    {
+        checkStarted();
+        _storeDir = storeDir;
+    }
+
+    /**
+     * @return the size in bytes above which a new segment is started
+     */
+    @ManagedAttribute(value = "size in bytes above which a new segment is started", readonly = true)
+    public int getMaxSegmentSize()
+    {
+        return _maxSegmentSize;
+    }
+
+    /**
+     * @param maxSegmentSize the size in bytes above which a new segment is started
+     */
+    public void setMaxSegmentSize(int maxSegmentSize)
+    {
+        checkStarted();
+        if (maxSegmentSize <= 0)
+            throw new IllegalArgumentException("Invalid max segment size " + maxSegmentSize);
+        _maxSegmentSize = maxSegmentSize;
+    }
+
+    /**
+     * @return the ratio of live bytes below which a segment is compacted
+     */
+    @ManagedAttribute(value = "ratio of live bytes below which a segment is compacted", readonly = true)
+    public double getCompactionRatio()
+    {
+        return _compactionRatio;
+    }
+
+    /**
+     * @param compactionRatio the ratio of live bytes, between 0 and 1, below which a segment is compacted
+     */
+    public void setCompactionRatio(double compactionRatio)
+    {
+        checkStarted();
+        if (compactionRatio < 0 || compactionRatio > 1)
+            throw new IllegalArgumentException("Invalid compaction ratio " + compactionRatio);
+        _compactionRatio = compactionRatio;
+    }
+
+    /**
+     * @return the period in seconds between compactions
+     */
+    @ManagedAttribute(value = "period in seconds between compactions", readonly = true)
+    public int getCompactionIntervalSec()
+    {
+        return _compactionIntervalSec;
+    }
+
+    /**
+     * @param compactionIntervalSec the period in seconds between compactions, or 0 to disable background compaction
+     */
+    public void setCompactionIntervalSec(int compactionIntervalSec)
+    {
+        checkStarted();
+        _compactionIntervalSec = compactionIntervalSec;
+    }
+
+    /**
+     * @return whether the segments that are no longer written to are memory mapped for reading
+     */
+    @ManagedAttribute(value = "are full segments memory mapped", readonly = true)
+    public boolean isMemoryMapped()
+    {
+        return _memoryMapped;
+    }
+
+    /**
+     * @param memoryMapped whether the segments that are no longer written to are memory mapped for reading
+     */
+    public void setMemoryMapped(boolean memoryMapped)
+    {
+        checkStarted();
+        _memoryMapped = memoryMapped;
+    }
+
+    /**
+     * @return whether each record is forced to the storage device before the store returns
+     */
+    @ManagedAttribute(value = "are writes forced to the storage device", readonly = true)
+    public boolean isSyncWrites()
+    {
+        return _syncWrites;
+    }
+
+    /**
+     * @param syncWrites whether each record is forced to the storage device before the store returns
+     */
+    public void setSyncWrites(boolean syncWrites)
+    {
+        checkStarted();
+        _syncWrites = syncWrites;
+    }
+
+    @ManagedAttribute(value = "number of segments", readonly = true)
+    public int getSegmentCount()
+    {
+        try (AutoLock ignored = _lock.lock())
+        {
+            return _segments.size();
+        }
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        initializeStore();
+        super.doStart();
+
+        if (getCompactionIntervalSec() > 0)
+        {
+            if (_context.getSessionManager() instanceof AbstractSessionManager sessionManager)
+            {
+                Server server = sessionManager.getServer();
+                if (server != null)
+                    _scheduler = server.getScheduler();
+            }
+            if (_scheduler == null)
+            {
+                _scheduler = new ScheduledExecutorScheduler(String.format("Session-LogCompaction-%x", hashCode()), false);
+                _ownScheduler = true;
+                _scheduler.start();
+            }
+            scheduleCompaction();
+        }
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        if (_compactionTask != null)
+            _compactionTask.cancel();
+        _compactionTask = null;
+        if (_ownScheduler)
+            _scheduler.stop();
+        _scheduler = null;
+        _ownScheduler = false;
+
+        try (AutoLock ignored = _lock.lock())
+        {
+            for (Segment segment : _segments)
+            {
+                if (!segment.sealed)
+                    segment.channel.force(false);
+                IO.close(segment.channel);
+            }
+            _segments.clear();
+            _index.clear();
+            _expiries.clear();
+        }
+        super.doStop();
+    }
+
+    /**
+     * Replay the segments of this context to build the indexes,
+     * truncating a partially written record at the end of the last segment.
+     * The invalid records of the other segments are skipped.
+     * The compacted segments that could not be deleted are deleted first.
+     *
+     * @throws Exception if the store dir is not usable or the segments cannot be read
+     */
+    public void initializeStore() throws Exception
+    {
+        if (_storeDir == null)
+            throw new IllegalStateException("No file store specified");
+
+        _contextDir = _storeDir.toPath().resolve(_context.getCanonicalContextPath() + "_" + _context.getVhost());
+        Files.createDirectories(_contextDir);
+        if (!(Files.isReadable(_contextDir) && Files.isWritable(_contextDir)))
+            throw new IllegalStateException(_contextDir + " must be readable/writeable dir");
+
+        // Delete the compacted segments that could not be deleted when they were compacted.
+        List<Path> compacted;
+        try (Stream<Path> stream = Files.list(_contextDir))
+        {
+            compacted = stream.filter(p -> p.getFileName().toString().endsWith(COMPACTED_SUFFIX)).toList();
+        }
+        for (Path marker : compacted)
+        {
+            String name = marker.getFileName().toString();
+            Path path = marker.resolveSibling(name.substring(0, name.length() - COMPACTED_SUFFIX.length()));
+            Files.deleteIfExists(path);
+            Files.delete(marker);
+            if (LOG.isDebugEnabled())
+                LOG.debug("Deleted compacted segment {}", path);
+        }
+
+        List<Path> paths;
+        try (Stream<Path> stream = Files.list(_contextDir))
+        {
+            paths = stream.filter(p -> getSequence(p) >= 0)
+                .sorted((p1, p2) -> Long.compare(getSequence(p1), getSequence(p2)))
+                .toList();
+        }
+
+        try (AutoLock ignored = _lock.lock())
+        {
+            for (int i = 0; i < paths.size(); i++)
+            {
+                Path path = paths.get(i);
+                boolean last = i == paths.size() - 1;
+                Segment segment = new Segment(getSequence(path), path, FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+                segment.size = segment.channel.size();
+                segment.sealed = !last;
+                _segments.add(segment);
+
+                long invalid = scan(segment, !last, (offset, body) -> replay(segment, offset, body));
+                if (invalid > 0)
+                {
+                    if (last)
+                    {
+                        long end = segment.size - invalid;
+                        LOG.warn("Truncating {} at {} after incomplete record", path, end);
+                        segment.channel.truncate(end);
+                        segment.size = end;
+                    }
+                    else
+                    {
+                        LOG.warn("Skipped {} invalid bytes of {}, compacting it", invalid, path);
+                        segment.invalid = true;
+                    }
+                }
+            }
+            if (_segments.isEmpty())
+                newSegment(1);
+        }
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("Indexed {} sessions in {} segments of {}", _index.size(), paths.size(), _contextDir);
+    }
+
+    private void replay(Segment segment, long offset, byte[] body) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        Meta meta = readMeta(in);
+        int length = HEADER_LENGTH + body.length;
+        switch (meta.type())
+        {
+            case STORE ->
+            {
+                boolean serialized = in.available() >= Integer.BYTES && in.readInt() == SessionData.SERIALIZED_ATTRIBUTES_MAGIC;
+                index(meta.id(), new Location(segment, offset, length, meta.expiry(), meta.lastSaved(), serialized, null));
+            }
+            case DELTA ->
+            {
+                Location previous = _index.get(meta.id());
+                if (previous != null && previous.serialized())
+                    index(meta.id(), new Location(segment, offset, length, meta.expiry(), meta.lastSaved(), true, previous));
+                else
+                    LOG.warn("Ignoring delta record without full record for session {} at {} in {}", meta.id(), offset, segment.path);
+            }
+            default ->
+            {
+                segment.deleteBytes += length;
+                unindex(meta.id());
+            }
+        }
+    }
+
+    @Override
+    public boolean delete(String id) throws Exception
+    {
+        if (_contextDir == null)
+            return false;
+
+        byte[] body = newRecordBody(new Meta(DELETE, id, 0, null, null, null, 0, 0, 0, 0, 0, 0));
+        try (AutoLock ignored = _lock.lock())
+        {
+            if (!_index.containsKey(id))
+                return false;
+            Location location = append(body);
+            location.segment().deleteBytes += location.length();
+            unindex(id);
+            return true;
+        }
+    }
+
+    @Override
+    public boolean doExists(String id) throws Exception
+    {
+        Location location = _index.get(id);
+        if (location == null)
+            return false;
+
+        //check the expiry
+        if (location.expiry <= 0)
+            return true; //never expires
+        return location.expiry > System.currentTimeMillis(); //hasn't yet expired
+    }
+
+    @Override
+    public Set<String> doCheckExpired(Set<String> candidates, long time)
+    {
+        HashSet<String> expired = new HashSet<>();
+        for (String id : candidates)
+        {
+            Location location = _index.get(id);
+            // no such record, therefore no longer any such session, it can be expired
+            if (location == null || (location.expiry > 0 && location.expiry <= time))
+                expired.add(id);
+        }
+        return expired;
+    }
+
+    @Override
+    public Set<String> doGetExpired(long timeLimit)
+    {
+        HashSet<String> expired = new HashSet<>();
+        for (Expiry expiry : _expiries.headSet(new Expiry(timeLimit + 1, ""), false))
+        {
+            expired.add(expiry.id);
+        }
+        return expired;
+    }
+
+    /**
+     * Delete the sessions of this context that expired at or before the given time.
+     * The segments of other contexts may be in use by other stores, so they are left
+     * to those stores to compact.
+     */
+    @Override
+    public void doCleanOrphans(long time)
+    {
+        for (String id : doGetExpired(time))
+        {
+            try
+            {
+                if (delete(id) && LOG.isDebugEnabled())
+                    LOG.debug("Deleted orphaned session {}", id);
+            }
+            catch (Exception e)
+            {
+                LOG.warn("Unable to delete orphaned session {}", id, e);
+            }
+        }
+    }
+
+    @Override
+    public SessionData doLoad(String id) throws Exception
+    {
+        List<byte[]> bodies;
+        while (true)
+        {
+            Location location = _index.get(id);
+            if (location == null)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Unknown session {}", id);
+                return null;
+            }
+            try
+            {
+                bodies = readChain(location);
+                break;
+            }
+            catch (ClosedChannelException x)
+            {
+                // The segment was compacted, retry with the new location.
+                if (_index.get(id) == location)
+                    throw x;
+            }
+        }
+
+        try
+        {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bodies.get(0)));
+            Meta meta = readMeta(in);
+            SessionData data = newSessionData(id, meta.created(), meta.accessed(), meta.lastAccessed(), meta.maxInactiveMs());
+            data.setContextPath(meta.contextPath());
+            data.setVhost(meta.vhost());
+            data.setLastNode(meta.lastNode());
+            data.setCookieSet(meta.cookieSet());
+            data.setExpiry(meta.expiry());
+            data.setLastSaved(meta.lastSaved());
+
+            // Attributes
+            if (bodies.size() == 1)
+            {
+                deserializeAttributes(data, in);
+            }
+            else
+            {
+                if (_serializer == null)
+                    throw new IllegalStateException("No serializer for attributes of session " + id);
+                SessionData.deserializeAttributes(data, _serializer, mergeAttributes(bodies), isSaveChangedAttributesOnly());
+            }
+            return data;
+        }
+        catch (Exception e)
+        {
+            throw new UnreadableSessionDataException(id, _context, e);
+        }
+    }
+
+    @Override
+    public void doStore(String id, SessionData data, long lastSaveTime) throws Exception
+    {
+        try
+        {
+            while (true)
+            {
+                // Serialize outside the lock, only the append is serialized.
+                Location previous = _index.get(id);
+                boolean delta = isDeltaStorable(previous, lastSaveTime);
+                byte[] body = delta ? newDeltaBody(id, data) : newStoreBody(id, data);
+
+                try (AutoLock ignored = _lock.lock())
+                {
+                    // A delta record is only valid after the record it was computed for.
+                    if (!delta || _index.get(id) == previous)
+                    {
+                        boolean serialized = delta || _serializer != null;
+                        index(id, append(body).with(data.getExpiry(), data.getLastSaved(), serialized, delta ? previous : null));
+                        return;
+                    }
+                }
+            }
+        }
+        catch (Exception e)
+        {
+            throw new UnwriteableSessionDataException(id, _context, e);
+        }
+    }
+
+    /**
+     * A delta record can be appended if the session data was last loaded
+     * from or saved to the last record of the session, which is a record
+     * with attributes serialized by a {@link SessionDataSerializer}.
+     */
+    private boolean isDeltaStorable(Location previous, long lastSaveTime)
+    {
+        return _serializer != null && isSaveChangedAttributesOnly() &&
+            previous != null && previous.serialized() && lastSaveTime > 0 && previous.lastSaved() == lastSaveTime &&
+            previous.records() < MAX_DELTA_RECORDS;
+    }
+
+    private byte[] newStoreBody(String id, SessionData data) throws Exception
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeMeta(out, newMeta(STORE, id, data));
+        serializeAttributes(data, out);
+        return bytes.toByteArray();
+    }
+
+    private byte[] newDeltaBody(String id, SessionData data) throws Exception
+    {
+        Map<String, byte[]> changed = new LinkedHashMap<>();
+        List<String> removed = new ArrayList<>();
+        for (String name : data.getDirtyAttributes())
+        {
+            Object value = data.getAttribute(name);
+            if (value == null)
+                removed.add(name);
+            else
+                changed.put(name, SessionData.serializeAttribute(data, _serializer, name, value, isSaveChangedAttributesOnly()));
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeMeta(out, newMeta(DELTA, id, data));
+        SessionData.writeSerializedAttributes(changed, out);
+        out.writeInt(removed.size());
+        for (String name : removed)
+        {
+            out.writeUTF(name);
+        }
+        return bytes.toByteArray();
+    }
+
+    private Meta newMeta(byte type, String id, SessionData data)
+    {
+        return new Meta(type, id, data.getExpiry(), _context.getCanonicalContextPath(), _context.getVhost(), data.getLastNode(),
+            data.getCreated(), data.getAccessed(), data.getLastAccessed(), data.getCookieSet(), data.getMaxInactiveMs(), data.getLastSaved());
+    }
+
+    /**
+     * Compact the segment, other than the active one, with the lowest ratio of
+     * live bytes, if that ratio is below the {@link #getCompactionRatio() compaction ratio}.
+     * A segment with invalid records is compacted first.
+     *
+     * @return whether a segment was compacted
+     * @throws IOException if the segment cannot be compacted
+     */
+    @ManagedOperation(value = "compact the segment with the lowest ratio of live bytes", impact = "ACTION")
+    public boolean compact() throws IOException
+    {
+        Segment segment = null;
+        try (AutoLock ignored = _lock.lock())
+        {
+            double lowest = getCompactionRatio();
+            for (int i = 0; i < _segments.size() - 1; i++)
+            {
+                Segment candidate = _segments.get(i);
+                if (candidate.invalid)
+                {
+                    segment = candidate;
+                    break;
+                }
+                double ratio = getLiveRatio(candidate, i > 0);
+                if (ratio < lowest)
+                {
+                    segment = candidate;
+                    lowest = ratio;
+                }
+            }
+            if (segment == null)
+                return false;
+        }
+
+        Segment compacted = segment;
+        long invalid = scan(compacted, true, (offset, body) ->
+        {
+            Meta meta = readMeta(new DataInputStream(new ByteArrayInputStream(body)));
+            try (AutoLock ignored = _lock.lock())
+            {
+                if (meta.type() == DELETE)
+                {
+                    // The record may hide a record of an older segment, that would be replayed without it.
+                    if (!_index.containsKey(meta.id()) && _segments.get(0) != compacted)
+                    {
+                        Location location = append(body);
+                        location.segment().deleteBytes += location.length();
+                    }
+                    return;
+                }
+                Location location = _index.get(meta.id());
+                if (location != null && location.contains(compacted, offset))
+                    copy(meta.id(), location, location.previous() == null ? body : null);
+            }
+        });
+        if (invalid > 0)
+        {
+            // Recover the live records that the scan could not find.
+            try (AutoLock ignored = _lock.lock())
+            {
+                for (Map.Entry<String, Location> entry : List.copyOf(_index.entrySet()))
+                {
+                    if (!entry.getValue().contains(compacted))
+                        continue;
+                    try
+                    {
+                        copy(entry.getKey(), entry.getValue(), null);
+                    }
+                    catch (IOException x)
+                    {
+                        LOG.warn("Dropping unreadable session {} of {}", entry.getKey(), compacted.path, x);
+                        unindex(entry.getKey());
+                    }
+                }
+            }
+        }
+
+        try (AutoLock ignored = _lock.lock())
+        {
+            _segments.remove(compacted);
+        }
+        IO.close(compacted.channel);
+        try
+        {
+            Files.deleteIfExists(compacted.path);
+        }
+        catch (IOException x)
+        {
+            // The file may be still mapped. It must not be replayed, as the delete records
+            // that hide its sessions may themselves be compacted, so it is marked to be
+            // deleted the next time the store starts.
+            LOG.warn("Unable to delete compacted segment {}", compacted.path, x);
+            try
+            {
+                Files.createFile(compacted.path.resolveSibling(compacted.path.getFileName() + COMPACTED_SUFFIX));
+            }
+            catch (IOException e)
+            {
+                LOG.warn("Unable to mark compacted segment {}", compacted.path, e);
+            }
+        }
+        if (LOG.isDebugEnabled())
+            LOG.debug("Compacted {}", compacted.path);
+        return true;
+    }
+
+    /**
+     * @param older whether there are older segments, that the delete records of the segment may hide records of
+     * @return the ratio of the bytes of the segment that are still needed
+     */
+    private static double getLiveRatio(Segment segment, boolean older)
+    {
+        if (segment.size == 0)
+            return 0;
+        long live = segment.liveBytes + (older ? segment.deleteBytes : 0);
+        return (double)live / segment.size;
+    }
+
+    /**
+     * Copy the records of a session to the active segment,
+     * merging a full record and its delta records into a full record.
+     *
+     * @param body the body of the record at the location, if already read, or null
+     */
+    private void copy(String id, Location location, byte[] body) throws IOException
+    {
+        assert _lock.isHeldByCurrentThread();
+        if (location.previous() == null)
+        {
+            index(id, append(body != null ? body : read(location)).with(location.expiry(), location.lastSaved(), location.serialized(), null));
+        }
+        else
+        {
+            List<byte[]> bodies = readChain(location);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            Meta last = readMeta(new DataInputStream(new ByteArrayInputStream(bodies.get(0))));
+            writeMeta(out, last.asStore());
+            SessionData.writeSerializedAttributes(mergeAttributes(bodies), out);
+            index(id, append(bytes.toByteArray()).with(location.expiry(), location.lastSaved(), true, null));
+        }
+    }
+
+    private void scheduleCompaction()
+    {
+        _compactionTask = _scheduler.schedule(() ->
+        {
+            try
+            {
+                while (isRunning() && compact())
+                {
+                    // Keep compacting while a segment has enough dead bytes.
+                }
+            }
+            catch (Throwable x)
+            {
+                LOG.warn("Unable to compact {}", _contextDir, x);
+            }
+            finally
+            {
+                if (isRunning())
+                    scheduleCompaction();
+            }
+        }, getCompactionIntervalSec(), TimeUnit.SECONDS);
+    }
+
+    private void index(String id, Location location)
+    {
+        assert _lock.isHeldByCurrentThread();
+        Location old = _index.put(id, location);
+        if (old != null)
+        {
+            // The records of the old location are still live if the new location is a delta record.
+            if (location.previous() != old)
+                release(old);
+            if (old.expiry() > 0)
+                _expiries.remove(new Expiry(old.expiry(), id));
+        }
+        location.segment().liveBytes += location.length();
+        if (location.expiry() > 0)
+            _expiries.add(new Expiry(location.expiry(), id));
+    }
+
+    private void unindex(String id)
+    {
+        assert _lock.isHeldByCurrentThread();
+        Location old = _index.remove(id);
+        if (old != null)
+        {
+            release(old);
+            if (old.expiry() > 0)
+                _expiries.remove(new Expiry(old.expiry(), id));
+        }
+    }
+
+    private static void release(Location location)
+    {
+        for (Location l = location; l != null; l = l.previous())
+        {
+            l.segment().liveBytes -= l.length();
+        }
+    }
+
+    private Location append(byte[] body) throws IOException
+    {
+        assert _lock.isHeldByCurrentThread();
+        Segment segment = _segments.get(_segments.size() - 1);
+        int length = HEADER_LENGTH + body.length;
+        if (segment.size > 0 && segment.size + length > getMaxSegmentSize())
+        {
+            segment.channel.force(false);
+            segment.sealed = true;
+            segment = newSegment(segment.sequence + 1);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putInt(body.length).putInt((int)crc.getValue()).put(body).flip();
+        long offset = segment.size;
+        while (buffer.hasRemaining())
+        {
+            segment.channel.write(buffer, offset + buffer.position());
+        }
+        if (isSyncWrites())
+            segment.channel.force(false);
+        segment.size += length;
+        return new Location(segment, offset, length, 0, 0, false, null);
+    }
+
+    private Segment newSegment(long sequence) throws IOException
+    {
+        while (true)
+        {
+            Path path = _contextDir.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+            try
+            {
+                FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                Segment segment = new Segment(sequence, path, channel);
+                _segments.add(segment);
+                return segment;
+            }
+            catch (FileAlreadyExistsException x)
+            {
+                ++sequence;
+            }
+        }
+    }
+
+    /**
+     * Read the bodies of the records of a session, from the last to the full record.
+     */
+    private List<byte[]> readChain(Location location) throws IOException
+    {
+        List<byte[]> bodies = new ArrayList<>();
+        for (Location l = location; l != null; l = l.previous())
+        {
+            bodies.add(read(l));
+        }
+        return bodies;
+    }
+
+    /**
+     * Apply the delta records to the attributes of the full record, without deserializing them.
+     *
+     * @param bodies the bodies of the records, from the last to the full record
+     * @return the serialized attributes
+     */
+    private static Map<String, byte[]> mergeAttributes(List<byte[]> bodies) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bodies.get(bodies.size() - 1)));
+        readMeta(in);
+        Map<String, byte[]> attributes = SessionData.readSerializedAttributes(in);
+        for (int i = bodies.size() - 2; i >= 0; i--)
+        {
+            in = new DataInputStream(new ByteArrayInputStream(bodies.get(i)));
+            readMeta(in);
+            attributes.putAll(SessionData.readSerializedAttributes(in));
+            int removed = in.readInt();
+            for (int r = 0; r < removed; r++)
+            {
+                attributes.remove(in.readUTF());
+            }
+        }
+        return attributes;
+    }
+
+    /**
+     * Read the body of the record at the given location.
+     */
+    private byte[] read(Location location) throws IOException
+    {
+        Segment segment = location.segment;
+        ByteBuffer record;
+        if (segment.sealed && isMemoryMapped())
+        {
+            MappedByteBuffer mapped = segment.mapped;
+            if (mapped == null)
+            {
+                // Racing threads may map the segment twice, which is harmless.
+                mapped = segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.size);
+                segment.mapped = mapped;
+            }
+            record = mapped.slice((int)location.offset, location.length);
+        }
+        else
+        {
+            record = ByteBuffer.allocate(location.length);
+            readFully(segment.channel, record, location.offset);
+            record.flip();
+        }
+
+        int length = record.getInt();
+        int checksum = record.getInt();
+        byte[] body = new byte[length];
+        record.get(body);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        if ((int)crc.getValue() != checksum)
+            throw new IOException("Invalid checksum at " + location.offset + " in " + segment.path);
+        return body;
+    }
+
+    /**
+     * Scan the records of a segment.
+     *
+     * @param resync whether to resume at the next valid record after an invalid one, rather than stop
+     * @return the number of bytes of the segment that are not part of a valid record
+     */
+    private long scan(Segment segment, boolean resync, RecordVisitor visitor) throws IOException
+    {
+        long size = segment.size;
+        long offset = 0;
+        long invalid = 0;
+        // The header and the type of the record.
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH + 1);
+        CRC32 crc = new CRC32();
+        while (offset + header.capacity() <= size)
+        {
+            header.clear();
+            readFully(segment.channel, header, offset);
+            int length = header.getInt(0);
+            byte type = header.get(HEADER_LENGTH);
+            if (length > 0 && offset + HEADER_LENGTH + length <= size && type >= STORE && type <= DELTA)
+            {
+                byte[] body = new byte[length];
+                readFully(segment.channel, ByteBuffer.wrap(body), offset + HEADER_LENGTH);
+                crc.reset();
+                crc.update(body);
+                if ((int)crc.getValue() == header.getInt(Integer.BYTES))
+                {
+                    visitor.visit(offset, body);
+                    offset += HEADER_LENGTH + length;
+                    continue;
+                }
+            }
+            if (!resync)
+                break;
+            ++offset;
+            ++invalid;
+        }
+        return invalid + size - offset;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        int start = buffer.position();
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer, position + buffer.position() - start) < 0)
+                throw new EOFException();
+        }
+    }
+
+    private static byte[] newRecordBody(Meta meta) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeMeta(new DataOutputStream(bytes), meta);
+        return bytes.toByteArray();
+    }
+
+    private static void writeMeta(DataOutputStream out, Meta meta) throws IOException
+    {
+        out.writeByte(meta.type());
+        out.writeUTF(meta.id());
+        out.writeLong(meta.expiry());
+        if (meta.type() == DELETE)
+            return;
+        out.writeUTF(meta.contextPath());
+        out.writeUTF(meta.vhost());
+        out.writeUTF(meta.lastNode());
+        out.writeLong(meta.created());
+        out.writeLong(meta.accessed());
+        out.writeLong(meta.lastAccessed());
+        out.writeLong(meta.cookieSet());
+        out.writeLong(meta.maxInactiveMs());
+        out.writeLong(meta.lastSaved());
+    }
+
+    private static Meta readMeta(DataInputStream in) throws IOException
+    {
+        byte type = in.readByte();
+        String id = in.readUTF();
+        long expiry = in.readLong();
+        if (type == DELETE)
+            return new Meta(type, id, expiry, null, null, null, 0, 0, 0, 0, 0, 0);
+        return new Meta(type, id, expiry, in.readUTF(), in.readUTF(), in.readUTF(),
+            in.readLong(), in.readLong(), in.readLong(), in.readLong(), in.readLong(), in.readLong());
+    }
+
+    private static long getSequence(Path path)
+    {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX))
+            return -1;
+        try
+        {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        }
+        catch (NumberFormatException x)
+        {
+            return -1;
+        }
+    }
+
+    @Override
+    @ManagedAttribute(value = "are sessions serialized by this store", readonly = true)
+    public boolean isPassivating()
+    {
+        return true;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s[dir=%s,maxSegmentSize=%d,memoryMapped=%b]", super.toString(), _storeDir, _maxSegmentSize, _memoryMapped);
+    }
+
+    @FunctionalInterface
+    private interface RecordVisitor
+    {
+        void visit(long offset, byte[] body) throws IOException;
+    }
+
+    private static class Segment
+    {
+        private final long sequence;
+        private final Path path;
+        private final FileChannel channel;
+        // Guarded by _lock.
+        private long size;
+        private long liveBytes;
+        private long deleteBytes;
+        private boolean invalid;
+        private volatile boolean sealed;
+        private volatile MappedByteBuffer mapped;
+
+        private Segment(long sequence, Path path, FileChannel channel)
+        {
+            this.sequence = sequence;
+            this.path = path;
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * The location of the last record of a session.
+     *
+     * @param serialized whether the attributes are serialized by a {@link SessionDataSerializer}
+     * @param previous the location of the previous record if this is a delta record, or null
+     */
+    private record Location(Segment segment, long offset, int length, long expiry, long lastSaved, boolean serialized, Location previous)
+    {
+        private Location with(long expiry, long lastSaved, boolean serialized, Location previous)
+        {
+            return new Location(segment, offset, length, expiry, lastSaved, serialized, previous);
+        }
+
+        private int records()
+        {
+            return previous == null ? 1 : 1 + previous.records();
+        }
+
+        private boolean contains(Segment segment, long offset)
+        {
+            for (Location l = this; l != null; l = l.previous())
+            {
+                if (l.segment() == segment && l.offset() == offset)
+                    return true;
+            }
+            return false;
+        }
+
+        private boolean contains(Segment segment)
+        {
+            for (Location l = this; l != null; l = l.previous())
+            {
+                if (l.segment() == segment)
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    private record Meta(byte type, String id, long expiry, String contextPath, String vhost, String lastNode,
+                        long created, long accessed, long lastAccessed, long cookieSet, long maxInactiveMs, long lastSaved)
+    {
+        private Meta asStore()
+        {
+            return new Meta(STORE, id, expiry, contextPath, vhost, lastNode, created, accessed, lastAccessed, cookieSet, maxInactiveMs, lastSaved);
+        }
+    }
+
+    private record Expiry(long expiry, String id) implements Comparable<Expiry>
+    {
+        @Override
+        public int compareTo(Expiry that)
+        {
+            int result = Long.compare(expiry, that.expiry);
+            return result != 0 ? result : id.compareTo(that.id);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.session;
+
+import java.io.File;
+
+/**
+ * LogStructuredSessionDataStoreFactory
+ */
+public class LogStructuredSessionDataStoreFactory extends AbstractSessionDataStoreFactory
+{
+    File _storeDir;
+    int _maxSegmentSize = 64 * 1024 * 1024;
+    double _compactionRatio = 0.5D;
+    int _compactionIntervalSec = 60;
+    boolean _memoryMapped;
+    boolean _syncWrites;
+
+    public File getStoreDir()
+    {
+        return _storeDir;
+    }
+
+    public void setStoreDir(File storeDir)
+    {
+        _storeDir = storeDir;
+    }
+
+    public int getMaxSegmentSize()
+    {
+        return _maxSegmentSize;
+    }
+
+    public void setMaxSegmentSize(int maxSegmentSize)
+    {
+        _maxSegmentSize = maxSegmentSize;
+    }
+
+    public double getCompactionRatio()
+    {
+        return _compactionRatio;
+    }
+
+    public void setCompactionRatio(double compactionRatio)
+    {
+        _compactionRatio = compactionRatio;
+    }
+
+    public int getCompactionIntervalSec()
+    {
+        return _compactionIntervalSec;
+    }
+
+    public void setCompactionIntervalSec(int compactionIntervalSec)
+    {
+        _compactionIntervalSec = compactionIntervalSec;
+    }
+
+    public boolean isMemoryMapped()
+    {
+        return _memoryMapped;
+    }
+
+    public void setMemoryMapped(boolean memoryMapped)
+    {
+        _memoryMapped = memoryMapped;
+    }
+
+    public boolean isSyncWrites()
+    {
+        return _syncWrites;
+    }
+
+    public void setSyncWrites(boolean syncWrites)
+    {
+        _syncWrites = syncWrites;
+    }
+
+    @Override
+    public SessionDataStore getSessionDataStore(SessionManager manager)
+    {
+        LogStructuredSessionDataStore store = new LogStructuredSessionDataStore();
+        store.setStoreDir(getStoreDir());
+        store.setMaxSegmentSize(getMaxSegmentSize());
+        store.setCompactionRatio(getCompactionRatio());
+        store.setCompactionIntervalSec(getCompactionIntervalSec());
+        store.setMemoryMapped(isMemoryMapped());
+        store.setSyncWrites(isSyncWrites());
+        store.setGracePeriodSec(getGracePeriodSec());
+        store.setSavePeriodSec(getSavePeriodSec());
+        store.setSerializer(getSerializer());
+        store.setSaveChangedAttributesOnly(isSaveChangedAttributesOnly());
+        return store;
+    }
+}
@@ -0,0 +1,635 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.session;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.FuturePromise;
+import org.eclipse.jetty.util.NanoTime;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * NearCacheSessionDataStore
+ *
+ * A SessionDataStore that keeps a node-local copy of the session data in front
+ * of a delegate SessionDataStore, typically a remote one such as the
+ * {@link JDBCSessionDataStore}, so that loading a session that was recently
+ * loaded or stored on this node does not require a round trip to the delegate.
+ *
+ * Each local copy is stamped with a version, which is the last saved time of
+ * the session data. Local copies are used for at most {@link #getMaxCacheAgeSec()}
+ * seconds. If an {@link InvalidationChannel} is configured, each node publishes
+ * the new version of the sessions it stores or deletes, and the other nodes drop
+ * their local copy when the version does not match. Without an InvalidationChannel,
+ * a local copy is only used after checking that its version is still the one returned
+ * by {@link SessionDataStore#getLastSaved(String)} of the delegate, which is cheaper
+ * than loading the session for stores such as the {@link JDBCSessionDataStore}.
+ * If the delegate cannot read the version without loading the session (see
+ * {@link SessionDataStore#isLastSavedEfficient()}), the version is not checked and,
+ * without an InvalidationChannel, a node may use a local copy of a session stored by
+ * another node for up to {@link #getMaxCacheAgeSec()} seconds.
+ *
+ * The attributes of the local copies are kept serialized, so that each load returns
+ * new attribute values, as a remote store would.
+ *
+ * Writes that only update the access times of a session (that is, the session
+ * attributes are not dirty) are deferred and written to the delegate in batch every
+ * {@link #getAccessWritePeriodSec()} seconds, coalescing multiple accesses to the
+ * same session. Writes of dirty sessions are written through immediately. The batch
+ * write changes the version of the sessions, which is published like any other store.
+ */
+@ManagedObject
+public class NearCacheSessionDataStore extends ContainerLifeCycle implements SessionDataStore
+{
+    private static final Logger LOG = LoggerFactory.getLogger(NearCacheSessionDataStore.class);
+
+    private final SessionDataStore _store;
+    private final Map<String, Entry> _cache = new ConcurrentHashMap<>();
+    private final Map<String, SessionData> _pending = new ConcurrentHashMap<>();
+    private final AutoLock[] _locks = new AutoLock[32];
+    private final InvalidationChannel.Listener _listener = this::onInvalidated;
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _deferredWrites = new LongAdder();
+    private final LongAdder _invalidations = new LongAdder();
+    private final SessionDataSerializer _serializer = new JavaSessionDataSerializer();
+    private InvalidationChannel _invalidationChannel;
+    private int _maxCacheAgeSec = 60;
+    private int _accessWritePeriodSec = 1;
+    private SessionContext _context;
+    private Scheduler _scheduler;
+    private boolean _ownScheduler;
+    private Scheduler.Task _flushTask;
+
+    /**
+     * @param store the actual store for the session data
+     */
+    public NearCacheSessionDataStore(SessionDataStore store)
+    {
+        _store = store;
+        installBean(_store, true);
+        for (int i = 0; i < _locks.length; i++)
+        {
+            _locks[i] = new AutoLock();
+        }
+    }
+
+    /**
+     * Get the delegate session store.
+     * @return the delegate session store
+     */
+    public SessionDataStore getSessionStore()
+    {
+        return _store;
+    }
+
+    /**
+     * @return the channel used to publish and receive session invalidations, or null
+     */
+    public InvalidationChannel getInvalidationChannel()
+    {
+        return _invalidationChannel;
+    }
+
+    /**
+     * @param invalidationChannel the channel used to publish and receive session invalidations
+     */
+    public void setInvalidationChannel(InvalidationChannel invalidationChannel)
+    {
+        if (isStarted())
+            throw new IllegalStateException("Cannot change invalidation channel: " + this);
+        _invalidationChannel = invalidationChannel;
+    }
+
+    /**
+     * @return the max time in seconds that a local copy of a session is used
+     */
+    @ManagedAttribute(value = "max time in seconds that a local copy of a session is used", readonly = true)
+    public int getMaxCacheAgeSec()
+    {
+        return _maxCacheAgeSec;
+    }
+
+    /**
+     * @param maxCacheAgeSec the max time in seconds that a local copy of a session is used,
+     * or 0 to always load sessions from the delegate store
+     */
+    public void setMaxCacheAgeSec(int maxCacheAgeSec)
+    {
+        if (isStarted())
+            throw new IllegalStateException("Cannot change max cache age: " + this);
+        _maxCacheAgeSec = maxCacheAgeSec;
+    }
+
+    /**
+     * @return the period in seconds of the batch write of the session access times
+     */
+    @ManagedAttribute(value = "period in seconds of the batch write of the session access times", readonly = true)
+    public int getAccessWritePeriodSec()
+    {
+        return _accessWritePeriodSec;
+    }
+
+    /**
+     * @param accessWritePeriodSec the period in seconds of the batch write of the session
+     * access times, or 0 to write them through immediately
+     */
+    public void setAccessWritePeriodSec(int accessWritePeriodSec)
+    {
+        if (isStarted())
+            throw new IllegalStateException("Cannot change access write period: " + this);
+        _accessWritePeriodSec = accessWritePeriodSec;
+    }
+
+    @ManagedAttribute("number of sessions loaded from the local copy")
+    public long getCacheHits()
+    {
+        return _hits.sum();
+    }
+
+    @ManagedAttribute("number of sessions loaded from the delegate store")
+    public long getCacheMisses()
+    {
+        return _misses.sum();
+    }
+
+    @ManagedAttribute("number of access time writes deferred to the batch write")
+    public long getDeferredWrites()
+    {
+        return _deferredWrites.sum();
+    }
+
+    @ManagedAttribute("number of local copies dropped after a store on another node")
+    public long getInvalidations()
+    {
+        return _invalidations.sum();
+    }
+
+    @ManagedAttribute("number of sessions with a local copy")
+    public int getCacheSize()
+    {
+        return _cache.size();
+    }
+
+    @ManagedOperation(value = "reset statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        _hits.reset();
+        _misses.reset();
+        _deferredWrites.reset();
+        _invalidations.reset();
+    }
+
+    @Override
+    public void initialize(SessionContext context) throws Exception
+    {
+        if (isStarted())
+            throw new IllegalStateException("Context set after NearCacheSessionDataStore started");
+        _context = context;
+        _store.initialize(context);
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        super.doStart();
+
+        if (_invalidationChannel != null)
+            _invalidationChannel.addListener(_listener);
+
+        if (getAccessWritePeriodSec() > 0)
+        {
+            if (_context != null && _context.getSessionManager() instanceof AbstractSessionManager sessionManager)
+            {
+                Server server = sessionManager.getServer();
+                if (server != null)
+                    _scheduler = server.getScheduler();
+            }
+            if (_scheduler == null)
+            {
+                _scheduler = new ScheduledExecutorScheduler(String.format("Session-NearCache-%x", hashCode()), false);
+                _ownScheduler = true;
+                _scheduler.start();
+            }
+            scheduleFlush();
+        }
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        if (_flushTask != null)
+            _flushTask.cancel();
+        _flushTask = null;
+        flush();
+        if (_ownScheduler)
+            _scheduler.stop();
+        _scheduler = null;
+        _ownScheduler = false;
+
+        if (_invalidationChannel != null)
+            _invalidationChannel.removeListener(_listener);
+        _cache.clear();
+
+        super.doStop();
+    }
+
+    @Override
+    public SessionData load(String id) throws Exception
+    {
+        Entry entry = _cache.get(id);
+        if (entry != null)
+        {
+            if (isValid(id, entry))
+            {
+                _hits.increment();
+                return copyOf(entry);
+            }
+            _cache.remove(id, entry);
+        }
+
+        _misses.increment();
+        // Make sure the delegate has the latest access times.
+        flush(id);
+        SessionData data = _store.load(id);
+        if (data != null)
+            cache(id, data);
+        return data;
+    }
+
+    @Override
+    public void store(String id, SessionData data) throws Exception
+    {
+        if (data == null)
+            return;
+
+        if (isDeferrable(data))
+        {
+            // Only the access times changed, write them later in batch.
+            SessionData snapshot = copyOf(data);
+            snapshot.setMetaDataDirty(true);
+            _pending.put(id, snapshot);
+            // The attributes have not changed, only update the access times of the local copy.
+            _cache.computeIfPresent(id, (k, e) -> new Entry(copyOfMetaData(data, e.version), e.attributes, e.version, e.cachedNanoTime));
+            _deferredWrites.increment();
+            return;
+        }
+
+        long lastSaved = data.getLastSaved();
+        try (AutoLock ignored = lockFor(id).lock())
+        {
+            _pending.remove(id);
+            _store.store(id, data);
+
+            // If the store saved it, then update the local copy and the other nodes,
+            // while holding the lock so that a concurrent delete is not undone.
+            if (data.getLastSaved() != lastSaved)
+            {
+                cache(id, data);
+                publish(id, data.getLastSaved());
+            }
+        }
+    }
+
+    @Override
+    public boolean delete(String id) throws Exception
+    {
+        try (AutoLock ignored = lockFor(id).lock())
+        {
+            _pending.remove(id);
+            boolean deleted = _store.delete(id);
+            _cache.remove(id);
+            publish(id, -1);
+            return deleted;
+        }
+    }
+
+    @Override
+    public boolean exists(String id) throws Exception
+    {
+        Entry entry = _cache.get(id);
+        if (entry != null && isValid(id, entry))
+            return !entry.metaData.isExpiredAt(System.currentTimeMillis());
+        flush(id);
+        return _store.exists(id);
+    }
+
+    @Override
+    public long getLastSaved(String id) throws Exception
+    {
+        flush(id);
+        return _store.getLastSaved(id);
+    }
+
+    @Override
+    public boolean isLastSavedEfficient()
+    {
+        return _store.isLastSavedEfficient();
+    }
+
+    @Override
+    public Set<String> getExpired(Set<String> candidates)
+    {
+        // The delegate must see the latest access times to determine expiry.
+        flush();
+        return _store.getExpired(candidates);
+    }
+
+    @Override
+    public boolean isPassivating()
+    {
+        return _store.isPassivating();
+    }
+
+    @Override
+    public SessionData newSessionData(String id, long created, long accessed, long lastAccessed, long maxInactiveMs)
+    {
+        return _store.newSessionData(id, created, accessed, lastAccessed, maxInactiveMs);
+    }
+
+    /**
+     * Writes to the delegate store the access times of the sessions
+     * that have been deferred.
+     */
+    @ManagedOperation(value = "write the deferred access times", impact = "ACTION")
+    public void flush()
+    {
+        for (String id : _pending.keySet())
+        {
+            flush(id);
+        }
+    }
+
+    private void flush(String id)
+    {
+        try (AutoLock ignored = lockFor(id).lock())
+        {
+            SessionData snapshot = _pending.remove(id);
+            if (snapshot == null)
+                return;
+            long lastSaved = snapshot.getLastSaved();
+            _store.store(id, snapshot);
+            long version = snapshot.getLastSaved();
+
+            // The store changed the version of the session, so update
+            // the version of the local copy and notify the other nodes.
+            if (version != lastSaved)
+            {
+                _cache.computeIfPresent(id, (k, e) -> e.version == lastSaved ? new Entry(copyOfMetaData(e.metaData, version), e.attributes, version, e.cachedNanoTime) : null);
+                publish(id, version);
+            }
+        }
+        catch (Exception x)
+        {
+            LOG.warn("Unable to store {}", id, x);
+        }
+    }
+
+    private void publish(String id, long version)
+    {
+        if (_invalidationChannel != null)
+            _invalidationChannel.publish(id, version);
+    }
+
+    private void scheduleFlush()
+    {
+        _flushTask = _scheduler.schedule(() ->
+        {
+            try
+            {
+                flush();
+            }
+            finally
+            {
+                if (isRunning())
+                    scheduleFlush();
+            }
+        }, getAccessWritePeriodSec(), TimeUnit.SECONDS);
+    }
+
+    private void onInvalidated(String id, long version)
+    {
+        Entry entry = _cache.get(id);
+        if (entry != null && entry.version != version && _cache.remove(id, entry))
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Invalidated {} version={}", id, version);
+            _invalidations.increment();
+        }
+    }
+
+    private boolean isDeferrable(SessionData data)
+    {
+        return getAccessWritePeriodSec() > 0 && isRunning() && data.getLastSaved() > 0 && !data.isDirty() && data.isMetaDataDirty();
+    }
+
+    /**
+     * A local copy is valid if it is not older than the max cache age and, when there is
+     * no InvalidationChannel to be notified of the stores of the other nodes, if its
+     * version is still the one of the delegate store. The version is not checked if
+     * the delegate store would have to load the session to read it, as that would
+     * cost more than not having a local copy.
+     */
+    private boolean isValid(String id, Entry entry) throws Exception
+    {
+        if (NanoTime.secondsSince(entry.cachedNanoTime) >= getMaxCacheAgeSec())
+            return false;
+        if (_invalidationChannel != null || !_store.isLastSavedEfficient())
+            return true;
+        return _store.getLastSaved(id) == entry.version;
+    }
+
+    private void cache(String id, SessionData data)
+    {
+        if (getMaxCacheAgeSec() <= 0)
+            return;
+        try
+        {
+            Map<String, byte[]> attributes = runInContext(() ->
+            {
+                Map<String, byte[]> serialized = new HashMap<>();
+                for (Map.Entry<String, Object> attribute : data.getAllAttributes().entrySet())
+                {
+                    serialized.put(attribute.getKey(), _serializer.serialize(attribute.getKey(), attribute.getValue()));
+                }
+                return serialized;
+            });
+            _cache.put(id, new Entry(copyOfMetaData(data, data.getLastSaved()), attributes, data.getLastSaved(), NanoTime.now()));
+        }
+        catch (Exception x)
+        {
+            // Without a copy of the attributes, the session is always loaded from the delegate.
+            _cache.remove(id);
+            if (LOG.isDebugEnabled())
+                LOG.debug("Unable to copy {}", id, x);
+        }
+    }
+
+    private SessionData copyOf(Entry entry) throws Exception
+    {
+        Map<String, Object> attributes = runInContext(() ->
+        {
+            Map<String, Object> deserialized = new HashMap<>();
+            for (Map.Entry<String, byte[]> attribute : entry.attributes.entrySet())
+            {
+                deserialized.put(attribute.getKey(), _serializer.deserialize(attribute.getKey(), attribute.getValue()));
+            }
+            return deserialized;
+        });
+        SessionData copy = copyOfMetaData(entry.metaData, entry.version);
+        copy.putAllAttributes(attributes);
+        // Like a session loaded from the delegate, no attribute is dirty.
+        copy.clean();
+        return copy;
+    }
+
+    /**
+     * The copy shares the attribute values with the given session data, so it is only
+     * used for the deferred writes of the access times, where the attributes are not dirty.
+     */
+    private SessionData copyOf(SessionData data)
+    {
+        SessionData copy = _store.newSessionData(data.getId(), data.getCreated(), data.getAccessed(), data.getLastAccessed(), data.getMaxInactiveMs());
+        copy.copy(data);
+        copy.clean();
+        return copy;
+    }
+
+    private SessionData copyOfMetaData(SessionData data, long version)
+    {
+        SessionData copy = copyOf(data);
+        copy.clearAllAttributes();
+        copy.setLastSaved(version);
+        return copy;
+    }
+
+    private <T> T runInContext(Callable<T> task) throws Exception
+    {
+        // Serialize and deserialize with the context classloader, like the delegate does.
+        FuturePromise<T> result = new FuturePromise<>();
+        Runnable r = () ->
+        {
+            try
+            {
+                result.succeeded(task.call());
+            }
+            catch (Exception x)
+            {
+                result.failed(x);
+            }
+        };
+        if (_context == null)
+            r.run();
+        else
+            _context.run(r);
+        return result.getOrThrow();
+    }
+
+    private AutoLock lockFor(String id)
+    {
+        return _locks[(id.hashCode() & 0x7FFF_FFFF) % _locks.length];
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[store=%s,channel=%s]", getClass().getSimpleName(), hashCode(), _store, _invalidationChannel);
+    }
+
+    private record Entry(SessionData metaData, Map<String, byte[]> attributes, long version, long cachedNanoTime)
+    {
+    }
+
+    /**
+     * A channel used to notify the other nodes of a cluster that a
+     * session has been stored or deleted, so that they can drop their
+     * local copy of the session.
+     */
+    public interface InvalidationChannel
+    {
+        /**
+         * Publishes the new version of a session to all the nodes.
+         *
+         * @param id the session id
+         * @param version the new version of the session, or -1 if the session was deleted
+         */
+        void publish(String id, long version);
+
+        /**
+         * @param listener the listener to notify of the versions published by any node
+         */
+        void addListener(Listener listener);
+
+        /**
+         * @param listener the listener to remove
+         */
+        void removeListener(Listener listener);
+
+        interface Listener
+        {
+            /**
+             * @param id the session id
+             * @param version the new version of the session, or -1 if the session was deleted
+             */
+            void onInvalidated(String id, long version);
+        }
+    }
+
+    /**
+     * An {@link InvalidationChannel} that notifies the listeners in the same JVM,
+     * for example several NearCacheSessionDataStores used to test a cluster.
+     */
+    public static class InMemoryInvalidationChannel implements InvalidationChannel
+    {
+        private final List<Listener> _listeners = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void publish(String id, long version)
+        {
+            for (Listener listener : _listeners)
+            {
+                listener.onInvalidated(id, version);
+            }
+        }
+
+        @Override
+        public void addListener(Listener listener)
+        {
+            _listeners.add(listener);
+        }
+
+        @Override
+        public void removeListener(Listener listener)
+        {
+            _listeners.remove(listener);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.session;
+
+/**
+ * NearCacheSessionDataStoreFactory
+ */
+public class NearCacheSessionDataStoreFactory extends AbstractSessionDataStoreFactory
+{
+    /**
+     * The SessionDataStore that will store session data.
+     */
+    protected SessionDataStoreFactory _sessionStoreFactory;
+
+    protected NearCacheSessionDataStore.InvalidationChannel _invalidationChannel;
+
+    protected int _maxCacheAgeSec = 60;
+
+    protected int _accessWritePeriodSec = 1;
+
+    /**
+     * @param factory The factory for the actual SessionDataStore that the
+     * NearCacheSessionDataStore will delegate to
+     */
+    public void setSessionStoreFactory(SessionDataStoreFactory factory)
+    {
+        _sessionStoreFactory = factory;
+    }
+
+    public NearCacheSessionDataStore.InvalidationChannel getInvalidationChannel()
+    {
+        return _invalidationChannel;
+    }
+
+    /**
+     * @param invalidationChannel the channel used by all the NearCacheSessionDataStores
+     * to publish and receive session invalidations
+     */
+    public void setInvalidationChannel(NearCacheSessionDataStore.InvalidationChannel invalidationChannel)
+    {
+        _invalidationChannel = invalidationChannel;
+    }
+
+    public int getMaxCacheAgeSec()
+    {
+        return _maxCacheAgeSec;
+    }
+
+    /**
+     * @param maxCacheAgeSec the max time in seconds that a local copy of a session is used
+     * @see NearCacheSessionDataStore#setMaxCacheAgeSec(int)
+     */
+    public void setMaxCacheAgeSec(int maxCacheAgeSec)
+    {
+        _maxCacheAgeSec = maxCacheAgeSec;
+    }
+
+    public int getAccessWritePeriodSec()
+    {
+        return _accessWritePeriodSec;
+    }
+
+    /**
+     * @param accessWritePeriodSec the period in seconds of the batch write of the session access times
+     * @see NearCacheSessionDataStore#setAccessWritePeriodSec(int)
+     */
+    public void setAccessWritePeriodSec(int accessWritePeriodSec)
+    {
+        _accessWritePeriodSec = accessWritePeriodSec;
+    }
+
+    @Override
+    public SessionDataStore getSessionDataStore(SessionManager manager) throws Exception
+    {
+        NearCacheSessionDataStore store = new NearCacheSessionDataStore(_sessionStoreFactory.getSessionDataStore(manager));
+        store.setInvalidationChannel(getInvalidationChannel());
+        store.setMaxCacheAgeSec(getMaxCacheAgeSec());
+        store.setAccessWritePeriodSec(getAccessWritePeriodSec());
+        return store;
+    }
+}
@@ -13,17 +13,71 @@
 
 package org.eclipse.jetty.session;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.io.PushbackInputStream;
 import java.util.Objects;
 
 import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
 
 public abstract class ObjectStreamSessionDataStore extends AbstractSessionDataStore
 {
+    protected SessionDataSerializer _serializer;
+    protected boolean _saveChangedAttributesOnly;
+
+    /**
+     * @return the serializer of the attribute values, or null to use java serialization for the whole attribute map
+     */
+    public SessionDataSerializer getSerializer()
+    {
+        return _serializer;
+    }
+
+    /**
+     * Set the serializer of the attribute values. The sessions that were saved
+     * without a serializer can still be loaded, but the sessions saved with a
+     * serializer can only be loaded by a store with a compatible serializer.
+     *
+     * @param serializer the serializer of the attribute values, or null to use java serialization for the whole attribute map
+     */
+    public void setSerializer(SessionDataSerializer serializer)
+    {
+        checkStarted();
+        _serializer = serializer;
+    }
+
+    /**
+     * @return whether only the attributes that have been set since the last save are written
+     * @see #setSaveChangedAttributesOnly(boolean)
+     */
+    @ManagedAttribute(value = "are only changed attributes saved", readonly = true)
+    public boolean isSaveChangedAttributesOnly()
+    {
+        return _saveChangedAttributesOnly;
+    }
+
+    /**
+     * Set whether only the attributes that have been set since the last save are written.
+     * When a {@link #setSerializer(SessionDataSerializer) serializer} is set, the bytes of
+     * the other attributes are reused rather than serialized again, and stores may skip
+     * writing them entirely.
+     * This requires the application to set an attribute again whenever its value is
+     * modified, otherwise the modification may never be saved.
+     *
+     * @param saveChangedAttributesOnly whether only the attributes that have been set since the last save are written
+     */
+    public void setSaveChangedAttributesOnly(boolean saveChangedAttributesOnly)
+    {
+        checkStarted();
+        _saveChangedAttributesOnly = saveChangedAttributesOnly;
+    }
+
     /**
      * Get an ObjectOutputStream suitable to serialize SessionData objects
      * into the provided OutputStream.
@@ -78,6 +132,13 @@ public abstract class ObjectStreamSessionDataStore extends AbstractSessionDataSt
     {
         Objects.requireNonNull(data);
         Objects.requireNonNull(os);
+        if (_serializer != null)
+        {
+            DataOutputStream out = new DataOutputStream(os);
+            SessionData.serializeAttributes(data, _serializer, out, isSaveChangedAttributesOnly());
+            out.flush();
+            return;
+        }
         try (ObjectOutputStream oos = newObjectOutputStream(os))
         {
             SessionData.serializeAttributes(data, oos);
@@ -94,9 +155,27 @@ public abstract class ObjectStreamSessionDataStore extends AbstractSessionDataSt
     {
         Objects.requireNonNull(data);
         Objects.requireNonNull(is);
-        try (ObjectInputStream ois = newObjectInputStream(is))
+
+        // Peek at the first int to tell the attributes written by a serializer from a java serialization stream.
+        PushbackInputStream in = new PushbackInputStream(is, Integer.BYTES);
+        byte[] magic = in.readNBytes(Integer.BYTES);
+        in.unread(magic);
+        if (magic.length == Integer.BYTES && toInt(magic) == SessionData.SERIALIZED_ATTRIBUTES_MAGIC)
+        {
+            if (_serializer == null)
+                throw new IllegalStateException("No serializer for attributes of session " + data.getId());
+            SessionData.deserializeAttributes(data, _serializer, new DataInputStream(in), isSaveChangedAttributesOnly());
+            return;
+        }
+
+        try (ObjectInputStream ois = newObjectInputStream(in))
         {
             SessionData.deserializeAttributes(data, ois);
         }
     }
+
+    private static int toInt(byte[] bytes)
+    {
+        return (bytes[0] & 0xFF) << 24 | (bytes[1] & 0xFF) << 16 | (bytes[2] & 0xFF) << 8 | (bytes[3] & 0xFF);
+    }
 }
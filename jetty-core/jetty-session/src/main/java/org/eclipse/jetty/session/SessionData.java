@@ -13,9 +13,14 @@
 
 package org.eclipse.jetty.session;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -40,6 +45,12 @@ public class SessionData implements Serializable
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * The first int of the attributes serialized with a {@link SessionDataSerializer},
+     * which is not the first int of a java serialization stream.
+     */
+    static final int SERIALIZED_ATTRIBUTES_MAGIC = 0x4A534131;
+
     protected String _id;
     protected String _contextPath;
     protected String _vhost;
@@ -54,6 +65,8 @@ public class SessionData implements Serializable
     protected boolean _dirty;
     protected long _lastSaved; //time in msec since last save
     protected boolean _metaDataDirty; //non-attribute data has changed
+    protected Set<String> _dirtyAttributes = ConcurrentHashMap.newKeySet(); //names of attributes set since last save
+    private Map<String, SerializedAttribute> _serializedAttributes = new ConcurrentHashMap<>(); //attribute bytes of last save
 
     /**
      * Serialize the attribute map of the session.
@@ -75,41 +88,168 @@ public class SessionData implements Serializable
             out.writeUTF(entry.getKey());
 
             Class<?> clazz = entry.getValue().getClass();
-            ClassLoader loader = clazz.getClassLoader();
-            ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
-            
-            boolean isContextLoader;
-
-            if (loader == contextLoader) //is it the context classloader?
-                isContextLoader = true;
-            else if (contextLoader == null) //not context classloader
-                isContextLoader = false;
-            else if (contextLoader instanceof ClassVisibilityChecker)
+            boolean isServerClass = isServerClass(clazz);
+            if (LOG.isDebugEnabled())
+                LOG.debug("Attribute {} class={} isServerLoader={}", entry.getKey(), clazz.getName(), isServerClass);
+            out.writeBoolean(isServerClass);
+            out.writeObject(entry.getValue());
+        }
+    }
+
+    /**
+     * Check whether the value of an attribute must be deserialized with the container
+     * classloader, rather than with the context classloader.
+     *
+     * @param clazz the class of the value of the attribute
+     * @return true if the class cannot be loaded by the thread context classloader
+     */
+    static boolean isServerClass(Class<?> clazz)
+    {
+        ClassLoader loader = clazz.getClassLoader();
+        ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
+
+        boolean isContextLoader;
+
+        if (loader == contextLoader) //is it the context classloader?
+            isContextLoader = true;
+        else if (contextLoader == null) //not context classloader
+            isContextLoader = false;
+        else if (contextLoader instanceof ClassVisibilityChecker)
+        {
+            //Clazz not loaded by context classloader, but ask if loadable by context classloader,
+            //because preferable to use context classloader if possible (eg for deep structures).
+            ClassVisibilityChecker checker = (ClassVisibilityChecker)(contextLoader);
+            isContextLoader = (checker.isProtectedClass(clazz) && !(checker.isHiddenClass(clazz)));
+        }
+        else
+        {
+            //Class wasn't loaded by context classloader, but try loading from context loader,
+            //because preferable to use context classloader if possible (eg for deep structures).
+            try
             {
-                //Clazz not loaded by context classloader, but ask if loadable by context classloader,
-                //because preferable to use context classloader if possible (eg for deep structures).
-                ClassVisibilityChecker checker = (ClassVisibilityChecker)(contextLoader);
-                isContextLoader = (checker.isProtectedClass(clazz) && !(checker.isHiddenClass(clazz)));
+                Class<?> result = contextLoader.loadClass(clazz.getName());
+                isContextLoader = (result == clazz); //only if TTCL loaded this instance of the class
             }
-            else
+            catch (Throwable e)
             {
-                //Class wasn't loaded by context classloader, but try loading from context loader,
-                //because preferable to use context classloader if possible (eg for deep structures).
-                try
-                {
-                    Class<?> result = contextLoader.loadClass(clazz.getName());
-                    isContextLoader = (result == clazz); //only if TTCL loaded this instance of the class
-                }
-                catch (Throwable e)
-                {
-                    isContextLoader = false; //TCCL can't see the class
-                }
+                isContextLoader = false; //TCCL can't see the class
+            }
+        }
+        return !isContextLoader;
+    }
+
+    /**
+     * Serialize the attribute map of the session as a map of attribute name
+     * to the bytes produced by a {@link SessionDataSerializer}.
+     *
+     * If reuse is true, the bytes of each attribute are remembered, and are written
+     * again without serializing the value if the attribute has not been set since.
+     * This saves the cost of serializing the attributes that have not changed, at the
+     * cost of keeping their bytes in memory, and relies on the attributes being set
+     * again whenever their value is modified, so it must only be true for stores
+     * configured to save the changed attributes only, which documents that contract.
+     * Otherwise, an attribute modified in place would be saved with its old value.
+     *
+     * @param data the SessionData for which to serialize the attributes
+     * @param serializer the serializer for the attribute values
+     * @param out the stream to which to serialize
+     * @param reuse whether to reuse the bytes of the attributes that have not been set since they were last serialized
+     */
+    public static void serializeAttributes(SessionData data, SessionDataSerializer serializer, DataOutputStream out, boolean reuse)
+        throws IOException
+    {
+        List<Entry<String, Object>> entries = new ArrayList<>(data._attributes.entrySet());
+        out.writeInt(SERIALIZED_ATTRIBUTES_MAGIC);
+        out.writeInt(entries.size());
+        for (Entry<String, Object> entry : entries)
+        {
+            byte[] bytes = serializeAttribute(data, serializer, entry.getKey(), entry.getValue(), reuse);
+            out.writeUTF(entry.getKey());
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    static byte[] serializeAttribute(SessionData data, SessionDataSerializer serializer, String name, Object value, boolean reuse)
+        throws IOException
+    {
+        if (reuse)
+        {
+            SerializedAttribute serialized = data._serializedAttributes.get(name);
+            if (serialized != null && serialized.value() == value)
+                return serialized.bytes();
+        }
+        byte[] bytes = serializer.serialize(name, value);
+        if (reuse)
+            data._serializedAttributes.put(name, new SerializedAttribute(value, bytes));
+        return bytes;
+    }
+
+    /**
+     * De-serialize the attribute map of a session that was serialized with
+     * {@link #serializeAttributes(SessionData, SessionDataSerializer, DataOutputStream, boolean)}.
+     *
+     * @param data the SessionData for which to deserialize the attribute map
+     * @param serializer the serializer for the attribute values
+     * @param in the serialized stream
+     * @param reuse whether to remember the bytes of the attributes, to reuse them when the session is next serialized
+     */
+    public static void deserializeAttributes(SessionData data, SessionDataSerializer serializer, DataInputStream in, boolean reuse)
+        throws IOException, ClassNotFoundException
+    {
+        deserializeAttributes(data, serializer, readSerializedAttributes(in), reuse);
+    }
+
+    static void deserializeAttributes(SessionData data, SessionDataSerializer serializer, Map<String, byte[]> attributes, boolean reuse)
+        throws IOException, ClassNotFoundException
+    {
+        data._attributes = new ConcurrentHashMap<>();
+        data._serializedAttributes.clear();
+        for (Entry<String, byte[]> entry : attributes.entrySet())
+        {
+            Object value = serializer.deserialize(entry.getKey(), entry.getValue());
+            if (value != null)
+            {
+                data._attributes.put(entry.getKey(), value);
+                if (reuse)
+                    data._serializedAttributes.put(entry.getKey(), new SerializedAttribute(value, entry.getValue()));
             }
-            
-            if (LOG.isDebugEnabled())
-                LOG.debug("Attribute {} class={} isServerLoader={}", entry.getKey(), clazz.getName(), (!isContextLoader));
-            out.writeBoolean(!isContextLoader);
-            out.writeObject(entry.getValue());
+        }
+    }
+
+    /**
+     * Read the attribute names and bytes written by
+     * {@link #serializeAttributes(SessionData, SessionDataSerializer, DataOutputStream, boolean)},
+     * without deserializing the values.
+     */
+    static Map<String, byte[]> readSerializedAttributes(DataInputStream in) throws IOException
+    {
+        if (in.readInt() != SERIALIZED_ATTRIBUTES_MAGIC)
+            throw new IOException("Not serialized attributes");
+        int entries = in.readInt();
+        Map<String, byte[]> attributes = new LinkedHashMap<>();
+        for (int i = 0; i < entries; i++)
+        {
+            String name = in.readUTF();
+            int length = in.readInt();
+            if (length < 0)
+                throw new IOException("Invalid length " + length + " for attribute " + name);
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            attributes.put(name, bytes);
+        }
+        return attributes;
+    }
+
+    static void writeSerializedAttributes(Map<String, byte[]> attributes, DataOutputStream out) throws IOException
+    {
+        out.writeInt(SERIALIZED_ATTRIBUTES_MAGIC);
+        out.writeInt(attributes.size());
+        for (Entry<String, byte[]> entry : attributes.entrySet())
+        {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue().length);
+            out.write(entry.getValue());
         }
     }
 
@@ -153,8 +293,7 @@ public class SessionData implements Serializable
             LOG.info("Legacy serialization detected for {}", data.getId());
             //legacy serialization was used, we have just deserialized the 
             //entire attribute map
-            data._attributes = new ConcurrentHashMap<>();
-            data.putAllAttributes((Map<String, Object>)o);
+            data._attributes = new ConcurrentHashMap<>((Map<String, Object>)o);
         }
     }
 
@@ -229,16 +368,36 @@ public class SessionData implements Serializable
         return _dirty;
     }
 
+    /**
+     * @param dirty true if the session needs to be written out, false
+     * to also forget which attributes have been set since the last save
+     */
     public void setDirty(boolean dirty)
     {
         _dirty = dirty;
+        if (!dirty)
+            _dirtyAttributes.clear();
     }
 
+    /**
+     * @param name the name of the attribute that has been set or removed
+     */
     public void setDirty(String name)
     {
+        _dirtyAttributes.add(name);
+        _serializedAttributes.remove(name);
         setDirty(true);
     }
 
+    /**
+     * @return the names of the attributes that have been set or removed since
+     * the session was last saved or loaded
+     */
+    public Set<String> getDirtyAttributes()
+    {
+        return Collections.unmodifiableSet(_dirtyAttributes);
+    }
+
     /**
      * @return the metaDataDirty
      */
@@ -292,17 +451,26 @@ public class SessionData implements Serializable
         setMetaDataDirty(false);
     }
 
+    /**
+     * Put all the given attributes, which are then dirty.
+     *
+     * @param attributes the attributes to put
+     */
     public void putAllAttributes(Map<String, Object> attributes)
     {
         _attributes.putAll(attributes);
+        _dirtyAttributes.addAll(attributes.keySet());
+        attributes.keySet().forEach(_serializedAttributes::remove);
     }
 
     /**
-     * Remove all attributes
+     * Remove all attributes, which are then dirty.
      */
     public void clearAllAttributes()
     {
+        _dirtyAttributes.addAll(_attributes.keySet());
         _attributes.clear();
+        _serializedAttributes.clear();
     }
 
     /**
@@ -494,6 +662,8 @@ public class SessionData implements Serializable
         _lastNode = in.readUTF(); //last managing node
         _expiry = in.readLong();
         _maxInactiveMs = in.readLong();
+        _dirtyAttributes = ConcurrentHashMap.newKeySet();
+        _serializedAttributes = new ConcurrentHashMap<>();
         deserializeAttributes(this, in);
     }
 
@@ -522,4 +692,8 @@ public class SessionData implements Serializable
         builder.append(", maxinactive=" + _maxInactiveMs);
         return builder.toString();
     }
+
+    private record SerializedAttribute(Object value, byte[] bytes)
+    {
+    }
 }
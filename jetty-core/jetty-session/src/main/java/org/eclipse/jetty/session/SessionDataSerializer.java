@@ -0,0 +1,53 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.session;
+
+import java.io.IOException;
+
+/**
+ * SessionDataSerializer
+ *
+ * Converts the value of a single session attribute to and from bytes.
+ *
+ * When a serializer is set on an {@link ObjectStreamSessionDataStore}, the attributes
+ * of a session are persisted as a map of attribute name to the bytes produced by this
+ * serializer, rather than as a single java serialization stream. Each attribute is
+ * serialized independently, so the bytes of the attributes that have not changed since
+ * the last save can be reused, and implementations are free to use a more compact or
+ * faster format than java serialization for the attribute types they know about.
+ *
+ * Deserialization is performed with the thread context classloader set to the
+ * classloader of the context.
+ *
+ * @see JavaSessionDataSerializer
+ */
+public interface SessionDataSerializer
+{
+    /**
+     * @param name the name of the attribute
+     * @param value the value of the attribute, never null
+     * @return the serialized value
+     * @throws IOException if the value cannot be serialized
+     */
+    byte[] serialize(String name, Object value) throws IOException;
+
+    /**
+     * @param name the name of the attribute
+     * @param bytes the bytes produced by {@link #serialize(String, Object)}
+     * @return the value of the attribute
+     * @throws IOException if the value cannot be deserialized
+     * @throws ClassNotFoundException if the class of the value cannot be loaded
+     */
+    Object deserialize(String name, byte[] bytes) throws IOException, ClassNotFoundException;
+}
@@ -63,4 +63,32 @@ public interface SessionDataStore extends SessionDataMap
      * @throws Exception if problem checking existence with persistence layer
      */
     public boolean exists(String id) throws Exception;
+
+    /**
+     * Get the time at which the data of a session was last saved, which
+     * can be used as the version of the session data.
+     *
+     * The default implementation loads the session data, implementations
+     * should override it if they can read the last saved time only.
+     *
+     * @param id Identity of the session
+     * @return the time at which the session data was last saved, or -1 if there is no such session
+     * @throws Exception if problem reading the persistence layer
+     */
+    public default long getLastSaved(String id) throws Exception
+    {
+        SessionData data = load(id);
+        return data == null ? -1 : data.getLastSaved();
+    }
+
+    /**
+     * Test if {@link #getLastSaved(String)} reads the last saved time
+     * without loading the session data.
+     *
+     * @return true if getLastSaved is cheaper than loading the session
+     */
+    public default boolean isLastSavedEfficient()
+    {
+        return false;
+    }
 }
@@ -13,11 +13,30 @@
 
 package org.eclipse.jetty.session;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import org.eclipse.jetty.toolchain.test.jupiter.WorkDir;
 import org.eclipse.jetty.toolchain.test.jupiter.WorkDirExtension;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 /**
  * FileSessionDataStoreTest
  */
@@ -92,4 +111,176 @@ public class FileSessionDataStoreTest extends AbstractSessionDataStoreTest
             Thread.currentThread().setContextClassLoader(old);
         }
     }
+
+    /**
+     * Test that a session saved with java serialization can still be
+     * loaded after a serializer has been set, and is then saved by the serializer.
+     */
+    @Test
+    public void testJavaSerializationReadableWithSerializer() throws Exception
+    {
+        setUp();
+        ((AbstractSessionDataStoreFactory)_factory).setSerializer(new JavaSessionDataSerializer());
+        _server.start();
+
+        SessionDataStore store = _sessionManager.getSessionCache().getSessionDataStore();
+
+        //persist a session with java serialization
+        long now = System.currentTimeMillis();
+        SessionData data = store.newSessionData("ser1", 100, now, now - 1, -1); //never expires
+        data.setLastNode(_sessionIdManager.getWorkerName());
+        data.setAttribute("a", "b");
+        data.setAttribute("count", 1);
+        persistSession(data);
+        assertThat(readSessionFile("ser1"), not(containsString(getSerializedAttributesMagic())));
+        _server.stop();
+        _server.start(); //reindex the session files on disk
+
+        store = _sessionManager.getSessionCache().getSessionDataStore();
+        SessionData loaded = store.load("ser1");
+        assertNotNull(loaded);
+        assertEquals("b", loaded.getAttribute("a"));
+        assertEquals(1, loaded.getAttribute("count"));
+
+        //the next save uses the serializer
+        loaded.setAttribute("a", "c");
+        store.store("ser1", loaded);
+        assertThat(readSessionFile("ser1"), containsString(getSerializedAttributesMagic()));
+
+        loaded = store.load("ser1");
+        assertEquals("c", loaded.getAttribute("a"));
+        assertEquals(1, loaded.getAttribute("count"));
+    }
+
+    /**
+     * Test that the JavaSessionDataSerializer loads the attribute values
+     * with the classloader that they were saved from.
+     */
+    @Test
+    public void testJavaSessionDataSerializer() throws Exception
+    {
+        setUp();
+        ((AbstractSessionDataStoreFactory)_factory).setSerializer(new JavaSessionDataSerializer());
+        _server.start();
+
+        SessionDataStore store = _sessionManager.getSessionCache().getSessionDataStore();
+
+        ClassLoader old = Thread.currentThread().getContextClassLoader();
+        try
+        {
+            Thread.currentThread().setContextClassLoader(_contextClassLoader);
+            Class<?> fooclazz = Class.forName("Foo", true, _contextClassLoader);
+            long now = System.currentTimeMillis();
+            SessionData data = store.newSessionData("ser2", 100, now, now - 1, -1); //never expires
+            data.setLastNode(_sessionIdManager.getWorkerName());
+            //an attribute only known to the webapp classloader, and attributes of the server classloader
+            data.setAttribute("foo", fooclazz.getConstructor().newInstance());
+            data.setAttribute("a", "b");
+            data.setAttribute("set", Set.of(1, 2));
+            store.store("ser2", data);
+        }
+        finally
+        {
+            Thread.currentThread().setContextClassLoader(old);
+        }
+        assertThat(readSessionFile("ser2"), containsString(getSerializedAttributesMagic()));
+
+        SessionData loaded = store.load("ser2");
+        assertNotNull(loaded);
+        assertEquals(Set.of("foo", "a", "set"), loaded.getKeys());
+        assertSame(_contextClassLoader, loaded.getAttribute("foo").getClass().getClassLoader());
+        assertEquals("b", loaded.getAttribute("a"));
+        assertEquals(Set.of(1, 2), loaded.getAttribute("set"));
+
+        //each attribute is serialized on its own
+        JavaSessionDataSerializer serializer = new JavaSessionDataSerializer();
+        byte[] bytes = serializer.serialize("a", "b");
+        Object value = serializer.deserialize("a", bytes);
+        assertEquals("b", value);
+        assertNotSame(bytes, serializer.serialize("a", "b"));
+    }
+
+    /**
+     * Test that the names of the attributes set since the last save
+     * are tracked, and cleared when the session is saved.
+     */
+    @Test
+    public void testDirtyAttributes() throws Exception
+    {
+        setUp();
+        _server.start();
+
+        SessionDataStore store = _sessionManager.getSessionCache().getSessionDataStore();
+
+        long now = System.currentTimeMillis();
+        SessionData data = store.newSessionData("dirty1", 100, now, now - 1, -1); //never expires
+        data.setLastNode(_sessionIdManager.getWorkerName());
+        data.setAttribute("a", "b");
+        data.setAttribute("c", "d");
+        assertEquals(Set.of("a", "c"), data.getDirtyAttributes());
+
+        store.store("dirty1", data);
+        assertFalse(data.isDirty());
+        assertTrue(data.getDirtyAttributes().isEmpty());
+
+        //removed attributes are dirty too
+        data.setAttribute("c", null);
+        data.setAttribute("e", "f");
+        assertEquals(Set.of("c", "e"), data.getDirtyAttributes());
+
+        data.clean();
+        assertFalse(data.isDirty());
+        assertTrue(data.getDirtyAttributes().isEmpty());
+
+        //a loaded session has no dirty attributes
+        SessionData loaded = store.load("dirty1");
+        assertTrue(loaded.getDirtyAttributes().isEmpty());
+
+        //attributes put or cleared in bulk are dirty
+        loaded.putAllAttributes(Map.of("g", "h"));
+        assertEquals(Set.of("g"), loaded.getDirtyAttributes());
+        loaded.clean();
+        loaded.clearAllAttributes();
+        assertEquals(Set.of("a", "c", "g"), loaded.getDirtyAttributes());
+    }
+
+    /**
+     * Test that the attributes modified in place are saved when another
+     * attribute change triggers the save, unless only the changed attributes
+     * are saved.
+     */
+    @Test
+    public void testAttributeModifiedInPlace() throws Exception
+    {
+        setUp();
+        ((AbstractSessionDataStoreFactory)_factory).setSerializer(new JavaSessionDataSerializer());
+        _server.start();
+
+        SessionDataStore store = _sessionManager.getSessionCache().getSessionDataStore();
+
+        long now = System.currentTimeMillis();
+        SessionData data = store.newSessionData("inplace1", 100, now, now - 1, -1); //never expires
+        data.setLastNode(_sessionIdManager.getWorkerName());
+        List<String> list = new ArrayList<>(List.of("1"));
+        data.setAttribute("list", list);
+        store.store("inplace1", data);
+
+        //modify the list without setting it again, and change another attribute
+        list.add("2");
+        data.setAttribute("a", "b");
+        store.store("inplace1", data);
+
+        assertEquals(List.of("1", "2"), store.load("inplace1").getAttribute("list"));
+    }
+
+    private String readSessionFile(String id) throws Exception
+    {
+        return new String(Files.readAllBytes(_helper.getFile(id).toPath()), StandardCharsets.ISO_8859_1);
+    }
+
+    private static String getSerializedAttributesMagic()
+    {
+        byte[] magic = ByteBuffer.allocate(Integer.BYTES).putInt(SessionData.SERIALIZED_ATTRIBUTES_MAGIC).array();
+        return new String(magic, StandardCharsets.ISO_8859_1);
+    }
 }
@@ -136,8 +136,10 @@ public class FileTestHelper
             if (attributes != null)
             {
                 SessionData tmp = new SessionData(id, contextPath, vhost, created, accessed, lastAccessed, maxIdle);
+                tmp.putAllAttributes(attributes);
                 ObjectOutputStream oos = new ObjectOutputStream(out);
                 SessionData.serializeAttributes(tmp, oos);
+                oos.flush();
             }
         }
         assertTrue(Files.exists(path));
@@ -21,6 +21,7 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.sql.Blob;
 import java.sql.Connection;
 import java.sql.DriverManager;
@@ -201,6 +202,10 @@ public class JdbcTestHelper
                 ds.setSessionTableSchema(_schema);
                 ds.setGracePeriodSec(getGracePeriodSec());
                 ds.setSavePeriodSec(getSavePeriodSec());
+                ds.setSerializer(getSerializer());
+                ds.setSaveChangedAttributesOnly(isSaveChangedAttributesOnly());
+                ds.setWriteBehindPeriodMs(getWriteBehindPeriodMs());
+                ds.setWriteBehindBatchSize(getWriteBehindBatchSize());
                 return ds;
             }
         };
@@ -436,6 +441,58 @@ public class JdbcTestHelper
         }
     }
 
+    public static byte[] getSessionAttributes(String id, String sessionTableName)
+        throws Exception
+    {
+        try (Connection con = getConnection())
+        {
+            PreparedStatement statement = con.prepareStatement("select " + MAP_COL + " from " + sessionTableName +
+                " where " + ID_COL + " = ?");
+            statement.setString(1, id);
+            ResultSet result = statement.executeQuery();
+            if (!result.next())
+                return null;
+            Blob blob = result.getBlob(MAP_COL);
+            return blob.getBytes(1, (int)blob.length());
+        }
+    }
+
+    public static long getSessionLong(String id, String column, String sessionTableName)
+        throws Exception
+    {
+        try (Connection con = getConnection())
+        {
+            PreparedStatement statement = con.prepareStatement("select " + column + " from " + sessionTableName +
+                " where " + ID_COL + " = ?");
+            statement.setString(1, id);
+            ResultSet result = statement.executeQuery();
+            assertTrue(result.next());
+            return result.getLong(column);
+        }
+    }
+
+    public static void updateSessionAttributes(String id, byte[] attributes, String sessionTableName)
+        throws Exception
+    {
+        try (Connection con = getConnection())
+        {
+            PreparedStatement statement = con.prepareStatement("update " + sessionTableName +
+                " set " + MAP_COL + " = ? where " + ID_COL + " = ?");
+            statement.setBinaryStream(1, new ByteArrayInputStream(attributes), attributes.length);
+            statement.setString(2, id);
+            statement.execute();
+            assertEquals(1, statement.getUpdateCount());
+        }
+    }
+
+    /**
+     * @return whether the attributes were written by a {@link SessionDataSerializer} rather than by java serialization
+     */
+    public static boolean isSerializedAttributes(byte[] attributes)
+    {
+        return attributes.length >= Integer.BYTES && ByteBuffer.wrap(attributes).getInt() == SessionData.SERIALIZED_ATTRIBUTES_MAGIC;
+    }
+
     public static Set<String> getSessionIds(String sessionTableName)
         throws Exception
     {
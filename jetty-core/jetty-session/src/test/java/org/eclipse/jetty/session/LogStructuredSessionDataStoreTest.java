@@ -0,0 +1,525 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDir;
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDirExtension;
+import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * LogStructuredSessionDataStoreTest
+ */
+@ExtendWith(WorkDirExtension.class)
+public class LogStructuredSessionDataStoreTest extends AbstractSessionDataStoreTest
+{
+    public LogStructuredSessionDataStoreTest() throws Exception
+    {
+        super();
+    }
+
+    public WorkDir workDir;
+    private Path _storeDir;
+
+    @BeforeEach
+    public void before() throws Exception
+    {
+        _storeDir = workDir.getEmptyPathDir();
+    }
+
+    @Override
+    public SessionDataStoreFactory createSessionDataStoreFactory()
+    {
+        LogStructuredSessionDataStoreFactory storeFactory = new LogStructuredSessionDataStoreFactory();
+        storeFactory.setStoreDir(_storeDir.toFile());
+        return storeFactory;
+    }
+
+    @Override
+    public void persistSession(SessionData data) throws Exception
+    {
+        writeRecord(data, true);
+    }
+
+    @Override
+    public void persistUnreadableSession(SessionData data) throws Exception
+    {
+        writeRecord(data, false);
+    }
+
+    @Override
+    public boolean checkSessionExists(SessionData data) throws Exception
+    {
+        return readRecords(data).get(data.getId()) != null;
+    }
+
+    @Override
+    public boolean checkSessionPersisted(SessionData data) throws Exception
+    {
+        ClassLoader old = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(_contextClassLoader);
+        try
+        {
+            byte[] body = readRecords(data).get(data.getId());
+            assertNotNull(body);
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+            assertEquals(1, in.readByte());
+            assertEquals(data.getId(), in.readUTF());
+            assertEquals(data.getExpiry(), in.readLong());
+            assertEquals(data.getContextPath(), in.readUTF());
+            assertEquals(data.getVhost(), in.readUTF());
+            assertEquals(data.getLastNode(), in.readUTF());
+            assertEquals(data.getCreated(), in.readLong());
+            assertEquals(data.getAccessed(), in.readLong());
+            assertEquals(data.getLastAccessed(), in.readLong());
+            assertEquals(data.getCookieSet(), in.readLong());
+            assertEquals(data.getMaxInactiveMs(), in.readLong());
+            in.readLong();
+
+            SessionData tmp = new SessionData(data.getId(), data.getContextPath(), data.getVhost(), data.getCreated(),
+                data.getAccessed(), data.getLastAccessed(), data.getMaxInactiveMs());
+            SessionData.deserializeAttributes(tmp, new ClassLoadingObjectInputStream(in));
+
+            //same keys
+            assertEquals(tmp.getAllAttributes().keySet(), data.getKeys());
+            //same values
+            for (String name : data.getKeys())
+            {
+                assertEquals(tmp.getAttribute(name), data.getAttribute(name));
+            }
+            return true;
+        }
+        finally
+        {
+            Thread.currentThread().setContextClassLoader(old);
+        }
+    }
+
+    @Test
+    public void testCompaction() throws Exception
+    {
+        setUp();
+        LogStructuredSessionDataStoreFactory factory = (LogStructuredSessionDataStoreFactory)_factory;
+        factory.setMaxSegmentSize(1024);
+        factory.setCompactionIntervalSec(0);
+        factory.setMemoryMapped(true);
+        _server.start();
+        LogStructuredSessionDataStore store = (LogStructuredSessionDataStore)_sessionManager.getSessionCache().getSessionDataStore();
+
+        //store many versions of a few sessions, and delete some
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 50; i++)
+        {
+            for (int s = 0; s < 4; s++)
+            {
+                SessionData data = store.newSessionData("log" + s, 100, now, now - 1, TimeUnit.MINUTES.toMillis(60));
+                data.setLastNode(_sessionIdManager.getWorkerName());
+                data.setAttribute("count", i);
+                store.store("log" + s, data);
+            }
+        }
+        store.delete("log3");
+        int segments = store.getSegmentCount();
+        assertTrue(segments > 2);
+
+        while (store.compact())
+        {
+            assertTrue(store.getSegmentCount() <= segments);
+        }
+        try (Stream<Path> files = Files.list(getContextDir()))
+        {
+            assertEquals(store.getSegmentCount(), files.count());
+        }
+
+        _server.stop();
+        _server.start(); //replay the compacted segments
+        store = (LogStructuredSessionDataStore)_sessionManager.getSessionCache().getSessionDataStore();
+
+        for (int s = 0; s < 3; s++)
+        {
+            SessionData data = store.load("log" + s);
+            assertEquals(49, data.getAttribute("count"));
+        }
+        assertFalse(store.exists("log3"));
+    }
+
+    @Test
+    public void testCompactionOfNewerSegments() throws Exception
+    {
+        setUp();
+        LogStructuredSessionDataStoreFactory factory = (LogStructuredSessionDataStoreFactory)_factory;
+        factory.setMaxSegmentSize(1024);
+        factory.setCompactionIntervalSec(0);
+        _server.start();
+        LogStructuredSessionDataStore store = (LogStructuredSessionDataStore)_sessionManager.getSessionCache().getSessionDataStore();
+
+        //the oldest segment holds mostly live sessions, and a session that is then deleted
+        store.store("gone", newData(store, "gone", 0));
+        int keep = 0;
+        while (store.getSegmentCount() < 2)
+        {
+            store.store("keep" + keep, newData(store, "keep" + keep, 0));
+            ++keep;
+        }
+        Path oldest = getSegments(getContextDir()).get(0);
+        store.delete("gone");
+
+        //the newer segments hold mostly dead versions of a session
+        int count = 0;
+        while (store.getSegmentCount() < 4)
+        {
+            store.store("churn", newData(store, "churn", count++));
+        }
+
+        assertTrue(store.compact());
+        while (store.compact())
+        {
+            assertTrue(Files.exists(oldest));
+        }
+        assertTrue(Files.exists(oldest));
+
+        _server.stop();
+        _server.start(); //the delete record still hides the session of the oldest segment
+        store = (LogStructuredSessionDataStore)_sessionManager.getSessionCache().getSessionDataStore();
+        assertFalse(store.exists("gone"));
+        for (int i = 0; i < keep; i++)
+        {
+            assertTrue(store.exists("keep" + i));
+        }
+        assertEquals(count - 1, store.load("churn").getAttribute("count"));
+    }
+
+    @Test
+    public void testCompactionOfInvalidSegment() throws Exception
+    {
+        setUp();
+        LogStructuredSessionDataStoreFactory factory = (LogStructuredSessionDataStoreFactory)_factory;
+        factory.setMaxSegmentSize(1024);
+        factory.setCompactionIntervalSec(0);
+        _server.start();
+        LogStructuredSessionDataStore store = (LogStructuredSessionDataStore)_sessionManager.getSessionCache().getSessionDataStore();
+
+        int sessions = 0;
+        while (store.getSegmentCount() < 3)
+        {
+            store.store("live" + sessions, newData(store, "live" + sessions, 0));
+            ++sessions;
+        }
+        _server.stop();
+
+        //corrupt the second record of the oldest segment
+        Path oldest = getSegments(getContextDir()).get(0);
+        byte[] bytes = Files.readAllBytes(oldest);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int offset = 8 + buffer.getInt(0);
+        String corrupted = new DataInputStream(new ByteArrayInputStream(bytes, offset + 9, bytes.length)).readUTF();
+        bytes[offset + 8 + 3] ^= 0x55;
+        Files.write(oldest, bytes);
+
+        //the records after the invalid one are replayed, and the segment compacted although all live
+        _server.start();
+        store = (LogStructuredSessionDataStore)_sessionManager.getSessionCache().getSessionDataStore();
+        assertTrue(store.compact());
+        assertFalse(Files.exists(oldest));
+
+        _server.stop();
+        _server.start();
+        store = (LogStructuredSessionDataStore)_sessionManager.getSessionCache().getSessionDataStore();
+        for (int i = 0; i < sessions; i++)
+        {
+            String id = "live" + i;
+            if (id.equals(corrupted))
+                assertFalse(store.exists(id));
+            else
+                assertEquals(0, store.load(id).getAttribute("count"));
+        }
+    }
+
+    @Test
+    public void testUndeletedCompactedSegmentDeletedOnStart() throws Exception
+    {
+        setUp();
+        LogStructuredSessionDataStoreFactory factory = (LogStructuredSessionDataStoreFactory)_factory;
+        factory.setMaxSegmentSize(1024);
+        factory.setCompactionIntervalSec(0);
+        _server.start();
+        LogStructuredSessionDataStore store = (LogStructuredSessionDataStore)_sessionManager.getSessionCache().getSessionDataStore();
+
+        int sessions = 0;
+        while (store.getSegmentCount() < 2)
+        {
+            store.store("gone" + sessions, newData(store, "gone" + sessions, 0));
+            ++sessions;
+        }
+        Path oldest = getSegments(getContextDir()).get(0);
+        byte[] bytes = Files.readAllBytes(oldest);
+        for (int i = 0; i < sessions; i++)
+        {
+            store.delete("gone" + i);
+        }
+        int count = 0;
+        while (store.getSegmentCount() < 4)
+        {
+            store.store("churn", newData(store, "churn", count++));
+        }
+        while (store.compact())
+        {
+        }
+        assertFalse(Files.exists(oldest));
+        _server.stop();
+
+        //simulate a compacted segment that could not be deleted
+        Files.write(oldest, bytes);
+        Path marker = oldest.resolveSibling(oldest.getFileName() + ".compacted");
+        Files.createFile(marker);
+
+        _server.start();
+        store = (LogStructuredSessionDataStore)_sessionManager.getSessionCache().getSessionDataStore();
+        assertFalse(Files.exists(oldest));
+        assertFalse(Files.exists(marker));
+        for (int i = 0; i < sessions; i++)
+        {
+            assertFalse(store.exists("gone" + i));
+        }
+        assertEquals(count - 1, store.load("churn").getAttribute("count"));
+    }
+
+    @Test
+    public void testTruncateIncompleteRecord() throws Exception
+    {
+        setUp();
+        _server.start();
+        SessionDataStore store = _sessionManager.getSessionCache().getSessionDataStore();
+
+        long now = System.currentTimeMillis();
+        SessionData data = store.newSessionData("torn", 100, now, now - 1, TimeUnit.MINUTES.toMillis(60));
+        data.setLastNode(_sessionIdManager.getWorkerName());
+        data.setAttribute("foo", "bar");
+        store.store("torn", data);
+        _server.stop();
+
+        //simulate a crash in the middle of the write of a record
+        Path segment = getSegments(getContextDir()).get(0);
+        long size = Files.size(segment);
+        Files.write(segment, new byte[]{0, 0, 1, 0, 7, 7}, StandardOpenOption.APPEND);
+
+        _server.start();
+        store = _sessionManager.getSessionCache().getSessionDataStore();
+        assertEquals(size, Files.size(segment));
+        assertEquals("bar", store.load("torn").getAttribute("foo"));
+
+        //the store appends after the valid records
+        data = store.load("torn");
+        data.setAttribute("foo", "baz");
+        store.store("torn", data);
+        _server.stop();
+        _server.start();
+        store = _sessionManager.getSessionCache().getSessionDataStore();
+        assertEquals("baz", store.load("torn").getAttribute("foo"));
+    }
+
+    @Test
+    public void testSaveChangedAttributesOnly() throws Exception
+    {
+        setUp();
+        LogStructuredSessionDataStoreFactory factory = (LogStructuredSessionDataStoreFactory)_factory;
+        factory.setSerializer(new JavaSessionDataSerializer());
+        factory.setSaveChangedAttributesOnly(true);
+        factory.setMaxSegmentSize(4096);
+        factory.setCompactionIntervalSec(0);
+        _server.start();
+        LogStructuredSessionDataStore store = (LogStructuredSessionDataStore)_sessionManager.getSessionCache().getSessionDataStore();
+
+        long now = System.currentTimeMillis();
+        String fat = "x".repeat(1024);
+        SessionData data = store.newSessionData("delta", 100, now, now - 1, TimeUnit.MINUTES.toMillis(60));
+        data.setLastNode(_sessionIdManager.getWorkerName());
+        data.setAttribute("fat", fat);
+        data.setAttribute("count", 0);
+        data.setAttribute("removed", "gone");
+        store.store("delta", data);
+
+        //only the changed attributes are appended
+        for (int i = 1; i <= 20; i++)
+        {
+            long size = getSize(getContextDir());
+            data.setAttribute("count", i);
+            if (i == 1)
+                data.setAttribute("removed", null);
+            store.store("delta", data);
+            if (i % 8 != 0)
+                assertTrue(getSize(getContextDir()) - size < fat.length());
+        }
+
+        _server.stop();
+        _server.start(); //replay the delta records
+        store = (LogStructuredSessionDataStore)_sessionManager.getSessionCache().getSessionDataStore();
+        data = store.load("delta");
+        assertEquals(20, data.getAttribute("count"));
+        assertEquals(fat, data.getAttribute("fat"));
+        assertNull(data.getAttribute("removed"));
+
+        //a loaded session is also saved as a delta
+        long size = getSize(getContextDir());
+        data.setAttribute("count", 21);
+        store.store("delta", data);
+        assertTrue(getSize(getContextDir()) - size < fat.length());
+
+        //compaction merges the delta records
+        while (store.compact())
+        {
+            data = store.load("delta");
+            assertEquals(21, data.getAttribute("count"));
+            assertEquals(fat, data.getAttribute("fat"));
+        }
+        _server.stop();
+        _server.start();
+        store = (LogStructuredSessionDataStore)_sessionManager.getSessionCache().getSessionDataStore();
+        data = store.load("delta");
+        assertEquals(21, data.getAttribute("count"));
+        assertEquals(fat, data.getAttribute("fat"));
+        assertNull(data.getAttribute("removed"));
+    }
+
+    private SessionData newData(SessionDataStore store, String id, int count) throws Exception
+    {
+        long now = System.currentTimeMillis();
+        SessionData data = store.newSessionData(id, 100, now, now - 1, TimeUnit.MINUTES.toMillis(60));
+        data.setLastNode(_sessionIdManager.getWorkerName());
+        data.setAttribute("count", count);
+        return data;
+    }
+
+    private static long getSize(Path contextDir) throws Exception
+    {
+        long size = 0;
+        for (Path segment : getSegments(contextDir))
+        {
+            size += Files.size(segment);
+        }
+        return size;
+    }
+
+    private Path getContextDir()
+    {
+        SessionContext context = ((AbstractSessionDataStore)_sessionManager.getSessionCache().getSessionDataStore())._context;
+        return _storeDir.resolve(context.getCanonicalContextPath() + "_" + context.getVhost());
+    }
+
+    private static List<Path> getSegments(Path contextDir) throws Exception
+    {
+        if (!Files.exists(contextDir))
+            return List.of();
+        try (Stream<Path> files = Files.list(contextDir))
+        {
+            return files.filter(p -> p.getFileName().toString().startsWith("segment-")).sorted().toList();
+        }
+    }
+
+    /**
+     * Append a record for the session, as the store would.
+     */
+    private void writeRecord(SessionData data, boolean withAttributes) throws Exception
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(1);
+        out.writeUTF(data.getId());
+        out.writeLong(data.getExpiry());
+        out.writeUTF(data.getContextPath());
+        out.writeUTF(data.getVhost());
+        out.writeUTF(data.getLastNode());
+        out.writeLong(data.getCreated());
+        out.writeLong(data.getAccessed());
+        out.writeLong(data.getLastAccessed());
+        out.writeLong(data.getCookieSet());
+        out.writeLong(data.getMaxInactiveMs());
+        out.writeLong(data.getLastSaved());
+        if (withAttributes)
+        {
+            ObjectOutputStream oos = new ObjectOutputStream(out);
+            SessionData.serializeAttributes(data, oos);
+            oos.flush();
+        }
+        byte[] body = bytes.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        ByteBuffer record = ByteBuffer.allocate(8 + body.length);
+        record.putInt(body.length).putInt((int)crc.getValue()).put(body);
+
+        // Segment 0 is replayed before the segments written by the store.
+        Path contextDir = _storeDir.resolve(data.getContextPath() + "_" + data.getVhost());
+        Files.createDirectories(contextDir);
+        Path segment = contextDir.resolve(String.format("segment-%012d.log", 0));
+        Files.write(segment, record.array(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        assertTrue(Files.exists(segment));
+    }
+
+    /**
+     * Replay the segments of the context of the given session.
+     *
+     * @return the body of the last store record of each live session
+     */
+    private Map<String, byte[]> readRecords(SessionData data) throws Exception
+    {
+        Map<String, byte[]> records = new HashMap<>();
+        for (Path segment : getSegments(_storeDir.resolve(data.getContextPath() + "_" + data.getVhost())))
+        {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+            while (buffer.remaining() >= 8)
+            {
+                int length = buffer.getInt();
+                buffer.getInt();
+                if (length > buffer.remaining())
+                    break;
+                byte[] body = new byte[length];
+                buffer.get(body);
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+                byte type = in.readByte();
+                String id = in.readUTF();
+                if (type == 1)
+                    records.put(id, body);
+                else if (type == 2)
+                    records.remove(id);
+            }
+        }
+        return records;
+    }
+}
@@ -0,0 +1,340 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.session;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NearCacheSessionDataStoreTest
+{
+    private final NearCacheSessionDataStore.InvalidationChannel _channel = new NearCacheSessionDataStore.InMemoryInvalidationChannel();
+    private CountingSessionDataStore _remote1;
+    private CountingSessionDataStore _remote2;
+    private NearCacheSessionDataStore _node1;
+    private NearCacheSessionDataStore _node2;
+
+    @BeforeEach
+    public void before() throws Exception
+    {
+        _remote1 = new CountingSessionDataStore();
+        _remote2 = new CountingSessionDataStore();
+        // Both nodes share the same remote data.
+        _remote2._map = _remote1._map;
+        _node1 = newNode(_remote1, _channel);
+        _node2 = newNode(_remote2, _channel);
+    }
+
+    private NearCacheSessionDataStore newNode(SessionDataStore remote, NearCacheSessionDataStore.InvalidationChannel channel) throws Exception
+    {
+        Server server = new Server();
+        TestableSessionManager sessionManager = new TestableSessionManager();
+        sessionManager.setServer(server);
+        sessionManager.setSessionIdManager(new DefaultSessionIdManager(server));
+        NearCacheSessionDataStore store = new NearCacheSessionDataStore(remote);
+        store.setInvalidationChannel(channel);
+        // Only flush explicitly.
+        store.setAccessWritePeriodSec(3600);
+        store.initialize(new SessionContext(sessionManager));
+        store.start();
+        return store;
+    }
+
+    @AfterEach
+    public void after()
+    {
+        LifeCycle.stop(_node1);
+        LifeCycle.stop(_node2);
+    }
+
+    @Test
+    public void testLoadFromLocalCopy() throws Exception
+    {
+        long now = System.currentTimeMillis();
+        SessionData data = _node1.newSessionData("1234", now, now, now, -1);
+        data.setAttribute("a", "1");
+        _node1.store("1234", data);
+        assertEquals(1, _remote1._numSaves.get());
+
+        SessionData loaded = _node1.load("1234");
+        assertNotNull(loaded);
+        assertNotSame(data, loaded);
+        assertEquals("1", loaded.getAttribute("a"));
+        assertEquals(data.getLastSaved(), loaded.getLastSaved());
+        assertNotNull(_node1.load("1234"));
+        assertEquals(0, _remote1._numLoads.get());
+        assertEquals(2, _node1.getCacheHits());
+        assertTrue(_node1.exists("1234"));
+    }
+
+    @Test
+    public void testStoreOnOtherNodeInvalidatesLocalCopy() throws Exception
+    {
+        long now = System.currentTimeMillis();
+        SessionData data = _node1.newSessionData("1234", now, now, now, -1);
+        data.setAttribute("a", "1");
+        _node1.store("1234", data);
+
+        // Node2 loads from the remote store, then from its local copy.
+        assertEquals("1", _node2.load("1234").getAttribute("a"));
+        assertEquals("1", _node2.load("1234").getAttribute("a"));
+        assertEquals(1, _remote2._numLoads.get());
+
+        // Modify the session on node1.
+        Thread.sleep(2);
+        data.setAttribute("a", "2");
+        _node1.store("1234", data);
+        assertEquals(1, _node2.getInvalidations());
+        assertEquals(0, _node1.getInvalidations());
+
+        assertEquals("2", _node2.load("1234").getAttribute("a"));
+        assertEquals(2, _remote2._numLoads.get());
+
+        // Delete the session on node2.
+        _node2.delete("1234");
+        assertNull(_node1.load("1234"));
+        assertFalse(_node1.exists("1234"));
+    }
+
+    @Test
+    public void testAccessWritesAreDeferred() throws Exception
+    {
+        long now = System.currentTimeMillis();
+        SessionData data = _node1.newSessionData("1234", now, now, now, -1);
+        data.setAttribute("a", "1");
+        _node1.store("1234", data);
+        assertEquals(1, _remote1._numSaves.get());
+
+        // Only the access time changes.
+        for (int i = 1; i <= 10; i++)
+        {
+            data.setLastAccessed(data.getAccessed());
+            data.setAccessed(now + i);
+            data.setMetaDataDirty(true);
+            _node1.store("1234", data);
+        }
+        assertEquals(1, _remote1._numSaves.get());
+        assertEquals(10, _node1.getDeferredWrites());
+        assertEquals(now + 10, _node1.load("1234").getAccessed());
+
+        // Scavenging writes the deferred access times first.
+        _node1.getExpired(Collections.emptySet());
+        assertEquals(2, _remote1._numSaves.get());
+        assertEquals(now + 10, _remote1._map.get("1234").getAccessed());
+        assertEquals("1", _remote1._map.get("1234").getAttribute("a"));
+
+        // A dirty store is written through.
+        data.setAttribute("a", "2");
+        _node1.store("1234", data);
+        assertEquals(3, _remote1._numSaves.get());
+        _node1.flush();
+        assertEquals(3, _remote1._numSaves.get());
+    }
+
+    @Test
+    public void testLocalCopyValidatedWithoutInvalidationChannel() throws Exception
+    {
+        LifeCycle.stop(_node2);
+        _node2 = newNode(_remote2, null);
+
+        long now = System.currentTimeMillis();
+        SessionData data = _node1.newSessionData("1234", now, now, now, -1);
+        data.setAttribute("a", "1");
+        _node1.store("1234", data);
+
+        // Node2 loads from the remote store, then from its local copy after checking the version.
+        assertEquals("1", _node2.load("1234").getAttribute("a"));
+        assertEquals("1", _node2.load("1234").getAttribute("a"));
+        assertEquals(1, _remote2._numLoads.get());
+        assertEquals(1, _remote2._numVersions.get());
+        assertEquals(1, _node2.getCacheHits());
+
+        // Modify the session on node1, node2 is not notified.
+        Thread.sleep(2);
+        data.setAttribute("a", "2");
+        _node1.store("1234", data);
+        assertEquals(0, _node2.getInvalidations());
+
+        // The version does not match, so node2 loads from the remote store.
+        assertEquals("2", _node2.load("1234").getAttribute("a"));
+        assertEquals(2, _remote2._numLoads.get());
+        assertEquals(1, _node2.getCacheHits());
+    }
+
+    @Test
+    public void testVersionNotCheckedWithoutEfficientLastSaved() throws Exception
+    {
+        LifeCycle.stop(_node2);
+        _remote2._lastSavedEfficient = false;
+        _node2 = newNode(_remote2, null);
+
+        long now = System.currentTimeMillis();
+        SessionData data = _node1.newSessionData("1234", now, now, now, -1);
+        data.setAttribute("a", "1");
+        _node1.store("1234", data);
+
+        // Node2 uses its local copy without reading the version from the remote store.
+        assertEquals("1", _node2.load("1234").getAttribute("a"));
+        assertEquals("1", _node2.load("1234").getAttribute("a"));
+        assertEquals(1, _remote2._numLoads.get());
+        assertEquals(0, _remote2._numVersions.get());
+        assertEquals(1, _node2.getCacheHits());
+    }
+
+    @Test
+    public void testDeleteDuringStoreIsNotUndone() throws Exception
+    {
+        long now = System.currentTimeMillis();
+        SessionData data = _node1.newSessionData("1234", now, now, now, -1);
+        data.setAttribute("a", "1");
+        _node1.store("1234", data);
+        assertNotNull(_node2.load("1234"));
+
+        // Node1 deletes the session while the remote store is writing an update.
+        List<Thread> deletes = new ArrayList<>();
+        _remote1._onStore = () ->
+        {
+            Thread delete = new Thread(() ->
+            {
+                try
+                {
+                    _node1.delete("1234");
+                }
+                catch (Exception x)
+                {
+                    throw new RuntimeException(x);
+                }
+            });
+            deletes.add(delete);
+            delete.start();
+        };
+        Thread.sleep(2);
+        data.setAttribute("a", "2");
+        _node1.store("1234", data);
+        deletes.get(0).join();
+
+        // The delete is the last operation, so neither node has a local copy.
+        assertEquals(0, _node1.getCacheSize());
+        assertEquals(0, _node2.getCacheSize());
+        assertNull(_node1.load("1234"));
+        assertNull(_node2.load("1234"));
+    }
+
+    @Test
+    public void testLocalCopyAttributesAreNotShared() throws Exception
+    {
+        long now = System.currentTimeMillis();
+        SessionData data = _node1.newSessionData("1234", now, now, now, -1);
+        List<String> list = new ArrayList<>(List.of("1"));
+        data.setAttribute("list", list);
+        _node1.store("1234", data);
+
+        SessionData loaded1 = _node1.load("1234");
+        SessionData loaded2 = _node1.load("1234");
+        assertEquals(2, _node1.getCacheHits());
+        assertEquals(list, loaded1.getAttribute("list"));
+        assertNotSame(list, loaded1.getAttribute("list"));
+        assertNotSame(loaded1.getAttribute("list"), loaded2.getAttribute("list"));
+        assertFalse(loaded1.isDirty());
+
+        // Modifying a loaded value does not modify the local copy.
+        @SuppressWarnings("unchecked")
+        List<String> loadedList = (List<String>)loaded1.getAttribute("list");
+        loadedList.add("2");
+        assertEquals(List.of("1"), _node1.load("1234").getAttribute("list"));
+    }
+
+    @Test
+    public void testDeferredWritesInvalidateOtherNodes() throws Exception
+    {
+        long now = System.currentTimeMillis();
+        SessionData data = _node1.newSessionData("1234", now, now, now, -1);
+        data.setAttribute("a", "1");
+        _node1.store("1234", data);
+        assertEquals(now, _node2.load("1234").getAccessed());
+
+        // Only the access time changes.
+        data.setLastAccessed(data.getAccessed());
+        data.setAccessed(now + 1);
+        data.setMetaDataDirty(true);
+        _node1.store("1234", data);
+        assertEquals(1, _node1.getDeferredWrites());
+        assertEquals(0, _node2.getInvalidations());
+
+        // Writing the deferred access times changes the version.
+        Thread.sleep(2);
+        _node1.flush();
+        assertEquals(1, _node2.getInvalidations());
+        assertEquals(now + 1, _node2.load("1234").getAccessed());
+        assertEquals(2, _remote2._numLoads.get());
+
+        // The local copy of node1 is still valid.
+        assertEquals(now + 1, _node1.load("1234").getAccessed());
+        assertEquals(0, _node1.getInvalidations());
+        assertEquals(0, _remote1._numLoads.get());
+    }
+
+    private static class CountingSessionDataStore extends TestableSessionDataStore
+    {
+        private final AtomicInteger _numLoads = new AtomicInteger();
+        private final AtomicInteger _numVersions = new AtomicInteger();
+        private boolean _lastSavedEfficient = true;
+        private Runnable _onStore;
+
+        @Override
+        public void doStore(String id, SessionData data, long lastSaveTime) throws Exception
+        {
+            super.doStore(id, data, lastSaveTime);
+            Runnable onStore = _onStore;
+            _onStore = null;
+            if (onStore != null)
+                onStore.run();
+        }
+
+        @Override
+        public boolean isLastSavedEfficient()
+        {
+            return _lastSavedEfficient;
+        }
+
+        @Override
+        public SessionData doLoad(String id) throws Exception
+        {
+            _numLoads.incrementAndGet();
+            return super.doLoad(id);
+        }
+
+        @Override
+        public long getLastSaved(String id)
+        {
+            _numVersions.incrementAndGet();
+            SessionData data = _map.get(id);
+            return data == null ? -1 : data.getLastSaved();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * <p>Scans arrays of bytes and {@code ByteBuffer}s for the first byte
+ * of a given kind.</p>
+ * <p>The bytes are read 8 at a time as a {@code long}, and all 8 bytes are
+ * tested at once with arithmetic and bitwise operations (SWAR, SIMD within
+ * a register); the remaining bytes are tested one at a time.</p>
+ * <p>The {@code long}s are always read in little-endian order, so that the
+ * least significant set bit of a test result is that of the first matching
+ * byte, independently of the {@code ByteBuffer} {@link ByteBuffer#order() order}.
+ * The tests may report false positives only in bytes that follow a matching
+ * byte, so only the first matching byte is reliable.</p>
+ * <p>The indexes are absolute, and the position and limit of the
+ * {@code ByteBuffer}s are not changed.</p>
+ */
+public class ByteScanner
+{
+    private static final VarHandle ARRAY_LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle BUFFER_LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long SPACES = 0x2020202020202020L;
+    private static final long DELETES = 0x7F7F7F7F7F7F7F7FL;
+
+    private ByteScanner()
+    {
+    }
+
+    /**
+     * @param bytes the bytes to scan
+     * @param from the index of the first byte to scan
+     * @param to the index after the last byte to scan
+     * @param b the byte to find
+     * @return the index of the first byte equal to {@code b}, or -1 if not found
+     */
+    public static int indexOf(byte[] bytes, int from, int to, byte b)
+    {
+        long pattern = ONES * (b & 0xFF);
+        int i = from;
+        for (; i <= to - Long.BYTES; i += Long.BYTES)
+        {
+            long found = zeros((long)ARRAY_LONG.get(bytes, i) ^ pattern);
+            if (found != 0)
+                return i + firstByte(found);
+        }
+        for (; i < to; ++i)
+        {
+            if (bytes[i] == b)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @param buffer the {@code ByteBuffer} to scan
+     * @param from the index of the first byte to scan
+     * @param to the index after the last byte to scan
+     * @param b the byte to find
+     * @return the index of the first byte equal to {@code b}, or -1 if not found
+     */
+    public static int indexOf(ByteBuffer buffer, int from, int to, byte b)
+    {
+        long pattern = ONES * (b & 0xFF);
+        int i = from;
+        for (; i <= to - Long.BYTES; i += Long.BYTES)
+        {
+            long found = zeros((long)BUFFER_LONG.get(buffer, i) ^ pattern);
+            if (found != 0)
+                return i + firstByte(found);
+        }
+        for (; i < to; ++i)
+        {
+            if (buffer.get(i) == b)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @param bytes the bytes to scan
+     * @param from the index of the first byte to scan
+     * @param to the index after the last byte to scan
+     * @return the index of the first byte greater than {@code 0x7F}, or -1 if all bytes are US-ASCII
+     */
+    public static int indexOfNonAscii(byte[] bytes, int from, int to)
+    {
+        int i = from;
+        for (; i <= to - Long.BYTES; i += Long.BYTES)
+        {
+            long found = (long)ARRAY_LONG.get(bytes, i) & HIGH_BITS;
+            if (found != 0)
+                return i + firstByte(found);
+        }
+        for (; i < to; ++i)
+        {
+            if (bytes[i] < 0)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @param buffer the {@code ByteBuffer} to scan
+     * @param from the index of the first byte to scan
+     * @param to the index after the last byte to scan
+     * @return the index of the first byte greater than {@code 0x7F}, or -1 if all bytes are US-ASCII
+     */
+    public static int indexOfNonAscii(ByteBuffer buffer, int from, int to)
+    {
+        int i = from;
+        for (; i <= to - Long.BYTES; i += Long.BYTES)
+        {
+            long found = (long)BUFFER_LONG.get(buffer, i) & HIGH_BITS;
+            if (found != 0)
+                return i + firstByte(found);
+        }
+        for (; i < to; ++i)
+        {
+            if (buffer.get(i) < 0)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * <p>Finds the first US-ASCII control character, that is a byte
+     * less than {@code 0x20} (including {@code CR}, {@code LF} and
+     * {@code HTAB}) or equal to {@code 0x7F}.</p>
+     *
+     * @param buffer the {@code ByteBuffer} to scan
+     * @param from the index of the first byte to scan
+     * @param to the index after the last byte to scan
+     * @return the index of the first control character, or -1 if not found
+     */
+    public static int indexOfControl(ByteBuffer buffer, int from, int to)
+    {
+        int i = from;
+        for (; i <= to - Long.BYTES; i += Long.BYTES)
+        {
+            long found = controls((long)BUFFER_LONG.get(buffer, i));
+            if (found != 0)
+                return i + firstByte(found);
+        }
+        for (; i < to; ++i)
+        {
+            if (isControl(buffer.get(i)))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * <p>Finds the first US-ASCII control character, that is a byte
+     * less than {@code 0x20} (including {@code CR}, {@code LF} and
+     * {@code HTAB}) or equal to {@code 0x7F}.</p>
+     *
+     * @param bytes the bytes to scan
+     * @param from the index of the first byte to scan
+     * @param to the index after the last byte to scan
+     * @return the index of the first control character, or -1 if not found
+     */
+    public static int indexOfControl(byte[] bytes, int from, int to)
+    {
+        int i = from;
+        for (; i <= to - Long.BYTES; i += Long.BYTES)
+        {
+            long found = controls((long)ARRAY_LONG.get(bytes, i));
+            if (found != 0)
+                return i + firstByte(found);
+        }
+        for (; i < to; ++i)
+        {
+            if (isControl(bytes[i]))
+                return i;
+        }
+        return -1;
+    }
+
+    private static boolean isControl(byte b)
+    {
+        return b >= 0 && b < 0x20 || b == 0x7F;
+    }
+
+    /**
+     * @return a word with the high bit set in the zero bytes of the given word
+     */
+    private static long zeros(long word)
+    {
+        return (word - ONES) & ~word & HIGH_BITS;
+    }
+
+    /**
+     * @return a word with the high bit set in the control bytes of the given word
+     */
+    private static long controls(long word)
+    {
+        // Bytes less than 0x20 borrow into their high bit, unless it was already set.
+        long lessThanSpace = (word - SPACES) & ~word & HIGH_BITS;
+        return lessThanSpace | zeros(word ^ DELETES);
+    }
+
+    private static int firstByte(long found)
+    {
+        return Long.numberOfTrailingZeros(found) >>> 3;
+    }
+}
@@ -24,6 +24,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Predicate;
 import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 import java.util.stream.Stream;
 
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
@@ -64,6 +65,7 @@ public class ConcurrentPool<P> implements Pool<P>, Dumpable
     private final AutoLock lock = new AutoLock();
     private final AtomicInteger nextIndex;
     private final ToIntFunction<P> maxMultiplex;
+    private final ToLongFunction<P> cost;
     private final LongAdder leaked = new LongAdder();
 
     private volatile boolean terminated;
@@ -118,6 +120,22 @@ public class ConcurrentPool<P> implements Pool<P>, Dumpable
      * @param maxMultiplex a function that given the pooled object returns the max multiplex count
      */
     public ConcurrentPool(StrategyType strategyType, int maxSize, ToIntFunction<P> maxMultiplex)
+    {
+        this(strategyType, maxSize, maxMultiplex, null);
+    }
+
+    /**
+     * <p>Creates an instance with the specified strategy,
+     * a function that returns the max multiplex count for a given pooled object,
+     * and a function that returns the cost of selecting a given pooled object.</p>
+     * <p>The cost function is only used by {@link StrategyType#TWO_CHOICES}.</p>
+     *
+     * @param strategyType the strategy to used to lookup entries
+     * @param maxSize the maximum number of pooled entries
+     * @param maxMultiplex a function that given the pooled object returns the max multiplex count
+     * @param cost a function that given the pooled object returns its cost, or null to use the multiplex count
+     */
+    public ConcurrentPool(StrategyType strategyType, int maxSize, ToIntFunction<P> maxMultiplex, ToLongFunction<P> cost)
     {
         if (maxSize > OPTIMAL_MAX_SIZE && LOG.isDebugEnabled())
             LOG.debug("{} configured with max size {} which is above the recommended value {}", getClass().getSimpleName(), maxSize, OPTIMAL_MAX_SIZE);
@@ -125,6 +143,7 @@ public class ConcurrentPool<P> implements Pool<P>, Dumpable
         this.strategyType = Objects.requireNonNull(strategyType);
         this.nextIndex = strategyType == StrategyType.ROUND_ROBIN ? new AtomicInteger() : null;
         this.maxMultiplex = Objects.requireNonNull(maxMultiplex);
+        this.cost = cost;
     }
 
     @ManagedAttribute("number of entries leaked (not released nor referenced)")
@@ -265,9 +284,46 @@ public class ConcurrentPool<P> implements Pool<P>, Dumpable
             case RANDOM -> ThreadLocalRandom.current().nextInt(size);
             case ROUND_ROBIN -> nextIndex.getAndUpdate(c -> Math.max(0, c + 1)) % size;
             case THREAD_ID -> (int)(Thread.currentThread().getId() % size);
+            case TWO_CHOICES -> twoChoicesIndex(size);
         };
     }
 
+    private int twoChoicesIndex(int size)
+    {
+        if (size == 1)
+            return 0;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first)
+            ++second;
+        return cost(first) <= cost(second) ? first : second;
+    }
+
+    private long cost(int index)
+    {
+        try
+        {
+            Holder<P> holder = entries.get(index);
+            ConcurrentEntry<P> entry = holder == null ? null : (ConcurrentEntry<P>)holder.getEntry();
+            if (entry == null)
+                return Long.MAX_VALUE;
+            int multiplexCount = entry.getMultiplexCount();
+            // Reserved or removed entries cannot be acquired.
+            if (multiplexCount < 0)
+                return Long.MAX_VALUE;
+            if (cost == null)
+                return multiplexCount;
+            P pooled = entry.getPooled();
+            return pooled == null ? Long.MAX_VALUE : cost.applyAsLong(pooled);
+        }
+        catch (IndexOutOfBoundsException x)
+        {
+            // The entry was concurrently removed.
+            return Long.MAX_VALUE;
+        }
+    }
+
     private boolean release(Entry<P> entry)
     {
         boolean released = ((ConcurrentEntry<P>)entry).tryRelease();
@@ -437,7 +493,17 @@ public class ConcurrentPool<P> implements Pool<P>, Dumpable
          * random strategy but with more predictable behaviour.
          * No entries are favoured and contention is reduced.
          */
-        ROUND_ROBIN
+        ROUND_ROBIN,
+
+        /**
+         * A strategy that samples two random entries and looks for an entry
+         * starting from the one with the lower cost ("power of two choices"),
+         * where the cost is either given by a cost function, or is the
+         * multiplex count of the entry.
+         * Entries with lower costs are favoured while avoiding the herd
+         * behaviour of always selecting the entry with the lowest cost.
+         */
+        TWO_CHOICES
     }
 
     /**
@@ -472,6 +538,11 @@ public class ConcurrentPool<P> implements Pool<P>, Dumpable
             return holder;
         }
 
+        private int getMultiplexCount()
+        {
+            return state.getLo();
+        }
+
         @Override
         public boolean enable(E pooled, boolean acquire)
         {
@@ -16,6 +16,8 @@ package org.eclipse.jetty.util;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
 import java.nio.file.FileVisitOption;
 import java.nio.file.FileVisitResult;
 import java.nio.file.FileVisitor;
@@ -23,6 +25,11 @@ import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collections;
 import java.util.EnumSet;
@@ -51,6 +58,12 @@ import org.slf4j.LoggerFactory;
  * files and reporting these events via registered Listeners.
  * The scanner operates on the {@link Path#toRealPath(LinkOption...)} of the files scanned and
  * can be configured to follow symlinks.
+ * <p>
+ * By default every scan walks all the scanned directories. If {@link #setUseWatchService(boolean)}
+ * is set, the directories are instead watched with a {@link WatchService} and a scan only examines
+ * the paths reported as modified since the previous scan, together with the paths that have not yet
+ * settled. Files are still only reported once they are stable between two scans. If events are lost,
+ * the next scan walks all the directories.
  */
 public class Scanner extends ContainerLifeCycle
 {
@@ -78,6 +91,8 @@ public class Scanner extends ContainerLifeCycle
     private final Scheduler _scheduler;
     private int _scanDepth = DEFAULT_SCAN_DEPTH;
     private final LinkOption[] _linkOptions;
+    private boolean _useWatchService;
+    private Watcher _watcher;
 
     private enum Status
     {
@@ -247,6 +262,190 @@ public class Scanner extends ContainerLifeCycle
         }
     }
 
+    /**
+     * Watcher
+     *
+     * Tracks the directories to scan with a {@link WatchService}, so that a scan
+     * only needs to examine the paths that were modified since the previous scan.
+     */
+    private class Watcher implements AutoCloseable
+    {
+        private final WatchService watchService;
+        private final Map<WatchKey, Path> watchKeys = new HashMap<>();
+
+        private Watcher(WatchService watchService)
+        {
+            this.watchService = watchService;
+        }
+
+        /**
+         * Register the directories of all the scannables.
+         */
+        private void registerAll()
+        {
+            for (Path root : _scannables.keySet())
+            {
+                if (Files.isDirectory(root))
+                    register(root, _scanDepth);
+                else if (root.getParent() != null)
+                    register(root.getParent(), 0);
+            }
+        }
+
+        /**
+         * Register a directory and its descendant directories that are
+         * within the given depth and whose entries are thus scanned.
+         *
+         * @param dir the directory to register
+         * @param depth the depth of the scan from the directory
+         */
+        private void register(Path dir, int depth)
+        {
+            try
+            {
+                Files.walkFileTree(dir, EnumSet.allOf(FileVisitOption.class), Math.max(1, depth), new SimpleFileVisitor<>()
+                {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attrs) throws IOException
+                    {
+                        WatchKey key = path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                        watchKeys.put(key, path);
+                        return depth == 0 ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException exc)
+                    {
+                        LOG.warn("Watch failed: {}", file, exc);
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            }
+            catch (IOException e)
+            {
+                LOG.warn("Error watching {}", dir, e);
+            }
+        }
+
+        private boolean isWatched(Path dir)
+        {
+            return watchKeys.containsValue(dir);
+        }
+
+        /**
+         * Poll the modified paths.
+         *
+         * @param modified the set to add the modified paths to
+         * @return false if events were lost and all the scannables must be scanned again
+         */
+        private boolean poll(Set<Path> modified)
+        {
+            boolean complete = true;
+            try
+            {
+                WatchKey key;
+                while ((key = watchService.poll()) != null)
+                {
+                    Path dir = watchKeys.get(key);
+                    for (WatchEvent<?> event : key.pollEvents())
+                    {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null)
+                            complete = false;
+                        else
+                            modified.add(dir.resolve((Path)event.context()));
+                    }
+                    if (!key.reset())
+                        watchKeys.remove(key);
+                }
+            }
+            catch (ClosedWatchServiceException e)
+            {
+                complete = false;
+            }
+            return complete;
+        }
+
+        /**
+         * Scan the paths modified since the previous scan, and those that have not
+         * yet settled, reusing the metadata of the previous scan for all others.
+         *
+         * @param prevScan the previous scan
+         * @return the current scan, or null if all the scannables must be scanned again
+         */
+        private Map<Path, MetaData> scan(Map<Path, MetaData> prevScan)
+        {
+            Set<Path> modified = new HashSet<>();
+            if (!poll(modified))
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Watch events lost, scanning {}", _scannables.keySet());
+                registerAll();
+                return null;
+            }
+
+            Map<Path, MetaData> currentScan = new HashMap<>(prevScan);
+            for (Map.Entry<Path, MetaData> entry : prevScan.entrySet())
+            {
+                // Files that are not stable must be examined until they settle.
+                if (entry.getValue()._status != Status.STABLE)
+                    modified.add(entry.getKey());
+            }
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("Watch scan of {}", modified);
+
+            for (Path path : modified)
+            {
+                for (Map.Entry<Path, IncludeExcludeSet<PathMatcher, Path>> entry : _scannables.entrySet())
+                {
+                    Path root = entry.getKey();
+                    int depth = path.equals(root) ? 0 : path.startsWith(root) ? root.relativize(path).getNameCount() : -1;
+                    if (depth < 0 || depth > _scanDepth)
+                        continue;
+                    scan(root, entry.getValue(), path, depth, currentScan);
+                    break;
+                }
+            }
+            return currentScan;
+        }
+
+        /**
+         * Scan a modified path as a full scan would.
+         */
+        private void scan(Path root, IncludeExcludeSet<PathMatcher, Path> includesExcludes, Path path, int depth, Map<Path, MetaData> currentScan)
+        {
+            // A directory that is already watched only needs its own metadata
+            // to be updated, as its entries are reported by their own events.
+            boolean subtree = !Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS) || !isWatched(path);
+            if (subtree)
+                currentScan.keySet().removeIf(p -> p.startsWith(path));
+            else
+                currentScan.remove(path);
+
+            if (!Files.exists(path))
+                return;
+
+            try
+            {
+                // Watch a new directory before scanning it so that no modification is missed.
+                int maxDepth = subtree ? _scanDepth - depth : 0;
+                if (subtree && maxDepth > 0 && Files.isDirectory(path))
+                    register(path, maxDepth);
+                Files.walkFileTree(path, EnumSet.allOf(FileVisitOption.class), maxDepth, new Visitor(root, includesExcludes, currentScan));
+            }
+            catch (IOException e)
+            {
+                LOG.warn("Error scanning {}", path, e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            watchService.close();
+        }
+    }
+
     /**
      * Listener
      *
@@ -398,6 +597,31 @@ public class Scanner extends ContainerLifeCycle
         _scanInterval = scanInterval;
     }
 
+    /**
+     * @return whether the scanned directories are watched with a {@link WatchService} instead of walked on every scan
+     */
+    public boolean isUseWatchService()
+    {
+        return _useWatchService;
+    }
+
+    /**
+     * Set whether the scanned directories are watched with a {@link WatchService}, so that a
+     * scan only examines the paths modified since the previous scan rather than walking all the
+     * directories. If the {@link WatchService} cannot be created, the directories are walked.
+     * <p>
+     * Note that some platforms implement the {@link WatchService} by polling.
+     *
+     * @param useWatchService true to watch the scanned directories
+     */
+    public void setUseWatchService(boolean useWatchService)
+    {
+        if (isRunning())
+            throw new IllegalStateException("Scanner started");
+
+        _useWatchService = useWatchService;
+    }
+
     public void setScanDirs(List<Path> dirs)
     {
         if (isRunning())
@@ -657,6 +881,10 @@ public class Scanner extends ContainerLifeCycle
         if (LOG.isDebugEnabled())
             LOG.debug("{}.startup()", this.getClass().getSimpleName());
 
+        // Watch before the initial scan so that no modification is missed.
+        if (_useWatchService)
+            startWatching();
+
         if (_reportExisting)
         {
             // if files exist at startup, report them
@@ -673,6 +901,28 @@ public class Scanner extends ContainerLifeCycle
         schedule();
     }
 
+    private void startWatching()
+    {
+        try
+        {
+            _watcher = new Watcher(FileSystems.getDefault().newWatchService());
+            _watcher.registerAll();
+        }
+        catch (IOException | UnsupportedOperationException e)
+        {
+            LOG.warn("Unable to watch {}, scanning instead", _scannables.keySet(), e);
+            stopWatching();
+        }
+    }
+
+    private void stopWatching()
+    {
+        Watcher watcher = _watcher;
+        _watcher = null;
+        if (watcher != null)
+            IO.close(watcher);
+    }
+
     private void schedule()
     {
         if (isRunning() && getScanInterval() > 0)
@@ -689,6 +939,7 @@ public class Scanner extends ContainerLifeCycle
         _task = null;
         if (task != null)
             task.cancel();
+        stopWatching();
         _scanningStarted = false;
     }
 
@@ -771,7 +1022,10 @@ public class Scanner extends ContainerLifeCycle
     {
         int cycle = _scanCount.incrementAndGet();
         reportScanStart(cycle);
-        Map<Path, MetaData> currentScan = scanFiles();
+        Watcher watcher = _watcher;
+        Map<Path, MetaData> currentScan = watcher == null || _prevScan == null ? null : watcher.scan(_prevScan);
+        if (currentScan == null)
+            currentScan = scanFiles();
         reportDifferences(currentScan, _prevScan == null ? Collections.emptyMap() : Collections.unmodifiableMap(_prevScan));
         _prevScan = currentScan;
         reportScanEnd(cycle);
@@ -25,11 +25,16 @@ import java.util.Arrays;
  *
  * <p>The algorithm has an average-case complexity of O(n)
  * on random text and O(nm) in the worst case, where
- * {@code m = pattern length} and {@code n = length of data to search}.
+ * {@code m = pattern length} and {@code n = length of data to search}.</p>
+ * <p>The Boyer–Moore–Horspool algorithm skips at most {@code m} bytes at a time,
+ * so patterns not longer than 8 bytes are instead searched by scanning for their
+ * first byte with {@link ByteScanner}, 8 bytes at a time, and then comparing the
+ * rest of the pattern.</p>
  */
 public class SearchPattern
 {
     private static final int ALPHABET_SIZE = 256;
+    private static final int MAX_SCAN_LENGTH = Long.BYTES;
     private final int[] table = new int[ALPHABET_SIZE];
     private final byte[] pattern;
 
@@ -96,6 +101,9 @@ public class SearchPattern
     {
         validateArgs(data, offset, length);
 
+        if (pattern.length <= MAX_SCAN_LENGTH)
+            return scan(data, offset, length);
+
         int skip = offset;
         while (skip <= offset + length - pattern.length)
         {
@@ -123,6 +131,9 @@ public class SearchPattern
      */
     public int match(ByteBuffer buffer)
     {
+        if (pattern.length <= MAX_SCAN_LENGTH)
+            return scan(buffer);
+
         int remaining = buffer.remaining();
         int cursor = 0;
         while (remaining - cursor >= getLength())
@@ -139,6 +150,49 @@ public class SearchPattern
         return -1;
     }
 
+    private int scan(byte[] data, int offset, int length)
+    {
+        int last = offset + length - pattern.length;
+        int index = offset;
+        while (index <= last)
+        {
+            index = ByteScanner.indexOf(data, index, last + 1, pattern[0]);
+            if (index < 0)
+                return -1;
+            int i = 1;
+            while (i < pattern.length && data[index + i] == pattern[i])
+            {
+                ++i;
+            }
+            if (i == pattern.length)
+                return index;
+            ++index;
+        }
+        return -1;
+    }
+
+    private int scan(ByteBuffer buffer)
+    {
+        int position = buffer.position();
+        int last = buffer.limit() - pattern.length;
+        int index = position;
+        while (index <= last)
+        {
+            index = ByteScanner.indexOf(buffer, index, last + 1, pattern[0]);
+            if (index < 0)
+                return -1;
+            int i = 1;
+            while (i < pattern.length && buffer.get(index + i) == pattern[i])
+            {
+                ++i;
+            }
+            if (i == pattern.length)
+                return index - position;
+            ++index;
+        }
+        return -1;
+    }
+
     /**
      * Search for a partial match of the pattern at the end of the data.
      *
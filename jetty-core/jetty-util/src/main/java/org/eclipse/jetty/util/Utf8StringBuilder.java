@@ -16,6 +16,7 @@ package org.eclipse.jetty.util;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
 import java.util.function.Supplier;
 
 import org.slf4j.Logger;
@@ -73,13 +74,36 @@ public class Utf8StringBuilder implements CharsetStringBuilder
             12, 36, 12, 12, 12, 12, 12, 12, 12, 12, 12, 12
         };
 
+    private static final ClassValue<Boolean> BUFFER_APPEND_OVERRIDDEN = new ClassValue<>()
+    {
+        @Override
+        protected Boolean computeValue(Class<?> type)
+        {
+            for (Class<?> c = type; c != Utf8StringBuilder.class; c = c.getSuperclass())
+            {
+                try
+                {
+                    c.getDeclaredMethod("bufferAppend", char.class);
+                    return true;
+                }
+                catch (NoSuchMethodException x)
+                {
+                    // Not overridden by this class, check its superclass.
+                }
+            }
+            return false;
+        }
+    };
+
     final StringBuilder _buffer;
+    private final boolean _bufferAppendOverridden;
     private int _codep;
     private boolean _codingErrors;
 
     public Utf8StringBuilder()
     {
         _buffer = new StringBuilder();
+        _bufferAppendOverridden = isBufferAppendOverridden();
     }
 
     public Utf8StringBuilder(int capacity)
@@ -90,6 +114,13 @@ public class Utf8StringBuilder implements CharsetStringBuilder
     protected Utf8StringBuilder(StringBuilder buffer)
     {
         _buffer = buffer;
+        _bufferAppendOverridden = isBufferAppendOverridden();
+    }
+
+    private boolean isBufferAppendOverridden()
+    {
+        Class<?> type = getClass();
+        return type != Utf8StringBuilder.class && BUFFER_APPEND_OVERRIDDEN.get(type);
     }
 
     @Override
@@ -172,10 +203,32 @@ public class Utf8StringBuilder implements CharsetStringBuilder
     @Override
     public void append(ByteBuffer buf)
     {
+        if (buf.hasArray())
+        {
+            append(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+            buf.position(buf.limit());
+            return;
+        }
+
         try
         {
-            while (buf.remaining() > 0)
+            int limit = buf.limit();
+            while (buf.hasRemaining())
             {
+                if (_state == UTF8_ACCEPT)
+                {
+                    // Fast path for a run of US-ASCII bytes, that need no decoding.
+                    int position = buf.position();
+                    int nonAscii = ByteScanner.indexOfNonAscii(buf, position, limit);
+                    int end = nonAscii < 0 ? limit : nonAscii;
+                    for (int i = position; i < end; ++i)
+                    {
+                        bufferAppend((char)buf.get(i));
+                    }
+                    buf.position(end);
+                    if (end == limit)
+                        break;
+                }
                 appendByte(buf.get());
             }
         }
@@ -197,9 +250,23 @@ public class Utf8StringBuilder implements CharsetStringBuilder
         try
         {
             int end = offset + length;
-            for (int i = offset; i < end; i++)
+            int i = offset;
+            while (i < end)
             {
-                appendByte(b[i]);
+                if (_state == UTF8_ACCEPT)
+                {
+                    // Fast path for a run of US-ASCII bytes, that need no decoding.
+                    int nonAscii = ByteScanner.indexOfNonAscii(b, i, end);
+                    int asciiEnd = nonAscii < 0 ? end : nonAscii;
+                    if (asciiEnd > i)
+                    {
+                        bufferAppendAscii(b, i, asciiEnd - i);
+                        i = asciiEnd;
+                        if (i == end)
+                            break;
+                    }
+                }
+                appendByte(b[i++]);
             }
         }
         catch (IOException e)
@@ -232,6 +299,37 @@ public class Utf8StringBuilder implements CharsetStringBuilder
         _buffer.append(c);
     }
 
+    /**
+     * <p>Appends a run of US-ASCII bytes, that need no decoding, to the buffer.</p>
+     * <p>If a subclass overrides {@link #bufferAppend(char)}, the bytes are appended one by one
+     * with that method, unless the subclass also overrides this method.</p>
+     *
+     * @param bytes the US-ASCII bytes
+     * @param offset the offset of the first byte to append
+     * @param length the number of bytes to append
+     */
+    protected void bufferAppendAscii(byte[] bytes, int offset, int length)
+    {
+        if (_bufferAppendOverridden)
+        {
+            for (int i = offset; i < offset + length; ++i)
+            {
+                bufferAppend((char)bytes[i]);
+            }
+        }
+        else if (length < 16)
+        {
+            for (int i = offset; i < offset + length; ++i)
+            {
+                _buffer.append((char)bytes[i]);
+            }
+        }
+        else
+        {
+            _buffer.append(new String(bytes, offset, length, StandardCharsets.ISO_8859_1));
+        }
+    }
+
     protected void bufferReset()
     {
         _buffer.setLength(0);
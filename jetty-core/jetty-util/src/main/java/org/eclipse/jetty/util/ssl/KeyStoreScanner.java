@@ -161,4 +161,19 @@ public class KeyStoreScanner extends ContainerLifeCycle implements Scanner.Discr
     {
         _scanner.setScanInterval(scanInterval);
     }
+
+    @ManagedAttribute("whether the keystore directory is watched rather than scanned")
+    public boolean isUseWatchService()
+    {
+        return _scanner.isUseWatchService();
+    }
+
+    /**
+     * @param useWatchService true to watch the keystore directory for changes rather than walking it on every scan
+     * @see Scanner#setUseWatchService(boolean)
+     */
+    public void setUseWatchService(boolean useWatchService)
+    {
+        _scanner.setUseWatchService(useWatchService);
+    }
 }
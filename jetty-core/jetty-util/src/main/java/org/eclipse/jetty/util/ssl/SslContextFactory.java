@@ -2252,6 +2252,9 @@ public abstract class SslContextFactory extends ContainerLifeCycle implements Du
         private boolean _wantClientAuth;
         private boolean _sniRequired;
         private SniX509ExtendedKeyManager.SniSelector _sniSelector;
+        private int _smallRecordSize;
+        private int _smallRecordBytes = 16 * 1024;
+        private long _smallRecordIdleTimeout = 1000;
 
         public Server()
         {
@@ -2296,6 +2299,73 @@ public abstract class SslContextFactory extends ContainerLifeCycle implements Du
             _wantClientAuth = wantClientAuth;
         }
 
+        /**
+         * @return the max number of application bytes of the TLS records written
+         * at the start of a connection or after it has been idle, or 0 if
+         * TLS records are always written at the max size
+         * @see #setSmallRecordSize(int)
+         */
+        @ManagedAttribute("The max application bytes of the TLS records written at the start of a connection or after idle")
+        public int getSmallRecordSize()
+        {
+            return _smallRecordSize;
+        }
+
+        /**
+         * <p>Sets the max number of application bytes of the TLS records written
+         * at the start of a connection or after it has been idle.</p>
+         * <p>A client can only decrypt a TLS record once it has received all of it,
+         * so small records that fit in a single TCP segment, typically about 1400
+         * bytes, reduce the time to the first bytes, while full-size records
+         * reduce the CPU and framing overhead once the connection has ramped up.</p>
+         *
+         * @param smallRecordSize the max number of application bytes of the small TLS records,
+         * or 0 to always write TLS records at the max size
+         * @see #setSmallRecordBytes(int)
+         * @see #setSmallRecordIdleTimeout(long)
+         */
+        public void setSmallRecordSize(int smallRecordSize)
+        {
+            _smallRecordSize = smallRecordSize;
+        }
+
+        /**
+         * @return the number of application bytes written in small TLS records
+         * before TLS records are written at the max size
+         */
+        @ManagedAttribute("The number of application bytes written in small TLS records")
+        public int getSmallRecordBytes()
+        {
+            return _smallRecordBytes;
+        }
+
+        /**
+         * @param smallRecordBytes the number of application bytes written in small TLS records
+         * before TLS records are written at the max size
+         */
+        public void setSmallRecordBytes(int smallRecordBytes)
+        {
+            _smallRecordBytes = smallRecordBytes;
+        }
+
+        /**
+         * @return the idle time in milliseconds after which small TLS records are written again
+         */
+        @ManagedAttribute("The idle time in ms after which small TLS records are written again")
+        public long getSmallRecordIdleTimeout()
+        {
+            return _smallRecordIdleTimeout;
+        }
+
+        /**
+         * @param smallRecordIdleTimeout the idle time in milliseconds after which small TLS records
+         * are written again, or 0 to only write small TLS records at the start of a connection
+         */
+        public void setSmallRecordIdleTimeout(long smallRecordIdleTimeout)
+        {
+            _smallRecordIdleTimeout = smallRecordIdleTimeout;
+        }
+
         /**
          * <p>Returns whether an SNI match is required when choosing the alias that
          * identifies the certificate to send to the client.</p>
@@ -0,0 +1,101 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ByteScannerTest
+{
+    @Test
+    public void testEveryByteAtEveryOffset()
+    {
+        // Every byte value, at every offset of a long and of the tail.
+        for (int b = 0; b < 256; ++b)
+        {
+            for (int index = 0; index < 20; ++index)
+            {
+                for (int from = 0; from <= index; ++from)
+                {
+                    byte[] bytes = new byte[21];
+                    bytes[index] = (byte)b;
+                    assertScans(bytes, from, bytes.length);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRandomBytes()
+    {
+        Random random = new Random(1234);
+        for (int i = 0; i < 1000; ++i)
+        {
+            byte[] bytes = new byte[random.nextInt(64)];
+            for (int j = 0; j < bytes.length; ++j)
+            {
+                // Mostly printable characters, with a few others.
+                bytes[j] = (byte)(random.nextInt(16) == 0 ? random.nextInt(256) : 0x20 + random.nextInt(0x5F));
+            }
+            int from = bytes.length == 0 ? 0 : random.nextInt(bytes.length);
+            int to = from + random.nextInt(bytes.length - from + 1);
+            assertScans(bytes, from, to);
+        }
+    }
+
+    private static void assertScans(byte[] bytes, int from, int to)
+    {
+        ByteBuffer heap = ByteBuffer.wrap(bytes);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).order(ByteOrder.LITTLE_ENDIAN);
+        direct.put(bytes).flip();
+
+        for (byte b : new byte[]{0, '\r', ':', 0x7F, (byte)0x80, (byte)0xFF})
+        {
+            int expected = -1;
+            for (int i = from; i < to; ++i)
+            {
+                if (bytes[i] == b)
+                {
+                    expected = i;
+                    break;
+                }
+            }
+            assertEquals(expected, ByteScanner.indexOf(bytes, from, to, b));
+            assertEquals(expected, ByteScanner.indexOf(heap, from, to, b));
+            assertEquals(expected, ByteScanner.indexOf(direct, from, to, b));
+        }
+
+        int nonAscii = -1;
+        int control = -1;
+        for (int i = to - 1; i >= from; --i)
+        {
+            int b = bytes[i] & 0xFF;
+            if (b >= 0x80)
+                nonAscii = i;
+            if (b < 0x20 || b == 0x7F)
+                control = i;
+        }
+        assertEquals(nonAscii, ByteScanner.indexOfNonAscii(bytes, from, to));
+        assertEquals(nonAscii, ByteScanner.indexOfNonAscii(heap, from, to));
+        assertEquals(nonAscii, ByteScanner.indexOfNonAscii(direct, from, to));
+        assertEquals(control, ByteScanner.indexOfControl(bytes, from, to));
+        assertEquals(control, ByteScanner.indexOfControl(heap, from, to));
+        assertEquals(control, ByteScanner.indexOfControl(direct, from, to));
+    }
+}
@@ -32,6 +32,7 @@ import static org.eclipse.jetty.util.ConcurrentPool.StrategyType.FIRST;
 import static org.eclipse.jetty.util.ConcurrentPool.StrategyType.RANDOM;
 import static org.eclipse.jetty.util.ConcurrentPool.StrategyType.ROUND_ROBIN;
 import static org.eclipse.jetty.util.ConcurrentPool.StrategyType.THREAD_ID;
+import static org.eclipse.jetty.util.ConcurrentPool.StrategyType.TWO_CHOICES;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
@@ -62,7 +63,8 @@ public class ConcurrentPoolTest
             (maxEntries, maxMultiplex) -> new ConcurrentPool<>(FIRST, maxEntries, maxMultiplex),
             (maxEntries, maxMultiplex) -> new ConcurrentPool<>(RANDOM, maxEntries, maxMultiplex),
             (maxEntries, maxMultiplex) -> new ConcurrentPool<>(THREAD_ID, maxEntries, maxMultiplex),
-            (maxEntries, maxMultiplex) -> new ConcurrentPool<>(ROUND_ROBIN, maxEntries, maxMultiplex)
+            (maxEntries, maxMultiplex) -> new ConcurrentPool<>(ROUND_ROBIN, maxEntries, maxMultiplex),
+            (maxEntries, maxMultiplex) -> new ConcurrentPool<>(TWO_CHOICES, maxEntries, maxMultiplex)
         );
     }
 
@@ -585,6 +587,34 @@ public class ConcurrentPoolTest
         assertThat(e4.getPooled().get(), is(2));
     }
 
+    @Test
+    public void testTwoChoicesStrategy()
+    {
+        // With two entries, both are always sampled, so the cheaper is always selected.
+        ConcurrentPool<String> pool = new ConcurrentPool<>(TWO_CHOICES, 2, pooled -> 64, pooled -> "slow".equals(pooled) ? 1000 : 1);
+        pool.reserve().enable("slow", false);
+        pool.reserve().enable("fast", false);
+
+        for (int i = 0; i < 32; i++)
+        {
+            Pool.Entry<String> e = pool.acquire();
+            assertThat(e.getPooled(), is("fast"));
+        }
+
+        // Without cost function, the least multiplexed entry is selected.
+        ConcurrentPool<AtomicInteger> leastUsed = new ConcurrentPool<>(TWO_CHOICES, 2, pooled -> 64);
+        AtomicInteger a = new AtomicInteger();
+        AtomicInteger b = new AtomicInteger();
+        leastUsed.reserve().enable(a, false);
+        leastUsed.reserve().enable(b, false);
+        for (int i = 0; i < 32; i++)
+        {
+            leastUsed.acquire().getPooled().incrementAndGet();
+        }
+        assertThat(a.get(), is(16));
+        assertThat(b.get(), is(16));
+    }
+
     @Test
     public void testRandomStrategy()
     {
@@ -460,6 +460,105 @@ public class ScannerTest
         }
     }
 
+    @Test
+    public void testWatchService() throws Exception
+    {
+        Path root = _directory.resolve("wroot");
+        Path sub = root.resolve("sub");
+        Files.createDirectories(sub);
+        Files.writeString(root.resolve("existing.txt"), "existing");
+
+        BlockingQueue<Event> queue = new LinkedBlockingQueue<>();
+        Scanner scanner = new Scanner();
+        scanner.setUseWatchService(true);
+        scanner.setScanInterval(0);
+        scanner.setScanDepth(2);
+        scanner.setReportDirs(false);
+        scanner.setReportExistingFilesOnStartup(false);
+        scanner.addDirectory(root);
+        scanner.addListener(new Scanner.DiscreteListener()
+        {
+            @Override
+            public void fileRemoved(String filename)
+            {
+                queue.add(new Event(filename, Notification.REMOVED));
+            }
+
+            @Override
+            public void fileChanged(String filename)
+            {
+                queue.add(new Event(filename, Notification.CHANGED));
+            }
+
+            @Override
+            public void fileAdded(String filename)
+            {
+                queue.add(new Event(filename, Notification.ADDED));
+            }
+        });
+
+        try
+        {
+            scanner.start();
+            assertTrue(queue.isEmpty());
+
+            // A new file in a watched sub directory.
+            Path file = sub.resolve("file.txt");
+            Files.writeString(file, "one");
+            assertThat(scanUntilEvent(scanner, queue), Matchers.equalTo(new Event(file.toString(), Notification.ADDED)));
+
+            // A change of size.
+            Files.writeString(file, "two two");
+            assertThat(scanUntilEvent(scanner, queue), Matchers.equalTo(new Event(file.toString(), Notification.CHANGED)));
+
+            // A new directory is watched within the scan depth.
+            Path newDir = root.resolve("new");
+            Files.createDirectories(newDir);
+            Path newFile = newDir.resolve("new.txt");
+            Files.writeString(newFile, "new");
+            assertThat(scanUntilEvent(scanner, queue), Matchers.equalTo(new Event(newFile.toString(), Notification.ADDED)));
+            Path laterFile = newDir.resolve("later.txt");
+            Files.writeString(laterFile, "later");
+            assertThat(scanUntilEvent(scanner, queue), Matchers.equalTo(new Event(laterFile.toString(), Notification.ADDED)));
+
+            // Removed files, including those of a removed directory.
+            Files.delete(file);
+            assertThat(scanUntilEvent(scanner, queue), Matchers.equalTo(new Event(file.toString(), Notification.REMOVED)));
+            IO.delete(newDir);
+            List<Event> removed = new ArrayList<>();
+            removed.add(scanUntilEvent(scanner, queue));
+            removed.add(scanUntilEvent(scanner, queue));
+            assertThat(removed, Matchers.containsInAnyOrder(
+                new Event(newFile.toString(), Notification.REMOVED),
+                new Event(laterFile.toString(), Notification.REMOVED)));
+
+            // Nothing else was reported.
+            scanner.scan();
+            scanner.scan();
+            assertTrue(queue.isEmpty());
+        }
+        finally
+        {
+            scanner.stop();
+        }
+    }
+
+    private Event scanUntilEvent(Scanner scanner, BlockingQueue<Event> queue) throws Exception
+    {
+        // Watch events are delivered asynchronously, so scan until they are seen.
+        for (int i = 0; i < 50; i++)
+        {
+            Event event = queue.poll();
+            if (event != null)
+                return event;
+            scanner.scan();
+            event = queue.poll(100, TimeUnit.MILLISECONDS);
+            if (event != null)
+                return event;
+        }
+        throw new AssertionError("No event");
+    }
+
     private void delete(String string) throws IOException
     {
         Path file = _directory.resolve(string);
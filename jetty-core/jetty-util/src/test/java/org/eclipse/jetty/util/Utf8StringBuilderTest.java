@@ -56,6 +56,50 @@ public class Utf8StringBuilderTest
         assertTrue(utf8.toCompleteString().endsWith("jetty"));
     }
 
+    @Test
+    public void testLongAsciiRuns()
+    {
+        String source = "a long run of US-ASCII characters \u0000 followed by ¤ and more US-ASCII ჻ then an incomplete sequence";
+        byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+        byte[] invalid = new byte[bytes.length + 1];
+        System.arraycopy(bytes, 0, invalid, 0, bytes.length);
+        invalid[bytes.length] = (byte)0xE1;
+
+        Utf8StringBuilder utf8 = new Utf8StringBuilder();
+        utf8.append(bytes, 0, bytes.length);
+        assertEquals(source, utf8.toCompleteString());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        utf8 = new Utf8StringBuilder();
+        utf8.append(direct);
+        assertFalse(direct.hasRemaining());
+        assertEquals(source, utf8.toCompleteString());
+
+        utf8 = new Utf8StringBuilder();
+        utf8.append(ByteBuffer.wrap(invalid));
+        assertFalse(utf8.isComplete());
+        assertEquals(source + Utf8StringBuilder.REPLACEMENT, utf8.toCompleteString());
+        assertTrue(utf8.hasCodingErrors());
+    }
+
+    @Test
+    public void testBufferAppendOverrideSeesAsciiRuns()
+    {
+        String source = "a long run of US-ASCII characters followed by ¤ and more US-ASCII";
+        byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+        Utf8StringBuilder utf8 = new Utf8StringBuilder()
+        {
+            @Override
+            protected void bufferAppend(char c)
+            {
+                super.bufferAppend(Character.toUpperCase(c));
+            }
+        };
+        utf8.append(bytes, 0, bytes.length);
+        assertEquals(source.toUpperCase(), utf8.toCompleteString());
+    }
+
     @Test
     public void testUtf8WithMissingByte()
     {
@@ -448,6 +448,12 @@ public abstract class CoreClientUpgradeRequest implements Response.CompleteListe
                 throw new WebSocketException("Upgrade failed: Sec-WebSocket-Extensions contained more than one extension of the same name");
         }
 
+        // Use the parameters accepted by the server, which may differ from those requested.
+        negotiatedWithInternal.replaceAll(requested -> negotiatedExtensions.stream()
+            .filter(config -> config.getName().equals(requested.getName()))
+            .findFirst()
+            .orElse(requested));
+
         // Negotiate the extension stack
         ExtensionStack extensionStack = new ExtensionStack(wsClient.getWebSocketComponents(), Behavior.CLIENT);
         extensionStack.negotiate(requestedExtensions, negotiatedWithInternal);
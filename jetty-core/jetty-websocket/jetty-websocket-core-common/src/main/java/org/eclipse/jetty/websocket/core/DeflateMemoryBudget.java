@@ -0,0 +1,179 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.websocket.core;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Accounts for the native zlib memory held by the sessions that negotiated
+ * the {@code permessage-deflate} extension, and bounds it to {@link #getMaxMemory()}.</p>
+ * <p>When the budget is exceeded, new sessions negotiate {@code server_no_context_takeover}
+ * and {@code client_no_context_takeover}, so that they only hold zlib state while a message is
+ * being compressed or decompressed, and the compressors held by idle sessions are returned to
+ * the pool; they will start a new compression context for their next message.</p>
+ * <p>The memory is an estimate based on the zlib defaults used by the JDK, see
+ * {@link #DEFLATER_MEMORY} and {@link #INFLATER_MEMORY}.</p>
+ */
+@ManagedObject("Memory budget of the permessage-deflate extension")
+public class DeflateMemoryBudget
+{
+    /**
+     * The zlib memory of a {@link java.util.zip.Deflater} with {@code windowBits=15} and {@code memLevel=8},
+     * that is {@code (1 << (windowBits + 2)) + (1 << (memLevel + 9))} plus the internal state.
+     */
+    public static final long DEFLATER_MEMORY = (1 << 17) + (1 << 17) + 6 * 1024;
+    /**
+     * The zlib memory of a {@link java.util.zip.Inflater} with {@code windowBits=15},
+     * that is {@code (1 << windowBits)} plus the internal state.
+     */
+    public static final long INFLATER_MEMORY = (1 << 15) + 7 * 1024;
+
+    private static final Logger LOG = LoggerFactory.getLogger(DeflateMemoryBudget.class);
+
+    private final AtomicLong deflaters = new AtomicLong();
+    private final AtomicLong inflaters = new AtomicLong();
+    private final Set<Runnable> idle = ConcurrentHashMap.newKeySet();
+    private volatile long maxMemory = -1;
+
+    /**
+     * @return the max zlib memory that sessions may hold, or a negative value for no limit
+     */
+    @ManagedAttribute("The max zlib memory that sessions may hold, or -1 for no limit")
+    public long getMaxMemory()
+    {
+        return maxMemory;
+    }
+
+    /**
+     * @param maxMemory the max zlib memory that sessions may hold, or a negative value for no limit
+     */
+    public void setMaxMemory(long maxMemory)
+    {
+        this.maxMemory = maxMemory;
+    }
+
+    @ManagedAttribute("The estimated zlib memory held by sessions")
+    public long getMemory()
+    {
+        return deflaters.get() * DEFLATER_MEMORY + inflaters.get() * INFLATER_MEMORY;
+    }
+
+    @ManagedAttribute("The number of Deflaters held by sessions")
+    public long getDeflaterCount()
+    {
+        return deflaters.get();
+    }
+
+    @ManagedAttribute("The number of Inflaters held by sessions")
+    public long getInflaterCount()
+    {
+        return inflaters.get();
+    }
+
+    @ManagedAttribute("The number of idle sessions holding a Deflater")
+    public int getIdleCount()
+    {
+        return idle.size();
+    }
+
+    /**
+     * @return whether the memory held by sessions is at or above the max memory
+     */
+    @ManagedAttribute("Whether the memory budget is exceeded")
+    public boolean isExceeded()
+    {
+        long max = getMaxMemory();
+        return max >= 0 && getMemory() >= max;
+    }
+
+    /**
+     * <p>Records that a session acquired a Deflater, releasing the
+     * Deflaters of idle sessions if the budget is exceeded.</p>
+     */
+    public void onDeflaterAcquired()
+    {
+        deflaters.incrementAndGet();
+        if (isExceeded())
+            releaseIdle();
+    }
+
+    public void onDeflaterReleased()
+    {
+        deflaters.decrementAndGet();
+    }
+
+    public void onInflaterAcquired()
+    {
+        inflaters.incrementAndGet();
+    }
+
+    public void onInflaterReleased()
+    {
+        inflaters.decrementAndGet();
+    }
+
+    /**
+     * <p>Records that a session holding a Deflater is idle.</p>
+     * <p>The given releaser is called to release the Deflater when the budget is exceeded,
+     * it must not release it if the session is not idle anymore.</p>
+     *
+     * @param releaser the releaser of the Deflater of the idle session
+     */
+    public void addIdle(Runnable releaser)
+    {
+        idle.add(releaser);
+    }
+
+    /**
+     * @param releaser the releaser passed to {@link #addIdle(Runnable)}
+     */
+    public void removeIdle(Runnable releaser)
+    {
+        idle.remove(releaser);
+    }
+
+    /**
+     * <p>Releases the Deflaters held by idle sessions until the budget is not exceeded.</p>
+     */
+    @ManagedOperation(value = "Releases the Deflaters held by idle sessions", impact = "ACTION")
+    public void releaseIdle()
+    {
+        for (Runnable releaser : idle)
+        {
+            if (!isExceeded())
+                break;
+            if (idle.remove(releaser))
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Releasing idle {}", releaser);
+                releaser.run();
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{memory=%d/%d,deflaters=%d,inflaters=%d,idle=%d}",
+            getClass().getSimpleName(), hashCode(), getMemory(), getMaxMemory(), getDeflaterCount(), getInflaterCount(), getIdleCount());
+    }
+}
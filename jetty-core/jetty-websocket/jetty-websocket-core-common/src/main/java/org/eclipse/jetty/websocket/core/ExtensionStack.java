@@ -25,6 +25,7 @@ import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.component.Dumpable;
+import org.eclipse.jetty.websocket.core.exception.DeclinedExtensionException;
 import org.eclipse.jetty.websocket.core.exception.WebSocketException;
 import org.eclipse.jetty.websocket.core.util.DemandChain;
 import org.slf4j.Logger;
@@ -148,11 +149,16 @@ public class ExtensionStack implements IncomingFrames, OutgoingFrames, Dumpable
                     case SERVER:
                     {
                         String parameterizedName = config.getParameterizedName();
-                        for (ExtensionConfig offered : offeredConfigs)
+                        boolean offered = offeredConfigs.stream().anyMatch(c -> c.getParameterizedName().equals(parameterizedName));
+                        if (offered && t instanceof DeclinedExtensionException)
                         {
-                            if (offered.getParameterizedName().equals(parameterizedName))
-                                throw new BadMessageException("could not instantiate offered extension", t);
+                            // Decline the offer rather than failing the upgrade.
+                            if (LOG.isDebugEnabled())
+                                LOG.debug("Declined offered extension {}", config, t);
+                            continue;
                         }
+                        if (offered)
+                            throw new BadMessageException("could not instantiate offered extension", t);
                         throw new WebSocketException("could not instantiate negotiated extension", t);
                     }
                     case CLIENT:
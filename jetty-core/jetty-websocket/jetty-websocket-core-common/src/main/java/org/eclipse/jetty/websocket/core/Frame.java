@@ -561,4 +561,41 @@ public class Frame
             return super.toString() + ":" + closeStatus;
         }
     }
+
+    /**
+     * <p>A {@link Frame} that has already been generated, header included, into a buffer
+     * that can be written as-is by the connection, see {@link #getEncoded()}.</p>
+     * <p>The same encoded bytes may be shared by many connections, so the payload of this
+     * frame must not be modified and the frame cannot be masked.</p>
+     */
+    public static class Encoded extends Frame
+    {
+        private final ByteBuffer encoded;
+
+        /**
+         * @param frame the frame that was generated
+         * @param encoded the generated bytes of the frame, header and payload
+         */
+        public Encoded(Frame frame, ByteBuffer encoded)
+        {
+            super(frame.finRsvOp, null, frame.getPayload());
+            if (frame.isMasked())
+                throw new IllegalArgumentException("Encoded frame cannot be masked");
+            this.encoded = encoded;
+        }
+
+        /**
+         * @return a new view of the generated bytes of this frame
+         */
+        public ByteBuffer getEncoded()
+        {
+            return encoded.slice();
+        }
+
+        @Override
+        public Frame setMask(byte[] maskingKey)
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
 }
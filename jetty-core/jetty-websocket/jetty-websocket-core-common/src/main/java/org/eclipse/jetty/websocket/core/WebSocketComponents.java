@@ -37,6 +37,7 @@ public class WebSocketComponents extends ContainerLifeCycle
     private final ByteBufferPool _bufferPool;
     private final InflaterPool _inflaterPool;
     private final DeflaterPool _deflaterPool;
+    private final DeflateMemoryBudget _deflateMemoryBudget = new DeflateMemoryBudget();
 
     public WebSocketComponents()
     {
@@ -71,6 +72,7 @@ public class WebSocketComponents extends ContainerLifeCycle
 
         installBean(_inflaterPool);
         installBean(_deflaterPool);
+        installBean(_deflateMemoryBudget);
         installBean(_bufferPool);
         installBean(_extensionRegistry);
         installBean(_objectFactory);
@@ -106,4 +108,12 @@ public class WebSocketComponents extends ContainerLifeCycle
     {
         return _deflaterPool;
     }
+
+    /**
+     * @return the memory budget of the {@code permessage-deflate} extension
+     */
+    public DeflateMemoryBudget getDeflateMemoryBudget()
+    {
+        return _deflateMemoryBudget;
+    }
 }
@@ -22,6 +22,7 @@ import java.util.Set;
 import org.eclipse.jetty.http.BadMessageException;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.TypeUtil;
+import org.eclipse.jetty.websocket.core.exception.DeclinedExtensionException;
 
 public class WebSocketExtensionRegistry implements Iterable<Class<? extends Extension>>
 {
@@ -86,6 +87,10 @@ public class WebSocketExtensionRegistry implements Iterable<Class<? extends Exte
 
             return ext;
         }
+        catch (DeclinedExtensionException x)
+        {
+            throw x;
+        }
         catch (Throwable t)
         {
             throw new BadMessageException("Cannot instantiate extension: " + extClass, t);
@@ -0,0 +1,29 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.websocket.core.exception;
+
+/**
+ * Indicating that an extension cannot accept the parameters it was offered.
+ * <p>
+ * A server declines such an offer and continues the upgrade without the extension,
+ * while a client fails the upgrade if the parameters were negotiated by the server.
+ */
+@SuppressWarnings("serial")
+public class DeclinedExtensionException extends WebSocketException
+{
+    public DeclinedExtensionException(String message)
+    {
+        super(message);
+    }
+}
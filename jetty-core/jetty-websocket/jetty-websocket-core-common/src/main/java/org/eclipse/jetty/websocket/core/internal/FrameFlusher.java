@@ -236,6 +236,7 @@ public class FrameFlusher extends IteratingCallback
 
                 boolean batch = entry.batch &&
                     !entry.frame.isControlFrame() &&
+                    !(entry.frame instanceof Frame.Encoded) &&
                     entry.frame.getPayloadLength() < bufferSize / 4 &&
                     (batchSpace - Generator.MAX_HEADER_LENGTH) >= entry.frame.getPayloadLength();
 
@@ -251,6 +252,13 @@ public class FrameFlusher extends IteratingCallback
                     // Generate the frame into the batchBuffer.
                     generator.generateWholeFrame(entry.frame, batchBuffer.getByteBuffer());
                 }
+                else if (entry.frame instanceof Frame.Encoded encoded)
+                {
+                    // The frame has already been generated, possibly shared
+                    // with other connections, so write its bytes as-is.
+                    buffers.add(encoded.getEncoded());
+                    flush = true;
+                }
                 else
                 {
                     if (batchBuffer != null && batchSpace >= Generator.MAX_HEADER_LENGTH)
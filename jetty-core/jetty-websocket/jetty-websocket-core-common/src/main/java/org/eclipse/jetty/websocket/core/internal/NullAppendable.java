@@ -54,6 +54,11 @@ public class NullAppendable extends Utf8StringBuilder
     {
     }
 
+    @Override
+    protected void bufferAppendAscii(byte[] bytes, int offset, int length)
+    {
+    }
+
     @Override
     protected void bufferReset()
     {
@@ -26,12 +26,17 @@ import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.compression.DeflaterPool;
 import org.eclipse.jetty.util.compression.InflaterPool;
+import org.eclipse.jetty.util.thread.AutoLock;
 import org.eclipse.jetty.websocket.core.AbstractExtension;
+import org.eclipse.jetty.websocket.core.Behavior;
+import org.eclipse.jetty.websocket.core.CoreSession;
+import org.eclipse.jetty.websocket.core.DeflateMemoryBudget;
 import org.eclipse.jetty.websocket.core.ExtensionConfig;
 import org.eclipse.jetty.websocket.core.Frame;
 import org.eclipse.jetty.websocket.core.OpCode;
 import org.eclipse.jetty.websocket.core.WebSocketComponents;
 import org.eclipse.jetty.websocket.core.exception.BadPayloadException;
+import org.eclipse.jetty.websocket.core.exception.DeclinedExtensionException;
 import org.eclipse.jetty.websocket.core.exception.MessageTooLargeException;
 import org.eclipse.jetty.websocket.core.exception.ProtocolException;
 import org.eclipse.jetty.websocket.core.util.DemandChain;
@@ -44,6 +49,13 @@ import org.slf4j.LoggerFactory;
  * Per Message Deflate Compression extension for WebSocket.
  * <p>
  * Attempts to follow <a href="https://tools.ietf.org/html/rfc7692">Compression Extensions for WebSocket</a>
+ * <p>
+ * The JDK zlib binding always compresses with a 15 bits window, so when the peer limits our window
+ * with {@code server_max_window_bits} (or {@code client_max_window_bits} when acting as a client)
+ * to less than 15, messages are sent uncompressed, as permitted by the RFC.
+ * <p>
+ * The zlib memory held by the sessions is accounted in the {@link DeflateMemoryBudget}, when it is exceeded
+ * new sessions negotiate no context takeover and the compressors of idle sessions are released.
  */
 public class PerMessageDeflateExtension extends AbstractExtension implements DemandChain
 {
@@ -51,10 +63,15 @@ public class PerMessageDeflateExtension extends AbstractExtension implements Dem
     private static final ByteBuffer TAIL_BYTES_BUF = ByteBuffer.wrap(TAIL_BYTES);
     private static final Logger LOG = LoggerFactory.getLogger(PerMessageDeflateExtension.class);
     private static final int DEFAULT_BUF_SIZE = 8 * 1024;
+    private static final int MAX_WINDOW_BITS = 15;
 
     private final OutgoingFlusher outgoingFlusher;
     private final IncomingFlusher incomingFlusher;
+    private final AutoLock deflaterLock = new AutoLock();
+    private final Runnable idleReleaser = this::releaseIdleDeflater;
+    private DeflateMemoryBudget memoryBudget;
     private DeflaterPool.Entry deflaterHolder;
+    private boolean deflating;
     private InflaterPool.Entry inflaterHolder;
     private boolean incomingCompressed;
 
@@ -64,6 +81,12 @@ public class PerMessageDeflateExtension extends AbstractExtension implements Dem
     private int inflateBufferSize = DEFAULT_BUF_SIZE;
     private boolean incomingContextTakeover = true;
     private boolean outgoingContextTakeover = true;
+    private boolean outgoingCompressed = true;
+    private boolean clientNoContextTakeover;
+    private boolean serverNoContextTakeover;
+    private int clientMaxWindowBits = MAX_WINDOW_BITS;
+    private int serverMaxWindowBits = MAX_WINDOW_BITS;
+    private boolean budgetExceeded;
 
     public PerMessageDeflateExtension()
     {
@@ -108,22 +131,32 @@ public class PerMessageDeflateExtension extends AbstractExtension implements Dem
             switch (key)
             {
                 case "client_max_window_bits":
+                {
+                    // May be offered without a value, in which case it is not negotiated.
+                    String value = config.getParameter(key, null);
+                    if (value != null)
+                    {
+                        clientMaxWindowBits = parseWindowBits(key, value);
+                        paramsNegotiated.put("client_max_window_bits", Integer.toString(clientMaxWindowBits));
+                    }
+                    break;
+                }
                 case "server_max_window_bits":
                 {
-                    // Not supported by Jetty
-                    // Don't negotiate these parameters
+                    serverMaxWindowBits = parseWindowBits(key, config.getParameter(key, null));
+                    paramsNegotiated.put("server_max_window_bits", Integer.toString(serverMaxWindowBits));
                     break;
                 }
                 case "client_no_context_takeover":
                 {
                     paramsNegotiated.put("client_no_context_takeover", null);
-                    incomingContextTakeover = false;
+                    clientNoContextTakeover = true;
                     break;
                 }
                 case "server_no_context_takeover":
                 {
                     paramsNegotiated.put("server_no_context_takeover", null);
-                    outgoingContextTakeover = false;
+                    serverNoContextTakeover = true;
                     break;
                 }
                 case "@deflate_buffer_size":
@@ -143,18 +176,77 @@ public class PerMessageDeflateExtension extends AbstractExtension implements Dem
             }
         }
 
+        // Over budget, ask for no context takeover in both directions,
+        // which a server is allowed to do even if it was not offered.
+        memoryBudget = components.getDeflateMemoryBudget();
+        budgetExceeded = memoryBudget.isExceeded();
+        if (budgetExceeded)
+        {
+            paramsNegotiated.put("client_no_context_takeover", null);
+            paramsNegotiated.put("server_no_context_takeover", null);
+        }
+
         configNegotiated = new ExtensionConfig(config.getName(), paramsNegotiated);
-        LOG.debug("config: outgoingContextTakover={}, incomingContextTakeover={} : {}", outgoingContextTakeover, incomingContextTakeover, this);
+        configure(Behavior.SERVER);
 
         super.init(configNegotiated, components);
     }
 
+    @Override
+    public void setCoreSession(CoreSession coreSession)
+    {
+        super.setCoreSession(coreSession);
+        configure(coreSession.getBehavior());
+    }
+
+    /**
+     * The negotiated parameters are named after the endpoint they apply to,
+     * so the incoming and outgoing directions depend on the behavior.
+     */
+    private void configure(Behavior behavior)
+    {
+        boolean server = behavior == Behavior.SERVER;
+        incomingContextTakeover = !(server ? clientNoContextTakeover : serverNoContextTakeover);
+        outgoingContextTakeover = !(server ? serverNoContextTakeover : clientNoContextTakeover);
+        if (budgetExceeded)
+        {
+            // Resetting the outgoing context is always allowed, while the incoming
+            // context can only be reset if the server did negotiate it.
+            outgoingContextTakeover = false;
+            if (server)
+                incomingContextTakeover = false;
+        }
+        outgoingCompressed = (server ? serverMaxWindowBits : clientMaxWindowBits) == MAX_WINDOW_BITS;
+        if (LOG.isDebugEnabled())
+            LOG.debug("config: outgoingContextTakover={}, incomingContextTakeover={}, outgoingCompressed={} : {}", outgoingContextTakeover, incomingContextTakeover, outgoingCompressed, this);
+    }
+
+    private static int parseWindowBits(String key, String value)
+    {
+        try
+        {
+            int windowBits = Integer.parseInt(value);
+            if (windowBits >= 8 && windowBits <= MAX_WINDOW_BITS)
+                return windowBits;
+        }
+        catch (NumberFormatException x)
+        {
+            // Fall through.
+        }
+        // RFC 7692 7.1.2: an offer with an invalid window size is declined rather than failing the upgrade.
+        throw new DeclinedExtensionException("Invalid " + key + ": " + value);
+    }
+
     @Override
     public void close()
     {
         incomingFlusher.closeFlusher();
         outgoingFlusher.closeFlusher();
         releaseInflater();
+        try (AutoLock ignored = deflaterLock.lock())
+        {
+            deflating = false;
+        }
         releaseDeflater();
     }
 
@@ -189,15 +281,32 @@ public class PerMessageDeflateExtension extends AbstractExtension implements Dem
 
     public Deflater getDeflater()
     {
-        if (deflaterHolder == null)
-            deflaterHolder = getDeflaterPool().acquire();
-        return deflaterHolder.get();
+        boolean acquired = false;
+        Deflater deflater;
+        try (AutoLock ignored = deflaterLock.lock())
+        {
+            deflating = true;
+            if (deflaterHolder == null)
+            {
+                deflaterHolder = getDeflaterPool().acquire();
+                acquired = true;
+            }
+            deflater = deflaterHolder.get();
+        }
+        // Notify the budget outside the lock, as it may release the Deflaters of other sessions.
+        if (acquired && memoryBudget != null)
+            memoryBudget.onDeflaterAcquired();
+        return deflater;
     }
 
     public Inflater getInflater()
     {
         if (inflaterHolder == null)
+        {
             inflaterHolder = getInflaterPool().acquire();
+            if (memoryBudget != null)
+                memoryBudget.onInflaterAcquired();
+        }
         return inflaterHolder.get();
     }
 
@@ -207,16 +316,64 @@ public class PerMessageDeflateExtension extends AbstractExtension implements Dem
         {
             inflaterHolder.release();
             inflaterHolder = null;
+            if (memoryBudget != null)
+                memoryBudget.onInflaterReleased();
         }
     }
 
     public void releaseDeflater()
     {
-        if (deflaterHolder != null)
+        DeflaterPool.Entry holder;
+        try (AutoLock ignored = deflaterLock.lock())
         {
-            deflaterHolder.release();
+            if (deflating)
+                return;
+            holder = deflaterHolder;
             deflaterHolder = null;
         }
+        if (holder != null)
+        {
+            holder.release();
+            if (memoryBudget != null)
+            {
+                memoryBudget.removeIdle(idleReleaser);
+                memoryBudget.onDeflaterReleased();
+            }
+        }
+    }
+
+    /**
+     * Called at the end of every outgoing message.
+     */
+    private void deflated()
+    {
+        boolean idle;
+        try (AutoLock ignored = deflaterLock.lock())
+        {
+            deflating = false;
+            idle = deflaterHolder != null;
+        }
+
+        if (!outgoingContextTakeover || (memoryBudget != null && memoryBudget.isExceeded()))
+        {
+            LOG.debug("Outgoing Context Reset");
+            releaseDeflater();
+        }
+        else if (idle && memoryBudget != null)
+        {
+            memoryBudget.addIdle(idleReleaser);
+        }
+    }
+
+    /**
+     * Called by the {@link DeflateMemoryBudget} to release the Deflater of this idle session,
+     * the next message is compressed in a new context, which the peer is always able to decompress.
+     */
+    private void releaseIdleDeflater()
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Releasing idle Deflater {}", this);
+        releaseDeflater();
     }
 
     @Override
@@ -231,7 +388,7 @@ public class PerMessageDeflateExtension extends AbstractExtension implements Dem
     @Override
     protected void nextIncomingFrame(Frame frame, Callback callback)
     {
-        if (frame.isFin() && !incomingContextTakeover)
+        if (frame.isFin() && !frame.isControlFrame() && !incomingContextTakeover)
         {
             LOG.debug("Incoming Context Reset");
             releaseInflater();
@@ -242,11 +399,8 @@ public class PerMessageDeflateExtension extends AbstractExtension implements Dem
     @Override
     protected void nextOutgoingFrame(Frame frame, Callback callback, boolean batch)
     {
-        if (frame.isFin() && !outgoingContextTakeover)
-        {
-            LOG.debug("Outgoing Context Reset");
-            releaseDeflater();
-        }
+        if (frame.isFin() && !frame.isControlFrame() && outgoingCompressed)
+            deflated();
         super.nextOutgoingFrame(frame, callback, batch);
     }
 
@@ -271,7 +425,8 @@ public class PerMessageDeflateExtension extends AbstractExtension implements Dem
         @Override
         protected boolean onFrame(Frame frame, Callback callback, boolean batch)
         {
-            if (frame.isControlFrame())
+            // Encoded frames have already been compressed, if at all, by their producer.
+            if (frame.isControlFrame() || frame instanceof Frame.Encoded || !outgoingCompressed)
             {
                 nextOutgoingFrame(frame, callback, batch);
                 return true;
@@ -0,0 +1,320 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.websocket.core.util;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Deflater;
+
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.RetainableByteBuffer;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.ExceptionUtil;
+import org.eclipse.jetty.util.compression.DeflaterPool;
+import org.eclipse.jetty.websocket.core.Behavior;
+import org.eclipse.jetty.websocket.core.CoreSession;
+import org.eclipse.jetty.websocket.core.ExtensionConfig;
+import org.eclipse.jetty.websocket.core.Frame;
+import org.eclipse.jetty.websocket.core.OpCode;
+import org.eclipse.jetty.websocket.core.WebSocketComponents;
+import org.eclipse.jetty.websocket.core.internal.Generator;
+import org.eclipse.jetty.websocket.core.internal.PerMessageDeflateExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Sends the same message to many {@link CoreSession}s, generating it only once.</p>
+ * <p>The frame is generated once per distinct outgoing encoding, plain or compressed
+ * for sessions that negotiated {@code permessage-deflate} with {@code server_no_context_takeover},
+ * into a retained buffer that the connection of every matching session writes as-is,
+ * see {@link Frame.Encoded}.</p>
+ * <p>Sessions for which the encoding depends on the session state, such as client sessions that
+ * mask frames, sessions that compress with context takeover or that negotiated other extensions,
+ * are sent the frame via {@link CoreSession#sendFrame(Frame, Callback, boolean)}.</p>
+ */
+public class FrameBroadcaster
+{
+    private static final Logger LOG = LoggerFactory.getLogger(FrameBroadcaster.class);
+    private static final byte[] TAIL_BYTES = new byte[]{0x00, 0x00, (byte)0xFF, (byte)0xFF};
+
+    private final Generator generator = new Generator();
+    private final ByteBufferPool bufferPool;
+    private final DeflaterPool deflaterPool;
+    private boolean useDirectByteBuffers = true;
+
+    public FrameBroadcaster(WebSocketComponents components)
+    {
+        this(components.getByteBufferPool(), components.getDeflaterPool());
+    }
+
+    public FrameBroadcaster(ByteBufferPool bufferPool, DeflaterPool deflaterPool)
+    {
+        this.bufferPool = bufferPool;
+        this.deflaterPool = deflaterPool;
+    }
+
+    public boolean isUseDirectByteBuffers()
+    {
+        return useDirectByteBuffers;
+    }
+
+    public void setUseDirectByteBuffers(boolean useDirectByteBuffers)
+    {
+        this.useDirectByteBuffers = useDirectByteBuffers;
+    }
+
+    /**
+     * <p>Sends the given frame to all the given sessions.</p>
+     * <p>The callback is completed once the frame has been sent to all the sessions;
+     * it is failed with the first failure if the frame could not be sent to some session.</p>
+     *
+     * @param frame a whole, unmasked, {@link OpCode#TEXT} or {@link OpCode#BINARY} frame
+     * @param sessions the sessions to send the frame to
+     * @param callback the callback to complete when the frame has been sent to all the sessions
+     */
+    public void broadcast(Frame frame, Collection<? extends CoreSession> sessions, Callback callback)
+    {
+        byte opCode = frame.getOpCode();
+        if ((opCode != OpCode.TEXT && opCode != OpCode.BINARY) || !frame.isFin() || frame.isMasked() || frame.hasRsv())
+            throw new IllegalArgumentException("Cannot broadcast " + frame);
+
+        if (sessions.isEmpty())
+        {
+            callback.succeeded();
+            return;
+        }
+
+        BroadcastCallback broadcastCallback = new BroadcastCallback(sessions.size(), callback);
+        SharedFrame plain = null;
+        SharedFrame deflated = null;
+        try
+        {
+            for (CoreSession session : sessions)
+            {
+                SharedFrame shared = switch (getEncoding(session))
+                {
+                    case PLAIN ->
+                    {
+                        if (plain == null)
+                            plain = new SharedFrame(generate(frame));
+                        yield plain;
+                    }
+                    case DEFLATE ->
+                    {
+                        if (deflated == null)
+                        {
+                            RetainableByteBuffer buffer = deflate(frame);
+                            if (buffer != null)
+                            {
+                                deflated = new SharedFrame(buffer);
+                            }
+                            else
+                            {
+                                // Not worth compressing, permessage-deflate
+                                // allows the message to be sent uncompressed.
+                                if (plain == null)
+                                    plain = new SharedFrame(generate(frame));
+                                deflated = plain.retain();
+                            }
+                        }
+                        yield deflated;
+                    }
+                    case SESSION -> null;
+                };
+
+                long maxFrameSize = session.getMaxFrameSize();
+                if (shared == null || (maxFrameSize > 0 && shared.frame.getPayloadLength() > maxFrameSize))
+                {
+                    Frame copy = new Frame(frame.getOpCode(), true, frame.hasPayload() ? frame.getPayload().slice() : null);
+                    session.sendFrame(copy, broadcastCallback, false);
+                }
+                else
+                {
+                    shared.retain();
+                    session.sendFrame(shared.frame, Callback.from(broadcastCallback, shared.buffer::release), false);
+                }
+            }
+        }
+        finally
+        {
+            if (plain != null)
+                plain.buffer.release();
+            if (deflated != null)
+                deflated.buffer.release();
+        }
+    }
+
+    private Encoding getEncoding(CoreSession session)
+    {
+        // Client frames are masked with a different key for each frame.
+        if (session.getBehavior() != Behavior.SERVER)
+            return Encoding.SESSION;
+
+        List<ExtensionConfig> extensions = session.getNegotiatedExtensions();
+        if (extensions == null || extensions.isEmpty())
+            return Encoding.PLAIN;
+
+        // Without context takeover every message is compressed with a reset Deflater,
+        // so the compressed bytes do not depend on the messages previously sent.
+        if (extensions.size() == 1)
+        {
+            ExtensionConfig config = extensions.get(0);
+            if ("permessage-deflate".equals(config.getName()))
+            {
+                // Messages are sent uncompressed if the window is limited.
+                if (config.getParameter("server_max_window_bits", 15) < 15)
+                    return Encoding.PLAIN;
+                if (config.getParameterKeys().contains("server_no_context_takeover"))
+                    return Encoding.DEFLATE;
+            }
+        }
+
+        return Encoding.SESSION;
+    }
+
+    private RetainableByteBuffer generate(Frame frame)
+    {
+        RetainableByteBuffer buffer = bufferPool.acquire(Generator.MAX_HEADER_LENGTH + frame.getPayloadLength(), isUseDirectByteBuffers());
+        generator.generateWholeFrame(frame, buffer.getByteBuffer());
+        return buffer;
+    }
+
+    private RetainableByteBuffer deflate(Frame frame)
+    {
+        ByteBuffer payload = frame.hasPayload() ? frame.getPayload().slice() : BufferUtil.EMPTY_BUFFER;
+        int length = payload.remaining();
+        // The raw deflate bound, plus the empty stored block of SYNC_FLUSH.
+        int bound = length + (length >> 12) + (length >> 14) + (length >> 25) + 13 + TAIL_BYTES.length + 1;
+        RetainableByteBuffer buffer = bufferPool.acquire(bound, false);
+        try (DeflaterPool.Entry entry = deflaterPool.acquire())
+        {
+            ByteBuffer output = buffer.getByteBuffer();
+            BufferUtil.clearToFill(output);
+            Deflater deflater = entry.get();
+            deflater.setInput(payload);
+            deflater.deflate(output, Deflater.SYNC_FLUSH);
+            boolean complete = deflater.needsInput() && output.hasRemaining();
+            BufferUtil.flipToFlush(output, 0);
+            if (!complete || output.remaining() >= length)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Not compressing {}: {} -> {}", frame, length, complete ? output.remaining() : "?");
+                buffer.release();
+                return null;
+            }
+
+            if (PerMessageDeflateExtension.endsWithTail(output))
+                output.limit(output.limit() - TAIL_BYTES.length);
+            if (!output.hasRemaining())
+            {
+                // RFC 7692, 7.2.3.6. Generating an Empty Fragment Manually.
+                BufferUtil.clearToFill(output);
+                output.put((byte)0x00);
+                BufferUtil.flipToFlush(output, 0);
+            }
+
+            Frame compressed = new Frame(frame.getOpCode(), true, output);
+            compressed.setRsv1(true);
+            RetainableByteBuffer encoded = generate(compressed);
+            if (LOG.isDebugEnabled())
+                LOG.debug("Compressed {}: {} -> {}", frame, length, compressed.getPayloadLength());
+            return encoded;
+        }
+        finally
+        {
+            buffer.release();
+        }
+    }
+
+    private enum Encoding
+    {
+        PLAIN, DEFLATE, SESSION
+    }
+
+    private static class SharedFrame
+    {
+        private final RetainableByteBuffer buffer;
+        private final Frame.Encoded frame;
+
+        private SharedFrame(RetainableByteBuffer buffer)
+        {
+            this.buffer = buffer;
+            // The payload of the encoded frame is the one that follows the
+            // generated header, as it may have been compressed.
+            ByteBuffer encoded = buffer.getByteBuffer();
+            ByteBuffer payload = encoded.slice();
+            payload.position(headerLength(payload));
+            Frame generated = new Frame(encoded.get(encoded.position()), null, payload.slice());
+            this.frame = new Frame.Encoded(generated, encoded);
+        }
+
+        private SharedFrame retain()
+        {
+            buffer.retain();
+            return this;
+        }
+
+        private static int headerLength(ByteBuffer encoded)
+        {
+            int length = encoded.get(encoded.position() + 1) & 0x7F;
+            if (length == 0x7F)
+                return 10;
+            if (length == 0x7E)
+                return 4;
+            return 2;
+        }
+    }
+
+    private static class BroadcastCallback implements Callback
+    {
+        private final AtomicInteger count;
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final Callback callback;
+
+        private BroadcastCallback(int count, Callback callback)
+        {
+            this.count = new AtomicInteger(count);
+            this.callback = callback;
+        }
+
+        @Override
+        public void succeeded()
+        {
+            completed();
+        }
+
+        @Override
+        public void failed(Throwable x)
+        {
+            if (!failure.compareAndSet(null, x))
+                ExceptionUtil.addSuppressedIfNotAssociated(failure.get(), x);
+            completed();
+        }
+
+        private void completed()
+        {
+            if (count.decrementAndGet() != 0)
+                return;
+            Throwable x = failure.get();
+            if (x == null)
+                callback.succeeded();
+            else
+                callback.failed(x);
+        }
+    }
+}
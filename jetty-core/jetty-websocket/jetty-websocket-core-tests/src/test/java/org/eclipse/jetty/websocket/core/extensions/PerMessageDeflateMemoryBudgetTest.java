@@ -0,0 +1,227 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.websocket.core.extensions;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.FutureCallback;
+import org.eclipse.jetty.websocket.core.CoreSession;
+import org.eclipse.jetty.websocket.core.DeflateMemoryBudget;
+import org.eclipse.jetty.websocket.core.ExtensionConfig;
+import org.eclipse.jetty.websocket.core.Frame;
+import org.eclipse.jetty.websocket.core.OpCode;
+import org.eclipse.jetty.websocket.core.TestFrameHandler;
+import org.eclipse.jetty.websocket.core.WebSocketComponents;
+import org.eclipse.jetty.websocket.core.WebSocketCoreSession;
+import org.eclipse.jetty.websocket.core.client.CoreClientUpgradeRequest;
+import org.eclipse.jetty.websocket.core.client.WebSocketCoreClient;
+import org.eclipse.jetty.websocket.core.server.WebSocketUpgradeHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PerMessageDeflateMemoryBudgetTest
+{
+    private static final String TEXT = "All work and no play makes Jack a dull boy. ".repeat(64);
+
+    private final BlockingQueue<TestFrameHandler> serverHandlers = new BlockingArrayQueue<>();
+    private Server server;
+    private ServerConnector connector;
+    private WebSocketComponents serverComponents;
+    private WebSocketCoreClient client;
+
+    @BeforeEach
+    public void before() throws Exception
+    {
+        server = new Server();
+        connector = new ServerConnector(server);
+        server.addConnector(connector);
+
+        serverComponents = new WebSocketComponents();
+        WebSocketUpgradeHandler upgradeHandler = new WebSocketUpgradeHandler(serverComponents);
+        upgradeHandler.addMapping("/", (req, resp, cb) ->
+        {
+            TestFrameHandler handler = new TestFrameHandler();
+            serverHandlers.offer(handler);
+            return handler;
+        });
+        server.setHandler(upgradeHandler);
+        server.start();
+
+        client = new WebSocketCoreClient();
+        client.start();
+    }
+
+    @AfterEach
+    public void after() throws Exception
+    {
+        client.stop();
+        server.stop();
+    }
+
+    private TestFrameHandler connect(String extension) throws Exception
+    {
+        TestFrameHandler clientHandler = new TestFrameHandler();
+        URI uri = URI.create("ws://localhost:" + connector.getLocalPort());
+        CoreClientUpgradeRequest upgradeRequest = CoreClientUpgradeRequest.from(client, uri, clientHandler);
+        upgradeRequest.addExtensions(extension);
+        client.connect(upgradeRequest).get(5, TimeUnit.SECONDS);
+        return clientHandler;
+    }
+
+    private CoreSession serverSession() throws Exception
+    {
+        TestFrameHandler serverHandler = serverHandlers.poll(5, TimeUnit.SECONDS);
+        assertThat(serverHandler, notNullValue());
+        assertTrue(serverHandler.open.await(5, TimeUnit.SECONDS));
+        return serverHandler.getCoreSession();
+    }
+
+    private void sendAndReceive(CoreSession serverSession, TestFrameHandler clientHandler) throws Exception
+    {
+        FutureCallback callback = new FutureCallback();
+        serverSession.sendFrame(new Frame(OpCode.TEXT, TEXT), callback, false);
+        callback.get(5, TimeUnit.SECONDS);
+        Frame frame = clientHandler.receivedFrames.poll(5, TimeUnit.SECONDS);
+        assertThat(frame, notNullValue());
+        assertThat(frame.getPayloadAsUTF8(), equalTo(TEXT));
+    }
+
+    private static long bytesOut(CoreSession session)
+    {
+        return ((WebSocketCoreSession)session).getConnection().getBytesOut();
+    }
+
+    @Test
+    public void testServerMaxWindowBitsSendsUncompressed() throws Exception
+    {
+        TestFrameHandler clientHandler = connect("permessage-deflate; server_max_window_bits=10");
+        CoreSession serverSession = serverSession();
+
+        ExtensionConfig negotiated = clientHandler.getCoreSession().getNegotiatedExtensions().get(0);
+        assertThat(negotiated.getParameter("server_max_window_bits", -1), is(10));
+
+        sendAndReceive(serverSession, clientHandler);
+
+        // The JDK cannot compress with a smaller window, so the message was sent uncompressed.
+        assertThat(bytesOut(serverSession), greaterThan((long)TEXT.length()));
+        assertThat(serverComponents.getDeflateMemoryBudget().getDeflaterCount(), is(0L));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"server_max_window_bits", "server_max_window_bits=7", "server_max_window_bits=foo", "client_max_window_bits=16"})
+    public void testInvalidWindowBitsDeclined(String parameter) throws Exception
+    {
+        // The offer is declined, but the upgrade still succeeds without the extension.
+        TestFrameHandler clientHandler = connect("permessage-deflate; " + parameter);
+        CoreSession serverSession = serverSession();
+
+        assertThat(serverSession.getNegotiatedExtensions(), empty());
+        assertThat(clientHandler.getCoreSession().getNegotiatedExtensions(), empty());
+        sendAndReceive(serverSession, clientHandler);
+    }
+
+    @Test
+    public void testClientMaxWindowBitsIsNegotiated() throws Exception
+    {
+        TestFrameHandler clientHandler = connect("permessage-deflate; client_max_window_bits=12");
+        CoreSession serverSession = serverSession();
+
+        ExtensionConfig negotiated = clientHandler.getCoreSession().getNegotiatedExtensions().get(0);
+        assertThat(negotiated.getParameter("client_max_window_bits", -1), is(12));
+
+        // The server still compresses.
+        sendAndReceive(serverSession, clientHandler);
+        assertThat(bytesOut(serverSession), lessThan((long)TEXT.length()));
+    }
+
+    @Test
+    public void testBudgetExceededNegotiatesNoContextTakeover() throws Exception
+    {
+        DeflateMemoryBudget budget = serverComponents.getDeflateMemoryBudget();
+        budget.setMaxMemory(0);
+
+        TestFrameHandler clientHandler = connect("permessage-deflate");
+        CoreSession serverSession = serverSession();
+
+        ExtensionConfig negotiated = serverSession.getNegotiatedExtensions().get(0);
+        assertTrue(negotiated.getParameterKeys().contains("server_no_context_takeover"));
+        assertTrue(negotiated.getParameterKeys().contains("client_no_context_takeover"));
+
+        for (int i = 0; i < 3; ++i)
+        {
+            sendAndReceive(serverSession, clientHandler);
+            sendAndReceive(clientHandler.getCoreSession(), serverHandlerOf(serverSession));
+        }
+
+        // No zlib state is held between messages.
+        assertThat(budget.getDeflaterCount(), is(0L));
+        assertThat(budget.getInflaterCount(), is(0L));
+    }
+
+    private TestFrameHandler serverHandlerOf(CoreSession serverSession)
+    {
+        return (TestFrameHandler)((WebSocketCoreSession)serverSession).getHandler();
+    }
+
+    @Test
+    public void testIdleDeflaterIsReleased() throws Exception
+    {
+        DeflateMemoryBudget budget = serverComponents.getDeflateMemoryBudget();
+
+        TestFrameHandler clientHandler1 = connect("permessage-deflate");
+        CoreSession serverSession1 = serverSession();
+        TestFrameHandler clientHandler2 = connect("permessage-deflate");
+        CoreSession serverSession2 = serverSession();
+
+        // Budget enough for only one Deflater, after the sessions negotiated context takeover.
+        budget.setMaxMemory(2 * DeflateMemoryBudget.DEFLATER_MEMORY);
+        List<ExtensionConfig> negotiated = serverSession1.getNegotiatedExtensions();
+        assertThat(negotiated.get(0).getParameterKeys().contains("server_no_context_takeover"), is(false));
+
+        sendAndReceive(serverSession1, clientHandler1);
+        assertThat(budget.getDeflaterCount(), is(1L));
+        assertThat(budget.getIdleCount(), is(1));
+
+        // The idle Deflater of the first session is released.
+        sendAndReceive(serverSession2, clientHandler2);
+        assertThat(budget.getDeflaterCount(), is(1L));
+        assertThat(budget.getIdleCount(), is(1));
+
+        // The first session compresses in a new context, which its peer can decompress.
+        for (int i = 0; i < 3; ++i)
+        {
+            sendAndReceive(serverSession1, clientHandler1);
+            sendAndReceive(serverSession2, clientHandler2);
+        }
+        assertThat(budget.getDeflaterCount(), is(1L));
+    }
+}
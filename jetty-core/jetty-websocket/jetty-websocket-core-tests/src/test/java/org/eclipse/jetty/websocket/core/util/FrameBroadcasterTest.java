@@ -0,0 +1,199 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.websocket.core.util;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import org.eclipse.jetty.io.ArrayByteBufferPool;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.FutureCallback;
+import org.eclipse.jetty.util.compression.DeflaterPool;
+import org.eclipse.jetty.websocket.core.CloseStatus;
+import org.eclipse.jetty.websocket.core.CoreSession;
+import org.eclipse.jetty.websocket.core.Frame;
+import org.eclipse.jetty.websocket.core.OpCode;
+import org.eclipse.jetty.websocket.core.TestFrameHandler;
+import org.eclipse.jetty.websocket.core.WebSocketCoreSession;
+import org.eclipse.jetty.websocket.core.client.CoreClientUpgradeRequest;
+import org.eclipse.jetty.websocket.core.client.WebSocketCoreClient;
+import org.eclipse.jetty.websocket.core.server.WebSocketUpgradeHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FrameBroadcasterTest
+{
+    private final BlockingQueue<TestFrameHandler> serverHandlers = new BlockingArrayQueue<>();
+    private final ArrayByteBufferPool.Tracking bufferPool = new ArrayByteBufferPool.Tracking();
+    private final DeflaterPool deflaterPool = new DeflaterPool(8, Deflater.DEFAULT_COMPRESSION, true);
+    private Server server;
+    private ServerConnector connector;
+    private WebSocketCoreClient client;
+
+    @BeforeEach
+    public void before() throws Exception
+    {
+        server = new Server();
+        connector = new ServerConnector(server);
+        server.addConnector(connector);
+
+        WebSocketUpgradeHandler upgradeHandler = new WebSocketUpgradeHandler();
+        upgradeHandler.addMapping("/", (req, resp, cb) ->
+        {
+            TestFrameHandler handler = new TestFrameHandler();
+            serverHandlers.offer(handler);
+            return handler;
+        });
+        server.setHandler(upgradeHandler);
+        server.start();
+
+        client = new WebSocketCoreClient();
+        client.start();
+        deflaterPool.start();
+    }
+
+    @AfterEach
+    public void after() throws Exception
+    {
+        deflaterPool.stop();
+        client.stop();
+        server.stop();
+    }
+
+    private TestFrameHandler connect(String extensions) throws Exception
+    {
+        TestFrameHandler clientHandler = new TestFrameHandler();
+        URI uri = URI.create("ws://localhost:" + connector.getLocalPort());
+        CoreClientUpgradeRequest upgradeRequest = CoreClientUpgradeRequest.from(client, uri, clientHandler);
+        if (extensions != null)
+            upgradeRequest.addExtensions(extensions);
+        client.connect(upgradeRequest).get(5, TimeUnit.SECONDS);
+        // Receive whole frames regardless of how they are split on the network.
+        clientHandler.getCoreSession().setAutoFragment(false);
+        return clientHandler;
+    }
+
+    private CoreSession serverSession() throws Exception
+    {
+        TestFrameHandler serverHandler = serverHandlers.poll(5, TimeUnit.SECONDS);
+        assertThat(serverHandler, notNullValue());
+        assertTrue(serverHandler.open.await(5, TimeUnit.SECONDS));
+        return serverHandler.getCoreSession();
+    }
+
+    private void assertNoLeaks() throws Exception
+    {
+        // The shared buffers are released after the callbacks are completed.
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!bufferPool.getLeaks().isEmpty() && System.nanoTime() < end)
+        {
+            Thread.sleep(10);
+        }
+        assertThat(bufferPool.dumpLeaks(), bufferPool.getLeaks().size(), is(0));
+    }
+
+    @Test
+    public void testBroadcastToSessionsWithDifferentExtensions() throws Exception
+    {
+        TestFrameHandler plainClient = connect(null);
+        CoreSession plainSession = serverSession();
+        TestFrameHandler deflateClient = connect("permessage-deflate; server_no_context_takeover");
+        CoreSession deflateSession = serverSession();
+        TestFrameHandler contextTakeoverClient = connect("permessage-deflate");
+        CoreSession contextTakeoverSession = serverSession();
+        List<CoreSession> sessions = List.of(plainSession, deflateSession, contextTakeoverSession);
+
+        FrameBroadcaster broadcaster = new FrameBroadcaster(bufferPool, deflaterPool);
+        String text = "All work and no play makes Jack a dull boy. ".repeat(64);
+        for (int i = 0; i < 2; ++i)
+        {
+            FutureCallback callback = new FutureCallback();
+            broadcaster.broadcast(new Frame(OpCode.TEXT, text), sessions, callback);
+            callback.get(5, TimeUnit.SECONDS);
+        }
+
+        for (TestFrameHandler clientHandler : List.of(plainClient, deflateClient, contextTakeoverClient))
+        {
+            for (int i = 0; i < 2; ++i)
+            {
+                Frame frame = clientHandler.receivedFrames.poll(5, TimeUnit.SECONDS);
+                assertThat(frame, notNullValue());
+                assertThat(frame.getOpCode(), is(OpCode.TEXT));
+                assertThat(frame.getPayloadAsUTF8(), equalTo(text));
+            }
+        }
+
+        // The shared frame was compressed for the permessage-deflate session.
+        long plainBytes = ((WebSocketCoreSession)plainSession).getConnection().getBytesOut();
+        long deflateBytes = ((WebSocketCoreSession)deflateSession).getConnection().getBytesOut();
+        assertThat(deflateBytes, lessThan(plainBytes / 4));
+
+        assertNoLeaks();
+    }
+
+    @Test
+    public void testBroadcastCompletesWhenSomeSessionFails() throws Exception
+    {
+        List<TestFrameHandler> clientHandlers = new ArrayList<>();
+        List<CoreSession> sessions = new ArrayList<>();
+        for (int i = 0; i < 3; ++i)
+        {
+            clientHandlers.add(connect(null));
+            sessions.add(serverSession());
+        }
+
+        // Close one of the sessions.
+        FutureCallback closed = new FutureCallback();
+        sessions.get(1).close(CloseStatus.NORMAL, null, closed);
+        closed.get(5, TimeUnit.SECONDS);
+
+        FrameBroadcaster broadcaster = new FrameBroadcaster(bufferPool, deflaterPool);
+        FutureCallback callback = new FutureCallback();
+        broadcaster.broadcast(new Frame(OpCode.TEXT, "hello"), sessions, callback);
+        assertThrows(Exception.class, () -> callback.get(5, TimeUnit.SECONDS));
+
+        for (int i : new int[]{0, 2})
+        {
+            Frame frame = clientHandlers.get(i).receivedFrames.poll(5, TimeUnit.SECONDS);
+            assertThat(frame, notNullValue());
+            assertThat(frame.getPayloadAsUTF8(), equalTo("hello"));
+        }
+
+        assertNoLeaks();
+    }
+
+    @Test
+    public void testBroadcastPartialFrameNotAllowed()
+    {
+        FrameBroadcaster broadcaster = new FrameBroadcaster(bufferPool, deflaterPool);
+        Frame frame = new Frame(OpCode.TEXT, false, "partial");
+        assertThrows(IllegalArgumentException.class, () -> broadcaster.broadcast(frame, List.of(), Callback.NOOP));
+    }
+}
@@ -16,6 +16,8 @@ package org.eclipse.jetty.websocket.common;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
@@ -28,6 +30,9 @@ import org.eclipse.jetty.websocket.api.Callback;
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.StatusCode;
 import org.eclipse.jetty.websocket.api.WebSocketSessionListener;
+import org.eclipse.jetty.websocket.core.CoreSession;
+import org.eclipse.jetty.websocket.core.Frame;
+import org.eclipse.jetty.websocket.core.util.FrameBroadcaster;
 
 public class SessionTracker extends AbstractLifeCycle implements WebSocketSessionListener, Graceful, Dumpable
 {
@@ -39,6 +44,25 @@ public class SessionTracker extends AbstractLifeCycle implements WebSocketSessio
         return Set.copyOf(sessions);
     }
 
+    /**
+     * <p>Sends the given frame to all the tracked sessions, encoding it only once
+     * for all the sessions that share the same outgoing encoding.</p>
+     *
+     * @param broadcaster the broadcaster to use
+     * @param frame a whole TEXT or BINARY frame
+     * @param callback the callback completed when the frame has been sent to all the sessions
+     * @see FrameBroadcaster#broadcast(Frame, Collection, org.eclipse.jetty.util.Callback)
+     */
+    public void broadcast(FrameBroadcaster broadcaster, Frame frame, Callback callback)
+    {
+        Callback cb = Objects.requireNonNullElse(callback, Callback.NOOP);
+        List<CoreSession> coreSessions = sessions.stream()
+            .filter(WebSocketSession.class::isInstance)
+            .map(session -> ((WebSocketSession)session).getCoreSession())
+            .toList();
+        broadcaster.broadcast(frame, coreSessions, org.eclipse.jetty.util.Callback.from(cb::succeed, cb::fail));
+    }
+
     @Override
     public void onWebSocketSessionOpened(Session session)
     {
@@ -13,6 +13,7 @@
 
 package org.eclipse.jetty.websocket.server;
 
+import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -35,12 +36,15 @@ import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.WebSocketContainer;
 import org.eclipse.jetty.websocket.api.WebSocketSessionListener;
 import org.eclipse.jetty.websocket.common.SessionTracker;
+import org.eclipse.jetty.websocket.core.Frame;
+import org.eclipse.jetty.websocket.core.OpCode;
 import org.eclipse.jetty.websocket.core.WebSocketComponents;
 import org.eclipse.jetty.websocket.core.exception.WebSocketException;
 import org.eclipse.jetty.websocket.core.server.FrameHandlerFactory;
 import org.eclipse.jetty.websocket.core.server.WebSocketMappings;
 import org.eclipse.jetty.websocket.core.server.WebSocketNegotiator;
 import org.eclipse.jetty.websocket.core.server.WebSocketServerComponents;
+import org.eclipse.jetty.websocket.core.util.FrameBroadcaster;
 import org.eclipse.jetty.websocket.server.internal.ServerFrameHandlerFactory;
 import org.eclipse.jetty.websocket.server.internal.ServerUpgradeRequestDelegate;
 import org.eclipse.jetty.websocket.server.internal.ServerUpgradeResponseDelegate;
@@ -121,6 +125,7 @@ public class ServerWebSocketContainer extends ContainerLifeCycle implements WebS
 
     private final List<WebSocketSessionListener> listeners = new ArrayList<>();
     private final SessionTracker sessionTracker = new SessionTracker();
+    private final FrameBroadcaster broadcaster;
     private final Configuration configuration = new Configuration();
     private final WebSocketMappings mappings;
     private final FrameHandlerFactory factory;
@@ -130,6 +135,7 @@ public class ServerWebSocketContainer extends ContainerLifeCycle implements WebS
     {
         this.mappings = mappings;
         this.factory = new ServerFrameHandlerFactory(this, mappings.getWebSocketComponents());
+        this.broadcaster = new FrameBroadcaster(mappings.getWebSocketComponents());
         addSessionListener(sessionTracker);
         installBean(sessionTracker);
     }
@@ -146,6 +152,32 @@ public class ServerWebSocketContainer extends ContainerLifeCycle implements WebS
         return sessionTracker.getSessions();
     }
 
+    /**
+     * <p>Sends the given text message to all the open sessions.</p>
+     * <p>The message is encoded, and compressed where the negotiated extensions allow it,
+     * once for all the sessions that share the same outgoing encoding.</p>
+     *
+     * @param text the text message to send
+     * @param callback the callback completed when the message has been sent to all the sessions
+     */
+    public void broadcastText(String text, org.eclipse.jetty.websocket.api.Callback callback)
+    {
+        sessionTracker.broadcast(broadcaster, new Frame(OpCode.TEXT, text), callback);
+    }
+
+    /**
+     * <p>Sends the given binary message to all the open sessions.</p>
+     * <p>The message is encoded, and compressed where the negotiated extensions allow it,
+     * once for all the sessions that share the same outgoing encoding.</p>
+     *
+     * @param buffer the binary message to send
+     * @param callback the callback completed when the message has been sent to all the sessions
+     */
+    public void broadcastBinary(ByteBuffer buffer, org.eclipse.jetty.websocket.api.Callback callback)
+    {
+        sessionTracker.broadcast(broadcaster, new Frame(OpCode.BINARY, buffer), callback);
+    }
+
     @Override
     public void addSessionListener(WebSocketSessionListener listener)
     {
@@ -13,7 +13,9 @@
 
 package org.eclipse.jetty.ee10.annotations;
 
+import java.io.File;
 import java.net.URI;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
@@ -74,6 +76,7 @@ public class AnnotationConfiguration extends AbstractConfiguration
     public static final String CONTAINER_INITIALIZER_STARTER = "org.eclipse.jetty.containerInitializerStarter";
     public static final String MULTI_THREADED = "org.eclipse.jetty.annotations.multiThreaded";
     public static final String MAX_SCAN_WAIT = "org.eclipse.jetty.annotations.maxWait";
+    public static final String INDEX_DIRECTORY = "org.eclipse.jetty.annotations.indexDirectory";
     protected static final String STATE = "org.eclipse.jetty.annotations.state";
 
     public static final int DEFAULT_MAX_SCAN_WAIT = 60; /* time in sec */
@@ -511,15 +514,19 @@ public class AnnotationConfiguration extends AbstractConfiguration
         if (target != null)
             javaPlatform = Integer.parseInt(target.toString());
         AnnotationParser parser = createAnnotationParser(javaPlatform);
+        Path indexDirectory = getIndexDirectory(context);
+        if (indexDirectory != null)
+            parser.setAnnotationIndex(new AnnotationIndex(indexDirectory));
         state._parserTasks = new ArrayList<>();
 
         if (LOG.isDebugEnabled())
-            LOG.debug("Annotation scanning commencing: webxml={}, metadatacomplete={}, configurationDiscovered={}, multiThreaded={}, maxScanWait={}",
+            LOG.debug("Annotation scanning commencing: webxml={}, metadatacomplete={}, configurationDiscovered={}, multiThreaded={}, maxScanWait={}, indexDirectory={}",
                 context.getServletContext().getEffectiveMajorVersion(),
                 context.getMetaData().isMetaDataComplete(),
                 context.isConfigurationDiscovered(),
                 isUseMultiThreading(context),
-                getMaxScanWait(context));
+                getMaxScanWait(context),
+                indexDirectory);
 
         //scan selected jars on the container classpath first
         parseContainerPath(context, parser);
@@ -634,6 +641,38 @@ public class AnnotationConfiguration extends AbstractConfiguration
         return Integer.getInteger(MAX_SCAN_WAIT, DEFAULT_MAX_SCAN_WAIT);
     }
 
+    /**
+     * Work out the directory in which to keep the index of scanned jars, if any.
+     *
+     * @param context the context of the index directory setting
+     * @return the index directory setting on the context, or server, or via a System property, or null if jars are not indexed.
+     * @see #INDEX_DIRECTORY
+     * @see AnnotationIndex
+     */
+    protected Path getIndexDirectory(WebAppContext context)
+    {
+        //try context attribute to get the index directory
+        Object o = context.getAttribute(INDEX_DIRECTORY);
+        if (o == null && context.getServer() != null)
+        {
+            //try server attribute to get the index directory
+            o = context.getServer().getAttribute(INDEX_DIRECTORY);
+        }
+        if (o == null)
+        {
+            //try system property to get the index directory
+            o = System.getProperty(INDEX_DIRECTORY);
+        }
+
+        if (o instanceof Path path)
+            return path;
+        if (o instanceof File file)
+            return file.toPath();
+        if (o instanceof String s && StringUtil.isNotBlank(s))
+            return Path.of(s);
+        return null;
+    }
+
     public void createServletContainerInitializerAnnotationHandlers(WebAppContext context, List<ServletContainerInitializer> scis)
         throws Exception
     {
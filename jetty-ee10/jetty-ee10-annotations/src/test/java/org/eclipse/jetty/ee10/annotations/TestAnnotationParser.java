@@ -29,6 +29,9 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
 
 import org.eclipse.jetty.toolchain.test.FS;
 import org.eclipse.jetty.toolchain.test.MavenTestingUtils;
@@ -44,6 +47,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.in;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
@@ -74,6 +78,38 @@ public class TestAnnotationParser
         }
     }
 
+    public static class RecordingHandler extends AnnotationParser.AbstractHandler
+    {
+        public final List<String> events = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void handle(AnnotationParser.ClassInfo info)
+        {
+            events.add(info.getContainingResource().getURI() + " " + info.getClassName() + " " + info.getVersion() + " " + info.getAccess() + " " +
+                info.getSignature() + " " + info.getSuperName() + " " + Arrays.toString(info.getInterfaces()));
+        }
+
+        @Override
+        public void handle(AnnotationParser.ClassInfo info, String annotation)
+        {
+            events.add(info.getClassName() + " @" + annotation);
+        }
+
+        @Override
+        public void handle(AnnotationParser.MethodInfo info, String annotation)
+        {
+            events.add(info.getClassInfo().getClassName() + "." + info.getMethodName() + info.getDesc() + " " + info.getAccess() + " " +
+                info.getSignature() + " " + Arrays.toString(info.getExceptions()) + " @" + annotation);
+        }
+
+        @Override
+        public void handle(AnnotationParser.FieldInfo info, String annotation)
+        {
+            events.add(info.getClassInfo().getClassName() + "." + info.getFieldName() + " " + info.getFieldType() + " " + info.getAccess() + " " +
+                info.getSignature() + " " + info.getValue() + " @" + annotation);
+        }
+    }
+
     public static class DuplicateClassScanHandler extends AnnotationParser.AbstractHandler
     {
         private Map<String, List<String>> _classMap = new ConcurrentHashMap<>();
@@ -319,6 +355,81 @@ public class TestAnnotationParser
         }
     }
 
+    @Test
+    public void testAnnotationIndex(WorkDir workDir) throws Exception
+    {
+        Path testdir = workDir.getEmptyPathDir();
+        Path indexDir = testdir.resolve("index");
+        Path jar = testdir.resolve("annotated.jar");
+        createJar(jar, ClassA.class, ClassA.Foo.class, ClassB.class, InterfaceD.class);
+
+        try (ResourceFactory.Closeable resourceFactory = ResourceFactory.closeable())
+        {
+            Resource jarResource = resourceFactory.newResource(jar);
+
+            // Parse without an index
+            RecordingHandler expected = new RecordingHandler();
+            AnnotationParser parser = new AnnotationParser();
+            parser.parse(Collections.singleton(expected), jarResource);
+            Map<String, URI> expectedClassNames = parser.getParsedClassNames();
+            assertThat(expected.events, hasItem(ClassA.class.getName() + " @" + Sample.class.getName()));
+
+            // Parsing with an index creates the index
+            RecordingHandler parsed = new RecordingHandler();
+            parser = new AnnotationParser();
+            parser.setAnnotationIndex(new AnnotationIndex(indexDir));
+            parser.parse(Collections.singleton(parsed), jarResource);
+            assertThat(parsed.events, containsInAnyOrder(expected.events.toArray()));
+            List<Path> indexFiles;
+            try (Stream<Path> files = Files.list(indexDir))
+            {
+                indexFiles = files.toList();
+            }
+            assertThat(indexFiles.size(), is(1));
+            long lastModified = Files.getLastModifiedTime(indexFiles.get(0)).toMillis();
+
+            // Parsing again replays the index
+            RecordingHandler replayed = new RecordingHandler();
+            parser = new AnnotationParser();
+            parser.setAnnotationIndex(new AnnotationIndex(indexDir));
+            parser.parse(Collections.singleton(replayed), jarResource);
+            assertThat(replayed.events, containsInAnyOrder(expected.events.toArray()));
+            assertThat(parser.getParsedClassNames().keySet(), is(expectedClassNames.keySet()));
+            assertThat(Files.getLastModifiedTime(indexFiles.get(0)).toMillis(), is(lastModified));
+        }
+
+        // A changed jar is parsed again and gets its own index
+        createJar(jar, ClassA.class, ClassA.Foo.class);
+        try (ResourceFactory.Closeable resourceFactory = ResourceFactory.closeable())
+        {
+            RecordingHandler changed = new RecordingHandler();
+            AnnotationParser parser = new AnnotationParser();
+            parser.setAnnotationIndex(new AnnotationIndex(indexDir));
+            parser.parse(Collections.singleton(changed), resourceFactory.newResource(jar));
+            assertThat(parser.getParsedClassNames().keySet(), containsInAnyOrder(ClassA.class.getName(), ClassA.Foo.class.getName()));
+            try (Stream<Path> files = Files.list(indexDir))
+            {
+                assertThat(files.count(), is(2L));
+            }
+        }
+    }
+
+    private void createJar(Path jar, Class<?>... classes) throws IOException, URISyntaxException
+    {
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar)))
+        {
+            for (Class<?> clazz : classes)
+            {
+                String classRef = TypeUtil.toClassReference(clazz);
+                URL url = this.getClass().getResource('/' + classRef);
+                assertThat("URL for: " + classRef, url, notNullValue());
+                out.putNextEntry(new JarEntry(classRef));
+                Files.copy(Paths.get(url.toURI()), out);
+                out.closeEntry();
+            }
+        }
+    }
+
     private void copyClass(Class<?> clazz, Path outputDir) throws IOException, URISyntaxException
     {
         String classRef = TypeUtil.toClassReference(clazz);
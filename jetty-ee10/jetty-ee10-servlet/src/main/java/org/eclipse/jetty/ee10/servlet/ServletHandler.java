@@ -116,6 +116,8 @@ public class ServletHandler extends Handler.Wrapper
 
     @SuppressWarnings("unchecked")
     protected final ConcurrentMap<String, FilterChain>[] _chainCache = new ConcurrentMap[FilterMapping.ALL];
+    @SuppressWarnings("unchecked")
+    private final ConcurrentMap<ServletHolder, FilterChains>[] _servletChainCache = new ConcurrentMap[FilterMapping.ALL];
     private boolean _decodeAmbiguousURIs = false;
 
     /**
@@ -212,6 +214,10 @@ public class ServletHandler extends Handler.Wrapper
                 _chainCache[FilterMapping.INCLUDE] = new ConcurrentHashMap<>();
                 _chainCache[FilterMapping.ERROR] = new ConcurrentHashMap<>();
                 _chainCache[FilterMapping.ASYNC] = new ConcurrentHashMap<>();
+                for (int i = 0; i < _servletChainCache.length; i++)
+                {
+                    _servletChainCache[i] = new ConcurrentHashMap<>();
+                }
             }
 
             if (_servletContextHandler == null)
@@ -519,6 +525,51 @@ public class ServletHandler extends Handler.Wrapper
                 return chain;
         }
 
+        // Paths that match the same filter path mappings share a chain, so that
+        // flushing the cache by path below does not rebuild the chains.
+        List<FilterMapping> filterPathMappings = pathInContext == null ? null : _filterPathMappings;
+        long filterPathMatches = _filterChainsCached ? getFilterPathMatches(filterPathMappings, pathInContext, dispatch) : -1;
+        FilterChain chain = null;
+        if (filterPathMatches >= 0)
+        {
+            FilterChains chains = _servletChainCache[dispatch].get(servletHolder);
+            chain = chains == null ? null : chains.get(filterPathMatches);
+        }
+
+        if (chain == null)
+        {
+            chain = newFilterChain(servletHolder, filterPathMappings, filterPathMatches, pathInContext, dispatch);
+            if (filterPathMatches >= 0)
+            {
+                FilterChain filterChain = chain;
+                _servletChainCache[dispatch].compute(servletHolder, (holder, chains) ->
+                {
+                    // Do we have too many cached chains for this servlet?
+                    if (chains != null && _maxFilterChainsCacheSize > 0 && chains.size() >= _maxFilterChainsCacheSize)
+                        chains = null;
+                    return chains == null ? new FilterChains(filterPathMatches, filterChain) : chains.with(filterPathMatches, filterChain);
+                });
+            }
+        }
+
+        if (_filterChainsCached)
+        {
+            final Map<String, FilterChain> cache = _chainCache[dispatch];
+            // Do we have too many cached chains?
+            if (_maxFilterChainsCacheSize > 0 && cache.size() >= _maxFilterChainsCacheSize)
+            {
+                // flush the cache
+                LOG.debug("{} flushed filter chain cache for {}", this, dispatcherType);
+                cache.clear();
+            }
+            LOG.debug("{} cached filter chain for {}: {}", this, dispatcherType, chain);
+            cache.put(key, chain);
+        }
+        return chain;
+    }
+
+    private FilterChain newFilterChain(ServletHolder servletHolder, List<FilterMapping> filterPathMappings, long filterPathMatches, String pathInContext, int dispatch)
+    {
         // Build the filter chain from the inside out.
         // ie first wrap the servlet with the last filter to be applied.
         // The mappings lists have been reversed to make this simple and fast.
@@ -541,31 +592,40 @@ public class ServletHandler extends Handler.Wrapper
             }
         }
 
-        if (pathInContext != null && _filterPathMappings != null)
+        if (filterPathMappings != null)
         {
-            for (FilterMapping mapping : _filterPathMappings)
+            for (int i = 0; i < filterPathMappings.size(); i++)
             {
-                if (mapping.appliesTo(pathInContext, dispatch))
+                FilterMapping mapping = filterPathMappings.get(i);
+                boolean applies = filterPathMatches >= 0 ? (filterPathMatches & (1L << i)) != 0 : mapping.appliesTo(pathInContext, dispatch);
+                if (applies)
                     chain = newFilterChain(mapping.getFilterHolder(), chain == null ? new ChainEnd(servletHolder) : chain);
             }
         }
 
-        if (_filterChainsCached)
+        return chain == null ? new ChainEnd(servletHolder) : chain;
+    }
+
+    /**
+     * Get the set of filter path mappings that apply to a path, as a bit mask of their indexes.
+     * @param filterPathMappings the filter path mappings, or null if there are none
+     * @param pathInContext the path to match
+     * @param dispatch the dispatch type
+     * @return the bit mask of the matching mappings, or -1 if there are too many mappings to fit in a mask
+     */
+    private static long getFilterPathMatches(List<FilterMapping> filterPathMappings, String pathInContext, int dispatch)
+    {
+        if (filterPathMappings == null)
+            return 0;
+        if (filterPathMappings.size() >= Long.SIZE)
+            return -1;
+        long matches = 0;
+        for (int i = 0; i < filterPathMappings.size(); i++)
         {
-            final Map<String, FilterChain> cache = _chainCache[dispatch];
-            // Do we have too many cached chains?
-            if (_maxFilterChainsCacheSize > 0 && cache.size() >= _maxFilterChainsCacheSize)
-            {
-                // flush the cache
-                LOG.debug("{} flushed filter chain cache for {}", this, dispatcherType);
-                cache.clear();
-            }
-            chain = chain == null ? new ChainEnd(servletHolder) : chain;
-            // flush the cache
-            LOG.debug("{} cached filter chain for {}: {}", this, dispatcherType, chain);
-            cache.put(key, chain);
+            if (filterPathMappings.get(i).appliesTo(pathInContext, dispatch))
+                matches |= 1L << i;
         }
-        return chain;
+        return matches;
     }
 
     /**
@@ -589,6 +649,11 @@ public class ServletHandler extends Handler.Wrapper
             _chainCache[FilterMapping.ERROR].clear();
             _chainCache[FilterMapping.ASYNC].clear();
         }
+        for (ConcurrentMap<ServletHolder, FilterChains> cache : _servletChainCache)
+        {
+            if (cache != null)
+                cache.clear();
+        }
     }
 
     /**
@@ -1338,6 +1403,8 @@ public class ServletHandler extends Handler.Wrapper
             {
                 if (_chainCache[i] != null)
                     _chainCache[i].clear();
+                if (_servletChainCache[i] != null)
+                    _servletChainCache[i].clear();
             }
 
             if (LOG.isDebugEnabled())
@@ -1446,6 +1513,9 @@ public class ServletHandler extends Handler.Wrapper
      * Set the maximum filter chain cache size.
      * Filter chains are cached if {@link #isFilterChainsCached()} is true. If the max cache size
      * is greater than zero, then the cache is flushed whenever it grows to be this size.
+     * The chains themselves are shared by the paths that match the same servlet and filter mappings,
+     * so they are not rebuilt after a flush; the number of distinct chains kept for a servlet is
+     * bounded by the same size.
      *
      * @param maxFilterChainsCacheSize the maximum number of entries in a filter chain cache.
      */
@@ -1593,6 +1663,53 @@ public class ServletHandler extends Handler.Wrapper
         }
     }
 
+    /**
+     * The cached filter chains of a servlet, one for each set of matching filter path mappings.
+     * Instances are immutable so that lookups need no locking.
+     */
+    static class FilterChains
+    {
+        private final long[] _filterPathMatches;
+        private final FilterChain[] _chains;
+
+        FilterChains(long filterPathMatches, FilterChain chain)
+        {
+            this(new long[]{filterPathMatches}, new FilterChain[]{chain});
+        }
+
+        private FilterChains(long[] filterPathMatches, FilterChain[] chains)
+        {
+            _filterPathMatches = filterPathMatches;
+            _chains = chains;
+        }
+
+        FilterChain get(long filterPathMatches)
+        {
+            for (int i = 0; i < _filterPathMatches.length; i++)
+            {
+                if (_filterPathMatches[i] == filterPathMatches)
+                    return _chains[i];
+            }
+            return null;
+        }
+
+        FilterChains with(long filterPathMatches, FilterChain chain)
+        {
+            if (get(filterPathMatches) != null)
+                return this;
+            long[] matches = Arrays.copyOf(_filterPathMatches, _filterPathMatches.length + 1);
+            matches[_filterPathMatches.length] = filterPathMatches;
+            FilterChain[] chains = Arrays.copyOf(_chains, _chains.length + 1);
+            chains[_chains.length] = chain;
+            return new FilterChains(matches, chains);
+        }
+
+        int size()
+        {
+            return _chains.length;
+        }
+    }
+
     static class ChainEnd implements FilterChain
     {
         private final ServletHolder _servletHolder;
@@ -18,6 +18,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import jakarta.servlet.DispatcherType;
 import jakarta.servlet.Filter;
@@ -42,6 +43,9 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -850,6 +854,59 @@ public class ServletHandlerTest
         assertThat(connector.getResponse("GET /other.bob HTTP/1.0\r\n\r\n"), containsString("path-/*-path-*.bob-default"));
     }
 
+    @Test
+    public void testFilterChainsCachedByMatchingMappings() throws Exception
+    {
+        Server server = new Server();
+        ServletContextHandler context = new ServletContextHandler("/");
+        server.setHandler(context);
+        ServletHandler handler = context.getServletHandler();
+        handler.setMaxFilterChainsCacheSize(2);
+
+        handler.addServletWithMapping(new ServletHolder(new HttpServlet()
+        {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException
+            {
+                resp.getOutputStream().println("API");
+            }
+        }), "/api/*");
+
+        List<FilterChain> chains = new CopyOnWriteArrayList<>();
+        for (String mapping : new String[]{"/api/*", "*.json"})
+        {
+            handler.addFilterWithMapping(new FilterHolder((TestFilter)(request, response, chain) ->
+            {
+                chains.add(chain);
+                chain.doFilter(request, response);
+            }), mapping, EnumSet.of(DispatcherType.REQUEST));
+        }
+
+        LocalConnector connector = new LocalConnector(server);
+        server.addConnector(connector);
+        server.start();
+
+        // Many distinct paths fall in only two sets of matching filter mappings.
+        for (int id = 0; id < 10; id++)
+        {
+            assertThat(connector.getResponse("GET /api/users/" + id + " HTTP/1.0\r\n\r\n"), containsString("API"));
+            assertThat(connector.getResponse("GET /api/users/" + id + ".json HTTP/1.0\r\n\r\n"), containsString("API"));
+        }
+
+        // One chain per request, plus one for the nested filter of the json requests.
+        assertThat(chains.size(), is(30));
+        FilterChain plain = chains.get(0);
+        FilterChain json = chains.get(1);
+        assertThat(json, not(sameInstance(plain)));
+        for (int id = 0; id < 10; id++)
+        {
+            assertThat(chains.get(3 * id), sameInstance(plain));
+            assertThat(chains.get(3 * id + 1), sameInstance(json));
+        }
+        // The cache by path is still bounded by the max size.
+        assertThat(handler._chainCache[FilterMapping.REQUEST].size(), lessThanOrEqualTo(2));
+    }
+
     @Test
     public void testDurable() throws Exception
     {
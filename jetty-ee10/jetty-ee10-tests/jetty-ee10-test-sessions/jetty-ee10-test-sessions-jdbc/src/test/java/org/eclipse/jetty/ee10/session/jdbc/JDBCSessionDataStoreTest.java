@@ -13,9 +13,15 @@
 
 package org.eclipse.jetty.ee10.session.jdbc;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.NotSerializableException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
+import org.eclipse.jetty.session.AbstractSessionDataStoreFactory;
 import org.eclipse.jetty.session.AbstractSessionDataStoreTest;
+import org.eclipse.jetty.session.JavaSessionDataSerializer;
 import org.eclipse.jetty.session.JdbcTestHelper;
 import org.eclipse.jetty.session.SessionData;
 import org.eclipse.jetty.session.SessionDataStore;
@@ -27,9 +33,12 @@ import org.junit.jupiter.api.Test;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
 
 /**
  * JDBCSessionDataStoreTest
@@ -128,4 +137,130 @@ public class JDBCSessionDataStoreTest extends AbstractSessionDataStoreTest
 
         assertThrows(NotSerializableException.class, () -> store.store("xxx999", data));
     }
+
+    /**
+     * Test that a save without changed attributes only updates the
+     * metadata columns, and leaves the attribute map untouched.
+     */
+    @Test
+    public void testMetaDataOnlyUpdate() throws Exception
+    {
+        setUp();
+        AbstractSessionDataStoreFactory factory = (AbstractSessionDataStoreFactory)_factory;
+        factory.setSerializer(new JavaSessionDataSerializer());
+        factory.setSaveChangedAttributesOnly(true);
+        _server.start();
+
+        SessionDataStore store = _sessionManager.getSessionCache().getSessionDataStore();
+
+        long now = System.currentTimeMillis();
+        SessionData data = store.newSessionData("meta1", 100, now, now - 1, TimeUnit.MINUTES.toMillis(30));
+        data.setLastNode(_sessionIdManager.getWorkerName());
+        data.setAttribute("a", "b");
+        store.store("meta1", data);
+        assertTrue(JdbcTestHelper.isSerializedAttributes(JdbcTestHelper.getSessionAttributes("meta1", sessionTableName)));
+
+        //change the attribute map behind the back of the store
+        SessionData other = new SessionData("meta1", data.getContextPath(), data.getVhost(), 100, now, now - 1, data.getMaxInactiveMs());
+        other.setAttribute("a", "changed");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SessionData.serializeAttributes(other, new JavaSessionDataSerializer(), new DataOutputStream(bytes), false);
+        JdbcTestHelper.updateSessionAttributes("meta1", bytes.toByteArray(), sessionTableName);
+
+        //only the metadata is written
+        data.calcAndSetExpiry(now + TimeUnit.MINUTES.toMillis(1));
+        assertTrue(data.getDirtyAttributes().isEmpty());
+        store.store("meta1", data);
+        SessionData loaded = store.load("meta1");
+        assertEquals(data.getExpiry(), loaded.getExpiry());
+        assertEquals(data.getLastSaved(), loaded.getLastSaved());
+        assertEquals("changed", loaded.getAttribute("a"));
+
+        //the attribute map is written again once an attribute is set
+        data.setAttribute("c", "d");
+        store.store("meta1", data);
+        loaded = store.load("meta1");
+        assertEquals("b", loaded.getAttribute("a"));
+        assertEquals("d", loaded.getAttribute("c"));
+    }
+
+    /**
+     * Test that a session saved with java serialization can still be
+     * loaded after a serializer has been set, and is then saved by the serializer.
+     */
+    @Test
+    public void testJavaSerializationReadableWithSerializer() throws Exception
+    {
+        setUp();
+        ((AbstractSessionDataStoreFactory)_factory).setSerializer(new JavaSessionDataSerializer());
+        _server.start();
+
+        SessionDataStore store = _sessionManager.getSessionCache().getSessionDataStore();
+
+        //persist a session with java serialization
+        long now = System.currentTimeMillis();
+        SessionData data = store.newSessionData("ser1", 100, now, now - 1, -1); //never expires
+        data.setLastNode(_sessionIdManager.getWorkerName());
+        data.setLastSaved(now);
+        data.setAttribute("a", "b");
+        data.setAttribute("count", 1);
+        persistSession(data);
+        assertFalse(JdbcTestHelper.isSerializedAttributes(JdbcTestHelper.getSessionAttributes("ser1", sessionTableName)));
+
+        SessionData loaded = store.load("ser1");
+        assertNotNull(loaded);
+        assertEquals("b", loaded.getAttribute("a"));
+        assertEquals(1, loaded.getAttribute("count"));
+
+        //the next save uses the serializer
+        loaded.setAttribute("a", "c");
+        store.store("ser1", loaded);
+        assertTrue(JdbcTestHelper.isSerializedAttributes(JdbcTestHelper.getSessionAttributes("ser1", sessionTableName)));
+
+        loaded = store.load("ser1");
+        assertEquals("c", loaded.getAttribute("a"));
+        assertEquals(1, loaded.getAttribute("count"));
+    }
+
+    /**
+     * Test that the JavaSessionDataSerializer loads the attribute values
+     * with the classloader that they were saved from.
+     */
+    @Test
+    public void testJavaSessionDataSerializer() throws Exception
+    {
+        setUp();
+        ((AbstractSessionDataStoreFactory)_factory).setSerializer(new JavaSessionDataSerializer());
+        _server.start();
+
+        SessionDataStore store = _sessionManager.getSessionCache().getSessionDataStore();
+
+        ClassLoader old = Thread.currentThread().getContextClassLoader();
+        try
+        {
+            Thread.currentThread().setContextClassLoader(_contextClassLoader);
+            Class<?> fooclazz = Class.forName("Foo", true, _contextClassLoader);
+            long now = System.currentTimeMillis();
+            SessionData data = store.newSessionData("ser2", 100, now, now - 1, -1); //never expires
+            data.setLastNode(_sessionIdManager.getWorkerName());
+            //an attribute only known to the webapp classloader, and attributes of the server classloader
+            data.setAttribute("foo", fooclazz.getConstructor().newInstance());
+            data.setAttribute("a", "b");
+            data.setAttribute("set", Set.of(1, 2));
+            store.store("ser2", data);
+            assertTrue(data.getDirtyAttributes().isEmpty());
+        }
+        finally
+        {
+            Thread.currentThread().setContextClassLoader(old);
+        }
+
+        SessionData loaded = store.load("ser2");
+        assertNotNull(loaded);
+        assertEquals(Set.of("foo", "a", "set"), loaded.getKeys());
+        assertSame(_contextClassLoader, loaded.getAttribute("foo").getClass().getClassLoader());
+        assertEquals("b", loaded.getAttribute("a"));
+        assertEquals(Set.of(1, 2), loaded.getAttribute("set"));
+        assertTrue(loaded.getDirtyAttributes().isEmpty());
+    }
 }
@@ -0,0 +1,369 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.ee10.session.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.ContextHandler;
+import org.eclipse.jetty.session.DatabaseAdaptor;
+import org.eclipse.jetty.session.DefaultSessionIdManager;
+import org.eclipse.jetty.session.JDBCSessionDataStore;
+import org.eclipse.jetty.session.JDBCSessionDataStoreFactory;
+import org.eclipse.jetty.session.JdbcTestHelper;
+import org.eclipse.jetty.session.SessionData;
+import org.eclipse.jetty.session.SessionHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test the JDBCSessionDataStore with a write behind period.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+public class JDBCSessionDataStoreWriteBehindTest
+{
+    private String _sessionTableName;
+    private Server _server;
+    private SessionHandler _sessionHandler;
+    private JDBCSessionDataStoreFactory _factory;
+    private JDBCSessionDataStore _store;
+    /**
+     * Run when the next connection is requested, which then fails.
+     */
+    private volatile Runnable _unavailable;
+
+    @BeforeEach
+    public void setUp() throws Exception
+    {
+        _sessionTableName = getClass().getSimpleName() + "_" + System.nanoTime();
+        JdbcTestHelper.prepareTables(_sessionTableName);
+
+        _server = new Server();
+        ContextHandler context = new ContextHandler("/");
+        _sessionHandler = new SessionHandler();
+        context.setHandler(_sessionHandler);
+        _server.setHandler(context);
+
+        DefaultSessionIdManager sessionIdManager = new DefaultSessionIdManager(_server);
+        sessionIdManager.setWorkerName("");
+        _server.addBean(sessionIdManager, true);
+
+        DatabaseAdaptor adaptor = new DatabaseAdaptor()
+        {
+            @Override
+            protected Connection getConnection() throws SQLException
+            {
+                Runnable unavailable = _unavailable;
+                if (unavailable != null)
+                {
+                    _unavailable = null;
+                    unavailable.run();
+                    throw new SQLException("Database unavailable");
+                }
+                return super.getConnection();
+            }
+        };
+        adaptor.setDriverInfo(JdbcTestHelper.DRIVER_CLASS, JdbcTestHelper.DEFAULT_CONNECTION_URL);
+        _factory = (JDBCSessionDataStoreFactory)JdbcTestHelper.newSessionDataStoreFactory(adaptor, _sessionTableName, false);
+        //long enough that the queue is only written by the tests
+        _factory.setWriteBehindPeriodMs((int)TimeUnit.HOURS.toMillis(1));
+        _factory.setWriteBehindBatchSize(2);
+        _server.addBean(_factory, true);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception
+    {
+        _unavailable = null;
+        if (_server != null)
+            _server.stop();
+        JdbcTestHelper.shutdown(_sessionTableName);
+    }
+
+    private void start() throws Exception
+    {
+        _server.start();
+        _store = (JDBCSessionDataStore)_sessionHandler.getSessionCache().getSessionDataStore();
+    }
+
+    /**
+     * Insert a new session, which is always written immediately.
+     */
+    private SessionData newSession(String id) throws Exception
+    {
+        long now = System.currentTimeMillis();
+        SessionData data = _store.newSessionData(id, 100, now, now - 1, TimeUnit.MINUTES.toMillis(30));
+        data.setLastNode(_sessionHandler.getSessionIdManager().getWorkerName());
+        data.setAttribute("count", 0);
+        data.calcAndSetExpiry(now);
+        _store.store(id, data);
+        assertTrue(JdbcTestHelper.existsInSessionTable(id, false, _sessionTableName));
+        assertEquals(0, _store.getWriteBehindQueueSize());
+        return data;
+    }
+
+    private long getAccessed(String id) throws Exception
+    {
+        return JdbcTestHelper.getSessionLong(id, JdbcTestHelper.ACCESS_COL, _sessionTableName);
+    }
+
+    @Test
+    public void testUpdatesCoalesced() throws Exception
+    {
+        start();
+        SessionData data = newSession("wb1");
+        long accessed = getAccessed("wb1");
+
+        for (int i = 1; i <= 5; i++)
+        {
+            data.setAccessed(accessed + i);
+            data.setAttribute("count", i);
+            _store.store("wb1", data);
+        }
+
+        //the updates are queued as one
+        assertEquals(1, _store.getWriteBehindQueueSize());
+        assertEquals(4, _store.getCoalescedWrites());
+        assertEquals(accessed, getAccessed("wb1"));
+
+        _store.flush();
+        assertEquals(0, _store.getWriteBehindQueueSize());
+        assertEquals(accessed + 5, getAccessed("wb1"));
+        assertEquals(5, _store.load("wb1").getAttribute("count"));
+    }
+
+    @Test
+    public void testDeletesBatched() throws Exception
+    {
+        start();
+        for (int i = 0; i < 5; i++)
+        {
+            newSession("wb" + i);
+        }
+        _store.resetStats();
+
+        for (int i = 0; i < 5; i++)
+        {
+            assertTrue(_store.delete("wb" + i));
+        }
+        assertEquals(5, _store.getWriteBehindQueueSize());
+        for (int i = 0; i < 5; i++)
+        {
+            assertTrue(JdbcTestHelper.existsInSessionTable("wb" + i, false, _sessionTableName));
+        }
+
+        _store.flush();
+        assertEquals(0, _store.getWriteBehindQueueSize());
+        //batches of at most 2 writes
+        assertEquals(3, _store.getFlushCount());
+        assertTrue(JdbcTestHelper.getSessionIds(_sessionTableName).isEmpty());
+    }
+
+    @Test
+    public void testQueueWrittenBeforeRead() throws Exception
+    {
+        start();
+        SessionData data = newSession("wb1");
+        newSession("wb2");
+        SessionData expiring = newSession("wb3");
+
+        //load
+        data.setAttribute("count", 1);
+        _store.store("wb1", data);
+        assertEquals(1, _store.load("wb1").getAttribute("count"));
+        assertEquals(0, _store.getWriteBehindQueueSize());
+
+        //exists
+        _store.delete("wb2");
+        assertFalse(_store.exists("wb2"));
+        assertEquals(0, _store.getWriteBehindQueueSize());
+
+        //expiry
+        expiring.setExpiry(System.currentTimeMillis() - 1000);
+        expiring.setMetaDataDirty(true);
+        _store.store("wb3", expiring);
+        assertEquals(1, _store.getWriteBehindQueueSize());
+        assertTrue(_store.getExpired(Set.of("wb3")).contains("wb3"));
+        assertEquals(0, _store.getWriteBehindQueueSize());
+    }
+
+    @Test
+    public void testWriteThroughOnResponseCommit() throws Exception
+    {
+        start();
+        _sessionHandler.getSessionCache().setFlushOnResponseCommit(true);
+        SessionData data = newSession("wb1");
+        long accessed = getAccessed("wb1");
+
+        //changed attributes are written immediately
+        data.setAccessed(accessed + 1);
+        data.setAttribute("count", 1);
+        _store.store("wb1", data);
+        assertEquals(0, _store.getWriteBehindQueueSize());
+        assertEquals(accessed + 1, getAccessed("wb1"));
+
+        //metadata changes are still queued
+        data.setAccessed(accessed + 2);
+        data.setMetaDataDirty(true);
+        _store.store("wb1", data);
+        assertEquals(1, _store.getWriteBehindQueueSize());
+        assertEquals(accessed + 1, getAccessed("wb1"));
+
+        //a write through also writes the queued metadata
+        data.setAccessed(accessed + 3);
+        data.setAttribute("count", 2);
+        _store.store("wb1", data);
+        assertEquals(0, _store.getWriteBehindQueueSize());
+        assertEquals(accessed + 3, getAccessed("wb1"));
+    }
+
+    @Test
+    public void testWriteThroughKeepsQueuedAttributes() throws Exception
+    {
+        _factory.setSaveChangedAttributesOnly(true);
+        start();
+        SessionData data = newSession("wb1");
+        long accessed = getAccessed("wb1");
+
+        data.setAttribute("count", 1);
+        _store.store("wb1", data);
+        assertEquals(1, _store.getWriteBehindQueueSize());
+
+        //a dirty session without changed attributes is written through without its attributes
+        _sessionHandler.getSessionCache().setFlushOnResponseCommit(true);
+        data.setAccessed(accessed + 1);
+        data.setDirty(true);
+        _store.store("wb1", data);
+
+        //the queued attributes are written with it
+        assertEquals(0, _store.getWriteBehindQueueSize());
+        assertEquals(accessed + 1, getAccessed("wb1"));
+        assertEquals(1, _store.load("wb1").getAttribute("count"));
+    }
+
+    @Test
+    public void testQueuedUpdateKeepsQueuedDelete() throws Exception
+    {
+        start();
+        SessionData data = newSession("wb1");
+
+        _store.delete("wb1");
+        data.setAttribute("count", 1);
+        _store.store("wb1", data);
+        assertEquals(1, _store.getWriteBehindQueueSize());
+
+        _store.flush();
+        assertFalse(JdbcTestHelper.existsInSessionTable("wb1", false, _sessionTableName));
+    }
+
+    @Test
+    public void testFailedWritesQueuedAgain() throws Exception
+    {
+        _factory.setSaveChangedAttributesOnly(true);
+        start();
+        SessionData data = newSession("wb1");
+        long accessed = getAccessed("wb1");
+
+        data.setAttribute("count", 1);
+        _store.store("wb1", data);
+
+        //an update without changed attributes is queued while the batch fails
+        _unavailable = () ->
+        {
+            try
+            {
+                data.setAccessed(accessed + 1);
+                data.setMetaDataDirty(true);
+                _store.store("wb1", data);
+            }
+            catch (Exception x)
+            {
+                throw new RuntimeException(x);
+            }
+        };
+        _store.flush();
+        assertEquals(1, _store.getWriteBehindQueueSize());
+
+        //both the attributes of the failed batch and the later metadata are written
+        _store.flush();
+        assertEquals(0, _store.getWriteBehindQueueSize());
+        assertEquals(accessed + 1, getAccessed("wb1"));
+        assertEquals(1, _store.load("wb1").getAttribute("count"));
+    }
+
+    @Test
+    public void testFailedDeleteQueuedAgain() throws Exception
+    {
+        start();
+        SessionData data = newSession("wb1");
+
+        _store.delete("wb1");
+
+        //an update is queued while the batch fails
+        _unavailable = () ->
+        {
+            try
+            {
+                data.setAttribute("count", 1);
+                _store.store("wb1", data);
+            }
+            catch (Exception x)
+            {
+                throw new RuntimeException(x);
+            }
+        };
+        _store.flush();
+        assertEquals(1, _store.getWriteBehindQueueSize());
+
+        _store.flush();
+        assertFalse(JdbcTestHelper.existsInSessionTable("wb1", false, _sessionTableName));
+    }
+
+    @Test
+    public void testStatistics() throws Exception
+    {
+        start();
+        SessionData data = newSession("wb1");
+        newSession("wb2");
+        _store.resetStats();
+
+        for (int i = 1; i <= 3; i++)
+        {
+            data.setAttribute("count", i);
+            _store.store("wb1", data);
+        }
+        _store.delete("wb2");
+        _store.delete("wb2");
+        assertEquals(2, _store.getWriteBehindQueueSize());
+        assertEquals(3, _store.getCoalescedWrites());
+
+        _store.flush();
+        assertEquals(1, _store.getFlushCount());
+        assertTrue(_store.getFlushLatencyMax() >= 0);
+        assertTrue(_store.getFlushLatencyMean() >= 0);
+
+        _store.resetStats();
+        assertEquals(0, _store.getCoalescedWrites());
+        assertEquals(0, _store.getFlushCount());
+    }
+}
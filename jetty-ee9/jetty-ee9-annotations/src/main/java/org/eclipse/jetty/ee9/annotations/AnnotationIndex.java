@@ -0,0 +1,569 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.ee9.annotations;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import org.eclipse.jetty.ee9.annotations.AnnotationParser.ClassInfo;
+import org.eclipse.jetty.ee9.annotations.AnnotationParser.FieldInfo;
+import org.eclipse.jetty.ee9.annotations.AnnotationParser.Handler;
+import org.eclipse.jetty.ee9.annotations.AnnotationParser.MethodInfo;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.StringUtil;
+import org.eclipse.jetty.util.resource.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * AnnotationIndex
+ * <p>
+ * A persistent store of the results of scanning jars with an {@link AnnotationParser}.
+ * <p>
+ * For each jar, the index records the header of every class (which carries the
+ * class inheritance information) together with the annotations found on the
+ * class, its methods and its fields. The index of a jar is stored in the index
+ * directory in a file named after the SHA-256 hash of the jar content, so that
+ * a jar that has not changed is not parsed again on subsequent starts, even if it has
+ * been copied or moved, while a changed jar is always parsed afresh.
+ * <p>
+ * Index files are never removed, so index files of jars that are no longer
+ * deployed remain in the directory until it is cleaned up externally.
+ */
+public class AnnotationIndex
+{
+    private static final Logger LOG = LoggerFactory.getLogger(AnnotationIndex.class);
+    private static final int MAGIC = 0x4A414958;
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".idx";
+
+    private final Path _directory;
+
+    /**
+     * @param directory the directory in which index files are stored, created if it does not exist
+     */
+    public AnnotationIndex(Path directory)
+    {
+        _directory = Objects.requireNonNull(directory);
+    }
+
+    /**
+     * @return the directory in which index files are stored
+     */
+    public Path getDirectory()
+    {
+        return _directory;
+    }
+
+    /**
+     * @param jar the jar file
+     * @return the key of the index of the jar, which is the hash of its content
+     * @throws IOException if the jar cannot be read
+     */
+    String getKey(Path jar) throws IOException
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IOException(e);
+        }
+
+        try (InputStream in = Files.newInputStream(jar))
+        {
+            byte[] buffer = new byte[64 * 1024];
+            int len;
+            while ((len = in.read(buffer)) >= 0)
+            {
+                digest.update(buffer, 0, len);
+            }
+        }
+        return StringUtil.toHexString(digest.digest());
+    }
+
+    /**
+     * @param key the key of the index
+     * @return the file in which the index is stored
+     */
+    Path getIndexFile(String key)
+    {
+        return _directory.resolve(key + SUFFIX);
+    }
+
+    /**
+     * Load an index.
+     *
+     * @param key the key of the index
+     * @return the indexed classes, or null if there is no usable index for the key
+     */
+    List<IndexedClass> load(String key)
+    {
+        Path file = getIndexFile(key);
+        if (!Files.isRegularFile(file))
+            return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file))))
+        {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Ignoring incompatible annotation index {}", file);
+                return null;
+            }
+
+            int count = in.readInt();
+            List<IndexedClass> classes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+            {
+                classes.add(IndexedClass.read(in));
+            }
+            return classes;
+        }
+        catch (IOException e)
+        {
+            LOG.warn("Ignoring unreadable annotation index {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Save an index. The index file is written to a temporary file which is then
+     * moved into place, so that concurrent readers never see a partial index.
+     * Failure to save is logged and otherwise ignored, as the jar will simply be parsed again.
+     *
+     * @param key the key of the index
+     * @param classes the indexed classes
+     */
+    void save(String key, List<IndexedClass> classes)
+    {
+        Path file = getIndexFile(key);
+        Path temp = null;
+        try
+        {
+            Files.createDirectories(_directory);
+            temp = Files.createTempFile(_directory, key, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp))))
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(classes.size());
+                for (IndexedClass indexedClass : classes)
+                {
+                    indexedClass.write(out);
+                }
+            }
+
+            try
+            {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("Saved annotation index {} of {} classes", file, classes.size());
+        }
+        catch (IOException e)
+        {
+            LOG.warn("Unable to save annotation index {}", file, e);
+            if (temp != null)
+                IO.delete(temp);
+        }
+    }
+
+    /**
+     * Call the handlers for the indexed classes, as if the classes had been parsed.
+     *
+     * @param classes the indexed classes
+     * @param handlers the handlers to call
+     * @param containingResource the resource containing the classes
+     */
+    static void replay(List<IndexedClass> classes, Set<? extends Handler> handlers, Resource containingResource)
+    {
+        for (IndexedClass indexedClass : classes)
+        {
+            ClassInfo classInfo = new ClassInfo(containingResource, indexedClass._className, indexedClass._version, indexedClass._access,
+                indexedClass._signature, indexedClass._superName, indexedClass._interfaces);
+            for (Handler h : handlers)
+            {
+                h.handle(classInfo);
+            }
+
+            for (String annotationName : indexedClass._annotations)
+            {
+                for (Handler h : handlers)
+                {
+                    h.handle(classInfo, annotationName);
+                }
+            }
+
+            for (IndexedMethod indexedMethod : indexedClass._methods)
+            {
+                MethodInfo methodInfo = new MethodInfo(classInfo, indexedMethod._methodName, indexedMethod._access,
+                    indexedMethod._desc, indexedMethod._signature, indexedMethod._exceptions);
+                for (String annotationName : indexedMethod._annotations)
+                {
+                    for (Handler h : handlers)
+                    {
+                        h.handle(methodInfo, annotationName);
+                    }
+                }
+            }
+
+            for (IndexedField indexedField : indexedClass._fields)
+            {
+                FieldInfo fieldInfo = new FieldInfo(classInfo, indexedField._fieldName, indexedField._access,
+                    indexedField._fieldType, indexedField._signature, indexedField._value);
+                for (String annotationName : indexedField._annotations)
+                {
+                    for (Handler h : handlers)
+                    {
+                        h.handle(fieldInfo, annotationName);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A Handler that records the classes and annotations found by a parser.
+     * A Recorder is not thread safe and must only be used to parse a single jar.
+     */
+    static class Recorder extends AnnotationParser.AbstractHandler
+    {
+        private final List<IndexedClass> _classes = new ArrayList<>();
+        private ClassInfo _classInfo;
+        private IndexedClass _class;
+        private MethodInfo _methodInfo;
+        private IndexedMethod _method;
+        private FieldInfo _fieldInfo;
+        private IndexedField _field;
+
+        List<IndexedClass> getClasses()
+        {
+            return _classes;
+        }
+
+        @Override
+        public void handle(ClassInfo classInfo)
+        {
+            _classInfo = classInfo;
+            _class = new IndexedClass(classInfo);
+            _classes.add(_class);
+        }
+
+        @Override
+        public void handle(ClassInfo info, String annotationName)
+        {
+            getIndexedClass(info)._annotations.add(annotationName);
+        }
+
+        @Override
+        public void handle(MethodInfo info, String annotationName)
+        {
+            if (_methodInfo != info)
+            {
+                _methodInfo = info;
+                _method = new IndexedMethod(info);
+                getIndexedClass(info.getClassInfo())._methods.add(_method);
+            }
+            _method._annotations.add(annotationName);
+        }
+
+        @Override
+        public void handle(FieldInfo info, String annotationName)
+        {
+            if (_fieldInfo != info)
+            {
+                _fieldInfo = info;
+                _field = new IndexedField(info);
+                getIndexedClass(info.getClassInfo())._fields.add(_field);
+            }
+            _field._annotations.add(annotationName);
+        }
+
+        private IndexedClass getIndexedClass(ClassInfo info)
+        {
+            if (_classInfo != info)
+                throw new IllegalStateException("Unexpected class " + info.getClassName());
+            return _class;
+        }
+    }
+
+    static class IndexedClass
+    {
+        final String _className;
+        final int _version;
+        final int _access;
+        final String _signature;
+        final String _superName;
+        final String[] _interfaces;
+        final List<String> _annotations = new ArrayList<>();
+        final List<IndexedMethod> _methods = new ArrayList<>();
+        final List<IndexedField> _fields = new ArrayList<>();
+
+        IndexedClass(ClassInfo info)
+        {
+            this(info.getClassName(), info.getVersion(), info.getAccess(), info.getSignature(), info.getSuperName(), info.getInterfaces());
+        }
+
+        IndexedClass(String className, int version, int access, String signature, String superName, String[] interfaces)
+        {
+            _className = className;
+            _version = version;
+            _access = access;
+            _signature = signature;
+            _superName = superName;
+            _interfaces = interfaces;
+        }
+
+        String getClassName()
+        {
+            return _className;
+        }
+
+        void write(DataOutputStream out) throws IOException
+        {
+            out.writeUTF(_className);
+            out.writeInt(_version);
+            out.writeInt(_access);
+            writeString(out, _signature);
+            writeString(out, _superName);
+            writeStrings(out, _interfaces);
+            writeStrings(out, _annotations.toArray(String[]::new));
+            out.writeInt(_methods.size());
+            for (IndexedMethod method : _methods)
+            {
+                method.write(out);
+            }
+            out.writeInt(_fields.size());
+            for (IndexedField field : _fields)
+            {
+                field.write(out);
+            }
+        }
+
+        static IndexedClass read(DataInputStream in) throws IOException
+        {
+            IndexedClass indexedClass = new IndexedClass(in.readUTF(), in.readInt(), in.readInt(), readString(in), readString(in), readStrings(in));
+            indexedClass._annotations.addAll(List.of(readStrings(in)));
+            int methods = in.readInt();
+            for (int i = 0; i < methods; i++)
+            {
+                indexedClass._methods.add(IndexedMethod.read(in));
+            }
+            int fields = in.readInt();
+            for (int i = 0; i < fields; i++)
+            {
+                indexedClass._fields.add(IndexedField.read(in));
+            }
+            return indexedClass;
+        }
+    }
+
+    static class IndexedMethod
+    {
+        final String _methodName;
+        final int _access;
+        final String _desc;
+        final String _signature;
+        final String[] _exceptions;
+        final List<String> _annotations = new ArrayList<>();
+
+        IndexedMethod(MethodInfo info)
+        {
+            this(info.getMethodName(), info.getAccess(), info.getDesc(), info.getSignature(), info.getExceptions());
+        }
+
+        IndexedMethod(String methodName, int access, String desc, String signature, String[] exceptions)
+        {
+            _methodName = methodName;
+            _access = access;
+            _desc = desc;
+            _signature = signature;
+            _exceptions = exceptions;
+        }
+
+        void write(DataOutputStream out) throws IOException
+        {
+            out.writeUTF(_methodName);
+            out.writeInt(_access);
+            out.writeUTF(_desc);
+            writeString(out, _signature);
+            writeStrings(out, _exceptions);
+            writeStrings(out, _annotations.toArray(String[]::new));
+        }
+
+        static IndexedMethod read(DataInputStream in) throws IOException
+        {
+            IndexedMethod indexedMethod = new IndexedMethod(in.readUTF(), in.readInt(), in.readUTF(), readString(in), readStrings(in));
+            indexedMethod._annotations.addAll(List.of(readStrings(in)));
+            return indexedMethod;
+        }
+    }
+
+    static class IndexedField
+    {
+        private static final byte NULL = 0;
+        private static final byte INTEGER = 1;
+        private static final byte LONG = 2;
+        private static final byte FLOAT = 3;
+        private static final byte DOUBLE = 4;
+        private static final byte STRING = 5;
+
+        final String _fieldName;
+        final int _access;
+        final String _fieldType;
+        final String _signature;
+        final Object _value;
+        final List<String> _annotations = new ArrayList<>();
+
+        IndexedField(FieldInfo info)
+        {
+            this(info.getFieldName(), info.getAccess(), info.getFieldType(), info.getSignature(), info.getValue());
+        }
+
+        IndexedField(String fieldName, int access, String fieldType, String signature, Object value)
+        {
+            _fieldName = fieldName;
+            _access = access;
+            _fieldType = fieldType;
+            _signature = signature;
+            _value = value;
+        }
+
+        void write(DataOutputStream out) throws IOException
+        {
+            out.writeUTF(_fieldName);
+            out.writeInt(_access);
+            out.writeUTF(_fieldType);
+            writeString(out, _signature);
+            // ASM only reports constant values of these types
+            if (_value == null)
+            {
+                out.writeByte(NULL);
+            }
+            else if (_value instanceof Integer i)
+            {
+                out.writeByte(INTEGER);
+                out.writeInt(i);
+            }
+            else if (_value instanceof Long l)
+            {
+                out.writeByte(LONG);
+                out.writeLong(l);
+            }
+            else if (_value instanceof Float f)
+            {
+                out.writeByte(FLOAT);
+                out.writeFloat(f);
+            }
+            else if (_value instanceof Double d)
+            {
+                out.writeByte(DOUBLE);
+                out.writeDouble(d);
+            }
+            else if (_value instanceof String s)
+            {
+                out.writeByte(STRING);
+                out.writeUTF(s);
+            }
+            else
+            {
+                throw new IOException("Unsupported value of field " + _fieldName + ": " + _value.getClass());
+            }
+            writeStrings(out, _annotations.toArray(String[]::new));
+        }
+
+        static IndexedField read(DataInputStream in) throws IOException
+        {
+            String fieldName = in.readUTF();
+            int access = in.readInt();
+            String fieldType = in.readUTF();
+            String signature = readString(in);
+            byte type = in.readByte();
+            Object value = switch (type)
+            {
+                case NULL -> null;
+                case INTEGER -> in.readInt();
+                case LONG -> in.readLong();
+                case FLOAT -> in.readFloat();
+                case DOUBLE -> in.readDouble();
+                case STRING -> in.readUTF();
+                default -> throw new IOException("Unknown value type " + type + " of field " + fieldName);
+            };
+            IndexedField indexedField = new IndexedField(fieldName, access, fieldType, signature, value);
+            indexedField._annotations.addAll(List.of(readStrings(in)));
+            return indexedField;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        out.writeBoolean(value != null);
+        if (value != null)
+            out.writeUTF(value);
+    }
+
+    private static String readString(DataInputStream in) throws IOException
+    {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] values) throws IOException
+    {
+        if (values == null)
+        {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(values.length);
+        for (String value : values)
+        {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0)
+            return null;
+        String[] values = new String[length];
+        for (int i = 0; i < length; i++)
+        {
+            values[i] = in.readUTF();
+        }
+        return values;
+    }
+}
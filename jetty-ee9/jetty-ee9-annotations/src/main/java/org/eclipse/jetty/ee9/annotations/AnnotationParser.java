@@ -20,6 +20,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -28,6 +30,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import org.eclipse.jetty.util.ExceptionUtil;
 import org.eclipse.jetty.util.FileID;
 import org.eclipse.jetty.util.StringUtil;
+import org.eclipse.jetty.util.URIUtil;
 import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.resource.ResourceFactory;
 import org.objectweb.asm.AnnotationVisitor;
@@ -67,6 +70,7 @@ public class AnnotationParser
      */
     protected Map<String, URI> _parsedClassNames = new ConcurrentHashMap<>();
     private final int _asmVersion;
+    private AnnotationIndex _annotationIndex;
 
     /**
      * Determine the runtime version of asm.
@@ -535,6 +539,22 @@ public class AnnotationParser
         _asmVersion = asmVersion;
     }
 
+    /**
+     * @return the index used to avoid parsing unchanged jars, or null if jars are always parsed
+     */
+    public AnnotationIndex getAnnotationIndex()
+    {
+        return _annotationIndex;
+    }
+
+    /**
+     * @param annotationIndex the index used to avoid parsing unchanged jars, or null to always parse jars
+     */
+    public void setAnnotationIndex(AnnotationIndex annotationIndex)
+    {
+        _annotationIndex = annotationIndex;
+    }
+
     /**
      * Parse a resource
      *
@@ -616,6 +636,8 @@ public class AnnotationParser
 
     /**
      * Parse a resource that is a jar file.
+     * If an {@link AnnotationIndex} is set, the handlers are called from the index of the
+     * jar if one exists, otherwise the jar is parsed and its index saved for next time.
      *
      * @param handlers the handlers to look for classes in
      * @param jarResource the jar resource to parse
@@ -632,10 +654,41 @@ public class AnnotationParser
         if (LOG.isDebugEnabled())
             LOG.debug("Scanning jar {}", jarResource);
 
+        AnnotationIndex index = _annotationIndex;
+        Path jarPath = jarResource.getPath();
+        String key = (index != null && jarPath != null && Files.isRegularFile(jarPath)) ? index.getKey(jarPath) : null;
+
         try (ResourceFactory.Closeable resourceFactory = ResourceFactory.closeable())
         {
             Resource insideJarResource = resourceFactory.newJarFileResource(jarResource.getURI());
-            parseDir(handlers, insideJarResource);
+            if (key == null)
+            {
+                parseDir(handlers, insideJarResource);
+                return;
+            }
+
+            List<AnnotationIndex.IndexedClass> indexed = index.load(key);
+            if (indexed != null)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Using annotation index {} for {}", index.getIndexFile(key), jarResource);
+                AnnotationIndex.replay(indexed, handlers, insideJarResource);
+                for (AnnotationIndex.IndexedClass indexedClass : indexed)
+                {
+                    String classname = indexedClass.getClassName();
+                    URI location = URI.create(insideJarResource.getURI().toASCIIString() + URIUtil.encodePath(classname.replace('.', '/') + ".class"));
+                    URI existing = _parsedClassNames.putIfAbsent(classname, location);
+                    if (existing != null)
+                        LOG.warn("{} scanned from multiple locations: {}, {}", classname, existing, location);
+                }
+                return;
+            }
+
+            AnnotationIndex.Recorder recorder = new AnnotationIndex.Recorder();
+            Set<Handler> recordingHandlers = new HashSet<>(handlers);
+            recordingHandlers.add(recorder);
+            parseDir(recordingHandlers, insideJarResource);
+            index.save(key, recorder.getClasses());
         }
     }
 
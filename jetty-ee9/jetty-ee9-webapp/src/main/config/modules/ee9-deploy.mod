@@ -24,6 +24,9 @@ etc/jetty-ee9-deploy.xml
 ## Monitored directory scan period (seconds)
 # jetty.deploy.scanInterval=0
 
+## Whether to watch the monitored directory for changes rather than walking it on every scan
+# jetty.deploy.useWatchService=false
+
 ## Whether to extract *.war files
 # jetty.deploy.extractWars=true
 
@@ -13,72 +13,85 @@
 
 package org.eclipse.jetty.client.jmh;
 
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.client.AbstractConnectionPool;
+import org.eclipse.jetty.client.Connection;
+import org.eclipse.jetty.client.Destination;
+import org.eclipse.jetty.client.DuplexConnectionPool;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.LeastLatencyConnectionPool;
+import org.eclipse.jetty.client.MultiplexConnectionPool;
+import org.eclipse.jetty.client.Origin;
+import org.eclipse.jetty.client.RandomConnectionPool;
+import org.eclipse.jetty.client.Request;
+import org.eclipse.jetty.client.Response;
+import org.eclipse.jetty.client.RoundRobinConnectionPool;
+import org.eclipse.jetty.client.transport.HttpDestination;
+import org.eclipse.jetty.util.Attachable;
+import org.eclipse.jetty.util.Promise;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
 
 @State(Scope.Benchmark)
 public class ConnectionPoolsBenchmark
 {
-    /** TODO
-    private ConnectionPool pool;
+    private HttpClient httpClient;
+    private AbstractConnectionPool pool;
 
-    @Param({"round-robin", "cached/multiplex", "uncached/multiplex", "cached/duplex", "uncached/duplex"})
+    @Param({"duplex", "multiplex", "random", "round-robin", "least-latency"})
     public static String POOL_TYPE;
 
     @Setup
     public void setUp() throws Exception
     {
-        HttpClient httpClient = new HttpClient()
+        httpClient = new HttpClient()
         {
             @Override
-            protected void newConnection(HttpDestination destination, Promise<Connection> promise)
+            public void newConnection(Destination destination, Promise<Connection> promise)
             {
                 promise.succeeded(new MockConnection());
             }
         };
-        HttpDestination httpDestination = new HttpDestination(httpClient, new Origin("http", "localhost", 8080), false)
-        {
-        };
-
-        HttpConversation httpConversation = new HttpConversation();
-        HttpRequest httpRequest = new HttpRequest(httpClient, httpConversation, new URI("http://localhost:8080")) {};
-        HttpExchange httpExchange = new HttpExchange(httpDestination, httpRequest, new ArrayList<>());
-        httpDestination.getHttpExchanges().add(httpExchange);
+        httpClient.start();
+        HttpDestination httpDestination = new HttpDestination(httpClient, new Origin("http", "localhost", 8080));
 
         int initialConnections = 12;
         int maxConnections = 100;
         switch (POOL_TYPE)
         {
-            case "uncached/duplex":
-                pool = new DuplexConnectionPool(httpDestination, maxConnections, false, Callback.NOOP);
-                pool.preCreateConnections(initialConnections).get();
-                break;
-            case "cached/duplex":
-                pool = new DuplexConnectionPool(httpDestination, maxConnections, true, Callback.NOOP);
-                pool.preCreateConnections(initialConnections).get();
-                break;
-            case "uncached/multiplex":
-                pool = new MultiplexConnectionPool(httpDestination, maxConnections, false, Callback.NOOP, 12);
-                pool.preCreateConnections(initialConnections).get();
-                break;
-            case "cached/multiplex":
-                pool = new MultiplexConnectionPool(httpDestination, maxConnections, true, Callback.NOOP, 12);
-                pool.preCreateConnections(initialConnections).get();
-                break;
-            case "round-robin":
-                pool = new RoundRobinConnectionPool(httpDestination, maxConnections, Callback.NOOP);
-                pool.preCreateConnections(maxConnections).get();
-                break;
-            default:
-                throw new AssertionError("Unknown pool type: " + POOL_TYPE);
+            case "duplex" -> pool = new DuplexConnectionPool(httpDestination, maxConnections);
+            case "multiplex" -> pool = new MultiplexConnectionPool(httpDestination, maxConnections, 12);
+            case "random" -> pool = new RandomConnectionPool(httpDestination, maxConnections, 12);
+            case "round-robin" ->
+            {
+                pool = new RoundRobinConnectionPool(httpDestination, maxConnections);
+                initialConnections = maxConnections;
+            }
+            case "least-latency" -> pool = new LeastLatencyConnectionPool(httpDestination, maxConnections, 12);
+            default -> throw new AssertionError("Unknown pool type: " + POOL_TYPE);
         }
+        pool.start();
+        pool.preCreateConnections(initialConnections).get(5, TimeUnit.SECONDS);
     }
 
     @TearDown
-    public void tearDown()
+    public void tearDown() throws Exception
     {
-        pool.close();
+        pool.stop();
         pool = null;
+        httpClient.stop();
+        httpClient = null;
     }
 
     @Benchmark
@@ -138,5 +151,4 @@ public class ConnectionPoolsBenchmark
             return attachment;
         }
     }
-        **/
 }
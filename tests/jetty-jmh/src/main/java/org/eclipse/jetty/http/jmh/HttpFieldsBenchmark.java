@@ -0,0 +1,187 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpParser;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.util.BufferUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures parsing a typical browser request into reused {@link HttpFields.Mutable}
+ * followed by the header lookups a server performs on every request.
+ * Run with the {@link GCProfiler} to see the allocation rate.
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+public class HttpFieldsBenchmark
+{
+    private static final String REQUEST = """
+        GET /index.html HTTP/1.1\r
+        Host: localhost\r
+        Connection: keep-alive\r
+        Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\r
+        Accept-Encoding: gzip, deflate, br\r
+        Accept-Language: en-US,en;q=0.5\r
+        Cache-Control: max-age=0\r
+        User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:109.0) Gecko/20100101 Firefox/115.0\r
+        Upgrade-Insecure-Requests: 1\r
+        \r
+        """;
+
+    private static final HttpHeader[] LOOKUPS = {
+        HttpHeader.CONTENT_TYPE,
+        HttpHeader.CONTENT_LENGTH,
+        HttpHeader.TRANSFER_ENCODING,
+        HttpHeader.EXPECT,
+        HttpHeader.COOKIE,
+        HttpHeader.AUTHORIZATION,
+        HttpHeader.IF_MODIFIED_SINCE,
+        HttpHeader.IF_NONE_MATCH,
+        HttpHeader.RANGE,
+        HttpHeader.HOST,
+        HttpHeader.ACCEPT_ENCODING,
+        HttpHeader.CONNECTION
+    };
+
+    @Param({"true", "false"})
+    boolean fieldCache;
+
+    private ByteBuffer _request;
+    private HttpParser _parser;
+    private Handler _handler;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        _request = BufferUtil.toBuffer(REQUEST);
+        _handler = new Handler();
+        _parser = new HttpParser(_handler);
+        _parser.setHeaderCacheSize(fieldCache ? 1024 : 0);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public void testParse(Blackhole blackhole)
+    {
+        parse();
+        blackhole.consume(_handler._fields.size());
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public void testParseAndLookup(Blackhole blackhole)
+    {
+        parse();
+        HttpFields fields = _handler._fields;
+        for (HttpHeader header : LOOKUPS)
+        {
+            blackhole.consume(fields.getField(header));
+        }
+        blackhole.consume(fields.contains(HttpHeader.CONNECTION, "close"));
+    }
+
+    private void parse()
+    {
+        _handler._fields.clear();
+        _parser.reset();
+        ByteBuffer buffer = _request.slice();
+        while (buffer.hasRemaining())
+        {
+            if (_parser.parseNext(buffer))
+                break;
+        }
+    }
+
+    private static class Handler implements HttpParser.RequestHandler
+    {
+        private final HttpFields.Mutable _fields = HttpFields.build();
+
+        @Override
+        public void startRequest(String method, String uri, HttpVersion version)
+        {
+        }
+
+        @Override
+        public void parsedHeader(HttpField field)
+        {
+            _fields.add(field);
+        }
+
+        @Override
+        public boolean headerComplete()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean content(ByteBuffer item)
+        {
+            return false;
+        }
+
+        @Override
+        public boolean contentComplete()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean messageComplete()
+        {
+            return true;
+        }
+
+        @Override
+        public void earlyEOF()
+        {
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(HttpFieldsBenchmark.class.getSimpleName())
+            .warmupIterations(5)
+            .measurementIterations(5)
+            .addProfiler(GCProfiler.class)
+            .forks(1)
+            .threads(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
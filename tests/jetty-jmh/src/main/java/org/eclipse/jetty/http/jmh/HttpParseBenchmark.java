@@ -17,7 +17,9 @@ import java.nio.ByteBuffer;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
+import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpParser;
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.util.BufferUtil;
 import org.openjdk.jmh.annotations.Benchmark;
@@ -58,6 +60,19 @@ public class HttpParseBenchmark
 
     private static final ByteBuffer GET = BufferUtil.toBuffer("GET / HTTP/1.1\r\n\r\n");
     private static final ByteBuffer POST = BufferUtil.toBuffer("POST / HTTP/1.1\r\n\r\n");
+    private static final ByteBuffer SHORT_HEADERS = BufferUtil.toBuffer(
+        "GET /index.html HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "Accept: */*\r\n" +
+            "\r\n");
+    private static final ByteBuffer LONG_HEADERS = BufferUtil.toBuffer(
+        "GET /index.html HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:109.0) Gecko/20100101 Firefox/115.0\r\n" +
+            "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,*/*;q=0.8\r\n" +
+            "Cookie: " + "session=0123456789abcdef0123456789abcdef; tracking=fedcba9876543210; ".repeat(16) + "\r\n" +
+            "Authorization: Bearer " + "eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9".repeat(16) + "\r\n" +
+            "\r\n");
 
     record RequestLine(String method, String uri, HttpVersion version)
     {
@@ -131,6 +146,62 @@ public class HttpParseBenchmark
         return lookAhead(request.slice());
     }
 
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public boolean testHttpParser(ParserState state)
+    {
+        ByteBuffer request = (ThreadLocalRandom.current().nextInt(100) < hits) ? LONG_HEADERS : SHORT_HEADERS;
+        HttpParser parser = state.parser;
+        parser.reset();
+        return parser.parseNext(request.slice());
+    }
+
+    @State(Scope.Thread)
+    public static class ParserState
+    {
+        private final HttpParser parser = new HttpParser(new HttpParser.RequestHandler()
+        {
+            @Override
+            public void startRequest(String method, String uri, HttpVersion version)
+            {
+            }
+
+            @Override
+            public void parsedHeader(HttpField field)
+            {
+            }
+
+            @Override
+            public boolean headerComplete()
+            {
+                return false;
+            }
+
+            @Override
+            public boolean content(ByteBuffer item)
+            {
+                return false;
+            }
+
+            @Override
+            public boolean contentComplete()
+            {
+                return false;
+            }
+
+            @Override
+            public boolean messageComplete()
+            {
+                return true;
+            }
+
+            @Override
+            public void earlyEOF()
+            {
+            }
+        });
+    }
+
     public static void main(String[] args) throws RunnerException
     {
         Options opt = new OptionsBuilder()
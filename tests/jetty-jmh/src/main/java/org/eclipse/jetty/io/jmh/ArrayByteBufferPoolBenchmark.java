@@ -26,6 +26,7 @@ import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.profile.AsyncProfiler;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
@@ -64,6 +65,8 @@ public class ArrayByteBufferPoolBenchmark
     long maxMemory;
     @Param({"true"})
     boolean statisticsEnabled;
+    @Param({"0", "8"})
+    int threadLocalCacheSize;
 
     ArrayByteBufferPool pool;
 
@@ -72,6 +75,7 @@ public class ArrayByteBufferPoolBenchmark
     {
         pool = new ArrayByteBufferPool(minCapacity, factor, maxCapacity, maxBucketSize, maxMemory, maxMemory);
         pool.setStatisticsEnabled(statisticsEnabled);
+        pool.setThreadLocalCacheSize(threadLocalCacheSize);
     }
 
     @TearDown
@@ -132,4 +136,17 @@ public class ArrayByteBufferPoolBenchmark
         RetainableByteBuffer buffer = pool.acquire(65535, true);
         buffer.release();
     }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    @Threads(64)
+    public void fastPathAcquireReleaseHighContention()
+    {
+        // Simulate many selector and worker threads each
+        // reading into and writing from pooled buffers.
+        RetainableByteBuffer input = pool.acquire(8192, true);
+        RetainableByteBuffer output = pool.acquire(32768, true);
+        output.release();
+        input.release();
+    }
 }
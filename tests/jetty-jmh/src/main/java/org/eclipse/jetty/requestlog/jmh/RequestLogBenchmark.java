@@ -13,19 +13,30 @@
 
 package org.eclipse.jetty.requestlog.jmh;
 
+import java.io.IOException;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.eclipse.jetty.server.AsyncRequestLogWriter;
+import org.eclipse.jetty.server.RequestLogWriter;
 import org.eclipse.jetty.util.TypeUtil;
+import org.openjdk.jmh.annotations.AuxCounters;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
 import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.annotations.Warmup;
 import org.openjdk.jmh.profile.GCProfiler;
@@ -191,6 +202,78 @@ public class RequestLogBenchmark
         return logMethodHandle(Long.toString(ThreadLocalRandom.current().nextLong()));
     }
 
+    @State(Scope.Benchmark)
+    public static class WriterState
+    {
+        @Param({"sync", "async", "asyncBlocking"})
+        String writerType;
+
+        Path file;
+        RequestLogWriter writer;
+        final AtomicLong dropped = new AtomicLong();
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception
+        {
+            file = Files.createTempFile("jmh-request", ".log");
+            writer = switch (writerType)
+            {
+                case "sync" -> new RequestLogWriter(file.toString());
+                case "async" -> new AsyncRequestLogWriter(file.toString());
+                case "asyncBlocking" ->
+                {
+                    AsyncRequestLogWriter async = new AsyncRequestLogWriter(file.toString());
+                    async.setBlockWhenFull(true);
+                    yield async;
+                }
+                default -> throw new IllegalArgumentException(writerType);
+            };
+            writer.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception
+        {
+            writer.stop();
+            Files.deleteIfExists(file);
+        }
+
+        /**
+         * @return the number of entries dropped since the last call, so that each drop is counted once across threads
+         */
+        long claimDropped()
+        {
+            if (!(writer instanceof AsyncRequestLogWriter async))
+                return 0;
+            long total = async.getDroppedEntries();
+            long claimed = dropped.get();
+            if (total > claimed && dropped.compareAndSet(claimed, total))
+                return total - claimed;
+            return 0;
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class WriteCounters
+    {
+        public long dropped;
+
+        @Setup(Level.Iteration)
+        public void clean()
+        {
+            dropped = 0;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public void testWrite(WriterState state, WriteCounters counters) throws IOException
+    {
+        state.writer.write(logFixed(Long.toString(ThreadLocalRandom.current().nextLong())));
+        counters.dropped += state.claimDropped();
+    }
+
     public static void main(String[] args) throws RunnerException
     {
         Options opt = new OptionsBuilder()
@@ -0,0 +1,118 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.rewrite.jmh;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HttpURI;
+import org.eclipse.jetty.rewrite.handler.RedirectPatternRule;
+import org.eclipse.jetty.rewrite.handler.RedirectRegexRule;
+import org.eclipse.jetty.rewrite.handler.Rule;
+import org.eclipse.jetty.rewrite.handler.RuleContainer;
+import org.eclipse.jetty.server.Request;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@State(Scope.Benchmark)
+@Threads(4)
+@Warmup(iterations = 5, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+public class RuleContainerBenchmark
+{
+    private static final Request NO_REQUEST = (Request)Proxy.newProxyInstance(Request.class.getClassLoader(), new Class<?>[]{Request.class}, (proxy, method, args) -> null);
+
+    @Param({"1000"})
+    int rules;
+
+    @Param({"/page1/foo", "/regex/499/foo?a=b", "/missing/foo"})
+    String target;
+
+    private RuleContainer container;
+    private HttpURI uri;
+
+    @Setup
+    public void setUp()
+    {
+        container = new RuleContainer();
+        for (int i = 0; i < rules / 2; ++i)
+        {
+            container.addRule(new RedirectPatternRule("/page" + i + "/*", "/redirect/pattern/" + i));
+            container.addRule(new RedirectRegexRule("/regex/" + i + "/(.*)", "/redirect/regex/" + i + "/$1"));
+        }
+        uri = HttpURI.from(target);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public Rule.Handler testIndexed() throws IOException
+    {
+        return container.matchAndApply(newInput(uri));
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public Rule.Handler testSequential() throws IOException
+    {
+        // The sequential evaluation of all the rules, for comparison.
+        Rule.Handler input = newInput(uri);
+        for (Rule rule : container)
+        {
+            Rule.Handler output = rule.matchAndApply(input);
+            if (output != null)
+                return output;
+        }
+        return null;
+    }
+
+    private static Rule.Handler newInput(HttpURI uri)
+    {
+        return new Rule.Handler(NO_REQUEST)
+        {
+            @Override
+            public HttpURI getHttpURI()
+            {
+                return uri;
+            }
+        };
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(RuleContainerBenchmark.class.getSimpleName())
+            .warmupIterations(10)
+            .measurementIterations(10)
+            .addProfiler(GCProfiler.class)
+            .forks(1)
+            .threads(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,150 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.jmh;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.SelectorProvider;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.IO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * <p>Measures the request throughput over a few active connections while many idle
+ * connections are registered with the selectors, for different {@link SelectorProvider}s.</p>
+ * <p>By default, the JDK default provider (epoll on Linux) is compared with the JDK
+ * {@code poll(2)} provider, which must be exported to be instantiated.
+ * Other selector backends can be compared by passing the class name of their
+ * {@link SelectorProvider}, for example {@code -p selectorProvider=com.acme.EpollSelectorProvider}.</p>
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "--add-exports=java.base/sun.nio.ch=ALL-UNNAMED")
+public class SelectorManagerBenchmark
+{
+    public static void main(String[] args) throws Exception
+    {
+        Options opt = new OptionsBuilder()
+            .include(SelectorManagerBenchmark.class.getSimpleName())
+            .warmupIterations(5)
+            .warmupTime(TimeValue.milliseconds(1000))
+            .measurementIterations(10)
+            .measurementTime(TimeValue.milliseconds(1000))
+            .forks(1)
+            .threads(8)
+            .build();
+        new Runner(opt).run();
+    }
+
+    @Param({"default", "sun.nio.ch.PollSelectorProvider"})
+    public String selectorProvider;
+    @Param({"0", "1000", "10000"})
+    public int idleConnections;
+
+    Server server;
+    ServerConnector connector;
+    final List<SocketChannel> idle = new ArrayList<>();
+
+    @Setup
+    public void prepare() throws Exception
+    {
+        server = new Server();
+        connector = new ServerConnector(server);
+        connector.setIdleTimeout(0);
+        connector.getSelectorManager().setSelectorProvider(newSelectorProvider(selectorProvider));
+        server.addConnector(connector);
+        server.setHandler(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback) throws Exception
+            {
+                callback.succeeded();
+                return true;
+            }
+        });
+        server.start();
+
+        InetSocketAddress address = new InetSocketAddress("localhost", connector.getLocalPort());
+        for (int i = 0; i < idleConnections; i++)
+        {
+            idle.add(SocketChannel.open(address));
+        }
+    }
+
+    private static SelectorProvider newSelectorProvider(String className) throws Exception
+    {
+        if ("default".equals(className))
+            return SelectorProvider.provider();
+        return (SelectorProvider)Class.forName(className).getConstructor().newInstance();
+    }
+
+    @TearDown
+    public void dispose() throws Exception
+    {
+        idle.forEach(IO::close);
+        idle.clear();
+        server.stop();
+    }
+
+    @State(Scope.Thread)
+    public static class Client
+    {
+        SocketChannel channel;
+
+        @Setup
+        public void connect(SelectorManagerBenchmark benchmark) throws IOException
+        {
+            channel = SocketChannel.open(new InetSocketAddress("localhost", benchmark.connector.getLocalPort()));
+        }
+
+        @TearDown
+        public void disconnect()
+        {
+            IO.close(channel);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public void request(Client client) throws Exception
+    {
+        client.channel.write(StandardCharsets.US_ASCII.encode("GET / HTTP/1.1\r\nHost: localhost\r\n\r\n"));
+        HttpTester.Response response = HttpTester.parseResponse(HttpTester.from(client.channel));
+        if (response == null || response.getStatus() != HttpStatus.OK_200)
+            throw new IllegalStateException("Unexpected response " + response);
+    }
+}
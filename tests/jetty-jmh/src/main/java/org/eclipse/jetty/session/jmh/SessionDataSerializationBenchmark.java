@@ -0,0 +1,156 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.session.jmh;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.session.JavaSessionDataSerializer;
+import org.eclipse.jetty.session.SessionData;
+import org.eclipse.jetty.session.SessionDataSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the save of a session after the change of a single attribute,
+ * with java serialization of all the attributes, with a {@link SessionDataSerializer}
+ * of all the attributes, and with a {@link SessionDataSerializer} reusing the bytes
+ * of the unchanged attributes.
+ */
+@State(Scope.Thread)
+@Threads(1)
+@Warmup(iterations = 5, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+public class SessionDataSerializationBenchmark
+{
+    @Param({"small", "medium", "fat"})
+    String shape;
+
+    private final SessionDataSerializer serializer = new JavaSessionDataSerializer();
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private SessionData data;
+    private int count;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        long now = System.currentTimeMillis();
+        data = new SessionData("benchmark", "/", "0.0.0.0", now, now, now, TimeUnit.MINUTES.toMillis(30));
+        data.setAttribute("userId", "user-0123456789");
+        data.setAttribute("locale", Locale.US);
+        data.setAttribute("count", count);
+
+        int attributes = switch (shape)
+        {
+            case "small" -> 0;
+            case "medium" -> 10;
+            case "fat" -> 30;
+            default -> throw new IllegalArgumentException(shape);
+        };
+        for (int i = 0; i < attributes; i++)
+        {
+            Map<String, Object> cart = new HashMap<>();
+            for (int j = 0; j < 20; j++)
+            {
+                cart.put("item-" + j, (long)j * i);
+            }
+            data.setAttribute("cart-" + i, cart);
+        }
+        if ("fat".equals(shape))
+        {
+            List<String> history = new ArrayList<>();
+            for (int i = 0; i < 500; i++)
+            {
+                history.add("/catalog/product/" + i + "?ref=search");
+            }
+            data.setAttribute("history", history);
+            data.setAttribute("avatar", new byte[64 * 1024]);
+        }
+
+        // Prime the cached bytes of the attributes.
+        SessionData.serializeAttributes(data, serializer, new DataOutputStream(bytes), true);
+        data.clean();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public int testJavaSerialization() throws IOException
+    {
+        data.setAttribute("count", ++count);
+        bytes.reset();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+        {
+            SessionData.serializeAttributes(data, out);
+        }
+        data.clean();
+        return bytes.size();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public int testSerializer() throws IOException
+    {
+        data.setAttribute("count", ++count);
+        bytes.reset();
+        SessionData.serializeAttributes(data, serializer, new DataOutputStream(bytes), false);
+        data.clean();
+        return bytes.size();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public int testSerializerChangedAttributesOnly() throws IOException
+    {
+        data.setAttribute("count", ++count);
+        bytes.reset();
+        SessionData.serializeAttributes(data, serializer, new DataOutputStream(bytes), true);
+        data.clean();
+        return bytes.size();
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(SessionDataSerializationBenchmark.class.getSimpleName())
+            .warmupIterations(10)
+            .measurementIterations(10)
+            .addProfiler(GCProfiler.class)
+            .forks(1)
+            .threads(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
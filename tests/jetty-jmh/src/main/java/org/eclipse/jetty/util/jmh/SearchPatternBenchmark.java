@@ -0,0 +1,101 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util.jmh;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.SearchPattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@State(Scope.Benchmark)
+@Threads(4)
+@Warmup(iterations = 5, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+public class SearchPatternBenchmark
+{
+    // A short delimiter, searched with ByteScanner, and multipart boundary delimiters, searched with Boyer-Moore-Horspool.
+    @Param({"\r\n--AaB03x", "\r\n--", "\r\n------WebKitFormBoundary7MA4YWxkTrZu0gW"})
+    String delimiter;
+
+    @Param({"text", "binary"})
+    String content;
+
+    private SearchPattern pattern;
+    private byte[] bytes;
+    private ByteBuffer direct;
+
+    @Setup
+    public void setUp()
+    {
+        pattern = SearchPattern.compile(delimiter);
+
+        // A 64 KiB multipart part body, followed by the delimiter.
+        Random random = new Random(1234);
+        bytes = new byte[64 * 1024 + delimiter.length()];
+        int length = bytes.length - delimiter.length();
+        for (int i = 0; i < length; ++i)
+        {
+            if ("text".equals(content))
+                bytes[i] = (byte)(i % 80 == 79 ? '\n' : i % 80 == 78 ? '\r' : 0x20 + random.nextInt(0x5F));
+            else
+                bytes[i] = (byte)random.nextInt(256);
+        }
+        System.arraycopy(delimiter.getBytes(StandardCharsets.US_ASCII), 0, bytes, length, delimiter.length());
+        direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public int testMatchArray()
+    {
+        return pattern.match(bytes, 0, bytes.length);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public int testMatchDirectBuffer()
+    {
+        return pattern.match(direct);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(SearchPatternBenchmark.class.getSimpleName())
+            .warmupIterations(10)
+            .measurementIterations(10)
+            .forks(1)
+            .threads(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,107 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util.jmh;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.Utf8StringBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@State(Scope.Benchmark)
+@Threads(4)
+@Warmup(iterations = 5, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+public class Utf8StringBuilderBenchmark
+{
+    @Param({"64", "65536"})
+    int size;
+
+    @Param({"ascii", "mixed"})
+    String text;
+
+    private byte[] bytes;
+    private ByteBuffer direct;
+
+    @Setup
+    public void setUp()
+    {
+        // A text frame of US-ASCII, or of US-ASCII with a multi-byte character every 32 characters.
+        String chunk = "ascii".equals(text) ? "abcdefghijklmnopqrstuvwxyz012345" : "abcdefghijklmnopqrstuvwxyz01234é";
+        bytes = chunk.repeat(Math.max(1, size / chunk.length())).getBytes(StandardCharsets.UTF_8);
+        direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public String testAppendArray()
+    {
+        Utf8StringBuilder utf8 = new Utf8StringBuilder(bytes.length);
+        utf8.append(bytes, 0, bytes.length);
+        return utf8.toCompleteString();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public String testAppendDirectBuffer()
+    {
+        Utf8StringBuilder utf8 = new Utf8StringBuilder(bytes.length);
+        utf8.append(direct.slice());
+        return utf8.toCompleteString();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public String testAppendByteAtATime() throws IOException
+    {
+        // The byte at a time decoding, for comparison.
+        Utf8StringBuilder utf8 = new Utf8StringBuilder(bytes.length);
+        for (byte b : bytes)
+        {
+            utf8.appendByte(b);
+        }
+        return utf8.toCompleteString();
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(Utf8StringBuilderBenchmark.class.getSimpleName())
+            .warmupIterations(10)
+            .measurementIterations(10)
+            .addProfiler(GCProfiler.class)
+            .forks(1)
+            .threads(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}